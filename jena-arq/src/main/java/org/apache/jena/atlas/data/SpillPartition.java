@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.data;
+
+/**
+ * Hash partitioning for operators that spill to disk. Rows are divided between
+ * {@link #NumPartitions} bags and a partition that is still too large is
+ * partitioned again, with a different hash, up to {@link #MaxDepth} levels.
+ */
+public final class SpillPartition {
+    /** The number of partitions at each level. */
+    public static final int NumPartitions = 32;
+    /** Partitioning is not repeated beyond this depth. */
+    public static final int MaxDepth = 3;
+
+    private SpillPartition() {}
+
+    /**
+     * The partition, from 0 to {@link #NumPartitions}-1, for a hash code.
+     * Each depth uses a different hash so that a partition is divided when it
+     * is partitioned again.
+     */
+    public static int partition(int hashCode, int depth) {
+        long h = (hashCode ^ (depth * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        return (int)Math.floorMod(h >>> 32, NumPartitions);
+    }
+}
@@ -361,6 +361,28 @@ public class ARQ
     // Hash table: GROUP BY, MINUS, SERVICE, VALUES, and hash joins <br>
     public static final Symbol spillToDiskThreshold = SystemARQ.allocSymbol("spillToDiskThreshold");
 
+    /**
+     * Execute basic graph patterns, filters, BIND, projection, joins, grouping and
+     * OFFSET/LIMIT a batch of solutions at a time, with the solutions of a batch held
+     * by column. The value is "true" or the number of rows in a batch.
+     * Other operators are executed as usual, connected by adapters.
+     * Only applies to the general purpose query engine.
+     * @see org.apache.jena.sparql.engine.batch.BatchCompiler
+     */
+    public static final Symbol batchExecution = SystemARQ.allocSymbol("batchExecution");
+
+    /**
+     * The number of threads that may be used to execute one query. The default is 1,
+     * all work on the calling thread. A value greater than one turns on
+     * {@link #batchExecution} and splits the matches of basic graph patterns into
+     * batches that are processed by worker threads; grouping and sorting are also
+     * split across threads. Only applies to the general purpose query engine,
+     * and not when the dataset is in a transaction that is private to the calling
+     * thread.
+     * @see org.apache.jena.sparql.engine.batch.BatchParallel
+     */
+    public static final Symbol parallelism = SystemARQ.allocSymbol("parallelism");
+
     // Optimizer controls.
 
     /**
@@ -556,6 +578,50 @@ public class ARQ
     // TDB reorders based on stats when the input binding is known.
     public static final Symbol optReorderBGP = SystemARQ.allocSymbol("optReorderBGP");
 
+    /**
+     * Context key controlling whether the standard optimizer reorders joins using
+     * estimates of their cardinality: the operands of joins, including OPTIONAL,
+     * UNION and sub-queries, not only the triple patterns of basic graph patterns.
+     * The estimates come from {@link #cardinalityEstimator}, if set, otherwise from
+     * counting matches in the dataset.
+     * <p>By default, this is not applied.
+     * @see org.apache.jena.sparql.algebra.optimize.TransformJoinReorder
+     */
+    public static final Symbol optJoinReorder = SystemARQ.allocSymbol("optJoinReorder");
+
+    /**
+     * Context key for the {@link org.apache.jena.sparql.algebra.optimize.CardinalityEstimator}
+     * used by {@link #optJoinReorder}.
+     */
+    public static final Symbol cardinalityEstimator = SystemARQ.allocSymbol("cardinalityEstimator");
+
+    /**
+     * Context key to execute basic graph patterns adaptively: the number of matches
+     * of each triple pattern is compared to the estimate during execution and,
+     * if they differ greatly, the remaining patterns are re-ordered or a pattern is
+     * switched to a hash join.
+     * Estimates come from {@link #cardinalityEstimator}, if set.
+     * <p>By default, this is not applied.
+     * @see org.apache.jena.sparql.engine.main.solver.PatternMatchAdaptive
+     */
+    public static final Symbol optAdaptiveBGP = SystemARQ.allocSymbol("optAdaptiveBGP");
+
+    /**
+     * Context key to share the closures, {@code p*} and {@code p+}, of single properties
+     * across the bindings of a query execution, and to evaluate such a closure with
+     * both ends known by walking from both ends.
+     * <p>By default, this is not applied.
+     * @see org.apache.jena.sparql.path.eval.PathClosure
+     */
+    public static final Symbol optPathClosure = SystemARQ.allocSymbol("optPathClosure");
+
+    /**
+     * Context key for a {@link org.apache.jena.sparql.path.eval.PathClosureIndex}, a stored index
+     * of the closures of some properties, used for {@code p*} and {@code p+} of those properties.
+     * Storage with such an index sets this for its query executions.
+     */
+    public static final Symbol pathClosureIndex = SystemARQ.allocSymbol("pathClosureIndex");
+
     /**
      *  Context key controlling whether the main query engine processes property functions.
      *  <p>By default, this is applied.
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.rdfs;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.rdfs.engine.ApplyRDFS;
+import org.apache.jena.rdfs.engine.Mappers;
+import org.apache.jena.sparql.JenaTransactionException;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphWrapper;
+import org.apache.jena.sparql.core.DatasetGraphWrapperView;
+import org.apache.jena.sparql.core.GraphView;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+
+/**
+ * RDFS over a dataset where the inferred triples are stored, rather than
+ * computed on each {@code find} as {@link DatasetGraphRDFS} does.
+ * <p>
+ * Asserted quads are kept in the wrapped dataset, inferred quads that are not
+ * also asserted are kept in a second dataset, the inferred store. A query then
+ * costs the same as on plain data.
+ * <p>
+ * The inferred store is maintained on each add and delete made through this dataset.
+ * The RDFS rules applied by {@link ApplyRDFS} derive each inferred triple from a
+ * single data triple and the (fixed) schema, so on delete the consequences of the
+ * removed triple are dropped unless they are still entailed by the remaining data
+ * (delete-and-rederive, where the rederive check is the {@link GraphRDFS} match).
+ * <p>
+ * Transactions on this dataset are transactions on both the wrapped dataset and the
+ * inferred store. The two commit one after the other; if they are separate
+ * persistent datasets, call {@link #materialize()} after a failure between the commits.
+ * Changes to the schema are not tracked; this is the same as for {@link DatasetGraphRDFS}.
+ */
+public class DatasetGraphRDFSMaterialized extends DatasetGraphWrapper implements DatasetGraphWrapperView {
+    // Do not unwrap for query execution.
+
+    private final SetupRDFS setup;
+    private final DatasetGraph inferred;
+    private final ApplyRDFS<Node, Triple> rdfs;
+
+    /**
+     * Create an RDFS dataset with inferred quads stored in {@code inferred}.
+     * The inferred store is assumed to be up-to-date with the data;
+     * call {@link #materialize()} if it is not.
+     */
+    public DatasetGraphRDFSMaterialized(DatasetGraph dsg, DatasetGraph inferred, SetupRDFS setup) {
+        super(dsg);
+        if ( dsg == inferred )
+            throw new IllegalArgumentException("The inferred store must be different to the data");
+        this.setup = setup;
+        this.inferred = inferred;
+        this.rdfs = new ApplyRDFS<>(setup, Mappers.mapperTriple());
+    }
+
+    /** The store of inferred quads. */
+    public DatasetGraph getInferred() {
+        return inferred;
+    }
+
+    /** Recalculate the inferred store from the data. */
+    public void materialize() {
+        if ( supportsTransactions() && ! isInTransaction() ) {
+            Txn.executeWrite(this, this::materialize$);
+            return;
+        }
+        materialize$();
+    }
+
+    private void materialize$() {
+        DatasetGraph data = getW();
+        inferred.clear();
+        data.find().forEachRemaining(q -> infer(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject()));
+    }
+
+    // ---- Update
+
+    @Override
+    public void add(Quad quad) {
+        add(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+    }
+
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        DatasetGraph data = getW();
+        if ( data.contains(g, s, p, o) )
+            return;
+        data.add(g, s, p, o);
+        // Now asserted.
+        inferred.delete(g, s, p, o);
+        infer(g, s, p, o);
+    }
+
+    @Override
+    public void delete(Quad quad) {
+        delete(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        DatasetGraph data = getW();
+        if ( ! data.contains(g, s, p, o) )
+            return;
+        data.delete(g, s, p, o);
+        Graph remaining = new GraphRDFS(dataGraph(g), setup);
+        // The triple itself may still be inferred.
+        if ( remaining.contains(s, p, o) )
+            inferred.add(g, s, p, o);
+        rdfs.infer(s, p, o, (s1, p1, o1) -> {
+            if ( inferred.contains(g, s1, p1, o1) && ! remaining.contains(s1, p1, o1) )
+                inferred.delete(g, s1, p1, o1);
+        });
+    }
+
+    @Override
+    public void deleteAny(Node g, Node s, Node p, Node o) {
+        List<Quad> quads = Iter.toList(getW().find(g, s, p, o));
+        quads.forEach(this::delete);
+    }
+
+    @Override
+    public void clear() {
+        getW().clear();
+        inferred.clear();
+    }
+
+    @Override
+    public void addGraph(Node graphName, Graph graph) {
+        graph.find().forEachRemaining(t -> add(graphName, t.getSubject(), t.getPredicate(), t.getObject()));
+    }
+
+    @Override
+    public void removeGraph(Node graphName) {
+        getW().removeGraph(graphName);
+        inferred.removeGraph(graphName);
+    }
+
+    /** Add the consequences of a data quad that are not asserted. */
+    private void infer(Node g, Node s, Node p, Node o) {
+        DatasetGraph data = getW();
+        rdfs.infer(s, p, o, (s1, p1, o1) -> {
+            if ( ! data.contains(g, s1, p1, o1) )
+                inferred.add(g, s1, p1, o1);
+        });
+    }
+
+    private Graph dataGraph(Node g) {
+        return Quad.isDefaultGraph(g) ? getW().getDefaultGraph() : getW().getGraph(g);
+    }
+
+    // ---- Access
+
+    // Graphs are views of this dataset so that graph operations include the inferred store.
+    @Override
+    public Graph getDefaultGraph() {
+        return GraphView.createDefaultGraph(this);
+    }
+
+    @Override
+    public Graph getUnionGraph() {
+        return GraphView.createUnionGraph(this);
+    }
+
+    @Override
+    public Graph getGraph(Node graphNode) {
+        if ( Quad.isDefaultGraph(graphNode) )
+            return getDefaultGraph();
+        if ( Quad.isUnionGraph(graphNode) )
+            return getUnionGraph();
+        return GraphView.createNamedGraph(this, graphNode);
+    }
+
+    @Override
+    public Iterator<Quad> find() {
+        return find(Node.ANY, Node.ANY, Node.ANY, Node.ANY);
+    }
+
+    @Override
+    public Iterator<Quad> find(Quad quad) {
+        return find(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+    }
+
+    @Override
+    public Iterator<Quad> find(Node g, Node s, Node p, Node o) {
+        Iter<Quad> iter = Iter.concat(getW().find(g, s, p, o), inferred.find(g, s, p, o));
+        return unionDistinct(g, iter);
+    }
+
+    @Override
+    public Iterator<Quad> findNG(Node g, Node s, Node p, Node o) {
+        Iter<Quad> iter = Iter.concat(getW().findNG(g, s, p, o), inferred.findNG(g, s, p, o));
+        return unionDistinct(g, iter);
+    }
+
+    // A triple may be asserted in one graph and inferred in another.
+    private static Iterator<Quad> unionDistinct(Node g, Iter<Quad> iter) {
+        if ( g == null || ! Quad.isUnionGraph(g) )
+            return iter;
+        return Iter.distinct(iter.map(q -> Quad.create(Quad.unionGraph, q.asTriple())));
+    }
+
+    @Override
+    public boolean contains(Quad quad) {
+        return contains(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+    }
+
+    @Override
+    public boolean contains(Node g, Node s, Node p, Node o) {
+        return getW().contains(g, s, p, o) || inferred.contains(g, s, p, o);
+    }
+
+    // ---- Transactions : both the data and the inferred store.
+
+    @Override
+    public void begin() {
+        super.begin();
+        beginInferred();
+    }
+
+    @Override
+    public void begin(TxnType type) {
+        super.begin(type);
+        beginInferred();
+    }
+
+    @Override
+    public void begin(ReadWrite readWrite) {
+        super.begin(readWrite);
+        beginInferred();
+    }
+
+    private void beginInferred() {
+        if ( inferred.supportsTransactions() )
+            inferred.begin(super.transactionType());
+    }
+
+    @Override
+    public boolean promote() {
+        if ( transactionMode() == ReadWrite.WRITE )
+            return true;
+        // As Transactional.promote(): choose the promote type, then promote both.
+        TxnType txnType = transactionType();
+        if ( txnType == null )
+            throw new JenaTransactionException("txnType");
+        switch(txnType) {
+            case WRITE :                  return true;
+            case READ :                   return false;
+            case READ_PROMOTE :           return promote(Promote.ISOLATED);
+            case READ_COMMITTED_PROMOTE : return promote(Promote.READ_COMMITTED);
+        }
+        throw new JenaTransactionException("Can't determine promote '"+txnType+"'transaction");
+    }
+
+    @Override
+    public boolean promote(Promote type) {
+        if ( ! super.promote(type) )
+            return false;
+        if ( inferred.supportsTransactions() && ! inferred.promote(type) )
+            throw new JenaTransactionException("Failed to promote the inferred store");
+        return true;
+    }
+
+    @Override
+    public void commit() {
+        if ( inferred.supportsTransactions() )
+            inferred.commit();
+        super.commit();
+    }
+
+    @Override
+    public void abort() {
+        if ( inferred.supportsTransactions() )
+            inferred.abort();
+        super.abort();
+    }
+
+    @Override
+    public void end() {
+        if ( inferred.supportsTransactions() )
+            inferred.end();
+        super.end();
+    }
+
+    @Override
+    public void close() {
+        inferred.close();
+        super.close();
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
 import org.apache.jena.sparql.util.NodeUtils;
 
 /** Factory for data+RDFS inference. */
@@ -65,6 +66,27 @@ public class RDFSFactory {
         return DatasetFactory.wrap(new DatasetGraphRDFS(data.asDatasetGraph(), setup));
     }
 
+    /**
+     * Create an RDFS dataset that stores the inferred quads in an in-memory dataset
+     * and maintains them as the data changes.
+     * The inferred quads are calculated from the data on creation.
+     */
+    public static DatasetGraph datasetRDFSMaterialized(DatasetGraph data, SetupRDFS setup) {
+        DatasetGraphRDFSMaterialized dsg = new DatasetGraphRDFSMaterialized(data, DatasetGraphFactory.createTxnMem(), setup);
+        dsg.materialize();
+        return dsg;
+    }
+
+    /**
+     * Create an RDFS dataset that stores the inferred quads in {@code inferred}
+     * and maintains them as the data changes.
+     * The inferred store is assumed to be up-to-date with the data;
+     * see {@link DatasetGraphRDFSMaterialized#materialize()}.
+     */
+    public static DatasetGraph datasetRDFSMaterialized(DatasetGraph data, DatasetGraph inferred, SetupRDFS setup) {
+        return new DatasetGraphRDFSMaterialized(data, inferred, setup);
+    }
+
     /** Create an {@link SetupRDFS} */
     public static SetupRDFS setupRDFS(Graph vocab) {
         return new SetupRDFS(vocab);
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.algebra.optimize;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
+import org.apache.jena.sparql.engine.optimizer.reorder.PatternTriple;
+
+/**
+ * Estimates of the number of matches of a triple pattern, used by
+ * {@link TransformJoinReorder} to order joins.
+ * @see org.apache.jena.query.ARQ#cardinalityEstimator
+ */
+public interface CardinalityEstimator {
+
+    /** Default limit on counting matches for {@link #sampled}. */
+    public static final long DftSampleLimit = 10_000;
+
+    /**
+     * Estimate of the number of matches of a triple pattern, or a negative number for "unknown".
+     * @param graph The graph: null for the default graph, a variable for any named graph.
+     * @param triple The pattern; variables match anything.
+     */
+    public double cardinality(Node graph, Triple triple);
+
+    /** No estimates. */
+    public static CardinalityEstimator none() {
+        return (graph, triple) -> -1;
+    }
+
+    /**
+     * Fixed estimates that depend only on which terms of the pattern are concrete.
+     * This estimator never returns "unknown".
+     */
+    public static CardinalityEstimator fixed() {
+        return (graph, triple) -> {
+            boolean s = triple.getSubject().isConcrete();
+            boolean p = triple.getPredicate().isConcrete();
+            boolean o = triple.getObject().isConcrete();
+            if ( s && p && o )
+                return 1;
+            if ( s )
+                return ( p || o ) ? 2 : 10;
+            if ( o )
+                return p ? 10 : 100;
+            if ( p )
+                return 10_000;
+            return 1e6;
+        };
+    }
+
+    /** Estimates from the weights of a {@link StatsMatcher}. */
+    public static CardinalityEstimator stats(StatsMatcher stats) {
+        return (graph, triple) -> stats.match(new PatternTriple(triple));
+    }
+
+    /**
+     * Estimates by counting the matches in a dataset, counting no more than {@code limit}.
+     * The counts are cached so the estimator should be used for one query only.
+     */
+    public static CardinalityEstimator sampled(DatasetGraph dsg, long limit) {
+        return new CardinalitySampled(dsg, limit);
+    }
+}
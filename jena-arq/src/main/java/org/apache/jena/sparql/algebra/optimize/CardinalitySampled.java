@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.algebra.optimize;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+
+/**
+ * Cardinality estimates from counting matches in a dataset, up to a limit.
+ * If the dataset can not be read (for example, it needs a transaction and there
+ * isn't one), or counting takes too long in total (for example, the graph is
+ * computed or remote), the estimates are "unknown".
+ */
+class CardinalitySampled implements CardinalityEstimator {
+    // Total time for counting.
+    private static final long TimeBudgetMillis = 50;
+
+    private final DatasetGraph dsg;
+    private final long limit;
+    private final Map<Quad, Double> cache = new HashMap<>();
+    private long deadline = -1;
+    private boolean failed = false;
+
+    CardinalitySampled(DatasetGraph dsg, long limit) {
+        this.dsg = dsg;
+        this.limit = limit;
+    }
+
+    @Override
+    public double cardinality(Node graph, Triple triple) {
+        if ( failed )
+            return -1;
+        Node g = ( graph == null ) ? Quad.defaultGraphIRI : ( Var.isVar(graph) ? Node.ANY : graph );
+        Quad key = new Quad(g, any(triple.getSubject()), any(triple.getPredicate()), any(triple.getObject()));
+        Double x = cache.get(key);
+        if ( x != null )
+            return x;
+        if ( deadline < 0 )
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TimeBudgetMillis);
+        double count;
+        try {
+            count = count(key);
+        } catch (RuntimeException ex) {
+            count = -1;
+        }
+        if ( count < 0 ) {
+            failed = true;
+            return -1;
+        }
+        cache.put(key, count);
+        return count;
+    }
+
+    /** Count matches, or return -1 if out of time. */
+    private long count(Quad quad) {
+        Iterator<Quad> iter = Quad.isDefaultGraph(quad.getGraph())
+            ? dsg.find(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject())
+            : dsg.findNG(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+        try {
+            long n = 0;
+            while ( n < limit && iter.hasNext() ) {
+                iter.next();
+                n++;
+                if ( (n & 0x3F) == 0 && System.nanoTime() > deadline )
+                    return -1;
+            }
+            return n;
+        } finally {
+            Iter.close(iter);
+        }
+    }
+
+    // Variables, and triple terms with variables, match anything.
+    private static Node any(Node node) {
+        return node.isConcrete() ? node : Node.ANY;
+    }
+}
@@ -19,10 +19,12 @@
 package org.apache.jena.sparql.algebra.optimize;
 
 import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Dataset;
 import org.apache.jena.sparql.ARQConstants;
 import org.apache.jena.sparql.SystemARQ;
 import org.apache.jena.sparql.algebra.*;
 import org.apache.jena.sparql.algebra.op.OpLabel;
+import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.util.Context;
 import org.apache.jena.sparql.util.Symbol;
 import org.slf4j.Logger;
@@ -133,6 +135,11 @@ public class OptimizerStd implements Rewrite
         if ( context.isTrueOrUndef(ARQ.optDistinctToReduced) )
             op = transformDistinctToReduced(op);
 
+        // Order joins by estimated cardinality. This is done before choosing the join
+        // strategy, which depends on the order. Off by default.
+        if ( context.isTrue(ARQ.optJoinReorder) )
+            op = transformJoinReorder(op);
+
         // Find joins/leftJoin that can be done by index joins (generally preferred as fixed memory overhead).
         if ( context.isTrueOrUndef(ARQ.optIndexJoinStrategy) )
             op = transformJoinStrategy(op);
@@ -265,6 +272,26 @@ public class OptimizerStd implements Rewrite
         return apply("Merge BGPs", new TransformMergeBGPs(), op);
     }
 
+    protected Op transformJoinReorder(Op op) {
+        CardinalityEstimator estimator = context.get(ARQ.cardinalityEstimator);
+        if ( estimator == null ) {
+            DatasetGraph dsg = currentDataset();
+            estimator = ( dsg == null )
+                ? CardinalityEstimator.none()
+                : CardinalityEstimator.sampled(dsg, CardinalityEstimator.DftSampleLimit);
+        }
+        return TransformJoinReorder.reorder(op, estimator);
+    }
+
+    private DatasetGraph currentDataset() {
+        Object obj = context.get(ARQConstants.sysCurrentDataset);
+        if ( obj instanceof Dataset ds )
+            return ds.asDatasetGraph();
+        if ( obj instanceof DatasetGraph dsg )
+            return dsg;
+        return null;
+    }
+
     protected Op transformReorder(Op op) {
         return  apply("ReorderMerge BGPs", new TransformReorder(), op);
     }
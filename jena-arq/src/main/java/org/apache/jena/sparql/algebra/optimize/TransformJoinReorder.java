@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.algebra.optimize;
+
+import java.util.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.OpVisitor;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.TransformCopy;
+import org.apache.jena.sparql.algebra.Transformer;
+import org.apache.jena.sparql.algebra.op.*;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.main.JoinClassifier;
+import org.apache.jena.sparql.util.VarUtils;
+
+/**
+ * Cost-based ordering of joins.
+ * <p>
+ * A tree of {@link OpJoin} is flattened to its operands, which may be any
+ * algebra expression (basic graph patterns, OPTIONAL, UNION, sub-queries, ...),
+ * and rebuilt, left-deep, in the order chosen by a greedy enumeration: start
+ * with the operand with the smallest estimated cardinality, then repeatedly
+ * add the operand that gives the smallest estimated join, preferring operands
+ * that can be joined by substitution (see {@link JoinClassifier}).
+ * Ties keep the written order.
+ * <p>
+ * Cardinalities of triple patterns come from a {@link CardinalityEstimator}, or
+ * a fixed estimate by the number of concrete terms. Joins with a shared variable
+ * are estimated as the smaller side, cross products as the product.
+ * <p>
+ * This is done before {@link TransformJoinStrategy} so that the join strategy is
+ * chosen for the new order. Existing {@link OpSequence}s are left alone.
+ */
+public class TransformJoinReorder extends TransformCopy {
+    // Estimate for an operator with nothing known about it.
+    private static final double Unknown = 1e6;
+    private static final CardinalityEstimator fixed = CardinalityEstimator.fixed();
+    private static final double FilterSelectivity = 0.5;
+    private static final double GroupReduction = 0.1;
+
+    private final CardinalityEstimator estimator;
+    // The graph of the enclosing GRAPH, if any.
+    private final Deque<Node> graphs = new ArrayDeque<>();
+
+    /** Reorder the joins in an algebra expression. */
+    public static Op reorder(Op op, CardinalityEstimator estimator) {
+        TransformJoinReorder transform = new TransformJoinReorder(estimator);
+        OpVisitor before = new OpVisitorBase() {
+            @Override public void visit(OpGraph opGraph) { transform.graphs.push(opGraph.getNode()); }
+        };
+        OpVisitor after = new OpVisitorBase() {
+            @Override public void visit(OpGraph opGraph) { transform.graphs.pop(); }
+        };
+        return Transformer.transformSkipService(transform, null, op, before, after);
+    }
+
+    public TransformJoinReorder(CardinalityEstimator estimator) {
+        this.estimator = ( estimator == null ) ? CardinalityEstimator.none() : estimator;
+    }
+
+    @Override
+    public Op transform(OpJoin opJoin, Op left, Op right) {
+        List<Op> operands = new ArrayList<>();
+        flatten(left, operands);
+        flatten(right, operands);
+        List<Op> ordered = order(operands, graphs.peek());
+        if ( ordered.equals(operands) )
+            return super.transform(opJoin, left, right);
+        Op op = ordered.get(0);
+        for ( int i = 1 ; i < ordered.size() ; i++ )
+            op = OpJoin.create(op, ordered.get(i));
+        return op;
+    }
+
+    private static void flatten(Op op, List<Op> acc) {
+        if ( op instanceof OpJoin opJoin ) {
+            flatten(opJoin.getLeft(), acc);
+            flatten(opJoin.getRight(), acc);
+            return;
+        }
+        acc.add(op);
+    }
+
+    private List<Op> order(List<Op> operands, Node graph) {
+        int n = operands.size();
+        double[] cardinality = new double[n];
+        List<Set<Var>> vars = new ArrayList<>(n);
+        for ( int i = 0 ; i < n ; i++ ) {
+            cardinality[i] = estimate(operands.get(i), graph);
+            vars.add(OpVars.visibleVars(operands.get(i)));
+        }
+        List<Integer> remaining = new ArrayList<>(n);
+        for ( int i = 0 ; i < n ; i++ )
+            remaining.add(i);
+
+        List<Op> ordered = new ArrayList<>(n);
+        Set<Var> bound = new HashSet<>();
+        Op current = null;
+        double estimate = -1;
+        while ( !remaining.isEmpty() ) {
+            int best = -1;
+            double bestCost = 0;
+            boolean bestLinear = false;
+            for ( int i : remaining ) {
+                Op op = operands.get(i);
+                boolean linear = ( current == null ) || JoinClassifier.isLinear(current, op);
+                double cost = ( current == null )
+                    ? cardinality[i]
+                    : join(estimate, cardinality[i], !Collections.disjoint(bound, vars.get(i)));
+                if ( best < 0 || ( linear && !bestLinear ) || ( linear == bestLinear && cost < bestCost ) ) {
+                    best = i;
+                    bestCost = cost;
+                    bestLinear = linear;
+                }
+            }
+            remaining.remove((Integer)best);
+            Op op = operands.get(best);
+            ordered.add(op);
+            bound.addAll(vars.get(best));
+            current = ( current == null ) ? op : OpJoin.create(current, op);
+            estimate = bestCost;
+        }
+        return ordered;
+    }
+
+    private static double join(double left, double right, boolean connected) {
+        return connected ? Math.min(left, right) : left * right;
+    }
+
+    /** Estimate the number of results of an algebra expression. */
+    public double estimate(Op op) {
+        return estimate(op, graphs.peek());
+    }
+
+    private double estimate(Op op, Node graph) {
+        if ( op instanceof OpBGP opBGP )
+            return estimate(opBGP.getPattern().getList(), graph);
+        if ( op instanceof OpTriple opTriple )
+            return estimate(List.of(opTriple.getTriple()), graph);
+        if ( op instanceof OpQuadPattern opQuads ) {
+            Node g = opQuads.getGraphNode();
+            return estimate(opQuads.getBasicPattern().getList(), Quad.isDefaultGraph(g) ? null : g);
+        }
+        if ( op instanceof OpGraph opGraph )
+            return estimate(opGraph.getSubOp(), opGraph.getNode());
+        if ( op instanceof OpTable opTable )
+            return opTable.isJoinIdentity() ? 1 : opTable.getTable().size();
+        if ( op instanceof OpNull )
+            return 0;
+        if ( op instanceof OpFilter opFilter )
+            return FilterSelectivity * estimate(opFilter.getSubOp(), graph);
+        if ( op instanceof OpJoin || op instanceof OpSequence ) {
+            List<Op> operands = new ArrayList<>();
+            if ( op instanceof OpSequence opSequence )
+                operands.addAll(opSequence.getElements());
+            else
+                flatten(op, operands);
+            double estimate = -1;
+            Set<Var> bound = new HashSet<>();
+            for ( Op sub : operands ) {
+                double x = estimate(sub, graph);
+                Set<Var> vars = OpVars.visibleVars(sub);
+                estimate = ( estimate < 0 ) ? x : join(estimate, x, !Collections.disjoint(bound, vars));
+                bound.addAll(vars);
+            }
+            return Math.max(0, estimate);
+        }
+        if ( op instanceof OpLeftJoin || op instanceof OpConditional ) {
+            Op2 op2 = (Op2)op;
+            double left = estimate(op2.getLeft(), graph);
+            double right = estimate(op2.getRight(), graph);
+            boolean connected = !Collections.disjoint(OpVars.visibleVars(op2.getLeft()), OpVars.visibleVars(op2.getRight()));
+            return Math.max(left, join(left, right, connected));
+        }
+        if ( op instanceof OpUnion opUnion )
+            return estimate(opUnion.getLeft(), graph) + estimate(opUnion.getRight(), graph);
+        if ( op instanceof OpDisjunction opDisjunction ) {
+            double x = 0;
+            for ( Op sub : opDisjunction.getElements() )
+                x += estimate(sub, graph);
+            return x;
+        }
+        if ( op instanceof OpMinus opMinus )
+            return estimate(opMinus.getLeft(), graph);
+        if ( op instanceof OpSlice opSlice ) {
+            double x = estimate(opSlice.getSubOp(), graph);
+            return ( opSlice.getLength() == Query.NOLIMIT ) ? x : Math.min(x, opSlice.getLength());
+        }
+        if ( op instanceof OpTopN opTopN )
+            return Math.min(estimate(opTopN.getSubOp(), graph), opTopN.getLimit());
+        if ( op instanceof OpGroup opGroup ) {
+            if ( opGroup.getGroupVars().isEmpty() )
+                return 1;
+            return Math.max(1, GroupReduction * estimate(opGroup.getSubOp(), graph));
+        }
+        // Project, distinct, reduced, order, extend, assign, label, ...
+        if ( op instanceof OpModifier || op instanceof OpExtendAssign || op instanceof OpLabel )
+            return estimate(((Op1)op).getSubOp(), graph);
+        // SERVICE, paths, property functions, ...
+        return Unknown;
+    }
+
+    /** Estimate a basic graph pattern by joining the triple patterns greedily. */
+    private double estimate(List<Triple> triples, Node graph) {
+        if ( triples.isEmpty() )
+            return 1;
+        List<Triple> remaining = new ArrayList<>(triples);
+        Set<Var> bound = new HashSet<>();
+        double estimate = -1;
+        while ( !remaining.isEmpty() ) {
+            Triple best = null;
+            double bestCost = 0;
+            for ( Triple t : remaining ) {
+                double x = cardinality(t, graph);
+                double cost = ( estimate < 0 ) ? x : join(estimate, x, !Collections.disjoint(bound, VarUtils.getVars(t)));
+                if ( best == null || cost < bestCost ) {
+                    best = t;
+                    bestCost = cost;
+                }
+            }
+            remaining.remove(best);
+            VarUtils.addVarsFromTriple(bound, best);
+            estimate = bestCost;
+        }
+        return estimate;
+    }
+
+    private double cardinality(Triple triple, Node graph) {
+        double x = estimator.cardinality(graph, triple);
+        if ( x >= 0 )
+            return x;
+        return fixed.cardinality(graph, triple);
+    }
+}
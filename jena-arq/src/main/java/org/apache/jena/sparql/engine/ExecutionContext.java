@@ -21,8 +21,11 @@ package org.apache.jena.sparql.engine;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.graph.Graph;
@@ -33,6 +36,7 @@ import org.apache.jena.sparql.engine.main.OpExecutorFactory;
 import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.function.FunctionEnv;
 import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
 
 public class ExecutionContext implements FunctionEnv
 {
@@ -48,6 +52,8 @@ public class ExecutionContext implements FunctionEnv
     private Graph activeGraph           = null;
     private OpExecutorFactory executor  = null;
     private final AtomicBoolean cancelSignal;
+    // Objects kept for the duration of the execution, shared by copies.
+    private final Map<Symbol, Object> executionState;
 
     /** Clone */
     public static ExecutionContext copy(ExecutionContext other) {
@@ -64,6 +70,29 @@ public class ExecutionContext implements FunctionEnv
         this.activeGraph = other.activeGraph;
         this.executor = other.executor;
         this.cancelSignal = other.cancelSignal;
+        this.executionState = other.executionState;
+    }
+
+    /**
+     * Clone with its own iterator tracking, for part of an execution that runs on
+     * another thread. The cancel signal and the execution state are shared.
+     */
+    public static ExecutionContext copySeparateTracking(ExecutionContext other) {
+        return new ExecutionContext(other, new ArrayList<>());
+    }
+
+    private ExecutionContext(ExecutionContext other, Collection<QueryIterator> openIterators) {
+        this.context = other.context;
+        this.dataset = other.dataset;
+        this.openIterators = openIterators;
+        if ( TrackAllIterators )
+            this.allIterators  = new ArrayList<>();
+        else
+            this.allIterators  = null;
+        this.activeGraph = other.activeGraph;
+        this.executor = other.executor;
+        this.cancelSignal = other.cancelSignal;
+        this.executionState = other.executionState;
     }
 
     /** Create ExecutionContext from {@link FunctionEnv} */
@@ -82,6 +111,7 @@ public class ExecutionContext implements FunctionEnv
         this.activeGraph = other.getActiveGraph();
         this.executor = QC.getFactory(context);
         this.cancelSignal = Context.getCancelSignal(context);
+        this.executionState = new ConcurrentHashMap<>();
     }
 
     /** Clone and change active graph - shares tracking */
@@ -199,6 +229,7 @@ public class ExecutionContext implements FunctionEnv
         this.activeGraph = activeGraph;
         this.executor = factory;
         this.cancelSignal = cancelSignal;
+        this.executionState = new ConcurrentHashMap<>();
     }
 
     // ---- Previous generation - constructors
@@ -232,6 +263,17 @@ public class ExecutionContext implements FunctionEnv
         return allIterators.iterator();
     }
 
+    /**
+     * Get an object kept for the duration of this execution, creating it if necessary.
+     * Unlike the {@link Context}, which may be used for several executions, these
+     * objects are not seen by any other execution. Copies of this execution context,
+     * for example with a different active graph, share them.
+     */
+    @SuppressWarnings("unchecked")
+    public <X> X getExecutionState(Symbol key, Supplier<X> creator) {
+        return (X)executionState.computeIfAbsent(key, k -> creator.get());
+    }
+
     public OpExecutorFactory getExecutor() {
         return executor;
     }
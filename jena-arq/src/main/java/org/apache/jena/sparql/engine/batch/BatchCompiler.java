@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.*;
+import java.util.concurrent.Semaphore;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.op.*;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.iterator.QueryIteratorCheck;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.sparql.mgt.Explain;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * Compile an algebra expression to {@link BatchIterator batch operators}.
+ * <p>
+ * Basic graph patterns, (graph <i>node</i> (bgp ...)), filter, extend, project,
+ * join, group and slice have batch operators. Any other algebra operator is
+ * executed by the usual {@link QC#execute} with adapters between batches and
+ * solutions, so operators can be moved to batch execution one at a time.
+ * <p>
+ * Enabled with the context setting {@link ARQ#batchExecution}.
+ * <p>
+ * With {@link ARQ#parallelism} more than one, a filter, BIND or join over a basic
+ * graph pattern is run by {@link BatchParallel}: the batches of matches of the
+ * first triple pattern are taken through the rest of the pattern, the filters and
+ * BINDs and the probe side of joins by worker threads. The build side of a join is
+ * read once and shared. Grouping and ORDER BY also use the worker threads.
+ */
+public class BatchCompiler {
+    public static final int DftBatchSize = 256;
+
+    private static final ReorderTransformation reorderFixed = ReorderLib.fixed();
+
+    private final int batchSize;
+    private final ExecutionContext execCxt;
+    private final int parallelism;
+    private final Semaphore permits;
+    // When compiling the pipeline for a morsel: the triple pattern that has been
+    // matched to give the morsel, the compiler for the build side of joins, and the
+    // shared hash tables for joins.
+    private final Triple scanned;
+    private final BatchCompiler parent;
+    private final Map<Op, BatchHashTable> tables;
+
+    /**
+     * Batch size for this execution; zero or less means "not enabled".
+     * Unless set in the context, batch execution is used when the execution
+     * can use more than one thread.
+     */
+    public static int batchSize(ExecutionContext execCxt) {
+        Context context = execCxt.getContext();
+        Object x = context.get(ARQ.batchExecution);
+        if ( x == null )
+            return ( parallelism(execCxt) > 1 ) ? DftBatchSize : 0;
+        if ( Boolean.TRUE.equals(x) || "true".equalsIgnoreCase(x.toString()) )
+            return DftBatchSize;
+        if ( Boolean.FALSE.equals(x) || "false".equalsIgnoreCase(x.toString()) )
+            return 0;
+        return context.getInt(ARQ.batchExecution, 0);
+    }
+
+    /** The number of threads that may be used to execute a query. */
+    public static int parallelism(Context context) {
+        return Math.max(1, context.getInt(ARQ.parallelism, 1));
+    }
+
+    /** The number of threads that may be used for this execution. */
+    private static int parallelism(ExecutionContext execCxt) {
+        return readableByWorkers(execCxt.getDataset()) ? parallelism(execCxt.getContext()) : 1;
+    }
+
+    /**
+     * Whether worker threads can read the dataset. Datasets with transactions that
+     * can be aborted keep each transaction private to the thread that started it.
+     */
+    private static boolean readableByWorkers(DatasetGraph dsg) {
+        return dsg == null || !dsg.isInTransaction() || !dsg.supportsTransactionAbort();
+    }
+
+    /** Whether there is a batch operator for the top of this algebra expression. */
+    public static boolean isBatchable(Op op) {
+        if ( op instanceof OpBGP opBGP )
+            return isBatchable(opBGP.getPattern());
+        if ( op instanceof OpGraph opGraph )
+            return isBatchable(opGraph);
+        return op instanceof OpFilter || op instanceof OpExtend || op instanceof OpProject
+            || op instanceof OpJoin || op instanceof OpGroup || op instanceof OpSlice || op instanceof OpOrder;
+    }
+
+    private static boolean isBatchable(BasicPattern pattern) {
+        if ( pattern.isEmpty() )
+            return false;
+        for ( Triple t : pattern ) {
+            if ( t.getSubject().isTripleTerm() || t.getObject().isTripleTerm() )
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isBatchable(OpGraph opGraph) {
+        Node gn = opGraph.getNode();
+        if ( Quad.isDefaultGraph(gn) || Quad.isUnionGraph(gn) )
+            return false;
+        return opGraph.getSubOp() instanceof OpBGP opBGP && isBatchable(opBGP.getPattern());
+    }
+
+    /** Execute an algebra expression in batches, given the root input. */
+    public static QueryIterator execute(Op op, QueryIterator input, int batchSize, ExecutionContext execCxt) {
+        BatchCompiler compiler = new BatchCompiler(batchSize, parallelism(execCxt), execCxt);
+        BatchIterator root = new BatchFromQueryIterator(input, List.of(), batchSize);
+        return new QueryIterBatch(compiler.compile(op, root, true), execCxt);
+    }
+
+    private BatchCompiler(int batchSize, int parallelism, ExecutionContext execCxt) {
+        // The calling thread is one of the threads.
+        this(batchSize, parallelism, ( parallelism > 1 ) ? new Semaphore(parallelism-1) : null, execCxt);
+    }
+
+    private BatchCompiler(int batchSize, int parallelism, Semaphore permits, ExecutionContext execCxt) {
+        this.batchSize = batchSize;
+        this.execCxt = execCxt;
+        this.parallelism = parallelism;
+        this.permits = permits;
+        this.scanned = null;
+        this.parent = null;
+        this.tables = null;
+    }
+
+    /**
+     * Compiler for the pipeline of one morsel. The pipeline runs on a worker thread
+     * so it has its own iterator tracking.
+     */
+    private BatchCompiler(BatchCompiler parent, Triple scanned, Map<Op, BatchHashTable> tables) {
+        this.batchSize = parent.batchSize;
+        this.execCxt = ExecutionContext.copySeparateTracking(parent.execCxt);
+        this.parallelism = 1;
+        this.permits = null;
+        this.scanned = scanned;
+        this.parent = parent;
+        this.tables = tables;
+    }
+
+    /**
+     * Compile {@code op} with input {@code input}.
+     * {@code isRoot} is true if the input is the single empty solution.
+     */
+    private BatchIterator compile(Op op, BatchIterator input, boolean isRoot) {
+        if ( parallelism > 1 && isRoot ) {
+            Op leaf = pipelineLeaf(op);
+            if ( leaf != null )
+                return compileParallel(op, leaf, input);
+        }
+
+        if ( op instanceof OpBGP opBGP && isBatchable(opBGP.getPattern()) )
+            return compileBGP(opBGP.getPattern(), input, execCxt.getActiveGraph(), null);
+
+        if ( op instanceof OpGraph opGraph && isBatchable(opGraph) )
+            return compileBGP(((OpBGP)opGraph.getSubOp()).getPattern(), input, null, opGraph.getNode());
+
+        if ( op instanceof OpFilter opFilter )
+            return new BatchFilter(compile(opFilter.getSubOp(), input, isRoot), opFilter.getExprs(), batchSize, execCxt);
+
+        if ( op instanceof OpExtend opExtend ) {
+            List<Var> newVars = opExtend.getVarExprList().getVars();
+            boolean fresh = newVars.stream().noneMatch(v->OpVars.visibleVars(opExtend.getSubOp()).contains(v)
+                                                          || input.vars().contains(v));
+            if ( fresh )
+                return new BatchExtend(compile(opExtend.getSubOp(), input, isRoot), opExtend.getVarExprList(), batchSize, execCxt);
+        }
+
+        // Nested projection needs the input solution to be merged (QueryIterProjectMerge).
+        if ( op instanceof OpProject opProject && isRoot )
+            return new BatchProject(compile(opProject.getSubOp(), input, isRoot), opProject.getVars(), batchSize, execCxt);
+
+        if ( op instanceof OpSlice opSlice )
+            return new BatchSlice(compile(opSlice.getSubOp(), input, isRoot), opSlice.getStart(), opSlice.getLength(), batchSize, execCxt);
+
+        if ( op instanceof OpJoin opJoin ) {
+            BatchIterator left = compile(opJoin.getLeft(), input, isRoot);
+            if ( tables != null ) {
+                BatchHashTable table = tables.computeIfAbsent(opJoin, j->{
+                    // Built on the thread of the first morsel to need it, closed by the parent.
+                    BatchCompiler build = new BatchCompiler(batchSize, parent.parallelism, parent.permits,
+                                                            ExecutionContext.copySeparateTracking(parent.execCxt));
+                    BatchIterator right = build.compile(opJoin.getRight(), build.root(), true);
+                    return new BatchHashTable(right, BatchHashJoin.joinVars(left.vars(), right.vars()));
+                });
+                return new BatchHashJoin(left, table, batchSize, execCxt);
+            }
+            BatchIterator right = compile(opJoin.getRight(), root(), true);
+            return new BatchHashJoin(left, right, batchSize, execCxt);
+        }
+
+        if ( op instanceof OpGroup opGroup )
+            return new BatchGroup(compile(opGroup.getSubOp(), input, isRoot), opGroup.getGroupVars(), opGroup.getAggregators(),
+                                  parallelism, permits, batchSize, execCxt);
+
+        if ( op instanceof OpOrder opOrder && parallelism > 1 && !execCxt.getContext().isDefined(ARQ.spillToDiskThreshold) )
+            return new BatchSort(compile(opOrder.getSubOp(), input, isRoot), opOrder.getConditions(),
+                                 parallelism, permits, batchSize, execCxt);
+
+        if ( op instanceof OpTable opTable && opTable.isJoinIdentity() )
+            return input;
+
+        // Anything else: execute as solutions.
+        QueryIterator qIter = QC.execute(op, new QueryIterBatch(input, execCxt), execCxt);
+        List<Var> vars = BindingBatch.union(input.vars(), new ArrayList<>(OpVars.visibleVars(op)));
+        return new BatchFromQueryIterator(qIter, vars, batchSize);
+    }
+
+    /**
+     * The basic graph pattern at the bottom of a pipeline of filters, BINDs and the
+     * left side of joins, or null if {@code op} is not such a pipeline.
+     */
+    private static Op pipelineLeaf(Op op) {
+        if ( op instanceof OpBGP opBGP )
+            return isBatchable(opBGP.getPattern()) ? op : null;
+        if ( op instanceof OpGraph opGraph )
+            return isBatchable(opGraph) ? op : null;
+        if ( op instanceof OpFilter opFilter )
+            return pipelineLeaf(opFilter.getSubOp());
+        if ( op instanceof OpExtend opExtend ) {
+            Set<Var> subVars = OpVars.visibleVars(opExtend.getSubOp());
+            if ( opExtend.getVarExprList().getVars().stream().anyMatch(subVars::contains) )
+                return null;
+            return pipelineLeaf(opExtend.getSubOp());
+        }
+        if ( op instanceof OpJoin opJoin )
+            return pipelineLeaf(opJoin.getLeft());
+        return null;
+    }
+
+    private BatchIterator compileParallel(Op op, Op leaf, BatchIterator input) {
+        BasicPattern pattern;
+        BatchIterator morsels;
+        if ( leaf instanceof OpGraph opGraph ) {
+            pattern = reorder(((OpBGP)opGraph.getSubOp()).getPattern());
+            morsels = BatchMatch.create(input, execCxt.getDataset(), opGraph.getNode(), pattern.get(0), batchSize, execCxt);
+        } else {
+            pattern = reorder(((OpBGP)leaf).getPattern());
+            morsels = BatchMatch.create(input, execCxt.getActiveGraph(), pattern.get(0), batchSize, execCxt);
+        }
+        Explain.explain("Batch parallel", pattern, execCxt.getContext());
+        Map<Op, BatchHashTable> joinTables = Collections.synchronizedMap(new IdentityHashMap<>());
+        Triple first = pattern.get(0);
+        return new BatchParallel(morsels, in->new BatchCompiler(this, first, joinTables).compileMorsel(op, in),
+                                 parallelism, permits, ()->joinTables.values().forEach(BatchHashTable::close));
+    }
+
+    private BatchIterator compileMorsel(Op op, BatchIterator input) {
+        BatchIterator pipeline = compile(op, input, false);
+        return new BatchIter1(pipeline, batchSize, execCxt) {
+            @Override
+            public List<Var> vars() {
+                return pipeline.vars();
+            }
+
+            @Override
+            protected BindingBatch moveToNextBatch() {
+                return pipeline.nextBatch();
+            }
+
+            @Override
+            public void close() {
+                super.close();
+                QueryIteratorCheck.checkForOpenIterators(execCxt);
+            }
+        };
+    }
+
+    private BatchIterator compileBGP(BasicPattern pattern, BatchIterator input, Graph graph, Node graphNode) {
+        pattern = reorder(pattern);
+        List<Triple> triples = pattern.getList();
+        if ( scanned != null ) {
+            // The pipeline for a morsel: the first triple pattern has been matched.
+            triples = triples.subList(1, triples.size());
+        } else {
+            Explain.explain("Batch", pattern, execCxt.getContext());
+        }
+        BatchIterator chain = input;
+        for ( Triple triple : triples ) {
+            chain = ( graph != null )
+                ? BatchMatch.create(chain, graph, triple, batchSize, execCxt)
+                : BatchMatch.create(chain, execCxt.getDataset(), graphNode, triple, batchSize, execCxt);
+        }
+        return chain;
+    }
+
+    private static BasicPattern reorder(BasicPattern pattern) {
+        if ( pattern.size() >= 2 )
+            pattern = reorderFixed.reorderIndexes(pattern).reorder(pattern);
+        return pattern;
+    }
+
+    private BatchIterator root() {
+        return new BatchFromQueryIterator(QueryIterRoot.create(execCxt), List.of(), batchSize);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprEvalException;
+import org.apache.jena.sparql.expr.NodeValue;
+
+/**
+ * EXTEND (BIND) over batches: a column is added for each new variable.
+ * The new variables must not be variables of the input.
+ */
+public class BatchExtend extends BatchIter1 {
+    private final VarExprList exprs;
+    private final List<Var> vars;
+
+    public BatchExtend(BatchIterator input, VarExprList exprs, int batchSize, ExecutionContext execCxt) {
+        super(input, batchSize, execCxt);
+        this.exprs = exprs;
+        for ( Var v : exprs.getVars() ) {
+            if ( input.vars().contains(v) )
+                throw new IllegalArgumentException("Variable already in the input: "+v);
+        }
+        this.vars = BindingBatch.union(input.vars(), exprs.getVars());
+    }
+
+    @Override
+    public List<Var> vars() {
+        return vars;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        BindingBatch input = getInput().nextBatch();
+        if ( input == null )
+            return null;
+        // Shares the columns of the input.
+        BindingBatch batch = input.project(vars);
+        BatchRow cursor = new BatchRow(batch, 0);
+        int[] cols = new int[exprs.size()];
+        for ( int j = 0 ; j < cols.length ; j++ )
+            cols[j] = batch.column(exprs.getVars().get(j));
+        for ( int i = 0 ; i < batch.size() ; i++ ) {
+            cursor.setRow(i);
+            for ( int j = 0 ; j < cols.length ; j++ ) {
+                Var v = exprs.getVars().get(j);
+                Expr expr = exprs.getExpr(v);
+                batch.set(i, cols[j], eval(expr, v, cursor));
+            }
+        }
+        return batch;
+    }
+
+    private Node eval(Expr expr, Var var, BatchRow row) {
+        if ( expr == null )
+            // (extend ((?x ?x))) - no expression, the variable itself.
+            return row.get(var);
+        try {
+            NodeValue nv = expr.eval(row, execCxt);
+            return ( nv == null ) ? null : nv.asNode();
+        } catch (ExprEvalException ex) {
+            // Unbound.
+            return null;
+        }
+    }
+}
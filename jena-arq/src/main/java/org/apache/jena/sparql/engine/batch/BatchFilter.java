@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.List;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprList;
+
+/** FILTER over batches: the expressions are evaluated for each row, then the batch is compacted. */
+public class BatchFilter extends BatchIter1 {
+    private final ExprList exprs;
+
+    public BatchFilter(BatchIterator input, ExprList exprs, int batchSize, ExecutionContext execCxt) {
+        super(input, batchSize, execCxt);
+        this.exprs = exprs;
+    }
+
+    @Override
+    public List<Var> vars() {
+        return getInput().vars();
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        for ( ;; ) {
+            BindingBatch batch = getInput().nextBatch();
+            if ( batch == null )
+                return null;
+            boolean[] keep = new boolean[batch.size()];
+            BatchRow cursor = new BatchRow(batch, 0);
+            for ( int i = 0 ; i < keep.length ; i++ ) {
+                cursor.setRow(i);
+                keep[i] = true;
+                for ( Expr expr : exprs ) {
+                    // False on evaluation error.
+                    if ( !expr.isSatisfied(cursor, execCxt) ) {
+                        keep[i] = false;
+                        break;
+                    }
+                }
+            }
+            batch.retain(keep);
+            if ( !batch.isEmpty() )
+                return batch;
+        }
+    }
+}
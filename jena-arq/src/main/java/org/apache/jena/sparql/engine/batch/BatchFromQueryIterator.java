@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.List;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/** Batches of the solutions of a {@link QueryIterator}. */
+public class BatchFromQueryIterator implements BatchIterator {
+    private final QueryIterator qIter;
+    private final List<Var> vars;
+    private final int batchSize;
+
+    /**
+     * @param vars The variables to keep. Others are dropped.
+     */
+    public BatchFromQueryIterator(QueryIterator qIter, List<Var> vars, int batchSize) {
+        this.qIter = qIter;
+        this.vars = vars;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public List<Var> vars() {
+        return vars;
+    }
+
+    @Override
+    public BindingBatch nextBatch() {
+        if ( !qIter.hasNext() )
+            return null;
+        BindingBatch batch = new BindingBatch(vars, batchSize);
+        while ( !batch.isFull() && qIter.hasNext() ) {
+            Binding b = qIter.nextBinding();
+            int row = batch.addRow();
+            for ( int i = 0 ; i < vars.size() ; i++ )
+                batch.set(row, i, b.get(vars.get(i)));
+        }
+        return batch;
+    }
+
+    @Override
+    public void cancel() {
+        qIter.cancel();
+    }
+
+    @Override
+    public void close() {
+        qIter.close();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.iterator.GroupHashTable;
+import org.apache.jena.sparql.expr.ExprAggregator;
+
+/**
+ * GROUP BY over batches. Results are in the order groups are first seen
+ * (within each lane when aggregating in parallel).
+ * The semantics follow {@link org.apache.jena.sparql.engine.iterator.QueryIterGroup}.
+ */
+public class BatchGroup extends BatchIter1 {
+    private final VarExprList groupVars;
+    private final List<ExprAggregator> aggregators;
+    private final List<Var> vars;
+    private final int parallelism;
+    private final Semaphore permits;
+
+    private record Item(Node[] key, BatchRow binding) {}
+
+    private List<GroupHashTable> lanes = null;
+    // Position in the results : lane and group in the lane.
+    private int lane = 0;
+    private int group = 0;
+
+    public BatchGroup(BatchIterator input, VarExprList groupVars, List<ExprAggregator> aggregators,
+                      int batchSize, ExecutionContext execCxt) {
+        this(input, groupVars, aggregators, 1, null, batchSize, execCxt);
+    }
+
+    /**
+     * Group with the groups split into {@code parallelism} lanes by hash of the key,
+     * each lane aggregated on a worker thread.
+     */
+    public BatchGroup(BatchIterator input, VarExprList groupVars, List<ExprAggregator> aggregators,
+                      int parallelism, Semaphore permits, int batchSize, ExecutionContext execCxt) {
+        super(input, batchSize, execCxt);
+        this.parallelism = Math.max(1, parallelism);
+        this.permits = permits;
+        this.groupVars = groupVars;
+        this.aggregators = ( aggregators == null ) ? List.of() : aggregators;
+        List<Var> x = new ArrayList<>(groupVars.getVars());
+        for ( ExprAggregator agg : this.aggregators )
+            x.add(agg.getVar());
+        this.vars = BindingBatch.union(x, List.of());
+    }
+
+    @Override
+    public List<Var> vars() {
+        return vars;
+    }
+
+    /** Aggregate all the input. Returns false if there is no input. */
+    private boolean calc() {
+        lanes = new ArrayList<>(parallelism);
+        for ( int i = 0 ; i < parallelism ; i++ )
+            lanes.add(new GroupHashTable(groupVars, aggregators, execCxt));
+        boolean hasInput = false;
+        // With several lanes, rows are read in rounds, then each lane aggregates its groups on a worker.
+        List<BindingBatch> round = new ArrayList<>();
+        int roundRows = 0;
+        for ( ;; ) {
+            BindingBatch batch = getInput().nextBatch();
+            if ( batch != null ) {
+                hasInput = true;
+                if ( parallelism == 1 ) {
+                    accumulate(batch, lanes.get(0));
+                    continue;
+                }
+                round.add(batch);
+                roundRows += batch.size();
+            }
+            if ( batch == null || roundRows >= parallelism*batchSize ) {
+                if ( !round.isEmpty() )
+                    accumulate(round);
+                round.clear();
+                roundRows = 0;
+            }
+            if ( batch == null )
+                break;
+        }
+        return hasInput;
+    }
+
+    private void accumulate(BindingBatch batch, GroupHashTable groups) {
+        for ( int row = 0 ; row < batch.size() ; row++ ) {
+            // Accumulators may keep the binding.
+            BatchRow binding = new BatchRow(batch, row);
+            groups.accumulate(binding);
+        }
+    }
+
+    private void accumulate(List<BindingBatch> round) {
+        int n = lanes.size();
+        List<List<Item>> work = new ArrayList<>(n);
+        for ( int i = 0 ; i < n ; i++ )
+            work.add(new ArrayList<>());
+        for ( BindingBatch batch : round ) {
+            for ( int row = 0 ; row < batch.size() ; row++ ) {
+                BatchRow binding = new BatchRow(batch, row);
+                Node[] key = key(binding);
+                work.get(Math.floorMod(GroupHashTable.hash(key), n)).add(new Item(key, binding));
+            }
+        }
+        List<Future<Void>> tasks = new ArrayList<>(n);
+        for ( int i = 0 ; i < n ; i++ ) {
+            List<Item> items = work.get(i);
+            GroupHashTable groups = lanes.get(i);
+            if ( items.isEmpty() )
+                continue;
+            tasks.add(BatchParallel.submit(()->{
+                items.forEach(item->groups.accumulate(groups.group(item.key()), item.binding()));
+                return null;
+            }, permits));
+        }
+        tasks.forEach(BatchParallel::await);
+    }
+
+    private Node[] key(BatchRow binding) {
+        List<Var> keyVars = groupVars.getVars();
+        Node[] key = new Node[keyVars.size()];
+        for ( int i = 0 ; i < key.length ; i++ )
+            // Null for unbound and error.
+            key[i] = groupVars.get(keyVars.get(i), binding, execCxt);
+        return key;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        if ( lanes == null ) {
+            if ( !calc() ) {
+                // No input: no groups with GROUP BY, else one row of the values for no input.
+                if ( !groupVars.isEmpty() )
+                    return null;
+                BindingBatch out = new BindingBatch(vars, 1);
+                int row = out.addRow();
+                for ( int i = 0 ; i < aggregators.size() ; i++ )
+                    out.set(row, i, aggregators.get(i).getAggregator().getValueEmpty());
+                return out;
+            }
+        }
+        int nKeys = groupVars.size();
+        BindingBatch out = new BindingBatch(vars, batchSize);
+        while ( !out.isFull() && lane < lanes.size() ) {
+            GroupHashTable groups = lanes.get(lane);
+            if ( group >= groups.size() ) {
+                lane++;
+                group = 0;
+                continue;
+            }
+            int row = out.addRow();
+            for ( int i = 0 ; i < nKeys ; i++ )
+                out.set(row, i, groups.key(group, i));
+            for ( int i = 0 ; i < aggregators.size() ; i++ )
+                out.set(row, nKeys+i, groups.value(group, i));
+            group++;
+        }
+        return ( out.size() == 0 ) ? null : out;
+    }
+}
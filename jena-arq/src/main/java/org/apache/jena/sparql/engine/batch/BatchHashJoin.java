@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+
+/**
+ * Hash join of batches. The right hand side is read into a hash table on the
+ * join variables (the variables of both sides); the left hand side is streamed.
+ * Right hand rows where a join variable is unbound are checked against every
+ * left hand row.
+ */
+public class BatchHashJoin extends BatchIter1 {
+    private final BatchHashTable table;
+    private final boolean ownsTable;
+    private final List<Var> vars;
+    private final int[] leftJoinCols;
+    private final int[] rightJoinCols;
+    private final int[] leftMapping;
+    private final int[] rightMapping;
+
+    private BindingBatch leftBatch = null;
+    private int leftRow = 0;
+    private Iterator<BatchHashTable.Ref> matches = null;
+
+    public BatchHashJoin(BatchIterator left, BatchIterator right, int batchSize, ExecutionContext execCxt) {
+        this(left, new BatchHashTable(right, joinVars(left.vars(), right.vars())), true, batchSize, execCxt);
+    }
+
+    /**
+     * Join with a hash table that may be shared with other joins.
+     * The table is not closed when this join is closed.
+     */
+    public BatchHashJoin(BatchIterator left, BatchHashTable table, int batchSize, ExecutionContext execCxt) {
+        this(left, table, false, batchSize, execCxt);
+    }
+
+    private BatchHashJoin(BatchIterator left, BatchHashTable table, boolean ownsTable, int batchSize, ExecutionContext execCxt) {
+        super(left, batchSize, execCxt);
+        this.table = table;
+        this.ownsTable = ownsTable;
+        List<Var> leftVars = left.vars();
+        List<Var> rightVars = table.vars();
+        this.vars = BindingBatch.union(leftVars, rightVars);
+        List<Var> joinVars = table.joinVars();
+        this.leftJoinCols = new int[joinVars.size()];
+        for ( int i = 0 ; i < joinVars.size() ; i++ )
+            leftJoinCols[i] = leftVars.indexOf(joinVars.get(i));
+        this.rightJoinCols = table.joinCols();
+        this.leftMapping = BindingBatch.mapping(leftVars, vars);
+        this.rightMapping = BindingBatch.mapping(rightVars, vars);
+    }
+
+    /** The variables in common. */
+    public static List<Var> joinVars(List<Var> leftVars, List<Var> rightVars) {
+        List<Var> joinVars = new ArrayList<>(leftVars);
+        joinVars.retainAll(rightVars);
+        return joinVars;
+    }
+
+    @Override
+    public List<Var> vars() {
+        return vars;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        if ( table.isEmpty() )
+            return null;
+        BindingBatch out = new BindingBatch(vars, batchSize);
+        while ( !out.isFull() ) {
+            if ( matches != null && matches.hasNext() ) {
+                BatchHashTable.Ref ref = matches.next();
+                if ( compatible(leftBatch, leftRow-1, ref) ) {
+                    int row = out.addRow(leftBatch, leftRow-1, leftMapping);
+                    for ( int i = 0 ; i < rightMapping.length ; i++ ) {
+                        Node n = ref.batch().get(ref.row(), i);
+                        if ( n != null )
+                            out.set(row, rightMapping[i], n);
+                    }
+                }
+                continue;
+            }
+            if ( leftBatch == null || leftRow >= leftBatch.size() ) {
+                leftBatch = getInput().nextBatch();
+                leftRow = 0;
+                if ( leftBatch == null )
+                    break;
+            }
+            matches = table.candidates(BatchHashTable.key(leftBatch, leftRow++, leftJoinCols));
+        }
+        return out.isEmpty() ? null : out;
+    }
+
+    private boolean compatible(BindingBatch batch, int row, BatchHashTable.Ref ref) {
+        for ( int i = 0 ; i < leftJoinCols.length ; i++ ) {
+            Node n1 = batch.get(row, leftJoinCols[i]);
+            Node n2 = ref.batch().get(ref.row(), rightJoinCols[i]);
+            if ( n1 != null && n2 != null && !n1.equals(n2) )
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        if ( ownsTable )
+            table.cancel();
+        super.cancel();
+    }
+
+    @Override
+    public void close() {
+        if ( ownsTable )
+            table.close();
+        super.close();
+    }
+}
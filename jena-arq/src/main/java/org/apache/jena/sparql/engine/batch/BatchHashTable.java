@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+
+/**
+ * The build side of a {@link BatchHashJoin}: the rows of a batch iterator in a
+ * hash table on the join variables. The table is built on first use. Once built,
+ * it is only read, so one table can be probed by several threads.
+ */
+public class BatchHashTable {
+    /** A row of the table. */
+    record Ref(BindingBatch batch, int row) {}
+
+    private final BatchIterator input;
+    private final List<Var> joinVars;
+    private final int[] joinCols;
+
+    private Map<List<Node>, List<Ref>> table = null;
+    // Rows with an unbound join variable.
+    private List<Ref> partial = null;
+    private List<Ref> all = null;
+    private volatile boolean built = false;
+
+    public BatchHashTable(BatchIterator input, List<Var> joinVars) {
+        this.input = input;
+        this.joinVars = joinVars;
+        this.joinCols = new int[joinVars.size()];
+        for ( int i = 0 ; i < joinCols.length ; i++ )
+            joinCols[i] = input.vars().indexOf(joinVars.get(i));
+    }
+
+    /** The variables of the rows of the table. */
+    public List<Var> vars() {
+        return input.vars();
+    }
+
+    public List<Var> joinVars() {
+        return joinVars;
+    }
+
+    /*package*/ int[] joinCols() {
+        return joinCols;
+    }
+
+    /** Read the input, if not already done. */
+    public void build() {
+        if ( built )
+            return;
+        synchronized(this) {
+            if ( built )
+                return;
+            table = new HashMap<>();
+            partial = new ArrayList<>();
+            all = new ArrayList<>();
+            try {
+                for ( ;; ) {
+                    BindingBatch batch = input.nextBatch();
+                    if ( batch == null )
+                        break;
+                    for ( int row = 0 ; row < batch.size() ; row++ ) {
+                        Ref ref = new Ref(batch, row);
+                        all.add(ref);
+                        List<Node> key = key(batch, row, joinCols);
+                        if ( key == null )
+                            partial.add(ref);
+                        else
+                            table.computeIfAbsent(key, k->new ArrayList<>(2)).add(ref);
+                    }
+                }
+            } finally {
+                input.close();
+            }
+            built = true;
+        }
+    }
+
+    public boolean isEmpty() {
+        build();
+        return all.isEmpty();
+    }
+
+    /** The values of the join variables, or null if any is unbound. */
+    /*package*/ static List<Node> key(BindingBatch batch, int row, int[] cols) {
+        Node[] x = new Node[cols.length];
+        for ( int i = 0 ; i < cols.length ; i++ ) {
+            x[i] = batch.get(row, cols[i]);
+            if ( x[i] == null )
+                return null;
+        }
+        return Arrays.asList(x);
+    }
+
+    /**
+     * Rows that may join with the row given by the values of the join variables,
+     * where null means some join variable is unbound.
+     */
+    /*package*/ Iterator<Ref> candidates(List<Node> key) {
+        build();
+        if ( key == null )
+            return all.iterator();
+        List<Ref> x = table.get(key);
+        if ( partial.isEmpty() )
+            return ( x == null ) ? Collections.emptyIterator() : x.iterator();
+        if ( x == null )
+            return partial.iterator();
+        List<Ref> y = new ArrayList<>(x.size()+partial.size());
+        y.addAll(x);
+        y.addAll(partial);
+        return y.iterator();
+    }
+
+    public void cancel() {
+        input.cancel();
+    }
+
+    public void close() {
+        input.close();
+        table = null;
+        partial = null;
+        all = null;
+    }
+}
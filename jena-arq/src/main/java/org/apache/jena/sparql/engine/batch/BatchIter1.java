@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+
+/** Skeleton for a batch operator with one input. */
+public abstract class BatchIter1 implements BatchIterator {
+    private final BatchIterator input;
+    protected final ExecutionContext execCxt;
+    protected final int batchSize;
+    private boolean finished = false;
+
+    protected BatchIter1(BatchIterator input, int batchSize, ExecutionContext execCxt) {
+        this.input = input;
+        this.batchSize = batchSize;
+        this.execCxt = execCxt;
+    }
+
+    protected BatchIterator getInput() {
+        return input;
+    }
+
+    @Override
+    public abstract List<Var> vars();
+
+    @Override
+    public final BindingBatch nextBatch() {
+        if ( finished )
+            return null;
+        AtomicBoolean cancelSignal = execCxt.getCancelSignal();
+        if ( cancelSignal != null && cancelSignal.get() )
+            throw new QueryCancelledException();
+        BindingBatch batch = moveToNextBatch();
+        if ( batch == null )
+            finished = true;
+        return batch;
+    }
+
+    /** The next batch, which must not be empty, or null for "no more". */
+    protected abstract BindingBatch moveToNextBatch();
+
+    @Override
+    public void cancel() {
+        input.cancel();
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        input.close();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.List;
+
+import org.apache.jena.atlas.lib.Closeable;
+import org.apache.jena.sparql.core.Var;
+
+/**
+ * Batch-at-a-time execution: an operator that produces solutions as
+ * {@link BindingBatch}es.
+ * <p>
+ * Use {@link QueryIterBatch} and {@link BatchFromQueryIterator} to connect
+ * to {@link org.apache.jena.sparql.engine.QueryIterator} operators.
+ */
+public interface BatchIterator extends Closeable {
+
+    /** The variables of every batch. */
+    public List<Var> vars();
+
+    /**
+     * The next batch, or null when there are no more solutions.
+     * Batches are not empty.
+     */
+    public BindingBatch nextBatch();
+
+    /** Request that the operator and its inputs stop. */
+    public void cancel();
+
+    @Override
+    public void close();
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.main.solver.SolverLib;
+import org.apache.jena.system.G;
+
+/**
+ * Match one triple pattern, or one quad pattern, for each row of the input.
+ * The pattern must not have triple terms.
+ */
+public class BatchMatch extends BatchIter1 {
+    private final Graph graph;
+    private final DatasetGraph dsg;
+    // Slots: s, p, o for a graph; g, s, p, o for a dataset.
+    private final Node[] pattern;
+    private final List<Var> vars;
+    private final int[] inputMapping;
+    // Per slot : the input column of the variable or -1, the output column or -1,
+    // and an earlier slot with the same variable or -1.
+    private final int[] inputCol;
+    private final int[] outputCol;
+    private final int[] sameAs;
+
+    private BindingBatch inBatch = null;
+    private int inRow = 0;
+    private Iterator<Triple> triples = null;
+    private Iterator<Quad> quads = null;
+    private final Node[] slots;
+
+    /** Match a triple pattern in a graph. */
+    public static BatchMatch create(BatchIterator input, Graph graph, Triple triple, int batchSize, ExecutionContext execCxt) {
+        Node[] pattern = { triple.getSubject(), triple.getPredicate(), triple.getObject() };
+        return new BatchMatch(input, graph, null, pattern, batchSize, execCxt);
+    }
+
+    /**
+     * Match a triple pattern in the named graphs of a dataset.
+     * The graph node is a variable or the name of a graph.
+     */
+    public static BatchMatch create(BatchIterator input, DatasetGraph dsg, Node graphNode, Triple triple, int batchSize, ExecutionContext execCxt) {
+        Node[] pattern = { graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject() };
+        return new BatchMatch(input, null, dsg, pattern, batchSize, execCxt);
+    }
+
+    private BatchMatch(BatchIterator input, Graph graph, DatasetGraph dsg, Node[] pattern, int batchSize, ExecutionContext execCxt) {
+        super(input, batchSize, execCxt);
+        this.graph = graph;
+        this.dsg = dsg;
+        this.pattern = pattern;
+        this.slots = new Node[pattern.length];
+        List<Var> inVars = input.vars();
+        List<Var> patternVars = new ArrayList<>();
+        for ( Node n : pattern ) {
+            if ( Var.isVar(n) )
+                patternVars.add(Var.alloc(n));
+        }
+        this.vars = BindingBatch.union(inVars, patternVars);
+        this.inputMapping = BindingBatch.mapping(inVars, vars);
+        this.inputCol = new int[pattern.length];
+        this.outputCol = new int[pattern.length];
+        this.sameAs = new int[pattern.length];
+        for ( int i = 0 ; i < pattern.length ; i++ ) {
+            inputCol[i] = -1;
+            outputCol[i] = -1;
+            sameAs[i] = -1;
+            if ( !Var.isVar(pattern[i]) )
+                continue;
+            Var v = Var.alloc(pattern[i]);
+            inputCol[i] = inVars.indexOf(v);
+            outputCol[i] = vars.indexOf(v);
+            for ( int j = 0 ; j < i ; j++ ) {
+                if ( v.equals(pattern[j]) ) {
+                    sameAs[i] = j;
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Var> vars() {
+        return vars;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        BindingBatch out = new BindingBatch(vars, batchSize);
+        while ( !out.isFull() ) {
+            if ( hasMatch() ) {
+                nextMatch();
+                if ( consistent() ) {
+                    int row = out.addRow(inBatch, inRow-1, inputMapping);
+                    for ( int i = 0 ; i < slots.length ; i++ ) {
+                        if ( outputCol[i] >= 0 )
+                            out.set(row, outputCol[i], slots[i]);
+                    }
+                }
+                continue;
+            }
+            closeMatches();
+            if ( inBatch == null || inRow >= inBatch.size() ) {
+                inBatch = getInput().nextBatch();
+                inRow = 0;
+                if ( inBatch == null )
+                    break;
+            }
+            startMatches(inRow++);
+        }
+        return out.isEmpty() ? null : out;
+    }
+
+    private void startMatches(int row) {
+        Node[] x = new Node[pattern.length];
+        for ( int i = 0 ; i < pattern.length ; i++ ) {
+            Node n = pattern[i];
+            if ( inputCol[i] >= 0 )
+                n = inBatch.get(row, inputCol[i]);
+            if ( n == null || Var.isVar(n) )
+                n = Node.ANY;
+            x[i] = n;
+        }
+        if ( graph != null ) {
+            triples = G.find(graph, x[0], x[1], x[2]);
+            return;
+        }
+        quads = ( x[0] == Node.ANY ) ? dsg.findNG(Node.ANY, x[1], x[2], x[3]) : dsg.find(x[0], x[1], x[2], x[3]);
+    }
+
+    private boolean hasMatch() {
+        return ( triples != null && triples.hasNext() ) || ( quads != null && quads.hasNext() );
+    }
+
+    private void nextMatch() {
+        if ( triples != null ) {
+            Triple t = triples.next();
+            slots[0] = t.getSubject();
+            slots[1] = t.getPredicate();
+            slots[2] = t.getObject();
+        } else {
+            Quad q = quads.next();
+            slots[0] = q.getGraph();
+            slots[1] = q.getSubject();
+            slots[2] = q.getPredicate();
+            slots[3] = q.getObject();
+        }
+    }
+
+    // Repeated variables in the pattern, and terms from the input, must be the same term.
+    private boolean consistent() {
+        for ( int i = 0 ; i < slots.length ; i++ ) {
+            if ( sameAs[i] >= 0 && !SolverLib.sameTermAs(slots[i], slots[sameAs[i]]) )
+                return false;
+            if ( inputCol[i] >= 0 ) {
+                Node n = inBatch.get(inRow-1, inputCol[i]);
+                if ( n != null && !SolverLib.sameTermAs(slots[i], n) )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private void closeMatches() {
+        Iter.close(triples);
+        Iter.close(quads);
+        triples = null;
+        quads = null;
+    }
+
+    @Override
+    public void close() {
+        closeMatches();
+        super.close();
+    }
+}
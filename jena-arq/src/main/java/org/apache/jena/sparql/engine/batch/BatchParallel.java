@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.sparql.core.Var;
+
+/**
+ * Morsel-driven parallel execution. The batches ("morsels") of an input are each
+ * taken through a pipeline of batch operators, with pipelines running on a pool
+ * of worker threads. The results are returned in input order.
+ * <p>
+ * The number of threads for one query is limited by a {@link Semaphore} of
+ * permits shared by all the parallel operators of the query. When no permit is
+ * available, work is done on the calling thread, so nested parallel operators
+ * never wait for a worker.
+ */
+public class BatchParallel implements BatchIterator {
+
+    private static final AtomicInteger threadCounter = new AtomicInteger(0);
+
+    private static final ExecutorService workers = Executors.newCachedThreadPool(r->{
+        Thread thread = new Thread(r, "ARQ-worker-"+threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BatchIterator morsels;
+    private final Function<BatchIterator, BatchIterator> pipeline;
+    private final List<Var> vars;
+    private final int parallelism;
+    private final Semaphore permits;
+    private final Runnable atClose;
+
+    private final Deque<Future<List<BindingBatch>>> inFlight = new ArrayDeque<>();
+    private Iterator<BindingBatch> current = Collections.emptyIterator();
+    private boolean inputFinished = false;
+    private boolean closed = false;
+
+    /**
+     * @param morsels The input.
+     * @param pipeline Create the operators for one morsel, given the morsel as a batch iterator.
+     *          Each call must give an operator with the same variables.
+     * @param parallelism The number of morsels being processed at one time.
+     * @param permits Permits to use a worker thread.
+     * @param atClose Called when this iterator is closed, or null.
+     */
+    public BatchParallel(BatchIterator morsels, Function<BatchIterator, BatchIterator> pipeline,
+                         int parallelism, Semaphore permits, Runnable atClose) {
+        this.morsels = morsels;
+        this.pipeline = pipeline;
+        this.parallelism = parallelism;
+        this.permits = permits;
+        this.atClose = atClose;
+        BatchIterator probe = pipeline.apply(new BatchOne(morsels.vars(), null));
+        this.vars = probe.vars();
+        probe.close();
+    }
+
+    @Override
+    public List<Var> vars() {
+        return vars;
+    }
+
+    @Override
+    public BindingBatch nextBatch() {
+        for ( ;; ) {
+            if ( closed )
+                return null;
+            if ( current.hasNext() )
+                return current.next();
+            fill();
+            if ( inFlight.isEmpty() )
+                return null;
+            current = await(inFlight.removeFirst()).iterator();
+        }
+    }
+
+    private void fill() {
+        while ( !inputFinished && inFlight.size() < parallelism ) {
+            BindingBatch morsel = morsels.nextBatch();
+            if ( morsel == null ) {
+                inputFinished = true;
+                return;
+            }
+            inFlight.addLast(submit(()->run(morsel), permits));
+        }
+    }
+
+    private List<BindingBatch> run(BindingBatch morsel) {
+        BatchIterator iter = pipeline.apply(new BatchOne(morsels.vars(), morsel));
+        try {
+            List<BindingBatch> results = new ArrayList<>();
+            for ( ;; ) {
+                BindingBatch batch = iter.nextBatch();
+                if ( batch == null )
+                    return results;
+                results.add(batch);
+            }
+        } finally {
+            iter.close();
+        }
+    }
+
+    /**
+     * Run a task on a worker thread if there is a permit,
+     * otherwise run it now on the calling thread.
+     */
+    /*package*/ static <X> Future<X> submit(Supplier<X> task, Semaphore permits) {
+        if ( permits.tryAcquire() ) {
+            try {
+                return workers.submit(()->{
+                    try {
+                        return task.get();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                permits.release();
+            }
+        }
+        try {
+            return CompletableFuture.completedFuture(task.get());
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    /** Wait for a task and pass on any exception it threw. */
+    /*package*/ static <X> X await(Future<X> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if ( cause instanceof RuntimeException rex )
+                throw rex;
+            if ( cause instanceof Error err )
+                throw err;
+            throw new QueryExecException(cause);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        morsels.cancel();
+    }
+
+    @Override
+    public void close() {
+        if ( closed )
+            return;
+        closed = true;
+        // Tasks already running finish their morsel.
+        inFlight.forEach(f->f.cancel(false));
+        inFlight.clear();
+        morsels.close();
+        if ( atClose != null )
+            atClose.run();
+    }
+
+    /** A batch iterator of one batch, or no batches. */
+    private static class BatchOne implements BatchIterator {
+        private final List<Var> vars;
+        private BindingBatch batch;
+
+        BatchOne(List<Var> vars, BindingBatch batch) {
+            this.vars = vars;
+            this.batch = batch;
+        }
+
+        @Override
+        public List<Var> vars() {
+            return vars;
+        }
+
+        @Override
+        public BindingBatch nextBatch() {
+            BindingBatch x = batch;
+            batch = null;
+            return x;
+        }
+
+        @Override
+        public void cancel() {}
+
+        @Override
+        public void close() {
+            batch = null;
+        }
+    }
+}
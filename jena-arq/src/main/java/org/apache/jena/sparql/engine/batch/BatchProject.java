@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.List;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+
+/** PROJECT over batches. The columns are passed on, not copied. */
+public class BatchProject extends BatchIter1 {
+    private final List<Var> vars;
+
+    public BatchProject(BatchIterator input, List<Var> vars, int batchSize, ExecutionContext execCxt) {
+        super(input, batchSize, execCxt);
+        this.vars = List.copyOf(vars);
+    }
+
+    @Override
+    public List<Var> vars() {
+        return vars;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        BindingBatch batch = getInput().nextBatch();
+        if ( batch == null )
+            return null;
+        return batch.project(vars);
+    }
+}
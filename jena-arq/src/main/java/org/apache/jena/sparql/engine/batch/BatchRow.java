@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBase;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+
+/**
+ * A solution that is a row of a {@link BindingBatch}.
+ * <p>
+ * The row may be moved, with {@link #setRow}, for evaluating an expression over each row of a batch
+ * without creating a binding for each row.
+ */
+public class BatchRow extends BindingBase {
+    private final BindingBatch batch;
+    private int row;
+
+    public BatchRow(BindingBatch batch, int row) {
+        super(null);
+        this.batch = batch;
+        this.row = row;
+    }
+
+    /*package*/ BindingBatch batch() {
+        return batch;
+    }
+
+    /*package*/ int row() {
+        return row;
+    }
+
+    /** Change the row. */
+    public BatchRow setRow(int row) {
+        this.row = row;
+        return this;
+    }
+
+    @Override
+    protected Iterator<Var> vars1() {
+        List<Var> vars = batch.vars();
+        List<Var> x = new ArrayList<>(vars.size());
+        for ( int i = 0 ; i < vars.size() ; i++ ) {
+            if ( batch.get(row, i) != null )
+                x.add(vars.get(i));
+        }
+        return x.iterator();
+    }
+
+    @Override
+    protected int size1() {
+        int n = 0;
+        for ( int i = 0 ; i < batch.vars().size() ; i++ ) {
+            if ( batch.get(row, i) != null )
+                n++;
+        }
+        return n;
+    }
+
+    @Override
+    protected boolean isEmpty1() {
+        return size1() == 0;
+    }
+
+    @Override
+    protected boolean contains1(Var var) {
+        return get1(var) != null;
+    }
+
+    @Override
+    protected Node get1(Var var) {
+        int col = batch.column(var);
+        return ( col < 0 ) ? null : batch.get(row, col);
+    }
+
+    @Override
+    public Binding detach() {
+        return BindingFactory.copy(this);
+    }
+
+    @Override
+    protected Binding detachWithNewParent(Binding newParent) {
+        throw new UnsupportedOperationException("Should never be called.");
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.List;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+
+/** OFFSET and LIMIT over batches. */
+public class BatchSlice extends BatchIter1 {
+    private long skip;
+    private long remaining;
+
+    /**
+     * @param start Rows to skip, or {@link Query#NOLIMIT}.
+     * @param length Most rows to return, or {@link Query#NOLIMIT}.
+     */
+    public BatchSlice(BatchIterator input, long start, long length, int batchSize, ExecutionContext execCxt) {
+        super(input, batchSize, execCxt);
+        this.skip = ( start == Query.NOLIMIT || start < 0 ) ? 0 : start;
+        this.remaining = ( length == Query.NOLIMIT || length < 0 ) ? Long.MAX_VALUE : length;
+    }
+
+    @Override
+    public List<Var> vars() {
+        return getInput().vars();
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        while ( remaining > 0 ) {
+            BindingBatch batch = getInput().nextBatch();
+            if ( batch == null )
+                return null;
+            int size = batch.size();
+            if ( skip >= size ) {
+                skip -= size;
+                continue;
+            }
+            int start = (int)skip;
+            int end = start + (int)Math.min(size - start, remaining);
+            skip = 0;
+            remaining -= (end - start);
+            batch.retain(start, end);
+            return batch;
+        }
+        // Finished early.
+        getInput().close();
+        return null;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingComparator;
+
+/**
+ * ORDER BY in memory, with the sort split across worker threads.
+ * The input is divided into runs which are sorted in parallel then merged.
+ * The sort is stable, as {@link org.apache.jena.sparql.engine.iterator.QueryIterSort} is
+ * when sorting in memory.
+ */
+public class BatchSort extends BatchIter1 {
+    private final Comparator<Binding> comparator;
+    private final int parallelism;
+    private final Semaphore permits;
+
+    private Iterator<BatchRow> results = null;
+
+    public BatchSort(BatchIterator input, List<SortCondition> conditions,
+                     int parallelism, Semaphore permits, int batchSize, ExecutionContext execCxt) {
+        super(input, batchSize, execCxt);
+        this.comparator = new BindingComparator(conditions, execCxt);
+        this.parallelism = Math.max(1, parallelism);
+        this.permits = permits;
+    }
+
+    @Override
+    public List<Var> vars() {
+        return getInput().vars();
+    }
+
+    private Iterator<BatchRow> sort() {
+        List<BatchRow> rows = new ArrayList<>();
+        for ( ;; ) {
+            BindingBatch batch = getInput().nextBatch();
+            if ( batch == null )
+                break;
+            for ( int row = 0 ; row < batch.size() ; row++ )
+                rows.add(new BatchRow(batch, row));
+        }
+        int runs = Math.min(parallelism, Math.max(1, rows.size()/batchSize));
+        if ( runs == 1 ) {
+            rows.sort(comparator);
+            return rows.iterator();
+        }
+        int runSize = (rows.size()+runs-1)/runs;
+        List<Future<List<BatchRow>>> tasks = new ArrayList<>(runs);
+        for ( int start = 0 ; start < rows.size() ; start += runSize ) {
+            List<BatchRow> run = rows.subList(start, Math.min(rows.size(), start+runSize));
+            tasks.add(BatchParallel.submit(()->{
+                List<BatchRow> x = new ArrayList<>(run);
+                x.sort(comparator);
+                return x;
+            }, permits));
+        }
+        List<List<BatchRow>> sorted = new ArrayList<>(tasks.size());
+        tasks.forEach(t->sorted.add(BatchParallel.await(t)));
+        return merge(sorted);
+    }
+
+    /** Merge sorted runs. Equal rows are taken from the earlier run first. */
+    private Iterator<BatchRow> merge(List<List<BatchRow>> sorted) {
+        int[] posn = new int[sorted.size()];
+        PriorityQueue<Integer> queue = new PriorityQueue<>((r1, r2)->{
+            int x = comparator.compare(sorted.get(r1).get(posn[r1]), sorted.get(r2).get(posn[r2]));
+            return ( x != 0 ) ? x : Integer.compare(r1, r2);
+        });
+        for ( int i = 0 ; i < sorted.size() ; i++ ) {
+            if ( !sorted.get(i).isEmpty() )
+                queue.add(i);
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public BatchRow next() {
+                if ( queue.isEmpty() )
+                    throw new NoSuchElementException();
+                int r = queue.poll();
+                BatchRow row = sorted.get(r).get(posn[r]);
+                posn[r]++;
+                if ( posn[r] < sorted.get(r).size() )
+                    queue.add(r);
+                return row;
+            }
+        };
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch() {
+        if ( results == null )
+            results = sort();
+        if ( !results.hasNext() )
+            return null;
+        List<Var> vars = vars();
+        // The rows have the same variables as the output.
+        int[] mapping = BindingBatch.mapping(vars, vars);
+        BindingBatch out = new BindingBatch(vars, batchSize);
+        while ( !out.isFull() && results.hasNext() ) {
+            BatchRow row = results.next();
+            out.addRow(row.batch(), row.row(), mapping);
+        }
+        return out;
+    }
+}
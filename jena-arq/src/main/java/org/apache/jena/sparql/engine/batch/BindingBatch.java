@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * A block of solutions, held by column: one array of values for each variable.
+ * A null value is an unbound variable.
+ * <p>
+ * All the batches of one {@link BatchIterator} have the same variables.
+ * A batch is filled by the operator that creates it; once passed on, it
+ * belongs to the receiver.
+ */
+public final class BindingBatch {
+    private final List<Var> vars;
+    private final Node[][] columns;
+    private final int capacity;
+    private int size;
+
+    /** A new, empty batch. */
+    public BindingBatch(List<Var> vars, int capacity) {
+        this(vars, new Node[vars.size()][capacity], capacity, 0);
+    }
+
+    private BindingBatch(List<Var> vars, Node[][] columns, int capacity, int size) {
+        this.vars = vars;
+        this.columns = columns;
+        this.capacity = capacity;
+        this.size = size;
+    }
+
+    /** The variables, in column order. */
+    public List<Var> vars() {
+        return vars;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    /** The column number of a variable, or -1. */
+    public int column(Var var) {
+        return vars.indexOf(var);
+    }
+
+    /** The values of a column. Only the first {@link #size()} entries are used. */
+    public Node[] getColumn(int col) {
+        return columns[col];
+    }
+
+    public Node get(int row, int col) {
+        return columns[col][row];
+    }
+
+    public void set(int row, int col, Node value) {
+        columns[col][row] = value;
+    }
+
+    /** Add a row, with all variables unbound, and return its index. */
+    public int addRow() {
+        if ( size >= capacity )
+            throw new IllegalStateException("Batch full");
+        int row = size++;
+        for ( Node[] column : columns )
+            column[row] = null;
+        return row;
+    }
+
+    /**
+     * Add a row with values copied from a row of another batch.
+     * {@code mapping[i]} is the column of this batch for column {@code i} of {@code other}, or -1 to skip.
+     */
+    public int addRow(BindingBatch other, int otherRow, int[] mapping) {
+        int row = addRow();
+        for ( int i = 0 ; i < mapping.length ; i++ ) {
+            if ( mapping[i] >= 0 )
+                columns[mapping[i]][row] = other.columns[i][otherRow];
+        }
+        return row;
+    }
+
+    /** Keep only the rows where {@code keep} is true, preserving order. */
+    public void retain(boolean[] keep) {
+        int j = 0;
+        for ( int i = 0 ; i < size ; i++ ) {
+            if ( !keep[i] )
+                continue;
+            if ( i != j ) {
+                for ( Node[] column : columns )
+                    column[j] = column[i];
+            }
+            j++;
+        }
+        size = j;
+    }
+
+    /** Keep the rows from {@code start} (inclusive) to {@code end} (exclusive). */
+    public void retain(int start, int end) {
+        if ( start > 0 ) {
+            for ( Node[] column : columns )
+                System.arraycopy(column, start, column, 0, end-start);
+        }
+        size = end-start;
+    }
+
+    /** A batch of the same rows with only the given variables. The columns are shared, not copied. */
+    public BindingBatch project(List<Var> projectVars) {
+        Node[][] x = new Node[projectVars.size()][];
+        for ( int i = 0 ; i < x.length ; i++ ) {
+            int col = column(projectVars.get(i));
+            x[i] = ( col >= 0 ) ? columns[col] : new Node[capacity];
+        }
+        return new BindingBatch(projectVars, x, capacity, size);
+    }
+
+    /** The solution of a row. The batch must not be changed after this call. */
+    public Binding binding(int row) {
+        return new BatchRow(this, row);
+    }
+
+    /**
+     * For each column of {@code from}, the column with the same variable in
+     * {@code to}, or -1.
+     */
+    public static int[] mapping(List<Var> from, List<Var> to) {
+        int[] x = new int[from.size()];
+        for ( int i = 0 ; i < x.length ; i++ )
+            x[i] = to.indexOf(from.get(i));
+        return x;
+    }
+
+    /** The variables of {@code vars1}, followed by those of {@code vars2} not in {@code vars1}. */
+    public static List<Var> union(List<Var> vars1, List<Var> vars2) {
+        List<Var> x = new ArrayList<>(vars1);
+        for ( Var v : vars2 ) {
+            if ( !x.contains(v) )
+                x.add(v);
+        }
+        return List.copyOf(x);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(vars).append(" ").append(size).append(" rows");
+        for ( int i = 0 ; i < size ; i++ ) {
+            sb.append("\n  ");
+            Node[] row = new Node[columns.length];
+            for ( int c = 0 ; c < columns.length ; c++ )
+                row[c] = columns[c][i];
+            sb.append(Arrays.toString(row));
+        }
+        return sb.toString();
+    }
+}
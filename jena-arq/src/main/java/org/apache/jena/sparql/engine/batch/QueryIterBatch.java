@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIter;
+
+/** A {@link org.apache.jena.sparql.engine.QueryIterator} over the rows of a {@link BatchIterator}. */
+public class QueryIterBatch extends QueryIter {
+    private final BatchIterator batches;
+    private BindingBatch current = null;
+    private int row = 0;
+
+    public QueryIterBatch(BatchIterator batches, ExecutionContext execCxt) {
+        super(execCxt);
+        this.batches = batches;
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        while ( current == null || row >= current.size() ) {
+            current = batches.nextBatch();
+            row = 0;
+            if ( current == null )
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        return current.binding(row++);
+    }
+
+    @Override
+    protected void closeIterator() {
+        current = null;
+        batches.close();
+    }
+
+    @Override
+    protected void requestCancel() {
+        batches.cancel();
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.iterator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.ExprLib;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.expr.aggregate.*;
+import org.apache.jena.sparql.expr.nodevalue.XSDFuncOp;
+import org.apache.jena.sparql.function.FunctionEnv;
+
+/**
+ * The groups of a GROUP BY and their aggregates.
+ * <p>
+ * Groups are kept in one open-addressing hash table keyed by the values of the
+ * group expressions, and numbered in the order they are first seen.
+ * The aggregate state is held column-wise, one column per aggregator.
+ * {@code COUNT}, {@code SUM} and {@code AVG} (without {@code DISTINCT}), and
+ * {@code MIN} and {@code MAX} (with or without {@code DISTINCT}, which makes no
+ * difference to the result) have columns of primitive state: sums are kept as {@code long}
+ * until they overflow, then as {@link BigInteger}, and as {@link BigDecimal},
+ * {@code float} or {@code double} when a value of that type is seen, following the
+ * type promotion of {@link XSDFuncOp#numAdd}. Other aggregators have one
+ * {@link Accumulator} per group.
+ * <p>
+ * Not thread safe.
+ */
+public class GroupHashTable {
+
+    private static final int InitialCapacity = 64;
+
+    private final VarExprList groupVars;
+    private final List<Var> keyVars;
+    private final List<ExprAggregator> aggregators;
+    private final FunctionEnv env;
+    private final Column[] columns;
+    // Reused for the key of each row.
+    private final Node[] scratch;
+
+    // Slot to group number + 1, 0 for empty.
+    private int[] slots;
+    private int[] hashes;
+    private Node[][] keys;
+    private int size = 0;
+
+    public GroupHashTable(VarExprList groupVars, List<ExprAggregator> aggregators, FunctionEnv env) {
+        this.groupVars = groupVars;
+        this.keyVars = groupVars.getVars();
+        this.aggregators = ( aggregators == null ) ? List.of() : aggregators;
+        this.env = env;
+        this.scratch = new Node[keyVars.size()];
+        this.columns = new Column[this.aggregators.size()];
+        for ( int i = 0 ; i < columns.length ; i++ )
+            columns[i] = column(this.aggregators.get(i).getAggregator());
+        this.slots = new int[2*InitialCapacity];
+        this.hashes = new int[InitialCapacity];
+        this.keys = new Node[InitialCapacity][];
+        for ( Column c : columns )
+            c.resize(InitialCapacity);
+    }
+
+    /** Whether an aggregator has a column of primitive state. */
+    public static boolean isSpecialized(Aggregator agg) {
+        return column(agg) instanceof Specialized;
+    }
+
+    private static Column column(Aggregator agg) {
+        Class<?> c = agg.getClass();
+        if ( c == AggCount.class )
+            return new CountAll();
+        if ( c == AggCountVar.class )
+            return new CountExpr(expr(agg));
+        if ( c == AggSum.class )
+            return new Sum(expr(agg), false);
+        if ( c == AggAvg.class )
+            return new Sum(expr(agg), true);
+        // The DISTINCT forms of MIN and MAX have the same accumulator.
+        if ( c == AggMin.class || c == AggMinDistinct.class )
+            return new MinMax(expr(agg), true);
+        if ( c == AggMax.class || c == AggMaxDistinct.class )
+            return new MinMax(expr(agg), false);
+        return new General(agg);
+    }
+
+    private static Expr expr(Aggregator agg) {
+        return agg.getExprList().get(0);
+    }
+
+    /** Number of groups. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The key for a row: the value of each group expression, null for unbound or error.
+     * The array returned is reused by the next call.
+     */
+    public Node[] key(Binding binding) {
+        for ( int i = 0 ; i < scratch.length ; i++ )
+            scratch[i] = groupVars.get(keyVars.get(i), binding, env);
+        return scratch;
+    }
+
+    /** The hash code of a key. */
+    public static int hash(Node[] key) {
+        int h = Arrays.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    /** Find the group for a key, or return -1. */
+    public int find(Node[] key) {
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        for ( int i = (hash * 0x9E3779B9) >>> 1 & mask ; ; i = (i + 1) & mask ) {
+            int x = slots[i];
+            if ( x == 0 )
+                return -1;
+            int group = x - 1;
+            if ( hashes[group] == hash && Arrays.equals(keys[group], key) )
+                return group;
+        }
+    }
+
+    /** Add a group for a key not already in the table (the key is copied) and return its number. */
+    public int insert(Node[] key) {
+        if ( size == hashes.length )
+            grow();
+        int group = size++;
+        int hash = hash(key);
+        hashes[group] = hash;
+        keys[group] = key.clone();
+        place(group, hash);
+        for ( Column c : columns )
+            c.init(group);
+        return group;
+    }
+
+    /** Find or add the group for a key. */
+    public int group(Node[] key) {
+        int group = find(key);
+        return ( group >= 0 ) ? group : insert(key);
+    }
+
+    /** Add a row to the group for its key. */
+    public void accumulate(Binding binding) {
+        accumulate(group(key(binding)), binding);
+    }
+
+    /** Add a row to a group. */
+    public void accumulate(int group, Binding binding) {
+        for ( Column c : columns )
+            c.accumulate(group, binding, env);
+    }
+
+    /** The value of a group expression for a group; null if unbound. */
+    public Node key(int group, int idx) {
+        return keys[group][idx];
+    }
+
+    /** The value of an aggregator for a group; null if there is no value (an error). */
+    public Node value(int group, int idx) {
+        NodeValue nv = columns[idx].value(group);
+        return ( nv == null ) ? null : nv.asNode();
+    }
+
+    /** The groups, in the order first seen, as bindings of the group and aggregator variables. */
+    public Iterator<Binding> bindings() {
+        return new Iterator<>() {
+            private int group = 0;
+            @Override
+            public boolean hasNext() {
+                return group < size;
+            }
+
+            @Override
+            public Binding next() {
+                if ( !hasNext() )
+                    throw new NoSuchElementException();
+                BindingBuilder builder = Binding.builder();
+                for ( int i = 0 ; i < keyVars.size() ; i++ ) {
+                    Node n = key(group, i);
+                    if ( n != null )
+                        builder.add(keyVars.get(i), n);
+                }
+                for ( int i = 0 ; i < columns.length ; i++ ) {
+                    Node n = value(group, i);
+                    if ( n != null )
+                        builder.add(aggregators.get(i).getVar(), n);
+                }
+                group++;
+                return builder.build();
+            }
+        };
+    }
+
+    private void place(int group, int hash) {
+        int mask = slots.length - 1;
+        int i = (hash * 0x9E3779B9) >>> 1 & mask;
+        while ( slots[i] != 0 )
+            i = (i + 1) & mask;
+        slots[i] = group + 1;
+    }
+
+    private void grow() {
+        int capacity = 2*hashes.length;
+        hashes = Arrays.copyOf(hashes, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        for ( Column c : columns )
+            c.resize(capacity);
+        // Load factor at most 1/2.
+        slots = new int[2*capacity];
+        for ( int group = 0 ; group < size ; group++ )
+            place(group, hashes[group]);
+    }
+
+    /** Evaluate, returning null for an error, avoiding an exception for an unbound variable. */
+    private static NodeValue eval(Expr expr, Binding binding, FunctionEnv env) {
+        if ( expr.isVariable() ) {
+            Node n = binding.get(expr.asVar());
+            return ( n == null ) ? null : NodeValue.makeNode(n);
+        }
+        return ExprLib.evalOrNull(expr, binding, env);
+    }
+
+    // ---- Columns of aggregate state, indexed by group number.
+
+    private static abstract class Column {
+        /** Set the capacity for groups. */
+        abstract void resize(int capacity);
+        /** Initialize the state of a new group. */
+        void init(int group) {}
+        abstract void accumulate(int group, Binding binding, FunctionEnv env);
+        /** The value of the aggregate; null for an error. */
+        abstract NodeValue value(int group);
+    }
+
+    private static abstract class Specialized extends Column {}
+
+    /** Any aggregator: an {@link Accumulator} per group. */
+    private static class General extends Column {
+        private final Aggregator agg;
+        private Accumulator[] accumulators = new Accumulator[0];
+
+        General(Aggregator agg) { this.agg = agg; }
+
+        @Override
+        void resize(int capacity) { accumulators = Arrays.copyOf(accumulators, capacity); }
+
+        @Override
+        void init(int group) { accumulators[group] = agg.createAccumulator(); }
+
+        @Override
+        void accumulate(int group, Binding binding, FunctionEnv env) {
+            accumulators[group].accumulate(binding, env);
+        }
+
+        @Override
+        NodeValue value(int group) { return accumulators[group].getValue(); }
+    }
+
+    /** COUNT(*) */
+    private static class CountAll extends Specialized {
+        private long[] counts = new long[0];
+
+        @Override
+        void resize(int capacity) { counts = Arrays.copyOf(counts, capacity); }
+
+        @Override
+        void accumulate(int group, Binding binding, FunctionEnv env) { counts[group]++; }
+
+        @Override
+        NodeValue value(int group) { return NodeValue.makeInteger(counts[group]); }
+    }
+
+    /** COUNT(expr) : errors are not counted and do not make the aggregate an error. */
+    private static class CountExpr extends Specialized {
+        private final Expr expr;
+        private long[] counts = new long[0];
+
+        CountExpr(Expr expr) { this.expr = expr; }
+
+        @Override
+        void resize(int capacity) { counts = Arrays.copyOf(counts, capacity); }
+
+        @Override
+        void accumulate(int group, Binding binding, FunctionEnv env) {
+            if ( expr.isVariable() ) {
+                if ( binding.contains(expr.asVar()) )
+                    counts[group]++;
+                return;
+            }
+            if ( ExprLib.evalOrNull(expr, binding, env) != null )
+                counts[group]++;
+        }
+
+        @Override
+        NodeValue value(int group) { return NodeValue.makeInteger(counts[group]); }
+    }
+
+    /** MIN(expr) and MAX(expr) : any error makes the aggregate an error. */
+    private static class MinMax extends Specialized {
+        private final Expr expr;
+        private final boolean isMin;
+        private NodeValue[] values = new NodeValue[0];
+        private boolean[] errors = new boolean[0];
+
+        MinMax(Expr expr, boolean isMin) {
+            this.expr = expr;
+            this.isMin = isMin;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            errors = Arrays.copyOf(errors, capacity);
+        }
+
+        @Override
+        void accumulate(int group, Binding binding, FunctionEnv env) {
+            if ( errors[group] )
+                return;
+            NodeValue nv = eval(expr, binding, env);
+            if ( nv == null ) {
+                errors[group] = true;
+                return;
+            }
+            NodeValue current = values[group];
+            if ( current == null ) {
+                values[group] = nv;
+                return;
+            }
+            int x = NodeValue.compareAlways(current, nv);
+            if ( isMin ? x > 0 : x < 0 )
+                values[group] = nv;
+        }
+
+        @Override
+        NodeValue value(int group) { return errors[group] ? null : values[group]; }
+    }
+
+    /**
+     * SUM(expr) and AVG(expr) : any error, including a value that is not a number,
+     * makes the aggregate an error.
+     */
+    private static class Sum extends Specialized {
+        private static final byte INTEGER = 1;
+        private static final byte DECIMAL = 2;
+        private static final byte FLOAT   = 3;
+        private static final byte DOUBLE  = 4;
+
+        private final Expr expr;
+        private final boolean isAvg;
+
+        // Numeric type of the total so far.
+        private byte[] types = new byte[0];
+        // INTEGER total, when it is not in wide.
+        private long[] longs = new long[0];
+        // FLOAT or DOUBLE total.
+        private double[] doubles = new double[0];
+        // INTEGER total that does not fit in a long (BigInteger), or DECIMAL total (BigDecimal).
+        private Object[] wide = new Object[0];
+        // A single value is the total as given (SUM keeps the datatype and lexical form).
+        private NodeValue[] firsts = new NodeValue[0];
+        private long[] counts = new long[0];
+        private boolean[] errors = new boolean[0];
+
+        Sum(Expr expr, boolean isAvg) {
+            this.expr = expr;
+            this.isAvg = isAvg;
+        }
+
+        @Override
+        void resize(int capacity) {
+            types = Arrays.copyOf(types, capacity);
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            wide = Arrays.copyOf(wide, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            errors = Arrays.copyOf(errors, capacity);
+        }
+
+        @Override
+        void accumulate(int group, Binding binding, FunctionEnv env) {
+            if ( errors[group] )
+                return;
+            NodeValue nv = eval(expr, binding, env);
+            if ( nv == null || !nv.isNumber() ) {
+                errors[group] = true;
+                return;
+            }
+            long n = ++counts[group];
+            if ( n == 1 ) {
+                firsts[group] = nv;
+                set(group, nv);
+                return;
+            }
+            firsts[group] = null;
+            add(group, nv);
+        }
+
+        private static byte type(NodeValue nv) {
+            switch (XSDFuncOp.classifyNumeric("sum", nv)) {
+                case OP_INTEGER : return INTEGER;
+                case OP_DECIMAL : return DECIMAL;
+                case OP_FLOAT :   return FLOAT;
+                default :         return DOUBLE;
+            }
+        }
+
+        private void set(int group, NodeValue nv) {
+            byte type = type(nv);
+            types[group] = type;
+            wide[group] = null;
+            switch (type) {
+                case INTEGER -> {
+                    BigInteger i = nv.getInteger();
+                    if ( i.bitLength() < 64 )
+                        longs[group] = i.longValue();
+                    else
+                        wide[group] = i;
+                }
+                case DECIMAL -> wide[group] = nv.getDecimal();
+                case FLOAT ->   doubles[group] = nv.getFloat();
+                default ->      doubles[group] = nv.getDouble();
+            }
+        }
+
+        private void add(int group, NodeValue nv) {
+            byte type = type(nv);
+            if ( type > types[group] )
+                promote(group, type);
+            switch (types[group]) {
+                case INTEGER -> {
+                    BigInteger i = nv.getInteger();
+                    if ( wide[group] == null && i.bitLength() < 64 ) {
+                        long x = longs[group];
+                        long y = i.longValue();
+                        long r = x + y;
+                        // Overflow if both arguments have the opposite sign of the result.
+                        if ( ((x ^ r) & (y ^ r)) >= 0 ) {
+                            longs[group] = r;
+                            return;
+                        }
+                    }
+                    wide[group] = integer(group).add(i);
+                }
+                case DECIMAL -> wide[group] = ((BigDecimal)wide[group]).add(nv.getDecimal());
+                case FLOAT ->   doubles[group] = (float)doubles[group] + nv.getFloat();
+                default ->      doubles[group] = doubles[group] + nv.getDouble();
+            }
+        }
+
+        private BigInteger integer(int group) {
+            return ( wide[group] != null ) ? (BigInteger)wide[group] : BigInteger.valueOf(longs[group]);
+        }
+
+        /** Change the total to a wider numeric type, as XSDFuncOp.numAdd would. */
+        private void promote(int group, byte type) {
+            byte current = types[group];
+            switch (type) {
+                case DECIMAL -> wide[group] = new BigDecimal(integer(group));
+                case FLOAT ->   doubles[group] = ( current == INTEGER )
+                                    ? integer(group).floatValue()
+                                    : ((BigDecimal)wide[group]).floatValue();
+                default -> {
+                    if ( current == INTEGER )
+                        doubles[group] = integer(group).doubleValue();
+                    else if ( current == DECIMAL )
+                        doubles[group] = ((BigDecimal)wide[group]).doubleValue();
+                    // FLOAT to DOUBLE: the float is already exact as a double.
+                }
+            }
+            if ( type != DECIMAL )
+                wide[group] = null;
+            types[group] = type;
+        }
+
+        private NodeValue total(int group) {
+            if ( firsts[group] != null )
+                return firsts[group];
+            return switch (types[group]) {
+                case INTEGER -> ( wide[group] != null )
+                                    ? NodeValue.makeInteger((BigInteger)wide[group])
+                                    : NodeValue.makeInteger(longs[group]);
+                case DECIMAL -> NodeValue.makeDecimal((BigDecimal)wide[group]);
+                case FLOAT ->   NodeValue.makeFloat((float)doubles[group]);
+                default ->      NodeValue.makeDouble(doubles[group]);
+            };
+        }
+
+        @Override
+        NodeValue value(int group) {
+            if ( errors[group] )
+                return null;
+            if ( counts[group] == 0 )
+                return isAvg ? NodeValue.nvZERO : null;
+            NodeValue total = total(group);
+            if ( !isAvg )
+                return total;
+            return XSDFuncOp.numDivide(total, NodeValue.makeInteger(counts[group]));
+        }
+    }
+}
@@ -19,16 +19,19 @@
 package org.apache.jena.sparql.engine.iterator;
 
 import java.util.ArrayList ;
-import java.util.Collection ;
 import java.util.Iterator ;
 import java.util.List ;
 
-import org.apache.commons.collections4.MultiMapUtils;
-import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.jena.atlas.data.BagFactory;
+import org.apache.jena.atlas.data.DataBag;
+import org.apache.jena.atlas.data.SpillPartition;
+import org.apache.jena.atlas.data.ThresholdPolicy;
+import org.apache.jena.atlas.data.ThresholdPolicyCount;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory;
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.iterator.IteratorDelayedInitialization ;
-import org.apache.jena.atlas.lib.Pair ;
 import org.apache.jena.graph.Node ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.sparql.core.Var ;
 import org.apache.jena.sparql.core.VarExprList ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
@@ -37,22 +40,41 @@ import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.binding.BindingBuilder;
 import org.apache.jena.sparql.engine.binding.BindingFactory ;
 import org.apache.jena.sparql.expr.ExprAggregator ;
-import org.apache.jena.sparql.expr.NodeValue ;
-import org.apache.jena.sparql.expr.aggregate.Accumulator ;
-
+import org.apache.jena.sparql.system.SerializationFactoryFinder ;
+
+/**
+ * GROUP BY and aggregation.
+ * The groups and the aggregate state are held in a {@link GroupHashTable}.
+ * <p>
+ * If {@link ARQ#spillToDiskThreshold} is set and the number of groups passes it,
+ * the groups seen so far are completed in memory and the input rows for other
+ * groups are partitioned, by hash of the group key, into bags that are written
+ * to disk when large. Each partition is then aggregated in turn, partitioning
+ * again if it too has too many groups.
+ */
 public class QueryIterGroup extends QueryIterPlainWrapper
 {
 	private final QueryIterator embeddedIterator;
+	/*package*/ final List<DataBag<Binding>> spillBags;
 
 	public QueryIterGroup(QueryIterator qIter,
                           VarExprList groupVars,
                           List<ExprAggregator> aggregators,
                           ExecutionContext execCxt) {
+	    this(qIter, groupVars, aggregators, execCxt, new ArrayList<>());
+	}
+
+	private QueryIterGroup(QueryIterator qIter,
+	                       VarExprList groupVars,
+	                       List<ExprAggregator> aggregators,
+	                       ExecutionContext execCxt,
+	                       List<DataBag<Binding>> spillBags) {
 	    // Delayed initalization
 	    // Does the group calculation when first used (typically hasNext)
-        super(calc(qIter, groupVars, aggregators, execCxt),
+        super(calc(qIter, groupVars, aggregators, execCxt, spillBags),
               execCxt);
         this.embeddedIterator = qIter;
+        this.spillBags = spillBags;
     }
 
     @Override
@@ -65,14 +87,14 @@ public class QueryIterGroup extends QueryIterPlainWrapper
     protected void closeIterator() {
         this.embeddedIterator.close();
         super.closeIterator();
+        spillBags.forEach(DataBag::close);
     }
 
-	private static Pair<Var, Accumulator> placeholder = Pair.create((Var)null, (Accumulator)null) ;
-
     private static Iterator<Binding> calc(final QueryIterator iter,
                                           final VarExprList groupVarExpr,
                                           final List<ExprAggregator> aggregators,
-                                          final ExecutionContext execCxt) {
+                                          final ExecutionContext execCxt,
+                                          final List<DataBag<Binding>> spillBags) {
         return new IteratorDelayedInitialization<Binding>() {
             @Override
             protected Iterator<Binding> initializeIterator() {
@@ -105,74 +127,77 @@ public class QueryIterGroup extends QueryIterPlainWrapper
                 }
 
                 // Case: there is input.
-                // Phase 1 : Create keys and aggregators per key, and pump bindings through the aggregators.
-                MultiValuedMap<Binding, Pair<Var, Accumulator>> accumulators = MultiMapUtils.newListValuedHashMap();
-                while (iter.hasNext()) {
-                    Binding b = iter.nextBinding();
-                    Binding key = genKey(groupVarExpr, b, execCxt);
-
-                    if ( !hasAggregators ) {
-                        // Put in a dummy to remember the input.
-                        accumulators.put(key, placeholder);
-                        continue;
-                    }
-
-                    // Create if does not exist.
-                    if ( !accumulators.containsKey(key) ) {
-                        for ( ExprAggregator agg : aggregators ) {
-                            Accumulator x = agg.getAggregator().createAccumulator();
-                            Var v = agg.getVar();
-                            accumulators.put(key, Pair.create(v, x));
-                        }
-                    }
-
-                    // Do the per-accumulator calculation.
-                    for ( Pair<Var, Accumulator> pair : accumulators.get(key) )
-                        pair.getRight().accumulate(b, execCxt);
+                long threshold = -1;
+                if ( execCxt != null && hasGroupBy ) {
+                    ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(execCxt.getContext());
+                    if ( policy instanceof ThresholdPolicyCount<Binding> policyCount )
+                        threshold = policyCount.getThreshold();
                 }
+                return aggregate(iter, groupVarExpr, aggregators, execCxt, threshold, 0, spillBags);
+            }
+        };
+    }
 
-                // Phase 2 : There was input and so there are some groups.
-                // For each bucket, get binding, add aggregator values to the binding.
-                // We used AccNull so there are always accumulators.
-
-                if ( !hasAggregators )
-                    // We used placeholder so there are always the key.
-                    return accumulators.keySet().iterator();
-
-                List<Binding> results = new ArrayList<>();
-                for ( Binding k : accumulators.keySet() ) {
-                    BindingBuilder builder2 = Binding.builder(k);
-                    Collection<Pair<Var, Accumulator>> accs = accumulators.get(k);
-
-                    for ( Pair<Var, Accumulator> pair : accs ) {
-                        NodeValue value = pair.getRight().getValue();
-                        if ( value == null )
-                            continue;
-                        Var v = pair.getLeft();
-                        builder2.add(v, value.asNode());
+    /**
+     * Group and aggregate the rows.
+     * If {@code threshold} is not negative and the number of groups reaches it,
+     * rows for new groups are partitioned to bags, which are aggregated after the
+     * groups in memory.
+     */
+    private static Iterator<Binding> aggregate(Iterator<Binding> iter,
+                                               VarExprList groupVarExpr,
+                                               List<ExprAggregator> aggregators,
+                                               ExecutionContext execCxt,
+                                               long threshold, int depth,
+                                               List<DataBag<Binding>> spillBags) {
+        boolean canSpill = threshold >= 0 && depth < SpillPartition.MaxDepth;
+        List<DataBag<Binding>> partitions = null;
+
+        // Phase 1 : Find or create the group for each binding and pump the binding through its aggregators.
+        GroupHashTable groups = new GroupHashTable(groupVarExpr, aggregators, execCxt);
+        while (iter.hasNext()) {
+            Binding b = iter.next();
+            Node[] key = groups.key(b);
+            int group = groups.find(key);
+
+            if ( group < 0 ) {
+                if ( partitions != null ) {
+                    // Spilling: only the groups already in memory are aggregated now.
+                    partitions.get(partition(key, depth)).add(b);
+                    continue;
+                }
+                if ( canSpill && groups.size() >= threshold ) {
+                    partitions = new ArrayList<>(SpillPartition.NumPartitions);
+                    for ( int i = 0 ; i < SpillPartition.NumPartitions ; i++ ) {
+                        ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.count(Math.max(1, threshold/SpillPartition.NumPartitions));
+                        partitions.add(BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory()));
                     }
-                    results.add(builder2.build());
+                    spillBags.addAll(partitions);
+                    partitions.get(partition(key, depth)).add(b);
+                    continue;
                 }
-                return results.iterator();
+                group = groups.insert(key);
             }
-        };
-    }
+            groups.accumulate(group, b);
+        }
 
-    static private Binding genKey(VarExprList vars, Binding binding, ExecutionContext execCxt) {
-        return copyProject(vars, binding, execCxt);
+        // Phase 2 : There was input and so there are some groups.
+        // For each group, the binding of the key with the aggregator values added.
+        Iterator<Binding> results = groups.bindings();
+        if ( partitions == null )
+            return results;
+
+        // Phase 3 : The partitions, one at a time, when the iterator reaches them.
+        Iterator<Binding> spilled = Iter.flatMap(partitions.iterator(), bag-> {
+            if ( bag.size() == 0 )
+                return Iter.nullIterator();
+            return aggregate(bag.iterator(), groupVarExpr, aggregators, execCxt, threshold, depth+1, spillBags);
+        });
+        return Iter.concat(results, spilled);
     }
 
-    static private Binding copyProject(VarExprList vars, Binding binding, ExecutionContext execCxt) {
-        // No group vars (implicit or explicit) => working on whole result set.
-        // Still need a BindingMap to assign to later.
-        BindingBuilder x = Binding.builder();
-        for ( Var var : vars.getVars() ) {
-            Node node = vars.get(var, binding, execCxt);
-            // Null returned for unbound and error.
-            if ( node != null ) {
-                x.add(var, node);
-            }
-        }
-        return x.build();
+    /** Partition for a group key. */
+    private static int partition(Node[] key, int depth) {
+        return SpillPartition.partition(GroupHashTable.hash(key), depth);
     }
 }
@@ -18,22 +18,35 @@
 
 package org.apache.jena.sparql.engine.join;
 
+import java.util.ArrayList ;
 import java.util.Iterator ;
 import java.util.List ;
 
+import org.apache.jena.atlas.data.ThresholdPolicy ;
+import org.apache.jena.atlas.data.ThresholdPolicyCount ;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory ;
 import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.sparql.algebra.Algebra ;
 import org.apache.jena.sparql.core.Var ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
 import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.iterator.QueryIter2 ;
+import org.apache.jena.sparql.engine.iterator.QueryIterNullIterator ;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek ;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper ;
+import org.apache.jena.sparql.mgt.Explain ;
 
 /** Hash join algorithm
  *
  * This code materializes one input into the probe table
  * then hash joins the other input from the stream side.
+ * <p>
+ * If the join {@link #spillable() can spill} and the probe table input passes the
+ * {@link ARQ#spillToDiskThreshold}, both inputs are partitioned into bags that
+ * are written to disk, and the partitions are joined one at a time
+ * (see {@link HashJoinSpill}).
  */
 
 public abstract class AbstractIterHashJoin extends QueryIter2 {
@@ -41,6 +54,11 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
     protected long s_countScan            = 0 ;       // Count of the scan data size
     protected long s_countResults         = 0 ;       // Overall result size.
     protected long s_trailerResults       = 0 ;       // Results from the trailer iterator.
+    protected long s_spillProbe           = 0 ;       // Rows of the probe data partitioned to bags.
+    protected long s_spillScan            = 0 ;       // Rows of the scan data partitioned to bags.
+    protected int  s_spillBags            = 0 ;       // Bags written to disk.
+    protected int  s_spillDepth           = 0 ;       // Deepest repartitioning of a spilled partition.
+    protected long s_spillMaxPass         = 0 ;       // Largest hash table of a spilled partition.
     // See also stats in the probe table.
 
     protected JoinKey                   joinKey ;
@@ -58,6 +76,9 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
 
     private Binding slot = null ;
 
+    // Not null if the join has spilled.
+    private HashJoinSpill spill = null ;
+
     protected AbstractIterHashJoin(JoinKey initialJoinKey, QueryIterator probeIter, QueryIterator streamIter, ExecutionContext execCxt) {
         super(probeIter, streamIter, execCxt) ;
 
@@ -97,11 +118,83 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
 
     private void buildHashTable(QueryIterator iter1) {
         state = Phase.HASH ;
+        ThresholdPolicy<Binding> policy = spillPolicy() ;
+        if ( policy == null ) {
+            iter1.forEachRemaining(row1 -> {
+                s_countProbe ++ ;
+                hashTable.put(row1) ;
+            });
+            state = Phase.STREAM ;
+            return ;
+        }
+
+        List<Binding> buffer = new ArrayList<>() ;
+        while ( iter1.hasNext() ) {
+            Binding row1 = iter1.next() ;
+            s_countProbe ++ ;
+            buffer.add(row1) ;
+            policy.increment(row1) ;
+            if ( policy.isThresholdExceeded() ) {
+                long threshold = ((ThresholdPolicyCount<Binding>)policy).getThreshold() ;
+                startSpill(threshold, buffer, iter1) ;
+                state = Phase.STREAM ;
+                return ;
+            }
+        }
+        buffer.forEach(hashTable::put) ;
+        state = Phase.STREAM ;
+    }
+
+    /** The threshold policy if this join may spill, else null. */
+    private ThresholdPolicy<Binding> spillPolicy() {
+        ExecutionContext execCxt = getExecContext() ;
+        if ( ! spillable() || execCxt == null || joinKey == null || joinKey.isEmpty() )
+            return null ;
+        ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(execCxt.getContext()) ;
+        return ( policy instanceof ThresholdPolicyCount ) ? policy : null ;
+    }
+
+    /** Partition both inputs, then start on the first partition. */
+    private void startSpill(long threshold, List<Binding> buffer, QueryIterator iter1) {
+        spill = new HashJoinSpill(joinKey, threshold) ;
+        buffer.forEach(spill::addTableRow) ;
+        buffer.clear() ;
         iter1.forEachRemaining(row1 -> {
             s_countProbe ++ ;
-            hashTable.put(row1) ;
+            spill.addTableRow(row1) ;
         });
-        state = Phase.STREAM ;
+        iterStream.forEachRemaining(spill::addStreamRow) ;
+        iterStream.close() ;
+        s_spillProbe = spill.tableRows() ;
+        s_spillScan = spill.streamRows() ;
+        s_spillBags = spill.spilledBags() ;
+        Explain.explain(getExecContext().getContext(), "HashJoin: spill: %s", spill) ;
+        if ( ! nextPass() )
+            iterStream = QueryIterNullIterator.create(getExecContext()) ;
+    }
+
+    /** Set up the hash table and the stream for the next partition, if any. */
+    private boolean nextPass() {
+        HashJoinSpill.Pass pass = spill.nextPass() ;
+        s_spillDepth = spill.maxDepth() ;
+        if ( pass == null )
+            return false ;
+        hashTable = new MultiHashProbeTable(null, joinKey) ;
+        pass.table().forEach(hashTable::put) ;
+        s_spillMaxPass = Math.max(s_spillMaxPass, pass.table().size()) ;
+        Iterator<Binding> rows = Iter.flatMap(pass.stream().iterator(), bag->bag.iterator()) ;
+        iterStream.close() ;
+        iterStream = QueryIterPlainWrapper.create(rows, getExecContext()) ;
+        return true ;
+    }
+
+    /**
+     * Whether the join can be done by partitions when the probe table input is large.
+     * This is not possible when the result for a stream row depends on all
+     * the rows of the probe table, as in an outer join.
+     */
+    protected boolean spillable() {
+        return false ;
     }
 
     @Override
@@ -147,6 +240,8 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
             while ( iterCurrent == null ) {
                 // Move on to the next row from the right.
                 if ( ! iterStream.hasNext() ) {
+                    if ( spill != null && nextPass() )
+                        continue ;
                     state = Phase.TRAILER ;
                     iterTail = joinFinished() ;
                     if ( iterTail != null )
@@ -233,14 +328,19 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
     protected void closeSubIterator() {
         if ( JoinLib.JOIN_EXPLAIN ) {
             String x = String.format(
-                         "HashJoin: LHS=%d RHS=%d Results=%d Table=%s",
+                         "HashJoin: LHS=%d RHS=%d Results=%d Spilled=%d/%d bags=%d depth=%d Table=%s",
                          s_countProbe, s_countScan, s_countResults,
-                         hashTable.toString()) ;
+                         s_spillProbe, s_spillScan, s_spillBags, s_spillDepth,
+                         hashTable) ;
             System.out.println(x) ;
         }
         // In case it's a peek iterator.
         iterStream.close() ;
-        hashTable.clear();
+        // Null if closed before the first use.
+        if ( hashTable != null )
+            hashTable.clear();
+        if ( spill != null )
+            spill.close() ;
     }
 
     @Override
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.data.BagFactory;
+import org.apache.jena.atlas.data.DataBag;
+import org.apache.jena.atlas.data.SpillPartition;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.system.SerializationFactoryFinder;
+
+/**
+ * The partitions of a hash join whose hash table side has passed the spill
+ * threshold (a "grace" hash join).
+ * <p>
+ * Both sides are split by the value of one join variable into bags, which are
+ * written to disk when they grow; rows where that variable is unbound go into
+ * separate bags. The join is then done one partition at a time, with only that
+ * partition's hash table in memory.
+ * <p>
+ * Each pair of rows meets in exactly one pass:
+ * a partition of the table side is joined with the same partition of the stream side
+ * and the stream rows without the variable; finally, the table rows without the
+ * variable are joined with all the stream rows.
+ * <p>
+ * A pass whose table side is still larger than the threshold is partitioned again,
+ * on the next join variable and with a different hash, up to {@link SpillPartition#MaxDepth}
+ * levels. A pass that is still too large after that, such as one value of a single
+ * join variable with very many rows, is joined in chunks of the table side, each
+ * with all the stream rows of the pass.
+ */
+class HashJoinSpill {
+    /** One pass of the join: the rows for the hash table and the rows to stream. */
+    record Pass(List<Binding> table, List<DataBag<Binding>> stream) {}
+
+    // A partition of the table side and the stream rows that may join with it.
+    private record Partition(DataBag<Binding> table, List<DataBag<Binding>> stream) {}
+
+    private final JoinKey joinKey;
+    private final Var var;
+    private final int depth;
+    private final long threshold;
+    private final long bagThreshold;
+    private final List<DataBag<Binding>> tableParts = new ArrayList<>(SpillPartition.NumPartitions);
+    private final List<DataBag<Binding>> streamParts = new ArrayList<>(SpillPartition.NumPartitions);
+    private final DataBag<Binding> tableAny;
+    private final DataBag<Binding> streamAny;
+    private int pass = 0;
+    private long tableRows = 0;
+    private long streamRows = 0;
+
+    // The current partition, partitioned again.
+    private HashJoinSpill subSpill = null;
+    // The current partition, joined in chunks of its table rows.
+    private Iterator<Binding> chunks = null;
+    private List<DataBag<Binding>> chunksStream = null;
+    // The deepest partitioning used.
+    private int maxDepth;
+
+    /**
+     * @param joinKey The join variables to partition on.
+     * @param threshold The number of rows to keep in memory for each side,
+     *          split between the bags.
+     */
+    HashJoinSpill(JoinKey joinKey, long threshold) {
+        this(joinKey, threshold, 0);
+    }
+
+    private HashJoinSpill(JoinKey joinKey, long threshold, int depth) {
+        this.joinKey = joinKey;
+        this.var = joinKey.get(depth % joinKey.size());
+        this.depth = depth;
+        this.maxDepth = depth;
+        this.threshold = Math.max(1, threshold);
+        this.bagThreshold = Math.max(1, threshold / (SpillPartition.NumPartitions+1));
+        for ( int i = 0 ; i < SpillPartition.NumPartitions ; i++ ) {
+            tableParts.add(newBag());
+            streamParts.add(newBag());
+        }
+        this.tableAny = newBag();
+        this.streamAny = newBag();
+    }
+
+    private DataBag<Binding> newBag() {
+        return BagFactory.newDefaultBag(ThresholdPolicyFactory.count(bagThreshold),
+                                        SerializationFactoryFinder.bindingSerializationFactory());
+    }
+
+    void addTableRow(Binding row) {
+        tableRows++;
+        bag(tableParts, tableAny, row).add(row);
+    }
+
+    void addStreamRow(Binding row) {
+        streamRows++;
+        bag(streamParts, streamAny, row).add(row);
+    }
+
+    private DataBag<Binding> bag(List<DataBag<Binding>> parts, DataBag<Binding> any, Binding row) {
+        Node n = row.get(var);
+        if ( n == null )
+            return any;
+        return parts.get(partition(n));
+    }
+
+    private int partition(Node n) {
+        return SpillPartition.partition(n.hashCode(), depth);
+    }
+
+    /** The next pass, or null if there are no more. */
+    Pass nextPass() {
+        for (;;) {
+            if ( subSpill != null ) {
+                Pass p = subSpill.nextPass();
+                if ( p != null )
+                    return p;
+                subSpill.close();
+                subSpill = null;
+            }
+            if ( chunks != null ) {
+                if ( chunks.hasNext() )
+                    return new Pass(chunk(chunks), chunksStream);
+                Iter.close(chunks);
+                chunks = null;
+                chunksStream = null;
+            }
+            Partition partition = nextPartition();
+            if ( partition == null )
+                return null;
+            long size = partition.table().size();
+            if ( size <= threshold )
+                return new Pass(Iter.toList(partition.table().iterator()), partition.stream());
+            // Too large for memory. Partitioning again does not divide the rows if this
+            // partitioning did not and the next one is on the same variable.
+            boolean divided = size < tableRows || joinKey.size() > 1;
+            if ( divided && depth+1 < SpillPartition.MaxDepth ) {
+                subSpill = new HashJoinSpill(joinKey, threshold, depth+1);
+                partition.table().forEach(subSpill::addTableRow);
+                partition.stream().forEach(bag->bag.forEach(subSpill::addStreamRow));
+                maxDepth = Math.max(maxDepth, depth+1);
+                continue;
+            }
+            chunks = partition.table().iterator();
+            chunksStream = partition.stream();
+        }
+    }
+
+    private List<Binding> chunk(Iterator<Binding> iter) {
+        List<Binding> x = new ArrayList<>();
+        while ( iter.hasNext() && x.size() < threshold )
+            x.add(iter.next());
+        return x;
+    }
+
+    private Partition nextPartition() {
+        while ( pass < SpillPartition.NumPartitions ) {
+            int i = pass++;
+            if ( isEmpty(tableParts.get(i)) )
+                continue;
+            List<DataBag<Binding>> stream = nonEmpty(List.of(streamParts.get(i), streamAny));
+            if ( stream.isEmpty() )
+                continue;
+            return new Partition(tableParts.get(i), stream);
+        }
+        if ( pass == SpillPartition.NumPartitions ) {
+            pass++;
+            if ( !isEmpty(tableAny) ) {
+                List<DataBag<Binding>> all = new ArrayList<>(streamParts);
+                all.add(streamAny);
+                all = nonEmpty(all);
+                if ( !all.isEmpty() )
+                    return new Partition(tableAny, all);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isEmpty(DataBag<Binding> bag) {
+        return bag.size() == 0;
+    }
+
+    private static List<DataBag<Binding>> nonEmpty(List<DataBag<Binding>> bags) {
+        return bags.stream().filter(b->!isEmpty(b)).toList();
+    }
+
+    long tableRows() {
+        return tableRows;
+    }
+
+    long streamRows() {
+        return streamRows;
+    }
+
+    /** The deepest level of partitioning used so far; 0 for one level. */
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    /** The number of bags that have been written to disk. */
+    int spilledBags() {
+        int n = 0;
+        for ( DataBag<Binding> bag : tableParts )
+            n += ( bag.size() > bagThreshold ) ? 1 : 0;
+        for ( DataBag<Binding> bag : streamParts )
+            n += ( bag.size() > bagThreshold ) ? 1 : 0;
+        n += ( tableAny.size() > bagThreshold ) ? 1 : 0;
+        n += ( streamAny.size() > bagThreshold ) ? 1 : 0;
+        return n;
+    }
+
+    void close() {
+        if ( subSpill != null )
+            subSpill.close();
+        if ( chunks != null )
+            Iter.close(chunks);
+        tableParts.forEach(DataBag::close);
+        streamParts.forEach(DataBag::close);
+        tableAny.close();
+        streamAny.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HashJoinSpill: partitions=%d table=%d stream=%d spilled bags=%d",
+                             SpillPartition.NumPartitions, tableRows, streamRows, spilledBags());
+    }
+}
@@ -68,6 +68,11 @@ public class QueryIterHashJoin extends AbstractIterHashJoin {
         super(joinKey, left, right, execCxt) ;
     }
 
+    @Override
+    protected boolean spillable() {
+        return true ;
+    }
+
     @Override
     protected Binding yieldOneResult(Binding rowCurrentProbe, Binding rowStream, Binding rowResult) {
         return rowResult ;
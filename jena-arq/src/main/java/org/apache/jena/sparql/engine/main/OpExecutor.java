@@ -37,6 +37,7 @@ import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.batch.BatchCompiler;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.iterator.*;
 import org.apache.jena.sparql.engine.join.Join;
@@ -96,12 +97,20 @@ public class OpExecutor {
     protected int level = TOP_LEVEL - 1;
     private final boolean hideBNodeVars;
     protected final StageGenerator stageGenerator;
+    // Zero for "no batch execution".
+    private final int batchSize;
 
     protected OpExecutor(ExecutionContext execCxt) {
         this.execCxt = execCxt;
         this.dispatcher = new ExecutionDispatch(this);
         this.hideBNodeVars = execCxt.getContext().isTrue(ARQ.hideNonDistiguishedVariables);
         this.stageGenerator = StageBuilder.chooseStageGenerator(execCxt.getContext());
+        // Batch execution replaces the execution of some operators so only
+        // applies to this class with the general purpose BGP matching.
+        boolean generalEngine = getClass() == OpExecutor.class
+                                && stageGenerator.getClass() == StageGeneratorGeneric.class
+                                && !hideBNodeVars;
+        this.batchSize = generalEngine ? BatchCompiler.batchSize(execCxt) : 0;
     }
 
     // Public interface
@@ -112,7 +121,9 @@ public class OpExecutor {
     // ---- The recursive step.
     protected QueryIterator exec(Op op, QueryIterator input) {
         level++;
-        QueryIterator qIter = dispatcher.exec(op, input);
+        QueryIterator qIter = ( batchSize > 0 && input instanceof QueryIterRoot && input.isJoinIdentity() && BatchCompiler.isBatchable(op) )
+            ? BatchCompiler.execute(op, input, batchSize, execCxt)
+            : dispatcher.exec(op, input);
         // Intentionally not try/finally so exceptions leave some evidence
         // around.
         level--;
@@ -20,13 +20,16 @@ package org.apache.jena.sparql.engine.main;
 
 import org.apache.jena.atlas.lib.Lib ;
 import org.apache.jena.atlas.logging.Log ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.sparql.algebra.optimize.CardinalityEstimator ;
 import org.apache.jena.sparql.core.BasicPattern ;
 import org.apache.jena.sparql.core.Substitute ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
 import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek ;
+import org.apache.jena.sparql.engine.main.solver.PatternMatchAdaptive ;
 import org.apache.jena.sparql.engine.main.solver.PatternMatchData;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib ;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderProc ;
@@ -87,6 +90,10 @@ public class StageGeneratorGeneric implements StageGenerator {
             pattern = reorderProc.reorder(pattern) ;
         }
         Explain.explain("Reorder/generic", pattern, execCxt.getContext()) ;
+        if ( execCxt.getContext().isTrue(ARQ.optAdaptiveBGP) ) {
+            CardinalityEstimator estimator = execCxt.getContext().get(ARQ.cardinalityEstimator) ;
+            return PatternMatchAdaptive.execute(execCxt.getActiveGraph(), pattern, input, estimator, execCxt) ;
+        }
         return PatternMatchData.execute(execCxt.getActiveGraph(), pattern, input, null, execCxt) ;
     }
 }
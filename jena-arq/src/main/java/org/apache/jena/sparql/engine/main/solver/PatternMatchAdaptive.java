@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.main.solver;
+
+import java.util.*;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.algebra.optimize.CardinalityEstimator;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.Abortable;
+import org.apache.jena.sparql.engine.iterator.QueryIterAbortable;
+import org.apache.jena.sparql.mgt.Explain;
+import org.apache.jena.system.G;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Adaptive execution of a basic graph pattern.
+ * <p>
+ * The triple patterns are matched in the order given, by substitution, as
+ * {@link PatternMatchData} does, while the number of probes and matches of each
+ * pattern is recorded. When a pattern has many more, or many fewer, matches than
+ * estimated, the plan changes: from then on, the next pattern for a binding is
+ * chosen with the observed counts, among the patterns that binding has not yet
+ * matched. Any order of the patterns gives the same solutions.
+ * <p>
+ * The matches of the first pattern for the first input binding are held back
+ * until there are more than {@link #ReplanThreshold} of them. If there are, and
+ * another pattern has fewer matches, the first pattern is abandoned and execution
+ * starts again with the new plan. Nothing has been passed on so no solutions are
+ * repeated.
+ * <p>
+ * A pattern that has been probed more often than it has matches on its own is
+ * switched from substitution to a hash join: its matches are read once into a
+ * table keyed on a variable that the probing bindings have bound.
+ * <p>
+ * Choices are made by which patterns a binding has already matched, assuming
+ * bindings of the input all bind the same variables.
+ */
+public class PatternMatchAdaptive {
+
+    /** Number of matches, or of probes, of a pattern before its counts are compared to the estimate. */
+    public static final long ReplanThreshold = 1000;
+
+    /** How far the observed number of matches may differ from the estimate before re-planning. */
+    public static final double ReplanFactor = 10;
+
+    /** Largest number of matches of a pattern that is read into a hash table. */
+    public static final long HashJoinLimit = 100_000;
+
+    // Positions in a triple pattern.
+    private static final int S = 1;
+    private static final int P = 2;
+    private static final int O = 4;
+
+    /**
+     * Adaptive execution of a basic graph pattern, given an iterator of bindings as input.
+     * The patterns are first matched in the order given.
+     * Estimates are taken from the {@code estimator}, or from
+     * {@link CardinalityEstimator#fixed()} if it does not know.
+     */
+    public static QueryIterator execute(Graph graph, BasicPattern pattern, QueryIterator input,
+                                        CardinalityEstimator estimator, ExecutionContext execCxt) {
+        List<Triple> triples = pattern.getList();
+        if ( triples.size() < 2 || triples.size() > Long.SIZE )
+            return PatternMatchData.execute(graph, pattern, input, null, execCxt);
+        PatternMatchAdaptive plan = new PatternMatchAdaptive(graph, triples, estimator, execCxt);
+        List<Abortable> killList = new ArrayList<>();
+        Iterator<Binding> chain = Iter.flatMap(input, plan::start);
+        chain = SolverLib.makeAbortable(chain, killList);
+        // "input" will be closed by QueryIterAbortable but is otherwise unused.
+        return new QueryIterAbortable(chain, killList, input, execCxt);
+    }
+
+    private record HashTable(Var key, Map<Node, List<Triple>> table) {}
+
+    private final Graph graph;
+    private final ExecutionContext execCxt;
+    private final Triple[] triples;
+    private final long allDone;
+    // Positions of a pattern that are variables.
+    private final int[] varPositions;
+    // No triple terms with variables.
+    private final boolean[] plain;
+    private final double[] cardinality;
+    // Counts, by pattern and by the positions of the pattern that are bound when probed.
+    private final long[][] probes;
+    private final long[][] matches;
+    private final boolean[][] replanned;
+    private final HashTable[] hashTables;
+    private final long[] nextHashCheck;
+
+    private boolean started = false;
+    private boolean adaptive = false;
+    // After re-planning: the next pattern, by the patterns already matched.
+    private final Map<Long, Integer> choices = new HashMap<>();
+
+    private PatternMatchAdaptive(Graph graph, List<Triple> triples, CardinalityEstimator estimator, ExecutionContext execCxt) {
+        this.graph = graph;
+        this.execCxt = execCxt;
+        this.triples = triples.toArray(Triple[]::new);
+        int n = this.triples.length;
+        this.allDone = ( n == Long.SIZE ) ? -1L : ( 1L << n ) - 1;
+        this.varPositions = new int[n];
+        this.plain = new boolean[n];
+        this.cardinality = new double[n];
+        this.probes = new long[n][8];
+        this.matches = new long[n][8];
+        this.replanned = new boolean[n][8];
+        this.hashTables = new HashTable[n];
+        this.nextHashCheck = new long[n];
+        CardinalityEstimator fixed = CardinalityEstimator.fixed();
+        for ( int i = 0 ; i < n ; i++ ) {
+            Triple t = this.triples[i];
+            varPositions[i] = ( Var.isVar(t.getSubject()) ? S : 0 )
+                            | ( Var.isVar(t.getPredicate()) ? P : 0 )
+                            | ( Var.isVar(t.getObject()) ? O : 0 );
+            plain[i] = !SolverLib.tripleHasEmbTripleWithVars(t);
+            double x = ( estimator == null ) ? -1 : estimator.cardinality(null, t);
+            cardinality[i] = ( x >= 0 ) ? x : fixed.cardinality(null, t);
+            nextHashCheck[i] = ReplanThreshold;
+        }
+    }
+
+    private Iterator<Binding> start(Binding binding) {
+        if ( started )
+            return step(binding, 0L);
+        started = true;
+        int first = next(binding, 0L);
+        Iterator<Binding> iter = match(binding, first);
+        List<Binding> held = new ArrayList<>();
+        while ( held.size() <= ReplanThreshold && iter.hasNext() )
+            held.add(iter.next());
+        if ( held.size() > ReplanThreshold && restart(binding, first) ) {
+            Iter.close(iter);
+            return step(binding, 0L);
+        }
+        long done = 1L << first;
+        return Iter.flatMap(Iter.concat(held.iterator(), iter), b -> step(b, done));
+    }
+
+    /**
+     * The first pattern has many matches. Count the matches of the other patterns;
+     * return true if the plan now starts with a different pattern.
+     */
+    private boolean restart(Binding binding, int first) {
+        boolean fewer = false;
+        for ( int i = 0 ; i < triples.length ; i++ ) {
+            if ( i == first )
+                continue;
+            int pos = positions(i, binding);
+            long count = count(binding, i, ReplanThreshold);
+            probes[i][pos]++;
+            matches[i][pos] += count;
+            if ( count < ReplanThreshold )
+                fewer = true;
+        }
+        if ( !fewer )
+            return false;
+        replan(first, positions(first, binding));
+        return next(binding, 0L) != first;
+    }
+
+    private Iterator<Binding> step(Binding binding, long done) {
+        if ( done == allDone )
+            return Iter.singletonIterator(binding);
+        int i = next(binding, done);
+        long done2 = done | ( 1L << i );
+        Iterator<Binding> iter = match(binding, i);
+        if ( done2 == allDone )
+            return iter;
+        return Iter.flatMap(iter, b -> step(b, done2));
+    }
+
+    /** Choose the next pattern. */
+    private int next(Binding binding, long done) {
+        if ( !adaptive )
+            // As given.
+            return Long.numberOfTrailingZeros(~done);
+        Integer x = choices.get(done);
+        if ( x != null )
+            return x;
+        // Prefer patterns with a bound variable, then the least cost.
+        int best = -1;
+        double bestCost = 0;
+        boolean bestConnected = false;
+        for ( int i = 0 ; i < triples.length ; i++ ) {
+            if ( ( done & ( 1L << i ) ) != 0 )
+                continue;
+            int pos = positions(i, binding);
+            boolean connected = ( pos & varPositions[i] ) != 0;
+            double cost = cost(i, pos);
+            if ( best < 0 || ( connected && !bestConnected ) || ( connected == bestConnected && cost < bestCost ) ) {
+                best = i;
+                bestCost = cost;
+                bestConnected = connected;
+            }
+        }
+        choices.put(done, best);
+        return best;
+    }
+
+    /** Matches per probe: as observed, else as estimated. */
+    private double cost(int i, int pos) {
+        if ( probes[i][pos] > 0 )
+            return (double)matches[i][pos] / probes[i][pos];
+        return estimate(i, pos);
+    }
+
+    private double estimate(int i, int pos) {
+        int vars = varPositions[i];
+        int bound = vars & pos;
+        if ( vars != 0 && bound == vars )
+            return 1;
+        double x = cardinality[i];
+        if ( ( bound & S ) != 0 )
+            x = Math.min(x, 10);
+        if ( ( bound & O ) != 0 )
+            x = Math.min(x, 100);
+        return x;
+    }
+
+    private void replan(int i, int pos) {
+        if ( replanned[i][pos] )
+            return;
+        replanned[i][pos] = true;
+        adaptive = true;
+        choices.clear();
+        Explain.explain(execCxt.getContext(), "Adaptive: re-plan after %s: probes=%d matches=%d",
+                        triples[i], probes[i][pos], matches[i][pos]);
+    }
+
+    /** Match pattern i for a binding, recording the counts. */
+    private Iterator<Binding> match(Binding binding, int i) {
+        int pos = positions(i, binding);
+        long n = ++probes[i][pos];
+        if ( n % ReplanThreshold == 0 && matches[i][pos] * ReplanFactor < estimate(i, pos) * n )
+            replan(i, pos);
+        if ( hashTables[i] == null && plain[i] && n >= nextHashCheck[i] )
+            hashTables[i] = hashTable(i, pos);
+        HashTable hashTable = hashTables[i];
+        Iterator<Binding> iter = ( hashTable != null && binding.contains(hashTable.key) )
+            ? probe(hashTable, binding, i)
+            : access(binding, i);
+        return Iter.map(iter, b -> {
+            long m = ++matches[i][pos];
+            if ( m % ReplanThreshold == 0 && m > ReplanFactor * estimate(i, pos) * probes[i][pos] )
+                replan(i, pos);
+            return b;
+        });
+    }
+
+    private Iterator<Binding> access(Binding binding, int i) {
+        if ( plain[i] )
+            return StageMatchTriple.accessTriple(binding, graph, triples[i], null, execCxt);
+        return SolverRX3.match(graph, binding, triples[i]);
+    }
+
+    /** Count the matches of pattern i, up to the limit. */
+    private long count(Binding binding, int i, long limit) {
+        Iterator<Binding> iter = access(binding, i);
+        try {
+            long count = 0;
+            while ( count < limit && iter.hasNext() ) {
+                iter.next();
+                count++;
+            }
+            return count;
+        } finally { Iter.close(iter); }
+    }
+
+    private Iterator<Binding> probe(HashTable hashTable, Binding binding, int i) {
+        List<Triple> x = hashTable.table.get(binding.get(hashTable.key));
+        if ( x == null )
+            return Iter.nullIterator();
+        return Iter.removeNulls(Iter.map(x.iterator(), t -> SolverRX3.matchTriple(binding, t, triples[i])));
+    }
+
+    /**
+     * Read the matches of pattern i into a hash table if it has fewer matches
+     * than probes so far, else return null.
+     */
+    private HashTable hashTable(int i, int pos) {
+        Triple t = triples[i];
+        int keys = varPositions[i] & pos;
+        int position = ( keys & S ) != 0 ? S : ( keys & O ) != 0 ? O : ( keys & P ) != 0 ? P : 0;
+        if ( position == 0 ) {
+            nextHashCheck[i] = Long.MAX_VALUE;
+            return null;
+        }
+        nextHashCheck[i] = 2 * probes[i][pos];
+        long limit = Math.min(HashJoinLimit, probes[i][pos]);
+        Map<Node, List<Triple>> table = new HashMap<>();
+        ExtendedIterator<Triple> iter = G.find(graph, concrete(t.getSubject()), concrete(t.getPredicate()), concrete(t.getObject()));
+        try {
+            long count = 0;
+            while ( iter.hasNext() ) {
+                if ( ++count > limit ) {
+                    if ( limit == HashJoinLimit )
+                        nextHashCheck[i] = Long.MAX_VALUE;
+                    return null;
+                }
+                Triple x = iter.next();
+                table.computeIfAbsent(node(x, position), k -> new ArrayList<>()).add(x);
+            }
+        } finally { iter.close(); }
+        Explain.explain(execCxt.getContext(), "Adaptive: hash join for %s", t);
+        return new HashTable(Var.alloc(node(t, position)), table);
+    }
+
+    /** The positions of pattern i that are concrete or bound by the binding. */
+    private int positions(int i, Binding binding) {
+        Triple t = triples[i];
+        return ( isBound(t.getSubject(), binding) ? S : 0 )
+             | ( isBound(t.getPredicate(), binding) ? P : 0 )
+             | ( isBound(t.getObject(), binding) ? O : 0 );
+    }
+
+    private static boolean isBound(Node node, Binding binding) {
+        if ( Var.isVar(node) )
+            return binding.contains(Var.alloc(node));
+        return node.isConcrete();
+    }
+
+    private static Node concrete(Node node) {
+        return node.isConcrete() ? node : Node.ANY;
+    }
+
+    private static Node node(Triple triple, int position) {
+        switch (position) {
+            case S: return triple.getSubject();
+            case P: return triple.getPredicate();
+            default: return triple.getObject();
+        }
+    }
+}
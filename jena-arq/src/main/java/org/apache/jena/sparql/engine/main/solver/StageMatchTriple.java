@@ -52,7 +52,8 @@ public class StageMatchTriple {
         });
     }
 
-    private static Iterator<Binding> accessTriple(Binding binding, Graph graph, Triple pattern, Predicate<Triple> filter, ExecutionContext execCxt) {
+    /** Match a triple pattern, without triple terms containing variables, for one binding. */
+    public static Iterator<Binding> accessTriple(Binding binding, Graph graph, Triple pattern, Predicate<Triple> filter, ExecutionContext execCxt) {
         Node s = substituteFlat(pattern.getSubject(), binding) ;
         Node p = substituteFlat(pattern.getPredicate(), binding) ;
         Node o = substituteFlat(pattern.getObject(), binding) ;
@@ -28,6 +28,7 @@ import java.util.function.Predicate;
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.graph.Graph ;
 import org.apache.jena.graph.Node ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.sparql.ARQInternalErrorException ;
 import org.apache.jena.sparql.algebra.Op ;
 import org.apache.jena.sparql.algebra.op.OpBGP ;
@@ -43,6 +44,8 @@ import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.binding.BindingFactory ;
 import org.apache.jena.sparql.engine.iterator.*;
 import org.apache.jena.sparql.mgt.Explain ;
+import org.apache.jena.sparql.path.eval.PathClosure ;
+import org.apache.jena.sparql.path.eval.PathClosureIndex ;
 import org.apache.jena.sparql.path.eval.PathEval ;
 import org.apache.jena.sparql.pfunction.PropertyFunctionFactory ;
 import org.apache.jena.sparql.pfunction.PropertyFunctionRegistry ;
@@ -134,10 +137,10 @@ public class PathLib
         // One variable, one constant
         if ( Var.isVar(s) ) {
             // Var subject, concrete object - do backwards.
-            iter = PathEval.evalReverse(graph, o, path, execCxt.getContext());
+            iter = evalReverse(graph, o, path, execCxt);
             endNode = s;
         } else {
-            iter = PathEval.eval(graph, s, path, execCxt.getContext());
+            iter = eval(graph, s, path, execCxt);
             endNode = o;
         }
         return evalGroundedOneEnd(binding, iter, endNode, execCxt);
@@ -162,7 +165,13 @@ public class PathLib
     private static QueryIterator evalGroundedPath(Binding binding,
                                                   Graph graph, Node subject, Path path, Node object,
                                                   ExecutionContext execCxt) {
-        Iterator<Node> iter = PathEval.eval(graph, subject, path, execCxt.getContext()) ;
+        // Evaluation uses sameValueAs, which is equals for IRIs and blank nodes.
+        if ( ( subject.isURI() || subject.isBlank() ) && ( object.isURI() || object.isBlank() ) ) {
+            int x = connected(graph, subject, path, object, execCxt) ;
+            if ( x >= 0 )
+                return new QueryIterYieldN(x, binding, execCxt) ;
+        }
+        Iterator<Node> iter = eval(graph, subject, path, execCxt) ;
         // Now count the number of matches.
 
         int count = 0 ;
@@ -181,7 +190,7 @@ public class PathLib
         Iterator<Node> iter = ungroundedStartingSet(graph, path, execCxt) ;
         QueryIterator input = new QueryIterExtendByVar(binding, sVar, iter, execCxt);
         Function<Binding, QueryIterator> mapper = b -> {
-            Iterator<Node> pathIter = PathEval.eval(graph, b.get(sVar), path, execCxt.getContext());
+            Iterator<Node> pathIter = eval(graph, b.get(sVar), path, execCxt);
             QueryIterator qIter = evalGroundedOneEnd(b, pathIter, oVar, execCxt);
             return qIter;
         };
@@ -278,6 +287,56 @@ public class PathLib
         return null;
     }
 
+    private static Iterator<Node> eval(Graph graph, Node node, Path path, ExecutionContext execCxt) {
+        if ( execCxt.getContext().isTrue(ARQ.optPathClosure) )
+            return PathEval.eval(graph, node, path, PathClosure.get(execCxt), execCxt.getContext()) ;
+        return PathEval.eval(graph, node, path, execCxt.getContext()) ;
+    }
+
+    private static Iterator<Node> evalReverse(Graph graph, Node node, Path path, ExecutionContext execCxt) {
+        if ( execCxt.getContext().isTrue(ARQ.optPathClosure) )
+            return PathEval.evalReverse(graph, node, path, PathClosure.get(execCxt), execCxt.getContext()) ;
+        return PathEval.evalReverse(graph, node, path, execCxt.getContext()) ;
+    }
+
+    /**
+     * Evaluate {@code path*} or {@code path+} of a single property, with both ends
+     * known, by a lookup in the {@link PathClosureIndex} of the context or by walking
+     * from both ends. Returns 1 or 0, because the closure has no duplicates, or -1 if
+     * this does not apply.
+     */
+    private static int connected(Graph graph, Node subject, Path path, Node object, ExecutionContext execCxt) {
+        Context context = execCxt.getContext() ;
+        boolean useIndex = context.isDefined(ARQ.pathClosureIndex) ;
+        if ( ! useIndex && ! context.isTrue(ARQ.optPathClosure) )
+            return -1 ;
+        boolean zero ;
+        Path subPath ;
+        if ( path instanceof P_ZeroOrMore1 pZeroOrMore ) {
+            zero = true ;
+            subPath = pZeroOrMore.getSubPath() ;
+        } else if ( path instanceof P_OneOrMore1 pOneOrMore ) {
+            zero = false ;
+            subPath = pOneOrMore.getSubPath() ;
+        } else
+            return -1 ;
+        PathClosure.Step step = PathClosure.step(subPath, context) ;
+        if ( step == null )
+            return -1 ;
+        PathClosureIndex index = useIndex ? PathClosureIndex.get(context, graph, step.property()) : null ;
+        if ( index != null ) {
+            if ( zero && subject.equals(object) )
+                return 1 ;
+            boolean b = step.forward()
+                ? index.connected(subject, step.property(), object)
+                : index.connected(object, step.property(), subject) ;
+            return b ? 1 : 0 ;
+        }
+        if ( ! context.isTrue(ARQ.optPathClosure) )
+            return -1 ;
+        return PathClosure.get(execCxt).connected(graph, subject, step, object, zero) ? 1 : 0 ;
+    }
+
     private static boolean isPropertyFunction(Node node, Context context) {
         if ( ! node.isURI() )
             return false ;
@@ -287,7 +346,10 @@ public class PathLib
     private static int existsPath(Graph graph, Node subject, Path path, final Node object, ExecutionContext execCxt) {
         if ( ! subject.isConcrete() || !object.isConcrete() )
             throw new ARQInternalErrorException("Non concrete node for existsPath evaluation") ;
-        Iterator<Node> iter = PathEval.eval(graph, subject, path, execCxt.getContext()) ;
+        int c = connected(graph, subject, path, object, execCxt) ;
+        if ( c >= 0 )
+            return c ;
+        Iterator<Node> iter = eval(graph, subject, path, execCxt) ;
         Predicate<Node> filter = node -> Objects.equals(node,  object);
         // See if we got to the node we're interested in finishing at.
         iter = Iter.filter(iter, filter) ;
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.path.eval;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.ARQConstants;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.path.P_Inverse;
+import org.apache.jena.sparql.path.P_Link;
+import org.apache.jena.sparql.path.P_ReverseLink;
+import org.apache.jena.sparql.path.Path;
+import org.apache.jena.sparql.pfunction.PropertyFunctionRegistry;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * The closure, {@code p*} and {@code p+}, of a single property step, shared by
+ * the path evaluations of one query execution.
+ * <p>
+ * The nodes reachable from a start node are kept, so a closure needed for many
+ * bindings, or for many start nodes in one hierarchy, is calculated once; the
+ * closure of a node already calculated is used as a whole when it is reached
+ * from another node. The links of each node are kept as well. When the frontier
+ * of the breadth-first walk is large, all the links of the property are read with one
+ * {@code find} instead of one {@code find} per node.
+ * <p>
+ * When both ends are known, {@link #connected} walks from both ends, each time
+ * extending the side with the smaller frontier, and stops when the two sides meet.
+ * <p>
+ * The data must not change during the execution.
+ */
+public class PathClosure {
+
+    /** Largest number of nodes kept in reachable sets, over all start nodes. */
+    public static final long CacheLimit = 1_000_000;
+
+    /** Size of frontier at which all the links of a property are read with one find. */
+    public static final int BatchThreshold = 64;
+
+    /** Largest number of links of a property that are read with one find. */
+    public static final long LinksLimit = 1_000_000;
+
+    private static final Symbol symPathClosure = Symbol.create(ARQConstants.systemVarNS+"pathClosure");
+
+    /** The {@code PathClosure} for a query execution. */
+    public static PathClosure get(ExecutionContext execCxt) {
+        return execCxt.getExecutionState(symPathClosure, PathClosure::new);
+    }
+
+    /** A step along, or against, a property. */
+    public record Step(Node property, boolean forward) {
+        public Step reverse() { return new Step(property, !forward); }
+    }
+
+    /**
+     * The step of a path that is a property, or the inverse of a property,
+     * and is not a property function; otherwise null.
+     */
+    public static Step step(Path path, Context context) {
+        boolean forward = true;
+        while ( path instanceof P_Inverse pInverse ) {
+            path = pInverse.getSubPath();
+            forward = !forward;
+        }
+        Node property;
+        if ( path instanceof P_Link pLink )
+            property = pLink.getNode();
+        else if ( path instanceof P_ReverseLink pReverseLink ) {
+            property = pReverseLink.getNode();
+            forward = !forward;
+        } else
+            return null;
+        if ( !property.isURI() || isPropertyFunction(property, context) )
+            return null;
+        return new Step(property, forward);
+    }
+
+    private static boolean isPropertyFunction(Node property, Context context) {
+        if ( context != null && !context.isTrueOrUndef(ARQ.propertyFunctions) )
+            return false;
+        PropertyFunctionRegistry registry = PropertyFunctionRegistry.chooseRegistry(context);
+        return registry != null && registry.isRegistered(property.getURI());
+    }
+
+    private record Key(Graph graph, Step step) {}
+
+    // The links and closures of one step in one graph.
+    private static class Links {
+        private final Graph graph;
+        private final Step step;
+        private final Map<Node, List<Node>> links = new ConcurrentHashMap<>();
+        private volatile boolean allLinks = false;
+        private volatile boolean tooMany = false;
+        private final Map<Node, Set<Node>> zeroOrMore = new ConcurrentHashMap<>();
+        private final Map<Node, Set<Node>> oneOrMore = new ConcurrentHashMap<>();
+
+        Links(Graph graph, Step step) {
+            this.graph = graph;
+            this.step = step;
+        }
+
+        List<Node> next(Node node) {
+            List<Node> x = links.get(node);
+            if ( x != null || allLinks )
+                return ( x == null ) ? List.of() : x;
+            x = new ArrayList<>();
+            ExtendedIterator<Triple> iter = step.forward
+                ? graph.find(node, step.property, Node.ANY)
+                : graph.find(Node.ANY, step.property, node);
+            try {
+                while ( iter.hasNext() ) {
+                    Triple t = iter.next();
+                    x.add(step.forward ? t.getObject() : t.getSubject());
+                }
+            } finally { iter.close(); }
+            links.put(node, x);
+            return x;
+        }
+
+        // Read all the links of the property, if there are not too many.
+        void prepare(Collection<Node> frontier) {
+            if ( allLinks || tooMany || frontier.size() < BatchThreshold )
+                return;
+            Map<Node, List<Node>> all = new HashMap<>();
+            ExtendedIterator<Triple> iter = graph.find(Node.ANY, step.property, Node.ANY);
+            try {
+                long count = 0;
+                while ( iter.hasNext() ) {
+                    if ( ++count > LinksLimit ) {
+                        tooMany = true;
+                        return;
+                    }
+                    Triple t = iter.next();
+                    Node from = step.forward ? t.getSubject() : t.getObject();
+                    Node to = step.forward ? t.getObject() : t.getSubject();
+                    all.computeIfAbsent(from, k -> new ArrayList<>()).add(to);
+                }
+            } finally { iter.close(); }
+            links.putAll(all);
+            allLinks = true;
+        }
+    }
+
+    private final Map<Key, Links> steps = new ConcurrentHashMap<>();
+    private final AtomicLong cached = new AtomicLong(0);
+
+    public PathClosure() {}
+
+    private Links links(Graph graph, Step step) {
+        return steps.computeIfAbsent(new Key(graph, step), k -> new Links(graph, step));
+    }
+
+    /**
+     * The nodes reachable from {@code start} by the step repeated: {@code p*} if
+     * {@code zero} is true, which includes the start node, else {@code p+}.
+     * The set must not be modified.
+     */
+    public Set<Node> reachable(Graph graph, Node start, Step step, boolean zero) {
+        Links links = links(graph, step);
+        Map<Node, Set<Node>> cache = zero ? links.zeroOrMore : links.oneOrMore;
+        Set<Node> result = cache.get(start);
+        if ( result != null )
+            return result;
+        result = new LinkedHashSet<>();
+        List<Node> frontier = new ArrayList<>();
+        if ( zero ) {
+            result.add(start);
+            frontier.add(start);
+        } else {
+            for ( Node n : links.next(start) ) {
+                if ( result.add(n) )
+                    frontier.add(n);
+            }
+        }
+        while ( !frontier.isEmpty() ) {
+            links.prepare(frontier);
+            List<Node> frontier2 = new ArrayList<>();
+            for ( Node n : frontier ) {
+                Set<Node> closure = links.zeroOrMore.get(n);
+                if ( closure != null ) {
+                    // Already known, and closed.
+                    result.addAll(closure);
+                    continue;
+                }
+                for ( Node n2 : links.next(n) ) {
+                    if ( result.add(n2) )
+                        frontier2.add(n2);
+                }
+            }
+            frontier = frontier2;
+        }
+        result = Collections.unmodifiableSet(result);
+        if ( cached.addAndGet(result.size()) <= CacheLimit )
+            cache.put(start, result);
+        return result;
+    }
+
+    /**
+     * Whether {@code end} is reachable from {@code start} by the step repeated:
+     * {@code p*} if {@code zero} is true, else {@code p+}.
+     */
+    public boolean connected(Graph graph, Node start, Step step, Node end, boolean zero) {
+        if ( zero && start.equals(end) )
+            return true;
+        Links forwards = links(graph, step);
+        Links backwards = links(graph, step.reverse());
+        Set<Node> x = ( zero ? forwards.zeroOrMore : forwards.oneOrMore ).get(start);
+        if ( x != null )
+            return x.contains(end);
+
+        Set<Node> seenForwards = new HashSet<>();
+        Set<Node> seenBackwards = new HashSet<>();
+        List<Node> frontierForwards = new ArrayList<>();
+        List<Node> frontierBackwards = new ArrayList<>();
+        seenBackwards.add(end);
+        frontierBackwards.add(end);
+        if ( zero ) {
+            seenForwards.add(start);
+            frontierForwards.add(start);
+        } else {
+            for ( Node n : forwards.next(start) ) {
+                if ( n.equals(end) )
+                    return true;
+                if ( seenForwards.add(n) )
+                    frontierForwards.add(n);
+            }
+        }
+        while ( !frontierForwards.isEmpty() && !frontierBackwards.isEmpty() ) {
+            if ( frontierForwards.size() <= frontierBackwards.size() ) {
+                frontierForwards = expand(forwards, frontierForwards, seenForwards, seenBackwards);
+                if ( frontierForwards == null )
+                    return true;
+            } else {
+                frontierBackwards = expand(backwards, frontierBackwards, seenBackwards, seenForwards);
+                if ( frontierBackwards == null )
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    // One step of the walk from one end. Returns null if the other side has been met.
+    private static List<Node> expand(Links links, List<Node> frontier, Set<Node> seen, Set<Node> other) {
+        links.prepare(frontier);
+        List<Node> frontier2 = new ArrayList<>();
+        for ( Node n : frontier ) {
+            for ( Node n2 : links.next(n) ) {
+                if ( other.contains(n2) )
+                    return null;
+                if ( seen.add(n2) )
+                    frontier2.add(n2);
+            }
+        }
+        return frontier2;
+    }
+}
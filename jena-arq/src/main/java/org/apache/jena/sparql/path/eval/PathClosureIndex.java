@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.path.eval;
+
+import java.util.Iterator;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * A stored index of the transitive closure, {@code p+}, of some properties of a graph.
+ * <p>
+ * Path evaluation uses the index in the context, under {@link ARQ#pathClosureIndex},
+ * for {@code p*} and {@code p+} of a single property, or its inverse, when the index
+ * {@linkplain #covers covers} the property in the graph being evaluated.
+ */
+public interface PathClosureIndex {
+
+    /** Whether the index has the closure of the property in the graph. */
+    public boolean covers(Graph graph, Node property);
+
+    /**
+     * The nodes reachable from {@code start} by one or more steps along
+     * ({@code forward}), or against, the property. There are no duplicates.
+     */
+    public Iterator<Node> oneOrMore(Node start, Node property, boolean forward);
+
+    /** Whether {@code end} is reachable from {@code start} by one or more steps along the property. */
+    public boolean connected(Node start, Node property, Node end);
+
+    /** The index in the context that covers the property in the graph, or null. */
+    public static PathClosureIndex get(Context context, Graph graph, Node property) {
+        if ( context == null )
+            return null;
+        PathClosureIndex index = context.get(ARQ.pathClosureIndex);
+        if ( index == null || !index.covers(graph, property) )
+            return null;
+        return index;
+    }
+}
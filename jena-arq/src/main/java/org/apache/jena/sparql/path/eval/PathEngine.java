@@ -79,6 +79,32 @@ abstract public class PathEngine
         PathEval.eval$(graph, node, path, this, output) ;
     }
 
+    /**
+     * Evaluate {@code pathStep*} ({@code zero}) or {@code pathStep+}, where the step is a
+     * single property, using the {@link PathClosureIndex} of the context.
+     * Returns false, having done nothing, if there is no index for the property.
+     */
+    protected final boolean evalClosureIndex(Path pathStep, Node node, boolean zero, Collection<Node> output) {
+        if ( context == null || !context.isDefined(ARQ.pathClosureIndex) )
+            return false ;
+        PathClosure.Step step = PathClosure.step(pathStep, context) ;
+        if ( step == null )
+            return false ;
+        PathClosureIndex index = PathClosureIndex.get(context, graph, step.property()) ;
+        if ( index == null )
+            return false ;
+        if ( zero )
+            output.add(node) ;
+        Iterator<Node> iter = index.oneOrMore(node, step.property(), step.forward() == direction()) ;
+        while ( iter.hasNext() ) {
+            Node n = iter.next() ;
+            // p* has the start node once.
+            if ( !zero || !n.equals(node) )
+                output.add(n) ;
+        }
+        return true ;
+    }
+
     protected abstract void flipDirection() ;
 
     protected abstract boolean direction() ;
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.path.eval;
+
+import java.util.Collection;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.path.Path;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * PathEngine, SPARQL semantics, where {@code p*} and {@code p+} of a single
+ * property step use the reachable sets of a {@link PathClosure}.
+ */
+public class PathEngineClosure extends PathEngineSPARQL
+{
+    private final Graph graph ;
+    private final PathClosure closure ;
+    private final Context context ;
+
+    /* package */PathEngineClosure(Graph graph, boolean forward, PathClosure closure, Context context) {
+        super(graph, forward, context) ;
+        this.graph = graph ;
+        this.closure = closure ;
+        this.context = context ;
+    }
+
+    @Override
+    protected void doZeroOrMore(Path pathStep, Node node, Collection<Node> output) {
+        PathClosure.Step step = step(pathStep) ;
+        if ( step == null ) {
+            super.doZeroOrMore(pathStep, node, output) ;
+            return ;
+        }
+        // A stored index is better than calculating the closure.
+        if ( evalClosureIndex(pathStep, node, true, output) )
+            return ;
+        output.addAll(closure.reachable(graph, node, step, true)) ;
+    }
+
+    @Override
+    protected void doOneOrMore(Path pathStep, Node node, Collection<Node> output) {
+        PathClosure.Step step = step(pathStep) ;
+        if ( step == null ) {
+            super.doOneOrMore(pathStep, node, output) ;
+            return ;
+        }
+        if ( evalClosureIndex(pathStep, node, false, output) )
+            return ;
+        output.addAll(closure.reachable(graph, node, step, false)) ;
+    }
+
+    // The step, taking the direction of evaluation into account.
+    private PathClosure.Step step(Path pathStep) {
+        PathClosure.Step step = PathClosure.step(pathStep, context) ;
+        if ( step == null || direction() )
+            return step ;
+        return step.reverse() ;
+    }
+}
@@ -98,12 +98,16 @@ public class PathEngineSPARQL extends PathEngine
     
     @Override
     protected void doZeroOrMore(Path pathStep, Node node, Collection<Node> output) {
+        if ( evalClosureIndex(pathStep, node, true, output) )
+            return ;
         Set<Node> visited = visitedAcc() ;
         ALP_1(0, -1, node, pathStep, visited, output) ;
     }
 
     @Override
     protected void doOneOrMore(Path pathStep, Node node, Collection<Node> output) {
+        if ( evalClosureIndex(pathStep, node, false, output) )
+            return ;
         // Track visited.
         Set<Node> visited = visitedAcc() ;
         // Do one step without including.
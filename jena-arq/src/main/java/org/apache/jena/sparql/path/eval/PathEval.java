@@ -42,6 +42,16 @@ public class PathEval
         return eval$(graph, node, path, new PathEngineSPARQL(graph, false, context)) ;
     }
 
+    /** Evaluate a path : SPARQL semantics, with the closures of properties shared by a {@link PathClosure} */
+    static public Iterator<Node> eval(Graph graph, Node node, Path path, PathClosure closure, Context context) {
+        return eval$(graph, node, path, new PathEngineClosure(graph, true, closure, context)) ;
+    }
+
+    /** Evaluate a path : SPARQL semantics, with the closures of properties shared by a {@link PathClosure} */
+    static public Iterator<Node> evalReverse(Graph graph, Node node, Path path, PathClosure closure, Context context) {
+        return eval$(graph, node, path, new PathEngineClosure(graph, false, closure, context)) ;
+    }
+
     /** Evaluate a path : counting semantics */
     static public Iterator<Node> evalN(Graph graph, Node node, Path path) {
         return eval$(graph, node, path, new PathEngineN(graph, true)) ;
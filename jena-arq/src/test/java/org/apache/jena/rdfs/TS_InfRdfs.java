@@ -45,6 +45,8 @@ import org.junit.runners.Suite;
 
     // DatasetGraph API usage.
     , TestDatasetGraphRDFS.class
+    // Stored inferences, maintained on update.
+    , TestDatasetGraphRDFSMaterialized.class
 
     // DatasetGraphRDFS and SPARQL.
     , TestInfSPARQL.class
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.rdfs;
+
+import static org.apache.jena.graph.Node.ANY;
+import static org.apache.jena.rdfs.LibTestRDFS.node;
+import static org.apache.jena.rdfs.engine.ConstRDFS.rdfType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.StrUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link DatasetGraphRDFSMaterialized}.
+ * The reference is {@link DatasetGraphRDFS} over a copy of the same data.
+ */
+public class TestDatasetGraphRDFSMaterialized {
+
+    private static final Graph schema = SSE.parseGraph(StrUtils.strjoinNL
+        ("(graph"
+        ,"  (:A rdfs:subClassOf :B)"
+        ,"  (:B rdfs:subClassOf :C)"
+        ,"  (:p rdfs:subPropertyOf :q)"
+        ,"  (:q rdfs:domain :D)"
+        ,"  (:q rdfs:range :R)"
+        ,")"));
+
+    private static final String data = StrUtils.strjoinNL
+        ("(dataset"
+        ,"   (_ :z rdf:type :A)"
+        ,"   (:g :a rdf:type :A)"
+        ,"   (:g :a :p :b)"
+        ,")");
+
+    private DatasetGraphRDFSMaterialized dsg;
+    private DatasetGraph reference;
+
+    @Before public void before() {
+        SetupRDFS setup = RDFSFactory.setupRDFS(schema);
+        DatasetGraph base = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(base, ()->SSE.parseDatasetGraph(data).find().forEachRemaining(base::add));
+        dsg = (DatasetGraphRDFSMaterialized)RDFSFactory.datasetRDFSMaterialized(base, setup);
+        reference = RDFSFactory.datasetRDFS(SSE.parseDatasetGraph(data), setup);
+    }
+
+    @Test public void materialized_initial() {
+        assertSame();
+        Txn.executeRead(dsg, ()->{
+            assertTrue(dsg.contains(node("g"), node("a"), rdfType, node("C")));
+            // Inferred, not asserted.
+            assertTrue(dsg.getInferred().contains(node("g"), node("a"), node("q"), node("b")));
+            assertFalse(dsg.getWrapped().contains(node("g"), node("a"), node("q"), node("b")));
+        });
+    }
+
+    @Test public void materialized_add() {
+        update(Quad.create(node("g"), node("x"), node("q"), node("y")), true);
+        update(Quad.create(Quad.defaultGraphIRI, node("y"), rdfType, node("B")), true);
+        assertSame();
+        Txn.executeRead(dsg, ()->{
+            assertTrue(dsg.contains(node("g"), node("x"), rdfType, node("D")));
+            assertTrue(dsg.contains(node("g"), node("y"), rdfType, node("R")));
+            assertFalse(dsg.contains(node("g"), node("y"), rdfType, node("C")));
+            assertTrue(dsg.contains(Quad.defaultGraphIRI, node("y"), rdfType, node("C")));
+        });
+    }
+
+    @Test public void materialized_add_inferred() {
+        // Asserting an inferred triple moves it from the inferred store.
+        Quad quad = Quad.create(node("g"), node("a"), rdfType, node("B"));
+        update(quad, true);
+        assertSame();
+        Txn.executeRead(dsg, ()->assertFalse(dsg.getInferred().contains(quad)));
+        // Removing the assertion leaves it as inferred.
+        update(quad, false);
+        assertSame();
+        Txn.executeRead(dsg, ()->assertTrue(dsg.contains(quad)));
+    }
+
+    @Test public void materialized_delete_supported() {
+        // Two supports for ":a rdf:type :D".
+        update(Quad.create(node("g"), node("a"), node("q"), node("c")), true);
+        update(Quad.create(node("g"), node("a"), node("q"), node("d")), true);
+        update(Quad.create(node("g"), node("a"), node("q"), node("c")), false);
+        assertSame();
+        Txn.executeRead(dsg, ()->{
+            assertTrue(dsg.contains(node("g"), node("a"), rdfType, node("D")));
+            assertFalse(dsg.contains(node("g"), node("c"), rdfType, node("R")));
+            assertTrue(dsg.contains(node("g"), node("d"), rdfType, node("R")));
+        });
+        update(Quad.create(node("g"), node("a"), node("q"), node("d")), false);
+        assertSame();
+        Txn.executeRead(dsg, ()->assertFalse(dsg.contains(node("g"), node("a"), rdfType, node("D"))));
+        // Removing the data triple removes its subproperty inference.
+        update(Quad.create(node("g"), node("a"), node("p"), node("b")), false);
+        assertSame();
+        Txn.executeRead(dsg, ()->assertFalse(dsg.contains(node("g"), node("a"), node("q"), node("b"))));
+    }
+
+    @Test public void materialized_delete_all() {
+        Txn.executeWrite(dsg, ()->dsg.deleteAny(node("g"), ANY, ANY, ANY));
+        Txn.executeWrite(reference, ()->reference.deleteAny(node("g"), ANY, ANY, ANY));
+        assertSame();
+        Txn.executeRead(dsg, ()->assertEquals(0, Iter.count(dsg.getInferred().find(node("g"), ANY, ANY, ANY))));
+    }
+
+    @Test public void materialized_abort() {
+        dsg.begin(TxnType.WRITE);
+        dsg.add(node("g"), node("x"), node("p"), node("y"));
+        dsg.delete(node("g"), node("a"), rdfType, node("A"));
+        dsg.abort();
+        dsg.end();
+        assertSame();
+    }
+
+    @Test public void materialized_union() {
+        // Inferred in one graph, asserted in another.
+        update(Quad.create(Quad.defaultGraphIRI, node("a"), rdfType, node("B")), true);
+        Txn.executeRead(dsg, ()->{
+            long count = Iter.count(dsg.find(Quad.unionGraph, node("a"), rdfType, node("B")));
+            assertEquals(1, count);
+        });
+    }
+
+    @Test public void materialized_sparql() {
+        String qs = "PREFIX : <http://example/> SELECT * { GRAPH :g { ?s a :C } }";
+        Txn.executeRead(dsg, ()->{
+            try ( QueryExecution qExec = QueryExecution.create(qs, DatasetFactory.wrap(dsg)) ) {
+                assertEquals(1, ResultSetFormatter.consume(qExec.execSelect()));
+            }
+        });
+    }
+
+    private void update(Quad quad, boolean add) {
+        Txn.executeWrite(dsg, ()->{
+            if ( add ) dsg.add(quad); else dsg.delete(quad);
+        });
+        Txn.executeWrite(reference, ()->{
+            if ( add ) reference.add(quad); else reference.delete(quad);
+        });
+    }
+
+    private void assertSame() {
+        Set<Quad> expected = Txn.calculateRead(reference, ()->Iter.toSet(reference.find(ANY, ANY, ANY, ANY)));
+        Set<Quad> actual = Txn.calculateRead(dsg, ()->new HashSet<>(Iter.toList(dsg.find(ANY, ANY, ANY, ANY))));
+        assertEquals(expected, actual);
+        // No duplicates.
+        long count = Txn.calculateRead(dsg, ()->Iter.count(dsg.find(ANY, ANY, ANY, ANY)));
+        assertEquals(expected.size(), count);
+        Set<Node> graphs = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.listGraphNodes()));
+        for ( Node g : graphs ) {
+            Set<Quad> e = Txn.calculateRead(reference, ()->Iter.toSet(reference.find(g, ANY, ANY, ANY)));
+            Set<Quad> a = Txn.calculateRead(dsg, ()->Iter.toSet(dsg.find(g, ANY, ANY, ANY)));
+            assertEquals(e, a);
+        }
+    }
+}
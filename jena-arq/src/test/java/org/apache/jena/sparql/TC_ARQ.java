@@ -32,6 +32,7 @@ import org.apache.jena.sparql.core.TS_Core ;
 import org.apache.jena.sparql.core.assembler.TS_Assembler ;
 import org.apache.jena.sparql.core.mem.TS_DatasetTxnMem ;
 import org.apache.jena.sparql.engine.TS_Engine ;
+import org.apache.jena.sparql.engine.batch.TS_Batch;
 import org.apache.jena.sparql.engine.binding.TS_EngineBinding ;
 import org.apache.jena.sparql.engine.index.TS_Minus;
 import org.apache.jena.sparql.engine.iterator.TS_QueryIterators;
@@ -80,6 +81,7 @@ import org.apache.jena.sparql.util.iso.TS_Iso ;
 
     , TS_EngineBinding.class
     , TS_Engine.class
+    , TS_Batch.class
     , TS_Negation.class
     , TS_Solver.class
     , TS_Algebra.class
@@ -37,6 +37,7 @@ import org.junit.runners.Suite ;
     , TestTransformEliminateAssignments.class
     , TestTransformTopN.class
     , TestOptimizer.class
+    , TestTransformJoinReorder.class
 })
 
 public class TS_Optimization
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.algebra.optimize;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSetRewindable;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Test;
+
+/** Cost-based join ordering */
+public class TestTransformJoinReorder {
+
+    // :p 100 matches, :q 10, :r 2, all on the same subjects; graph :g has :p twice.
+    private static DatasetGraph data() {
+        StringBuilder sb = new StringBuilder("(dataset (graph");
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            sb.append(" (:s"+i+" :p "+i+")");
+            if ( i < 10 )
+                sb.append(" (:s"+i+" :q "+i+")");
+            if ( i < 2 )
+                sb.append(" (:s"+i+" :r "+i+")");
+        }
+        sb.append(") (graph :g (:s1 :p 1) (:s2 :p 2) (:s1 :q 1) (:s2 :q 2) (:s3 :q 3) (:s4 :q 4)))");
+        return SSE.parseDatasetGraph(sb.toString());
+    }
+
+    private static final CardinalityEstimator estimator = CardinalityEstimator.sampled(data(), CardinalityEstimator.DftSampleLimit);
+
+    private static void test(String input, String expected) {
+        Op op = TransformJoinReorder.reorder(SSE.parseOp(input), estimator);
+        assertEquals(SSE.parseOp(expected), op);
+    }
+
+    @Test public void join_reorder_1() {
+        test("(join (bgp (?s :p ?o)) (bgp (?s :r ?x)))",
+             "(join (bgp (?s :r ?x)) (bgp (?s :p ?o)))");
+    }
+
+    @Test public void join_reorder_2() {
+        // Already in order.
+        test("(join (bgp (?s :r ?x)) (bgp (?s :p ?o)))",
+             "(join (bgp (?s :r ?x)) (bgp (?s :p ?o)))");
+    }
+
+    @Test public void join_reorder_3() {
+        // Nested joins are flattened and rebuilt.
+        test("(join (join (bgp (?s :p ?o)) (bgp (?s :q ?y))) (bgp (?s :r ?x)))",
+             "(join (join (bgp (?s :r ?x)) (bgp (?s :q ?y))) (bgp (?s :p ?o)))");
+    }
+
+    @Test public void join_reorder_optional() {
+        test("(join (leftjoin (bgp (?s :p ?o)) (bgp (?s :q ?y))) (bgp (?s :r ?x)))",
+             "(join (bgp (?s :r ?x)) (leftjoin (bgp (?s :p ?o)) (bgp (?s :q ?y))))");
+    }
+
+    @Test public void join_reorder_union() {
+        test("(join (union (bgp (?s :p ?o)) (bgp (?s :q ?o))) (bgp (?s :r ?x)))",
+             "(join (bgp (?s :r ?x)) (union (bgp (?s :p ?o)) (bgp (?s :q ?o))))");
+    }
+
+    @Test public void join_reorder_subquery() {
+        test("(join (project (?s) (bgp (?s :p ?o))) (table (vars ?s) (row [?s :s1])))",
+             "(join (table (vars ?s) (row [?s :s1])) (project (?s) (bgp (?s :p ?o))))");
+    }
+
+    @Test public void join_reorder_cross_product() {
+        // A connected operand is preferred to a cross product.
+        test("(join (join (bgp (?s :r ?x)) (bgp (?z :q ?w))) (bgp (?s :p ?o)))",
+             "(join (join (bgp (?s :r ?x)) (bgp (?s :p ?o))) (bgp (?z :q ?w)))");
+    }
+
+    @Test public void join_reorder_graph() {
+        // In graph :g, :p has fewer matches than :q.
+        test("(graph :g (join (bgp (?s :q ?y)) (bgp (?s :p ?o))))",
+             "(graph :g (join (bgp (?s :p ?o)) (bgp (?s :q ?y))))");
+        test("(join (bgp (?s :q ?y)) (bgp (?s :p ?o)))",
+             "(join (bgp (?s :q ?y)) (bgp (?s :p ?o)))");
+    }
+
+    @Test public void join_reorder_sequence() {
+        // Sequences are not changed.
+        test("(sequence (bgp (?s :p ?o)) (bgp (?s :r ?x)))",
+             "(sequence (bgp (?s :p ?o)) (bgp (?s :r ?x)))");
+    }
+
+    @Test public void join_reorder_estimate() {
+        TransformJoinReorder transform = new TransformJoinReorder(estimator);
+        assertEquals(100, transform.estimate(SSE.parseOp("(bgp (?s :p ?o))")), 0);
+        assertEquals(2, transform.estimate(SSE.parseOp("(bgp (?s :p ?o) (?s :r ?x))")), 0);
+        assertEquals(200, transform.estimate(SSE.parseOp("(bgp (?s :p ?o) (?z :r ?x))")), 0);
+        assertEquals(110, transform.estimate(SSE.parseOp("(union (bgp (?s :p ?o)) (bgp (?s :q ?o)))")), 0);
+        assertEquals(100, transform.estimate(SSE.parseOp("(leftjoin (bgp (?s :p ?o)) (bgp (?s :q ?y)))")), 0);
+        assertEquals(2, transform.estimate(SSE.parseOp("(graph :g (bgp (?s :p ?o)))")), 0);
+        assertEquals(5, transform.estimate(SSE.parseOp("(slice _ 5 (bgp (?s :p ?o)))")), 0);
+        // No estimator: by the number of concrete terms.
+        TransformJoinReorder transform0 = new TransformJoinReorder(null);
+        assertTrue(transform0.estimate(SSE.parseOp("(bgp (:s :p ?o))")) < transform0.estimate(SSE.parseOp("(bgp (?s :p ?o))")));
+    }
+
+    private static final String queryString = """
+        PREFIX : <http://example/>
+        SELECT * {
+           ?s :p ?o
+           { ?s :q ?y } UNION { ?s :r ?y }
+           OPTIONAL { ?s :r ?x FILTER(?o < 5) }
+           { SELECT ?s { ?s :r ?z } }
+        }""";
+
+    @Test public void join_reorder_query() {
+        DatasetGraph dsg = data();
+        Query query = QueryFactory.create(queryString);
+        RowSetRewindable expected = QueryExec.dataset(dsg).query(query).select().rewindable();
+        Context cxt = new Context();
+        cxt.set(ARQ.optJoinReorder, true);
+        RowSetRewindable actual = QueryExec.dataset(dsg).query(query).context(cxt).select().rewindable();
+        assertEquals(4, expected.size());
+        assertTrue(ResultSetCompare.equalsByTerm(expected, actual));
+    }
+}
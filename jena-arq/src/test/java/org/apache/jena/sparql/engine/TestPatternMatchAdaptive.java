@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.WrappedGraph;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.algebra.optimize.CardinalityEstimator;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.main.solver.PatternMatchAdaptive;
+import org.apache.jena.sparql.engine.main.solver.PatternMatchData;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.junit.Test;
+
+public class TestPatternMatchAdaptive {
+
+    /** Count the triples read from the graph. */
+    static class GraphCounting extends WrappedGraph {
+        long triples = 0;
+        GraphCounting(Graph base) { super(base); }
+
+        @Override
+        public ExtendedIterator<Triple> find(Node s, Node p, Node o) {
+            return super.find(s, p, o).mapWith(t -> { triples++; return t; });
+        }
+
+        @Override
+        public ExtendedIterator<Triple> find(Triple m) {
+            return find(m.getSubject(), m.getPredicate(), m.getObject());
+        }
+    }
+
+    private static Node uri(String local) { return NodeFactory.createURI("http://example/"+local); }
+
+    // 3000 (?s :p ?o) over 10 objects; one (?s :q ?v); one (?o :r ?x) per object.
+    private static Graph data() {
+        Graph graph = GraphFactory.createDefaultGraph();
+        for ( int i = 0 ; i < 3000 ; i++ )
+            graph.add(uri("s"+i), uri("p"), uri("o"+(i%10)));
+        graph.add(uri("s5"), uri("q"), NodeFactory.createLiteralString("v"));
+        for ( int i = 0 ; i < 10 ; i++ )
+            graph.add(uri("o"+i), uri("r"), uri("x"+i));
+        return graph;
+    }
+
+    private static BasicPattern bgp(String string) {
+        return SSE.parseBGP(string);
+    }
+
+    private static Set<Binding> adaptive(Graph graph, BasicPattern bgp, CardinalityEstimator estimator) {
+        ExecutionContext execCxt = ExecutionContext.createForGraph(graph);
+        return collect(PatternMatchAdaptive.execute(graph, bgp, QueryIterRoot.create(execCxt), estimator, execCxt));
+    }
+
+    private static Set<Binding> fixed(Graph graph, BasicPattern bgp) {
+        ExecutionContext execCxt = ExecutionContext.createForGraph(graph);
+        return collect(PatternMatchData.execute(graph, bgp, QueryIterRoot.create(execCxt), null, execCxt));
+    }
+
+    private static Set<Binding> collect(QueryIterator qIter) {
+        Set<Binding> results = new HashSet<>();
+        List<Binding> list = new ArrayList<>();
+        qIter.forEachRemaining(list::add);
+        qIter.close();
+        results.addAll(list);
+        // No duplicates.
+        assertEquals(list.size(), results.size());
+        return results;
+    }
+
+    @Test public void adaptive_same_results_1() {
+        Graph graph = data();
+        BasicPattern bgp = bgp("(bgp (?s <http://example/p> ?o) (?o <http://example/r> ?x))");
+        Set<Binding> expected = fixed(graph, bgp);
+        assertEquals(3000, expected.size());
+        assertEquals(expected, adaptive(graph, bgp, null));
+    }
+
+    @Test public void adaptive_same_results_2() {
+        Graph graph = data();
+        BasicPattern bgp = bgp("(bgp (?s ?p ?o) (?s <http://example/q> ?v) (?o <http://example/r> ?x))");
+        Set<Binding> expected = fixed(graph, bgp);
+        assertEquals(1, expected.size());
+        assertEquals(expected, adaptive(graph, bgp, null));
+    }
+
+    @Test public void adaptive_same_results_3() {
+        Graph graph = data();
+        BasicPattern bgp = bgp("(bgp (?s <http://example/p> ?o) (?z <http://example/nothing> ?o))");
+        assertEquals(0, adaptive(graph, bgp, null).size());
+    }
+
+    @Test public void adaptive_restart() {
+        // Estimates say :p is selective. Restarting with (?s :q ?v) first reads far fewer triples.
+        CardinalityEstimator estimator = (g, t) -> t.getPredicate().equals(uri("p")) ? 1 : 1000;
+        GraphCounting graph1 = new GraphCounting(data());
+        BasicPattern bgp = bgp("(bgp (?s <http://example/p> ?o) (?s <http://example/q> ?v))");
+        Set<Binding> expected = fixed(graph1, bgp);
+        long fixedCount = graph1.triples;
+
+        GraphCounting graph2 = new GraphCounting(data());
+        Set<Binding> results = adaptive(graph2, bgp, estimator);
+        assertEquals(1, results.size());
+        assertEquals(expected, results);
+        assertTrue(graph2.triples < fixedCount/2);
+    }
+
+    @Test public void adaptive_hash_join() {
+        // (?o :r ?x) is probed 3000 times but has only 10 matches.
+        GraphCounting graph1 = new GraphCounting(data());
+        BasicPattern bgp = bgp("(bgp (?s <http://example/p> ?o) (?o <http://example/r> ?x))");
+        Set<Binding> expected = fixed(graph1, bgp);
+        long fixedCount = graph1.triples;
+
+        GraphCounting graph2 = new GraphCounting(data());
+        Set<Binding> results = adaptive(graph2, bgp, CardinalityEstimator.fixed());
+        assertEquals(expected, results);
+        assertTrue(graph2.triples < fixedCount);
+    }
+
+    @Test public void adaptive_input_binding() {
+        Graph graph = data();
+        BasicPattern bgp = bgp("(bgp (?s <http://example/p> ?o) (?o <http://example/r> ?x))");
+        Binding input = Binding.builder().add(Var.alloc("o"), uri("o3")).build();
+        ExecutionContext execCxt = ExecutionContext.createForGraph(graph);
+        Set<Binding> results = collect(PatternMatchAdaptive.execute(graph, bgp, QueryIterRoot.create(input, execCxt), null, execCxt));
+        assertEquals(300, results.size());
+    }
+
+    @Test public void adaptive_query() {
+        DatasetGraph dsg = DatasetGraphFactory.wrap(data());
+        String qs = "SELECT * { ?s <http://example/p> ?o . ?s <http://example/q> ?v . ?o <http://example/r> ?x }";
+        try ( QueryExec qExec = QueryExec.dataset(dsg).query(qs).set(ARQ.optAdaptiveBGP, true).build() ) {
+            RowSet rowSet = qExec.select();
+            assertEquals(1, rowSet.rewindable().size());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.sse.SSE;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestBatchExecution {
+
+    private static DatasetGraph dsg;
+
+    private static final String PRE = "PREFIX : <http://example/> ";
+
+    @BeforeClass public static void beforeClass() {
+        dsg = DatasetGraphFactory.createTxnMem();
+        for ( int i = 0 ; i < 30 ; i++ ) {
+            String s = "<http://example/s"+i+">";
+            dsg.getDefaultGraph().add(SSE.parseTriple("("+s+" <http://example/p> <http://example/o"+(i%4)+">)"));
+            dsg.getDefaultGraph().add(SSE.parseTriple("("+s+" <http://example/v> "+i+")"));
+            if ( i%3 == 0 )
+                dsg.getDefaultGraph().add(SSE.parseTriple("("+s+" <http://example/q> "+s+")"));
+            if ( i%5 == 0 )
+                dsg.add(SSE.parseQuad("(<http://example/g"+(i%2)+"> "+s+" <http://example/p> <http://example/o"+(i%4)+">)"));
+        }
+    }
+
+    @Test public void batch_bgp_1() {
+        test("SELECT * { ?s :p ?o }", 30);
+    }
+
+    @Test public void batch_bgp_2() {
+        test("SELECT * { ?s :p ?o ; :v ?v }", 30);
+    }
+
+    // Repeated variable.
+    @Test public void batch_bgp_3() {
+        test("SELECT * { ?s :q ?s }", 10);
+    }
+
+    @Test public void batch_bgp_4() {
+        test("SELECT * { ?s ?p ?o }", 70);
+    }
+
+    @Test public void batch_filter_1() {
+        test("SELECT ?s { ?s :v ?v FILTER(?v >= 10 && ?v < 20) }", 10);
+    }
+
+    @Test public void batch_filter_2() {
+        test("SELECT ?s { ?s :v ?v FILTER(?v > 100) }", 0);
+    }
+
+    @Test public void batch_extend_1() {
+        test("SELECT * { ?s :v ?v BIND(?v * 2 AS ?w) BIND(?w + 1 AS ?z) }", 30);
+    }
+
+    @Test public void batch_extend_2() {
+        // Error : unbound.
+        test("SELECT * { ?s :p ?o BIND(?o + 1 AS ?w) }", 30);
+    }
+
+    @Test public void batch_slice_1() {
+        test("SELECT * { ?s :v ?v } ORDER BY ?v OFFSET 5 LIMIT 7", 7, true);
+    }
+
+    @Test public void batch_slice_2() {
+        test("SELECT * { ?s :v ?v } LIMIT 4", 4);
+    }
+
+    @Test public void batch_slice_3() {
+        test("SELECT * { ?s :v ?v } OFFSET 28", 2);
+    }
+
+    @Test public void batch_join_1() {
+        test("SELECT * { { ?s :p ?o } { SELECT ?s { ?s :q ?x } } }", 10);
+    }
+
+    @Test public void batch_join_2() {
+        test("SELECT * { { ?s :p ?o OPTIONAL { ?s :q ?x } } { ?y :q ?x } }", 210);
+    }
+
+    @Test public void batch_group_1() {
+        test("SELECT ?o (COUNT(*) AS ?c) (SUM(?v) AS ?sum) { ?s :p ?o ; :v ?v } GROUP BY ?o", 4);
+    }
+
+    @Test public void batch_group_2() {
+        test("SELECT (COUNT(*) AS ?c) { ?s :p :nothing }", 1);
+    }
+
+    @Test public void batch_group_3() {
+        test("SELECT ?o (COUNT(*) AS ?c) { ?s :p :nothing } GROUP BY ?o", 0);
+    }
+
+    @Test public void batch_group_4() {
+        test("SELECT ?k (COUNT(DISTINCT ?o) AS ?c) { ?s :p ?o ; :v ?v } GROUP BY (?v > 10 AS ?k)", 2);
+    }
+
+    @Test public void batch_graph_1() {
+        test("SELECT * { GRAPH ?g { ?s :p ?o } }", 6);
+    }
+
+    @Test public void batch_graph_2() {
+        test("SELECT * { GRAPH :g0 { ?s :p ?o } }", 3);
+    }
+
+    @Test public void batch_graph_3() {
+        test("SELECT * { GRAPH ?g { ?s :p ?o } ?s :v ?v }", 6);
+    }
+
+    // Fallback to iterators inside batches.
+    @Test public void batch_mixed_1() {
+        test("SELECT ?s (COUNT(*) AS ?c) { ?s :p ?o OPTIONAL { ?s :q ?x } MINUS { ?s :v 3 } } GROUP BY ?s", 29);
+    }
+
+    @Test public void batch_mixed_2() {
+        test("SELECT DISTINCT ?o { { ?s :p ?o } UNION { ?s :q ?o } }", 14);
+    }
+
+    @Test public void batch_mixed_3() {
+        test("SELECT * { VALUES ?v { 1 2 3 } ?s :v ?v }", 3);
+    }
+
+    @Test public void bindingBatch_1() {
+        Var x = Var.alloc("x");
+        Var y = Var.alloc("y");
+        BindingBatch batch = new BindingBatch(List.of(x, y), 4);
+        for ( int i = 0 ; i < 4 ; i++ ) {
+            int row = batch.addRow();
+            batch.set(row, 0, SSE.parseNode(Integer.toString(i)));
+            if ( i%2 == 0 )
+                batch.set(row, 1, SSE.parseNode("'a"+i+"'"));
+        }
+        assertTrue(batch.isFull());
+        batch.retain(new boolean[] {false, true, true, false});
+        assertEquals(2, batch.size());
+        Binding b = batch.binding(1);
+        assertEquals(SSE.parseNode("2"), b.get(x));
+        assertEquals(SSE.parseNode("'a2'"), b.get(y));
+        assertNull(batch.binding(0).get(y));
+        BindingBatch batch2 = batch.project(List.of(y));
+        assertEquals(List.of(y), batch2.vars());
+        assertEquals(1, batch2.binding(1).size());
+        assertEquals(0, batch2.binding(0).size());
+    }
+
+    private static void test(String qs, int expected) {
+        test(qs, expected, false);
+    }
+
+    private static void test(String qs, int expected, boolean ordered) {
+        List<String> rows1 = query(qs, null);
+        List<String> rows2 = query(qs, 3);
+        List<String> rows3 = query(qs, BatchCompiler.DftBatchSize);
+        if ( !ordered ) {
+            rows1.sort(null);
+            rows2.sort(null);
+            rows3.sort(null);
+        }
+        assertEquals(rows1, rows2);
+        assertEquals(rows1, rows3);
+        assertEquals(expected, rows1.size());
+    }
+
+    private static List<String> query(String qs, Integer batchSize) {
+        QueryExec qExec = ( batchSize == null )
+                ? QueryExec.dataset(dsg).query(PRE+qs).build()
+                : QueryExec.dataset(dsg).query(PRE+qs).set(ARQ.batchExecution, batchSize).build();
+        List<String> x = new ArrayList<>();
+        try ( qExec ) {
+            collect(qExec, x);
+        }
+        return x;
+    }
+
+    private static void collect(QueryExec qExec, List<String> x) {
+        var rowSet = qExec.select();
+        List<Var> vars = rowSet.getResultVars();
+        rowSet.forEachRemaining(row->{
+            StringBuilder sb = new StringBuilder();
+            for ( Var v : vars ) {
+                Node n = row.get(v);
+                sb.append(v).append("=").append(n).append(" ");
+            }
+            x.add(sb.toString());
+        });
+    }
+}
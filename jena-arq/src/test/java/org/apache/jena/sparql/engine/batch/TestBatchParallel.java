@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.iterator.QueryIteratorCheck;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.QueryExecBuilder;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionBase1;
+import org.apache.jena.sparql.function.FunctionRegistry;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.system.Txn;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestBatchParallel {
+
+    private static DatasetGraph dsg;
+
+    private static final String PRE = "PREFIX : <http://example/> ";
+
+    private static final String fnThread = "http://example/test#thread";
+    private static final String fnFail = "http://example/test#fail";
+    private static final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    /** Record the thread evaluating the function; returns the argument. */
+    public static class RecordThread extends FunctionBase1 {
+        @Override
+        public NodeValue exec(NodeValue v) {
+            threads.add(Thread.currentThread().getName());
+            return v;
+        }
+    }
+
+    public static class Fail extends FunctionBase1 {
+        @Override
+        public NodeValue exec(NodeValue v) {
+            throw new IllegalStateException("Test");
+        }
+    }
+
+    @BeforeClass public static void beforeClass() {
+        FunctionRegistry.get().put(fnThread, RecordThread.class);
+        FunctionRegistry.get().put(fnFail, Fail.class);
+        dsg = DatasetGraphFactory.create();
+        for ( int i = 0 ; i < 1000 ; i++ ) {
+            String s = "<http://example/s"+i+">";
+            dsg.getDefaultGraph().add(SSE.parseTriple("("+s+" <http://example/p> <http://example/o"+(i%10)+">)"));
+            dsg.getDefaultGraph().add(SSE.parseTriple("("+s+" <http://example/v> "+i+")"));
+            if ( i%7 == 0 )
+                dsg.add(SSE.parseQuad("(<http://example/g> "+s+" <http://example/v> "+(i%13)+")"));
+        }
+        for ( int i = 0 ; i < 10 ; i++ )
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<http://example/o"+i+"> <http://example/label> 'L"+(i%3)+"')"));
+    }
+
+    @AfterClass public static void afterClass() {
+        FunctionRegistry.get().remove(fnThread);
+        FunctionRegistry.get().remove(fnFail);
+    }
+
+    @Test public void parallel_bgp_1() {
+        test("SELECT * { ?s :p ?o ; :v ?v }", 1000, true);
+    }
+
+    @Test public void parallel_filter_1() {
+        test("SELECT ?s ?v { ?s :p ?o ; :v ?v FILTER(?v < 500 && ?o != :o3) }", 450, true);
+    }
+
+    @Test public void parallel_extend_1() {
+        test("SELECT * { ?s :v ?v BIND(?v + 1 AS ?w) }", 1000, true);
+    }
+
+    @Test public void parallel_join_1() {
+        test("SELECT * { { ?s :p ?o } { SELECT ?o ?label { ?o :label ?label } } }", 1000, true);
+    }
+
+    @Test public void parallel_join_2() {
+        test("SELECT * { { ?s :p ?o ; :v ?v } { SELECT ?s ?x { GRAPH :g { ?s :v ?x } } } }", 143, true);
+    }
+
+    @Test public void parallel_exists_1() {
+        test("SELECT * { ?s :p ?o ; :v ?v FILTER NOT EXISTS { GRAPH :g { ?s :v ?x } } }", 857, true);
+    }
+
+    @Test public void parallel_exists_2() {
+        test("SELECT * { { ?s :p ?o FILTER EXISTS { GRAPH :g { ?s :v ?x } } } { SELECT ?o ?label { ?o :label ?label } } }", 143, true);
+    }
+
+    @Test public void parallel_graph_1() {
+        test("SELECT * { GRAPH ?g { ?s :v ?v } ?s :p ?o }", 143, true);
+    }
+
+    @Test public void parallel_group_1() {
+        test("SELECT ?o (COUNT(*) AS ?c) (SUM(?v) AS ?sum) (COUNT(DISTINCT ?v) AS ?d) { ?s :p ?o ; :v ?v } GROUP BY ?o", 10, false);
+    }
+
+    @Test public void parallel_group_2() {
+        test("SELECT (COUNT(*) AS ?c) (MAX(?v) AS ?max) { ?s :p ?o ; :v ?v }", 1, false);
+    }
+
+    @Test public void parallel_group_3() {
+        test("SELECT ?o (COUNT(*) AS ?c) { ?s :p ?o ; :v 5000 } GROUP BY ?o", 0, false);
+    }
+
+    @Test public void parallel_order_1() {
+        test("SELECT ?s ?v { ?s :v ?v } ORDER BY DESC(?v)", 1000, true);
+    }
+
+    @Test public void parallel_order_2() {
+        // Ties: the sort is stable.
+        test("SELECT ?o ?s { ?s :p ?o } ORDER BY ?o", 1000, true);
+    }
+
+    @Test public void parallel_slice_1() {
+        test("SELECT ?s ?v { ?s :v ?v } ORDER BY ?v OFFSET 100 LIMIT 10", 10, true);
+    }
+
+    @Test public void parallel_slice_2() {
+        test("SELECT * { ?s :p ?o ; :v ?v } LIMIT 25", 25, true);
+    }
+
+    @Test public void parallel_workers_1() {
+        threads.clear();
+        query("PREFIX t: <http://example/test#> SELECT * { ?s :p ?o ; :v ?v FILTER(t:thread(?v) >= 0) }", 4, 10);
+        assertTrue(threads.stream().anyMatch(n->n.startsWith("ARQ-worker-")));
+    }
+
+    @Test public void parallel_workers_2() {
+        // An in-memory dataset with isolated transactions: the query stays on the calling thread.
+        DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsg2, ()->dsg2.addAll(dsg));
+        threads.clear();
+        Txn.exec(dsg2, TxnType.READ, ()->{
+            List<String> x = query(dsg2, "PREFIX t: <http://example/test#> SELECT * { ?s :p ?o ; :v ?v FILTER(t:thread(?v) >= 0) }", 4, 10);
+            assertEquals(1000, x.size());
+        });
+        assertFalse(threads.isEmpty());
+        assertFalse(threads.stream().anyMatch(n->n.startsWith("ARQ-worker-")));
+    }
+
+    @Test public void parallel_batchSize_1() {
+        // Batch execution is on by default when the execution can use worker threads.
+        Context cxt = new Context();
+        cxt.set(ARQ.parallelism, 4);
+        assertEquals(BatchCompiler.DftBatchSize, BatchCompiler.batchSize(ExecutionContext.create(dsg, cxt)));
+        cxt.set(ARQ.parallelism, 1);
+        assertEquals(0, BatchCompiler.batchSize(ExecutionContext.create(dsg, cxt)));
+    }
+
+    @Test public void parallel_batchSize_2() {
+        // The query stays on the calling thread: no batch execution by default.
+        DatasetGraph dsg2 = DatasetGraphFactory.createTxnMem();
+        Context cxt = new Context();
+        cxt.set(ARQ.parallelism, 4);
+        Txn.exec(dsg2, TxnType.READ, ()->assertEquals(0, BatchCompiler.batchSize(ExecutionContext.create(dsg2, cxt))));
+        // Set explicitly.
+        cxt.set(ARQ.batchExecution, true);
+        Txn.exec(dsg2, TxnType.READ, ()->assertEquals(BatchCompiler.DftBatchSize, BatchCompiler.batchSize(ExecutionContext.create(dsg2, cxt))));
+    }
+
+    @Test public void parallel_error_1() {
+        assertThrows(IllegalStateException.class,
+                     ()->query("PREFIX t: <http://example/test#> SELECT * { ?s :p ?o ; :v ?v FILTER(t:fail(?v)) }", 4, 10));
+    }
+
+    private static void test(String qs, int expected, boolean ordered) {
+        List<String> rows1 = query(qs, 1, -1);
+        List<String> rows2 = query(qs, 4, 10);
+        List<String> rows3 = query(qs, 2, 3);
+        if ( !ordered ) {
+            rows1.sort(null);
+            rows2.sort(null);
+            rows3.sort(null);
+        }
+        assertEquals(rows1, rows2);
+        assertEquals(rows1, rows3);
+        assertEquals(expected, rows1.size());
+    }
+
+    private static List<String> query(String qs, int parallelism, int batchSize) {
+        return query(dsg, qs, parallelism, batchSize);
+    }
+
+    private static List<String> query(DatasetGraph dsg, String qs, int parallelism, int batchSize) {
+        // Fail if any iterators, including those of morsel pipelines, are left open.
+        QueryExecBuilder builder = QueryExec.dataset(dsg).query(PRE+qs).set(ARQ.parallelism, parallelism)
+                                            .set(QueryIteratorCheck.failOnOpenIterator, true);
+        if ( batchSize > 0 )
+            builder.set(ARQ.batchExecution, batchSize);
+        List<String> x = new ArrayList<>();
+        try ( QueryExec qExec = builder.build() ) {
+            var rowSet = qExec.select();
+            List<Var> vars = rowSet.getResultVars();
+            rowSet.forEachRemaining(row->{
+                StringBuilder sb = new StringBuilder();
+                for ( Var v : vars ) {
+                    Node n = row.get(v);
+                    sb.append(v).append("=").append(n).append(" ");
+                }
+                x.add(sb.toString());
+            });
+        }
+        return x;
+    }
+}
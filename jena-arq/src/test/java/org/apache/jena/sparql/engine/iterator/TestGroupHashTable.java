@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.expr.aggregate.Accumulator;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Test;
+
+/** The specialized aggregates of {@link GroupHashTable} give the same values as the general accumulators. */
+public class TestGroupHashTable {
+    private static final Var k = Var.alloc("k");
+    private static final Var v = Var.alloc("v");
+
+    private static final String aggregates =
+        "SELECT ?k (COUNT(*) AS ?c) (COUNT(?v) AS ?cv) (SUM(?v) AS ?s) (AVG(?v) AS ?a) (MIN(?v) AS ?min) (MAX(?v) AS ?max)"
+        + " (SUM(?v+1) AS ?s1) (SAMPLE(?v) AS ?sample) { } GROUP BY ?k";
+
+    // Each row is a group and a value, in SSE, or null for unbound.
+    private static List<Binding> rows(String... pairs) {
+        List<Binding> x = new ArrayList<>();
+        for ( int i = 0 ; i < pairs.length ; i += 2 ) {
+            BindingBuilder builder = Binding.builder();
+            if ( pairs[i] != null )
+                builder.add(k, SSE.parseNode(pairs[i]));
+            if ( pairs[i+1] != null )
+                builder.add(v, SSE.parseNode(pairs[i+1]));
+            x.add(builder.build());
+        }
+        return x;
+    }
+
+    // Values of the aggregators for each group, calculated with one accumulator per group and aggregator.
+    private static Map<Node, List<Node>> expected(Query query, List<Binding> rows, ExecutionContext execCxt) {
+        Map<Node, List<Accumulator>> groups = new LinkedHashMap<>();
+        for ( Binding b : rows ) {
+            List<Accumulator> accs = groups.computeIfAbsent(b.get(k), x-> {
+                List<Accumulator> z = new ArrayList<>();
+                for ( ExprAggregator agg : query.getAggregators() )
+                    z.add(agg.getAggregator().createAccumulator());
+                return z;
+            });
+            accs.forEach(acc->acc.accumulate(b, execCxt));
+        }
+        Map<Node, List<Node>> results = new LinkedHashMap<>();
+        groups.forEach((key, accs)->{
+            List<Node> values = new ArrayList<>();
+            for ( Accumulator acc : accs ) {
+                NodeValue nv = acc.getValue();
+                values.add(nv == null ? null : nv.asNode());
+            }
+            results.put(key, values);
+        });
+        return results;
+    }
+
+    private static Map<Node, List<Node>> actual(Query query, List<Binding> rows, ExecutionContext execCxt) {
+        GroupHashTable table = new GroupHashTable(query.getGroupBy(), query.getAggregators(), execCxt);
+        rows.forEach(table::accumulate);
+        Map<Node, List<Node>> results = new LinkedHashMap<>();
+        for ( int g = 0 ; g < table.size() ; g++ ) {
+            List<Node> values = new ArrayList<>();
+            for ( int i = 0 ; i < query.getAggregators().size() ; i++ )
+                values.add(table.value(g, i));
+            results.put(table.key(g, 0), values);
+        }
+        return results;
+    }
+
+    private static void test(String... pairs) {
+        Query query = QueryFactory.create(aggregates);
+        ExecutionContext execCxt = ExecutionContext.create(new Context());
+        List<Binding> rows = rows(pairs);
+        assertEquals(expected(query, rows, execCxt), actual(query, rows, execCxt));
+    }
+
+    @Test public void group_table_integer_1()   { test("'a'", "1", "'a'", "2", "'b'", "3"); }
+    // A single value is the sum as given.
+    @Test public void group_table_integer_2()   { test("'a'", "'01'^^xsd:int", "'b'", "'02'^^xsd:int", "'b'", "3"); }
+
+    @Test public void group_table_overflow()    { test("'a'", "9223372036854775807", "'a'", "1", "'a'", "-5",
+                                                       "'b'", "-9223372036854775808", "'b'", "-1"); }
+
+    @Test public void group_table_big()         { test("'a'", "123456789012345678901234567890", "'a'", "1"); }
+
+    @Test public void group_table_decimal()     { test("'a'", "1.50", "'a'", "2", "'a'", "0.25", "'b'", "3", "'b'", "1.0"); }
+
+    @Test public void group_table_float()       { test("'a'", "1", "'a'", "'0.1'^^xsd:float", "'a'", "0.2",
+                                                       "'a'", "'0.3'^^xsd:float", "'b'", "'1e20'^^xsd:float", "'b'", "1"); }
+
+    @Test public void group_table_double()      { test("'a'", "1", "'a'", "0.1", "'a'", "'0.1'^^xsd:float", "'a'", "1e-3",
+                                                       "'a'", "7", "'b'", "1e300", "'b'", "1e300"); }
+
+    @Test public void group_table_mixed()       { test("'a'", "1", "'a'", "'abc'", "'a'", "2", "'b'", "<http://example/x>",
+                                                       "'c'", "'abc'", "'c'", "'xyz'", "'c'", "'abc'@en"); }
+
+    @Test public void group_table_unbound()     { test("'a'", null, "'a'", "1", null, "2", null, null, "'b'", null); }
+
+    @Test public void group_table_keys() {
+        Query query = QueryFactory.create("SELECT (COUNT(*) AS ?c) { } GROUP BY ?k ?v");
+        ExecutionContext execCxt = ExecutionContext.create(new Context());
+        GroupHashTable table = new GroupHashTable(query.getGroupBy(), query.getAggregators(), execCxt);
+        int n = 1000;
+        for ( int i = 0 ; i < 3*n ; i++ )
+            table.accumulate(rows("'k"+(i % n)+"'", null).get(0));
+        assertEquals(n, table.size());
+        assertFalse(table.bindings().next().contains(v));
+        Iterator<Binding> iter = table.bindings();
+        for ( int i = 0 ; i < n ; i++ ) {
+            Binding b = iter.next();
+            assertEquals(SSE.parseNode("'k"+i+"'"), b.get(k));
+            assertEquals(SSE.parseNode("3"), b.get(query.getAggregators().get(0).getVar()));
+        }
+        assertFalse(iter.hasNext());
+        assertEquals(-1, table.find(new Node[] {SSE.parseNode("'k0'"), SSE.parseNode("1")}));
+        assertNull(table.key(0, 1));
+    }
+
+    @Test public void group_table_specialized() {
+        Query query = QueryFactory.create(aggregates);
+        List<ExprAggregator> aggs = query.getAggregators();
+        for ( int i = 0 ; i < aggs.size() ; i++ ) {
+            String name = aggs.get(i).getVar().getVarName();
+            boolean general = name.equals(".7");
+            assertEquals(name, !general, GroupHashTable.isSpecialized(aggs.get(i).getAggregator()));
+        }
+        assertTrue(GroupHashTable.isSpecialized(QueryFactory.create("SELECT (MAX(DISTINCT ?v) AS ?m) { }").getAggregators().get(0).getAggregator()));
+        assertFalse(GroupHashTable.isSpecialized(QueryFactory.create("SELECT (COUNT(DISTINCT ?v) AS ?m) { }").getAggregators().get(0).getAggregator()));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Test;
+
+/** GROUP BY with the spill threshold set. */
+public class TestQueryIterGroupSpill {
+    private static final Var k = Var.alloc("k");
+    private static final Var v = Var.alloc("v");
+
+    // n rows, "groups" distinct values of ?k, ?k unbound every "gap" rows.
+    private static List<Binding> rows(int n, int groups, int gap) {
+        List<Binding> x = new ArrayList<>();
+        for ( int i = 0 ; i < n ; i++ ) {
+            BindingBuilder builder = Binding.builder();
+            if ( gap == 0 || i % gap != 0 )
+                builder.add(k, NodeFactory.createLiteralString("k"+(i % groups)));
+            builder.add(v, NodeFactory.createLiteralDT(Integer.toString(i % 17), XSDDatatype.XSDinteger));
+            x.add(builder.build());
+        }
+        return x;
+    }
+
+    private static List<String> group(String queryString, List<Binding> rows, long threshold, boolean spills) {
+        Query query = QueryFactory.create(queryString);
+        Context cxt = new Context();
+        if ( threshold >= 0 )
+            cxt.set(ARQ.spillToDiskThreshold, threshold);
+        ExecutionContext execCxt = ExecutionContext.create(cxt);
+        QueryIterator input = QueryIterPlainWrapper.create(rows.iterator(), execCxt);
+        QueryIterGroup qIter = new QueryIterGroup(input, query.getGroupBy(), query.getAggregators(), execCxt);
+        List<String> results = new ArrayList<>();
+        Iter.forEach(qIter, b->results.add(b.toString()));
+        assertEquals(spills, !qIter.spillBags.isEmpty());
+        qIter.close();
+        results.sort(null);
+        return results;
+    }
+
+    private static void test(String queryString, List<Binding> rows, long threshold, boolean spills) {
+        List<String> expected = group(queryString, rows, -1, false);
+        List<String> actual = group(queryString, rows, threshold, spills);
+        assertEquals(expected, actual);
+    }
+
+    private static final String qsCount =
+        "SELECT ?k (COUNT(*) AS ?c) (SUM(?v) AS ?s) (COUNT(DISTINCT ?v) AS ?d) { } GROUP BY ?k";
+
+    @Test public void group_spill_1() {
+        test(qsCount, rows(2000, 500, 0), 50, true);
+    }
+
+    @Test public void group_spill_2() {
+        // Unbound key.
+        test(qsCount, rows(2000, 500, 9), 50, true);
+    }
+
+    @Test public void group_spill_3() {
+        // Below threshold.
+        test(qsCount, rows(2000, 40, 0), 50, false);
+    }
+
+    @Test public void group_spill_4() {
+        // Partitions that spill again.
+        test(qsCount, rows(5000, 3000, 0), 50, true);
+    }
+
+    @Test public void group_spill_5() {
+        // No aggregates.
+        test("SELECT ?k { } GROUP BY ?k", rows(2000, 500, 0), 10, true);
+    }
+
+    @Test public void group_spill_6() {
+        test("SELECT ?k (GROUP_CONCAT(?v) AS ?g) (MAX(?v) AS ?m) { } GROUP BY ?k", rows(1000, 300, 0), 0, true);
+    }
+
+    @Test public void group_spill_7() {
+        // No GROUP BY: one group, never spills.
+        List<String> x = group("SELECT (COUNT(*) AS ?c) { }", rows(100, 5, 0), 0, false);
+        assertEquals(1, x.size());
+        assertTrue(x.get(0).contains("100"));
+        assertFalse(group("SELECT ?k { } GROUP BY ?k", List.of(), 0, false).iterator().hasNext());
+    }
+}
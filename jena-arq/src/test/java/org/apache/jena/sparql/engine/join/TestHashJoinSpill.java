@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.data.SpillPartition;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.algebra.Table;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Test;
+
+/** Hash join that partitions both sides to disk (spill threshold of zero). */
+public class TestHashJoinSpill extends AbstractTestInnerJoin {
+
+    private static final Var a = Var.alloc("a");
+    private static final Var b = Var.alloc("b");
+    private static final Var c = Var.alloc("c");
+
+    private static ExecutionContext execCxt(long threshold) {
+        Context cxt = new Context();
+        cxt.set(ARQ.spillToDiskThreshold, threshold);
+        return ExecutionContext.create(cxt);
+    }
+
+    @Override
+    public QueryIterator join(JoinKey joinKey, Table left, Table right, ExprList conditions) {
+        ExecutionContext execCxt = execCxt(0);
+        return Join.hashJoin(joinKey, left.iterator(execCxt), right.iterator(execCxt), execCxt);
+    }
+
+    // Rows with ?a = i%keys, ?b = i, and ?a unbound every "gap" rows.
+    private static List<Binding> rows(int n, int keys, int gap, Var other) {
+        List<Binding> x = new ArrayList<>();
+        for ( int i = 0 ; i < n ; i++ ) {
+            BindingBuilder builder = Binding.builder();
+            if ( gap == 0 || i % gap != 0 )
+                builder.add(a, NodeFactory.createLiteralString("a"+(i%keys)));
+            builder.add(other, NodeFactory.createLiteralString(other.getVarName()+i));
+            x.add(builder.build());
+        }
+        return x;
+    }
+
+    private static AbstractIterHashJoin testSpill(List<Binding> left, List<Binding> right, long threshold, boolean spills) {
+        List<String> expected = strings(Iter.toList(Join.nestedLoopJoin(QueryIterPlainWrapper.create(left.iterator()),
+                                                                        QueryIterPlainWrapper.create(right.iterator()),
+                                                                        null)));
+        ExecutionContext execCxt = execCxt(threshold);
+        QueryIterator qIter = Join.hashJoin(JoinKey.create(a),
+                                            QueryIterPlainWrapper.create(left.iterator(), execCxt),
+                                            QueryIterPlainWrapper.create(right.iterator(), execCxt),
+                                            execCxt);
+        AbstractIterHashJoin hashJoin = (AbstractIterHashJoin)qIter;
+        List<Binding> results = Iter.toList(qIter);
+        qIter.close();
+        assertEquals(spills, hashJoin.s_spillProbe > 0);
+        if ( spills ) {
+            assertEquals(left.size(), hashJoin.s_spillProbe);
+            assertEquals(right.size(), hashJoin.s_spillScan);
+            assertTrue(hashJoin.s_spillBags > 0);
+        }
+        assertEquals(expected, strings(results));
+        // No partition held in memory is larger than the threshold.
+        assertTrue(hashJoin.s_spillMaxPass <= Math.max(1, threshold));
+        return hashJoin;
+    }
+
+    private static List<String> strings(List<Binding> rows) {
+        List<String> x = new ArrayList<>();
+        for ( Binding row : rows )
+            x.add(row.get(a)+" "+row.get(b)+" "+row.get(c));
+        x.sort(null);
+        return x;
+    }
+
+    @Test public void join_spill_1() {
+        testSpill(rows(1000, 50, 0, b), rows(200, 50, 0, c), 100, true);
+    }
+
+    @Test public void join_spill_2() {
+        // Unbound join variable on both sides.
+        testSpill(rows(1000, 50, 7, b), rows(200, 50, 5, c), 100, true);
+    }
+
+    @Test public void join_spill_3() {
+        // Below the threshold.
+        testSpill(rows(99, 50, 7, b), rows(200, 50, 5, c), 100, false);
+    }
+
+    @Test public void join_spill_4() {
+        // No matches.
+        testSpill(rows(500, 50, 0, b), rows(200, 1, 0, c).stream()
+                  .map(r->Binding.builder().add(a, NodeFactory.createLiteralString("z")).add(c, r.get(c)).build()).toList(),
+                  10, true);
+    }
+
+    @Test public void join_spill_5() {
+        // Partitions larger than the threshold are partitioned again.
+        long threshold = 10;
+        int n = (int)(4 * SpillPartition.NumPartitions * threshold);
+        AbstractIterHashJoin hashJoin = testSpill(rows(n, 500, 0, b), rows(200, 500, 0, c), threshold, true);
+        assertTrue(hashJoin.s_spillDepth > 0);
+    }
+
+    @Test public void join_spill_6() {
+        // One key: the partition can not be divided and is joined in chunks.
+        long threshold = 10;
+        int n = (int)(2 * SpillPartition.NumPartitions * threshold);
+        testSpill(rows(n, 1, 0, b), rows(50, 1, 0, c), threshold, true);
+    }
+
+    @Test public void join_spill_7() {
+        // The join variable is unbound in all the rows of the table side.
+        long threshold = 10;
+        int n = (int)(2 * SpillPartition.NumPartitions * threshold);
+        testSpill(rows(n, 50, 1, b), rows(100, 50, 5, c), threshold, true);
+    }
+}
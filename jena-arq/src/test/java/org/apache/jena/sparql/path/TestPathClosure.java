@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.WrappedGraph;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSetRewindable;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.path.eval.PathClosure;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.junit.Test;
+
+public class TestPathClosure {
+
+    private static Node uri(String local) { return NodeFactory.createURI("http://example/"+local); }
+
+    private static Node p = uri("p");
+    private static PathClosure.Step forward = new PathClosure.Step(p, true);
+    private static PathClosure.Step backward = new PathClosure.Step(p, false);
+
+    // A tree, of depth 4 and fan-out 3, with a cycle (c0 -> a) at the bottom.
+    private static Graph tree() {
+        Graph graph = GraphFactory.createDefaultGraph();
+        tree(graph, "a", 0);
+        graph.add(uri("a000"), p, uri("a"));
+        graph.add(uri("x"), p, uri("y"));
+        return graph;
+    }
+
+    private static void tree(Graph graph, String name, int depth) {
+        if ( depth == 4 )
+            return;
+        for ( int i = 0 ; i < 3 ; i++ ) {
+            String child = name+i;
+            graph.add(uri(name), p, uri(child));
+            tree(graph, child, depth+1);
+        }
+    }
+
+    @Test public void closure_reachable_1() {
+        Graph graph = tree();
+        PathClosure closure = new PathClosure();
+        Set<Node> x = closure.reachable(graph, uri("a2"), forward, true);
+        // a2 and 3+9+27 below.
+        assertEquals(40, x.size());
+        assertTrue(x.contains(uri("a2")));
+        assertSame(x, closure.reachable(graph, uri("a2"), forward, true));
+        // Includes the closure of a2.
+        assertEquals(121, closure.reachable(graph, uri("a"), forward, true).size());
+    }
+
+    @Test public void closure_reachable_2() {
+        Graph graph = tree();
+        PathClosure closure = new PathClosure();
+        assertFalse(closure.reachable(graph, uri("a2"), forward, false).contains(uri("a2")));
+        // Cycle through a000.
+        assertTrue(closure.reachable(graph, uri("a"), forward, false).contains(uri("a")));
+        assertEquals(1, closure.reachable(graph, uri("x"), forward, false).size());
+        assertEquals(0, closure.reachable(graph, uri("y"), forward, false).size());
+        assertEquals(1, closure.reachable(graph, uri("y"), forward, true).size());
+    }
+
+    @Test public void closure_reachable_3() {
+        Graph graph = tree();
+        PathClosure closure = new PathClosure();
+        // Backwards: a2222 <- a222 <- a22 <- a2 <- a <- a000 <- a00 <- a0
+        Set<Node> x = closure.reachable(graph, uri("a2222"), backward, true);
+        assertEquals(8, x.size());
+        assertTrue(x.contains(uri("a0")));
+    }
+
+    @Test public void closure_connected_1() {
+        Graph graph = tree();
+        PathClosure closure = new PathClosure();
+        assertTrue(closure.connected(graph, uri("a"), forward, uri("a2222"), true));
+        assertTrue(closure.connected(graph, uri("a2222"), backward, uri("a"), false));
+        assertTrue(closure.connected(graph, uri("a"), forward, uri("a"), false));
+        assertTrue(closure.connected(graph, uri("y"), forward, uri("y"), true));
+        assertFalse(closure.connected(graph, uri("y"), forward, uri("y"), false));
+        assertFalse(closure.connected(graph, uri("a2"), forward, uri("a1"), true));
+        assertFalse(closure.connected(graph, uri("a"), forward, uri("x"), true));
+        assertFalse(closure.connected(graph, uri("a2"), forward, uri("a1"), false));
+        // Through the cycle.
+        assertTrue(closure.connected(graph, uri("a000"), forward, uri("a1"), true));
+    }
+
+    @Test public void closure_batch() {
+        // Wide: the second level is read with one find.
+        Graph base = GraphFactory.createDefaultGraph();
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            base.add(uri("root"), p, uri("n"+i));
+            base.add(uri("n"+i), p, uri("m"+i));
+        }
+        int[] finds = { 0 };
+        Graph graph = new WrappedGraph(base) {
+            @Override
+            public ExtendedIterator<Triple> find(Node s, Node p, Node o) {
+                finds[0]++;
+                return super.find(s, p, o);
+            }
+        };
+        PathClosure closure = new PathClosure();
+        assertEquals(201, closure.reachable(graph, uri("root"), forward, true).size());
+        assertTrue(finds[0] < 10);
+        assertTrue(closure.connected(graph, uri("root"), forward, uri("m99"), false));
+    }
+
+    @Test public void closure_step() {
+        assertEquals(forward, PathClosure.step(PathParser.parse("<http://example/p>", PrefixMapping.Standard), ARQ.getContext()));
+        assertEquals(backward, PathClosure.step(PathParser.parse("^<http://example/p>", PrefixMapping.Standard), ARQ.getContext()));
+        assertEquals(forward, PathClosure.step(PathParser.parse("^(^<http://example/p>)", PrefixMapping.Standard), ARQ.getContext()));
+        assertEquals(null, PathClosure.step(PathParser.parse("<http://example/p>/<http://example/q>", PrefixMapping.Standard), ARQ.getContext()));
+        // Property function.
+        assertEquals(null, PathClosure.step(PathParser.parse("<http://www.w3.org/2000/01/rdf-schema#member>", PrefixMapping.Standard), ARQ.getContext()));
+    }
+
+    private static void test(String queryString) {
+        DatasetGraph dsg = DatasetGraphFactory.wrap(tree());
+        String qs = "PREFIX : <http://example/> "+queryString;
+        RowSetRewindable expected = QueryExec.dataset(dsg).query(qs).select().rewindable();
+        RowSetRewindable actual = QueryExec.dataset(dsg).query(qs).set(ARQ.optPathClosure, true).select().rewindable();
+        assertTrue(ResultSetCompare.equalsByTerm(expected, actual));
+    }
+
+    @Test public void closure_query_1() { test("SELECT * { :a :p* ?x }"); }
+    @Test public void closure_query_2() { test("SELECT * { ?x :p+ :a2 }"); }
+    @Test public void closure_query_3() { test("SELECT * { :a :p+ :a2121 }"); }
+    @Test public void closure_query_4() { test("SELECT * { :a2 :p* :a1 }"); }
+    @Test public void closure_query_5() { test("SELECT * { ?x :p* ?y }"); }
+    @Test public void closure_query_6() { test("SELECT * { ?x :p+ ?x }"); }
+    @Test public void closure_query_7() { test("SELECT * { ?x :p ?z . ?z ^:p* ?y }"); }
+    @Test public void closure_query_8() { test("SELECT * { ?x :p ?z OPTIONAL { ?z :p+ :a1 } }"); }
+    @Test public void closure_query_9() { test("SELECT * { :a (:p/:p)* ?x }"); }
+    @Test public void closure_query_10() { test("SELECT * { :a :p*/:p ?x }"); }
+    @Test public void closure_query_11() { test("SELECT (count(*) AS ?c) { ?x :p* ?y . ?y :p* :a }"); }
+}
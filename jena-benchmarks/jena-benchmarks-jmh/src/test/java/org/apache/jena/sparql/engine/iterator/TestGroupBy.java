@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.sparql.engine.iterator;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.mem.graph.helper.JMHDefaultOptions;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GROUP BY throughput: common aggregates over a graph of numeric values,
+ * for few and for many groups, compared to Jena 5.1.0.
+ */
+@State(Scope.Benchmark)
+public class TestGroupBy {
+
+    @Param({
+            "10",
+            "100000"
+    })
+    public int param0_Groups;
+
+    @Param({
+            "COUNT",
+            "SUM_INTEGER",
+            "SUM_DOUBLE",
+            "AVG",
+            "MIN_MAX",
+            "ALL"
+    })
+    public String param1_Aggregates;
+
+    private static final int Triples = 500_000;
+
+    private Graph graph;
+    private org.apache.shadedJena510.graph.Graph graphJena510;
+    private String query;
+
+    private static String aggregates(String name) {
+        switch (name) {
+            case "COUNT":
+                return "(COUNT(*) AS ?c)";
+            case "SUM_INTEGER":
+                return "(SUM(?i) AS ?sum)";
+            case "SUM_DOUBLE":
+                return "(SUM(?d) AS ?sum)";
+            case "AVG":
+                return "(AVG(?i) AS ?avg)";
+            case "MIN_MAX":
+                return "(MIN(?i) AS ?min) (MAX(?i) AS ?max)";
+            case "ALL":
+                return "(COUNT(*) AS ?c) (SUM(?i) AS ?sum) (AVG(?d) AS ?avg) (MIN(?i) AS ?min) (MAX(?i) AS ?max)";
+            default:
+                throw new IllegalArgumentException("Unknown aggregates: " + name);
+        }
+    }
+
+    @Benchmark
+    public long groupBy() {
+        try ( RowSet rowSet = QueryExec.graph(graph).query(query).select() ) {
+            long count = 0;
+            while ( rowSet.hasNext() ) {
+                rowSet.next();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @Benchmark
+    public long groupByJena510() {
+        try ( org.apache.shadedJena510.sparql.exec.RowSet rowSet =
+                      org.apache.shadedJena510.sparql.exec.QueryExec.graph(graphJena510).query(query).select() ) {
+            long count = 0;
+            while ( rowSet.hasNext() ) {
+                rowSet.next();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        query = "PREFIX : <http://example/> SELECT ?g " + aggregates(param1_Aggregates)
+                + " { ?s :group ?g ; :int ?i ; :double ?d } GROUP BY ?g";
+        graph = GraphFactory.createDefaultGraph();
+        graphJena510 = org.apache.shadedJena510.sparql.graph.GraphFactory.createDefaultGraph();
+        for ( int i = 0 ; i < Triples/3 ; i++ ) {
+            String s = "http://example/s" + i;
+            String g = "http://example/g" + (i % param0_Groups);
+            String x = Integer.toString(i % 1000);
+            String d = Double.toString(i / 7.0);
+            add(s, "group", NodeFactory.createURI(g));
+            add(s, "int", NodeFactory.createLiteralDT(x, XSDDatatype.XSDinteger));
+            add(s, "double", NodeFactory.createLiteralDT(d, XSDDatatype.XSDdouble));
+            addJena510(s, "group", org.apache.shadedJena510.graph.NodeFactory.createURI(g));
+            addJena510(s, "int", org.apache.shadedJena510.graph.NodeFactory.createLiteralDT(x,
+                    org.apache.shadedJena510.datatypes.xsd.XSDDatatype.XSDinteger));
+            addJena510(s, "double", org.apache.shadedJena510.graph.NodeFactory.createLiteralDT(d,
+                    org.apache.shadedJena510.datatypes.xsd.XSDDatatype.XSDdouble));
+        }
+    }
+
+    private void add(String s, String p, Node o) {
+        graph.add(Triple.create(NodeFactory.createURI(s), NodeFactory.createURI("http://example/" + p), o));
+    }
+
+    private void addJena510(String s, String p, org.apache.shadedJena510.graph.Node o) {
+        graphJena510.add(org.apache.shadedJena510.graph.Triple.create(
+                org.apache.shadedJena510.graph.NodeFactory.createURI(s),
+                org.apache.shadedJena510.graph.NodeFactory.createURI("http://example/" + p), o));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        var opt = JMHDefaultOptions.getDefaults(this.getClass())
+                .mode(Mode.Throughput)
+                .timeUnit(TimeUnit.SECONDS)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        var results = new Runner(opt).run();
+        Assert.assertNotNull(results);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.store;
+
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.GroupCommit;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.mem.graph.helper.JMHDefaultOptions;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small write transactions from several threads on an on-disk TDB2 database:
+ * one commit per write compared to group commit.
+ */
+@State(Scope.Benchmark)
+public class TestGroupCommitWrites {
+
+    @Param({
+            "PerWrite",
+            "GroupCommit"
+    })
+    public String param0_CommitMode;
+
+    private static final Node predicate = NodeFactory.createURI("http://example/p");
+
+    private Path directory;
+    private DatasetGraph dsg;
+    private GroupCommit groupCommit;
+    private final AtomicLong counter = new AtomicLong();
+
+    private Quad nextQuad() {
+        long i = counter.incrementAndGet();
+        Node s = NodeFactory.createURI("http://example/s" + i);
+        return new Quad(Quad.defaultGraphIRI, s, predicate, NodeFactory.createLiteralString("object " + i));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void writeSmallTransaction() {
+        Quad quad = nextQuad();
+        switch (param0_CommitMode) {
+            case "PerWrite":
+                Txn.executeWrite(dsg, () -> dsg.add(quad));
+                break;
+            case "GroupCommit":
+                groupCommit.executeWrite(() -> dsg.add(quad));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown commit mode: " + param0_CommitMode);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception {
+        directory = Files.createTempDirectory("tdb2-group-commit");
+        dsg = DatabaseMgr.connectDatasetGraph(Location.create(directory));
+        groupCommit = DatabaseMgr.getGroupCommit(dsg);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        TDBInternal.expel(dsg);
+        IOX.deleteAll(directory);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        var opt = JMHDefaultOptions.getDefaults(this.getClass())
+                .mode(Mode.Throughput)
+                .timeUnit(TimeUnit.SECONDS)
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(5))
+                .build();
+        var results = new Runner(opt).run();
+        Assert.assertNotNull(results);
+    }
+}
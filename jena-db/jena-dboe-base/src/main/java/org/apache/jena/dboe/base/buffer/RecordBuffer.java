@@ -22,14 +22,18 @@ import static java.lang.String.format;
 import static org.apache.jena.atlas.lib.Alg.encodeIndex;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Iterator;
 
+import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.base.record.RecordMapper;
 
 final public class RecordBuffer extends BufferBase {
     private RecordFactory factory;
+    // Compare keys a long at a time - needs big-endian (network order) storage.
+    private final boolean wordCompare;
 
     // Need own specialized binary search :-(
 
@@ -40,6 +44,7 @@ final public class RecordBuffer extends BufferBase {
     public RecordBuffer(ByteBuffer bb, RecordFactory recFactory, int num) {
         super(bb, recFactory.recordLength(), num);
         this.factory = recFactory;
+        this.wordCompare = ( bb.order() == ByteOrder.BIG_ENDIAN );
     }
 
     public <X> X access(int idx, byte[] key, RecordMapper<X> mapper) {
@@ -180,15 +185,33 @@ final public class RecordBuffer extends BufferBase {
         return encodeIndex(low);
     }
 
+    /**
+     * Compare the key of the record in slot {@code idx} with the given key bytes,
+     * in-place in the buffer, without copying the key out or creating a record.
+     * Returns negative, zero or positive as for {@link Comparable#compareTo}.
+     * No bounds checking.
+     */
+    public int compareKey(int idx, byte[] key) {
+        return compare(idx, key);
+    }
+
     // Record compareByKey except we avoid touching bytes by exiting as soon as
     // possible.
     // No record created as would be by using
     // compareByKey(RecordBuffer.get(idx), record)
     // Compare the slot at idx with value.
+    // Absolute gets only so this is safe for concurrent readers.
     private int compare(int idx, byte[] value) {
         idx = idx * slotLen;
-
-        for ( int i = 0; i < value.length ; i++ ) {
+        int i = 0;
+        // Whole longs. Big-endian so unsigned long order is unsigned byte order.
+        for ( ; wordCompare && i + Long.BYTES <= value.length ; i += Long.BYTES ) {
+            long x1 = bb.getLong(idx + i);
+            long x2 = Bytes.getLong(value, i);
+            if ( x1 != x2 )
+                return Long.compareUnsigned(x1, x2);
+        }
+        for ( ; i < value.length ; i++ ) {
             byte b1 = bb.get(idx + i);
             byte b2 = value[i];
             if ( b1 == b2 )
@@ -23,7 +23,6 @@ import static org.apache.jena.atlas.lib.Alg.decodeIndex;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordMapper;
 
@@ -34,7 +33,6 @@ public class RecordBufferIteratorMapper<X> implements Iterator<X>
     private RecordBuffer rBuff;
     private int nextIdx;
     private X slot = null;
-    private final byte[] keySlot;
     private final Record maxRec;
     private final Record minRec;
     private final RecordMapper<X> mapper;
@@ -45,7 +43,6 @@ public class RecordBufferIteratorMapper<X> implements Iterator<X>
     RecordBufferIteratorMapper(RecordBuffer rBuff, Record minRecord, Record maxRecord, int keyLen, RecordMapper<X> mapper) {
         this.rBuff = rBuff;
         this.mapper = mapper;
-        this.keySlot = (maxRecord==null) ? null : new byte[keyLen];
         nextIdx = 0;
         minRec = minRecord;
         if ( minRec != null ) {
@@ -74,12 +71,13 @@ public class RecordBufferIteratorMapper<X> implements Iterator<X>
             return false;
         }
 
-        slot = rBuff.access(nextIdx, keySlot, mapper);
-        if ( maxRec != null && Bytes.compare(keySlot, maxRec.getKey()) >= 0 ) {
+        // Test the end of the range in-place; no copy of the key.
+        if ( maxRec != null && rBuff.compareKey(nextIdx, maxRec.getKey()) >= 0 ) {
             // Finished - now to large
             finish();
             return false;
         }
+        slot = rBuff.access(nextIdx, null, mapper);
         nextIdx ++;
         return true;
     }
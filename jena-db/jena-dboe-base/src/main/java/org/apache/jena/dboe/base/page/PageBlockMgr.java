@@ -50,12 +50,20 @@ public class PageBlockMgr<T extends Page> implements Closeable
 
     /** Allocate a new thing */
     public T create(BlockType bType) {
-        Block block = blockMgr.allocate(-1);
+        Block block = allocateBlock();
         block.setModified(true);
         T page = pageFactory.createFromBlock(block, bType);
         return page;
     }
 
+    /**
+     * Allocate a writable block for a new page.
+     * Subclasses may provide a block from space they manage themselves.
+     */
+    protected Block allocateBlock() {
+        return blockMgr.allocate(-1);
+    }
+
     /**
      * Fetch a block for reading.
      * @param id Block to fetch
@@ -171,7 +179,7 @@ public class PageBlockMgr<T extends Page> implements Closeable
         Block block = page.getBackingBlock();
         block.getByteBuffer().rewind();
 
-        Block block2 =  blockMgr.allocate(-1);
+        Block block2 = allocateBlock();
         block2.getByteBuffer().put(block.getByteBuffer());
         block2.getByteBuffer().rewind();
         block2.setReadOnly(false);
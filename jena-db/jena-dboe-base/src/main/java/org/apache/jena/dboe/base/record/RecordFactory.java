@@ -95,32 +95,18 @@ public class RecordFactory
         byte[] key = new byte[factory.keyLength];
         byte[] value = (factory.hasValue() ? new byte[factory.valueLength] :null );
 
-        // 2017
-        // It is better use synchronize and bulk get. (~10% faster)
-
-//        int slotLen = factory.recordLength();
-//        int posnKey = idx*slotLen;
-//        // Avoid using position() so we can avoid needing synchronized.
-//        copyInto(key, bb, posnKey, factory.keyLength);
-//        if ( value != null ) {
-//            int posnValue = idx*slotLen+factory.keyLength;
-//            copyInto(value, bb, posnValue, factory.valueLength);
-//        }
-
-        // Using bb.get(byte[],,) - synchronize and bulk get
-        // There's no absolute version.
-        synchronized(bb) {
-            try {
-                bb.position(idx*factory.slotLen);
-                bb.get(key, 0, factory.keyLength);
-                if ( value != null )
-                    bb.get(value, 0, factory.valueLength);
-            } catch (Throwable ex) {
-                // JENA-1908 investigation
-                String msg = String.format("bb.position(%d) idx=%d %s %s\n", idx*factory.slotLen, idx, factory, ByteBufferLib.details(bb));  
-                System.err.printf(msg);
-                throw ex;
-            }
+        // Absolute bulk get (Java13+): thread safe, no position change, and no
+        // need to synchronize on the shared buffer.
+        int posn = idx*factory.slotLen;
+        try {
+            bb.get(posn, key, 0, factory.keyLength);
+            if ( value != null )
+                bb.get(posn+factory.keyLength, value, 0, factory.valueLength);
+        } catch (Throwable ex) {
+            // JENA-1908 investigation
+            String msg = String.format("bb.get(%d) idx=%d %s %s\n", posn, idx, factory, ByteBufferLib.details(bb));
+            System.err.printf(msg);
+            throw ex;
         }
         if ( keyBytes != null )
             System.arraycopy(key, 0, keyBytes, 0, factory.keyLength);
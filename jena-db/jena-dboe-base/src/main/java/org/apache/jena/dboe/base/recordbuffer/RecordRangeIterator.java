@@ -23,10 +23,10 @@ import static org.apache.jena.atlas.lib.Alg.decodeIndex;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.atlas.lib.Closeable;
 import org.apache.jena.dboe.base.StorageException;
 import org.apache.jena.dboe.base.block.BlockException;
+import org.apache.jena.dboe.base.buffer.RecordBuffer;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordMapper;
 
@@ -52,7 +52,6 @@ class RecordRangeIterator<X> implements Iterator<X>, Closeable
     private final Record minRec;
 
     private X slot = null;
-    private final byte[] keySlot;
 
     private long countRecords = 0;
     private long countBlocks = 0;
@@ -63,7 +62,6 @@ class RecordRangeIterator<X> implements Iterator<X>, Closeable
         this.minRec = fromRec;
         this.maxRec = toRec;
         this.mapper = mapper;
-        this.keySlot = new byte[pageMgr.getRecordFactory().keyLength()];
 
         if ( toRec != null && fromRec != null && Record.keyLE(toRec, fromRec) ) {
             currentPage = null;
@@ -117,13 +115,14 @@ class RecordRangeIterator<X> implements Iterator<X>, Closeable
             currentIdx = 0;
         }
 
-        slot = currentPage.getRecordBuffer().access(currentIdx, keySlot, mapper);
-        currentIdx++;
-
-        if ( maxRec != null && Bytes.compare(keySlot, maxRec.getKey()) >= 0 ) {
+        RecordBuffer rBuff = currentPage.getRecordBuffer();
+        // End of range test done in-place; no copy of the key.
+        if ( maxRec != null && rBuff.compareKey(currentIdx, maxRec.getKey()) >= 0 ) {
             close();
             return false;
         }
+        slot = rBuff.access(currentIdx, null, mapper);
+        currentIdx++;
 
         if ( slot == null ) {
             close();
@@ -267,7 +267,55 @@ public class TestRecordBuffer
         same(iter, 4, 6, 8 );
     }
 
+    @Test public void recBufferIterate12() {
+        RecordBuffer rb = make(5,5);
+        Iterator<Record> iter = rb.iterator( intToRecord(3), intToRecord(9), RecordFactory.mapperRecord);
+        same(iter, 4, 6, 8 );
+    }
+
+    @Test public void recBufferIterate13() {
+        RecordBuffer rb = make(5,5);
+        Iterator<Record> iter = rb.iterator( null, intToRecord(2), RecordFactory.mapperRecord);
+        same(iter);
+    }
+
+    // Keys longer than 8 bytes: compared a long at a time, then the remaining bytes.
+    @Test public void recBufferCompare01() {
+        RecordFactory factory = new RecordFactory(12, 0);
+        RecordBuffer rb = new RecordBuffer(factory, 4);
+        byte[] k1 = key12(0x01, 0x00);
+        byte[] k2 = key12(0x01, 0x7F);
+        byte[] k3 = key12(0x01, 0x80);
+        byte[] k4 = key12(0x80, 0x00);
+        rb.add(factory.create(k1));
+        rb.add(factory.create(k2));
+        rb.add(factory.create(k3));
+        rb.add(factory.create(k4));
+
+        assertEquals(0, rb.compareKey(0, k1));
+        assertTrue(rb.compareKey(0, k2) < 0);
+        assertTrue(rb.compareKey(1, k1) > 0);
+        // Unsigned byte order in the tail and in the leading long.
+        assertTrue(rb.compareKey(2, k2) > 0);
+        assertTrue(rb.compareKey(3, k3) > 0);
+        assertTrue(rb.compareKey(2, k4) < 0);
+        assertEquals(0, rb.compareKey(3, k4));
+
+        assertEquals(2, rb.find(factory.create(k3)));
+        Iterator<Record> iter = rb.iterator(null, factory.create(k3), RecordFactory.mapperRecord);
+        assertArrayEquals(k1, iter.next().getKey());
+        assertArrayEquals(k2, iter.next().getKey());
+        assertFalse(iter.hasNext());
+    }
+
     // ---- Support
+
+    private static byte[] key12(int first, int last) {
+        byte[] b = new byte[12];
+        b[0] = (byte)first;
+        b[11] = (byte)last;
+        return b;
+    }
     private static void contains(RecordBuffer rb, int... vals) {
         assertEquals("Length mismatch: ", vals.length, rb.size());
 
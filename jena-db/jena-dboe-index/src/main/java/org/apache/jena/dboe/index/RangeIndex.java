@@ -19,6 +19,8 @@
 package org.apache.jena.dboe.index;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordMapper;
@@ -30,6 +32,15 @@ public interface RangeIndex extends Index
 
     public <X> Iterator<X> iterator(Record recordMin, Record recordMax, RecordMapper<X> mapper);
 
+    /**
+     * Return records between min (inclusive) and max (exclusive), mapped to X, as a
+     * {@link Spliterator} for parallel processing. Implementations may split the
+     * range; the default does not split it other than by batching.
+     */
+    public default <X> Spliterator<X> spliterator(Record recordMin, Record recordMax, RecordMapper<X> mapper) {
+        return Spliterators.spliteratorUnknownSize(iterator(recordMin, recordMax, mapper), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
     /** Return the record containing the least key - may or may not have the associated value */
     public Record minKey();
 
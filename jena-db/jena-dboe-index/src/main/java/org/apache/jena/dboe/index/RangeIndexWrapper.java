@@ -19,6 +19,7 @@
 package org.apache.jena.dboe.index;
 
 import java.util.Iterator;
+import java.util.Spliterator;
 
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordFactory;
@@ -73,6 +74,10 @@ public class RangeIndexWrapper implements RangeIndex
     public <X> Iterator<X> iterator(Record minRec, Record maxRec, RecordMapper<X> mapper)
     { return rIndex.iterator(minRec, maxRec, mapper); }
 
+    @Override
+    public <X> Spliterator<X> spliterator(Record minRec, Record maxRec, RecordMapper<X> mapper)
+    { return rIndex.spliterator(minRec, maxRec, mapper); }
+
     @Override
     public boolean isEmpty()
     { return rIndex.isEmpty(); }
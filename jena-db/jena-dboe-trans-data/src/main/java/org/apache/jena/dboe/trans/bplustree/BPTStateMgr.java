@@ -18,6 +18,8 @@
 
 package org.apache.jena.dboe.trans.bplustree;
 
+import java.nio.ByteBuffer;
+
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.dboe.base.file.BufferChannel;
 import org.apache.jena.dboe.transaction.txn.StateMgrData;
@@ -30,6 +32,13 @@ import org.slf4j.LoggerFactory;
  * nodes and records.
  *
  * (rootId/int-as-long, nodeAllocLimit/long, recordsAllocLimit/long)
+ *
+ * If the tree reuses blocks, this is followed by the blocks that are not part of the
+ * tree and can be reused (see {@link BptFreeBlocks}).
+ *
+ * (count/int, node block ids/int ..., count/int, records block ids/int ...)
+ *
+ * This section is not written if there are no free blocks.
  */
 public class BPTStateMgr extends StateMgrData {
     private static Logger log = LoggerFactory.getLogger(BPTStateMgr.class);
@@ -46,6 +55,11 @@ public class BPTStateMgr extends StateMgrData {
     private void nodeBlocksLimit(long x)        { super.set(idxNodeBlocksLimit, x); }
     private void recordsBlocksLimit(long x)     { super.set(idxRecordsBlocksLimit, x); }
 
+    // Not initialized here: deserialize is called from the superclass constructor.
+    private int[] freeNodeBlocks;
+    private int[] freeRecordsBlocks;
+    private static final int[] noBlocks = new int[0];
+
     private boolean LOGGING = BPT.Logging;
 
     public BPTStateMgr(BufferChannel storage) {
@@ -63,6 +77,53 @@ public class BPTStateMgr extends StateMgrData {
         // But don't write it.
     }
 
+    /** Set the state, including the free blocks - does not write it to disk. */
+    public void setState(int rootIdx, long nodeBlkLimit, long recordsBlkLimit, int[] freeNodes, int[] freeRecords) {
+        freeNodeBlocks = freeNodes;
+        freeRecordsBlocks = freeRecords;
+        setState(rootIdx, nodeBlkLimit, recordsBlkLimit);
+    }
+
+    @Override
+    protected ByteBuffer serialize(ByteBuffer bytes) {
+        int[] nodes = getFreeNodeBlocks();
+        int[] records = getFreeRecordsBlocks();
+        int size = 3 * Long.BYTES;
+        if ( nodes.length > 0 || records.length > 0 )
+            size += (2 + nodes.length + records.length) * Integer.BYTES;
+        if ( bytes.capacity() != size )
+            bytes = ByteBuffer.allocate(size);
+        bytes.clear();
+        super.serialize(bytes);
+        if ( size > 3 * Long.BYTES ) {
+            putBlocks(bytes, nodes);
+            putBlocks(bytes, records);
+        }
+        return bytes;
+    }
+
+    private static void putBlocks(ByteBuffer bytes, int[] blocks) {
+        bytes.putInt(blocks.length);
+        for ( int id : blocks )
+            bytes.putInt(id);
+    }
+
+    @Override
+    protected void deserialize(ByteBuffer bytes) {
+        super.deserialize(bytes);
+        freeNodeBlocks = getBlocks(bytes);
+        freeRecordsBlocks = getBlocks(bytes);
+    }
+
+    private static int[] getBlocks(ByteBuffer bytes) {
+        if ( bytes.remaining() < Integer.BYTES )
+            return noBlocks;
+        int[] blocks = new int[bytes.getInt()];
+        for ( int i = 0 ; i < blocks.length ; i++ )
+            blocks[i] = bytes.getInt();
+        return blocks;
+    }
+
     @Override
     protected void writeStateEvent() {
         log("Write");
@@ -89,4 +150,14 @@ public class BPTStateMgr extends StateMgrData {
     public long getRecordsBlocksLimit() {
         return recordsBlocksLimit();
     }
+
+    /** Node blocks that are not in use by the tree. */
+    public int[] getFreeNodeBlocks() {
+        return freeNodeBlocks == null ? noBlocks : freeNodeBlocks;
+    }
+
+    /** Records blocks that are not in use by the tree. */
+    public int[] getFreeRecordsBlocks() {
+        return freeRecordsBlocks == null ? noBlocks : freeRecordsBlocks;
+    }
 }
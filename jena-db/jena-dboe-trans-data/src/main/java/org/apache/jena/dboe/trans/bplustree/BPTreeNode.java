@@ -431,6 +431,7 @@ public final class BPTreeNode extends BPTreePage
             boolean b = bpTree.getNodeManager().promoteDuplicate(this);
             if ( b ) {
                 bpTree.getNodeManager().getBlockMgr().release(oldBlock);
+                bpTree.state().releaseNodeBlock(oldBlock.getId().intValue());
             }
             return b;
         }
@@ -440,7 +441,12 @@ public final class BPTreeNode extends BPTreePage
     final void release()        { bpTree.getNodeManager().release(this); }
 
     @Override
-    final void free()           { bpTree.getNodeManager().free(this); }
+    final void free() {
+        BptTxnState state = bpTree.state();
+        if ( state != null )
+            state.releaseNodeBlock(getId());
+        bpTree.getNodeManager().free(this);
+    }
 
     // ============ SEARCH
 
@@ -38,8 +38,25 @@ public final class BPTreeNodeMgr extends PageBlockMgr<BPTreeNode>
     // Only "public" for external very low level tools in development to access this class.
     // Assume package access.
 
+    private final BPlusTree bpTree;
+
     public BPTreeNodeMgr(BPlusTree bpTree, BlockMgr blockMgr) {
         super(new Block2BPTreeNode(bpTree), blockMgr);
+        this.bpTree = bpTree;
+    }
+
+    /** Use a free block if the transaction has one. */
+    @Override
+    protected Block allocateBlock() {
+        BptTxnState state = bpTree.state();
+        int id = ( state == null ) ? -1 : state.reuseNodeBlock();
+        if ( id < 0 )
+            return super.allocateBlock();
+        Block block = blockMgr.getWrite(id);
+        block.getByteBuffer().rewind();
+        block.setReadOnly(false);
+        block.setModified(true);
+        return block;
     }
 
     /** Allocate space for a fresh node. */
@@ -50,14 +50,12 @@ class BPTreeRangeIteratorMapper<X> implements Iterator<X> {
     final private RecordMapper<X> mapper;
     private Iterator<X> current;
     private X slot = null;
-    final private byte[] keySlot;
     private boolean finished = false;
 
     BPTreeRangeIteratorMapper(BPTreeNode node, Record minRec, Record maxRec, int keyLength, RecordMapper<X> mapper) {
         this.minRecord = minRec;
         this.maxRecord = maxRec;
         this.mapper = mapper;
-        this.keySlot = new byte[keyLength];
 
         BPTreeRecords r = loadStack(node);
         current = getRecordsIterator(r, minRecord, maxRecord, mapper);
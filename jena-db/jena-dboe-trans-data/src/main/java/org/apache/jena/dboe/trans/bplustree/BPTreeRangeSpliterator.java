@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordMapper;
+
+/**
+ * Spliterator over a key range of a B+Tree, for parallel scans.
+ * <p>
+ * The range [min, max) is split at the keys of the tree nodes, starting from the
+ * highest node that has more than one subtree in the range, so each part is a set
+ * of whole subtrees (except at the ends of the range). The part before the split
+ * key is returned by {@link #trySplit}, keeping the encounter order. Once iteration
+ * has started, the spliterator no longer splits.
+ * <p>
+ * The tree root is fixed when the spliterator is created; use it within the
+ * transaction that created it and without concurrent changes to the tree.
+ */
+class BPTreeRangeSpliterator<X> implements Spliterator<X> {
+
+    private final BPTreeNode root;
+    private final int keyLength;
+    private final RecordMapper<X> mapper;
+    private Record minRecord;
+    private final Record maxRecord;
+    private long estimate;
+    private Iterator<X> iterator = null;
+
+    BPTreeRangeSpliterator(BPTreeNode root, Record minRec, Record maxRec, int keyLength, RecordMapper<X> mapper) {
+        this(root, minRec, maxRec, keyLength, mapper, Long.MAX_VALUE);
+    }
+
+    private BPTreeRangeSpliterator(BPTreeNode root, Record minRec, Record maxRec, int keyLength, RecordMapper<X> mapper, long estimate) {
+        this.root = root;
+        this.minRecord = minRec;
+        this.maxRecord = maxRec;
+        this.keyLength = keyLength;
+        this.mapper = mapper;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super X> action) {
+        Iterator<X> iter = iterator();
+        if ( ! iter.hasNext() )
+            return false;
+        action.accept(iter.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super X> action) {
+        iterator().forEachRemaining(action);
+    }
+
+    private Iterator<X> iterator() {
+        if ( iterator == null )
+            iterator = BPTreeRangeIteratorMapper.create(root, minRecord, maxRecord, keyLength, mapper);
+        return iterator;
+    }
+
+    @Override
+    public Spliterator<X> trySplit() {
+        if ( iterator != null )
+            return null;
+        Record splitKey = splitKey();
+        if ( splitKey == null )
+            return null;
+        // Unknown sizes: halve the estimate so that a parallel stream stops splitting.
+        estimate = estimate >>> 1;
+        Spliterator<X> prefix = new BPTreeRangeSpliterator<>(root, minRecord, splitKey, keyLength, mapper, estimate);
+        minRecord = splitKey;
+        return prefix;
+    }
+
+    /**
+     * Find a key strictly inside the range at a node boundary: the first key after
+     * the highest key of a subtree. Return null if the range is within one records
+     * block.
+     */
+    private Record splitKey() {
+        if ( minRecord != null && maxRecord != null && Record.keyGE(minRecord, maxRecord) )
+            return null;
+        BPlusTree bpTree = root.bpTree;
+        bpTree.startReadBlkMgr();
+        try {
+            BPTreeNode node = root;
+            for (;;) {
+                int x1 = ( minRecord == null ) ? 0 : BPT.apply(node.findSlot(minRecord));
+                int x2 = ( maxRecord == null ) ? node.getCount() : BPT.apply(node.findSlot(maxRecord));
+                if ( x1 < x2 ) {
+                    // Subtrees x1 to x2 cover the range: split after the middle one.
+                    int j = (x1 + x2 - 1) / 2;
+                    Record key = successor(node.getRecordBuffer().get(j));
+                    if ( key == null )
+                        return null;
+                    if ( maxRecord != null && Record.keyGE(key, maxRecord) )
+                        return null;
+                    return key;
+                }
+                // One subtree only.
+                if ( node.isLeaf() )
+                    // Next level down is a records block.
+                    return null;
+                node = (BPTreeNode)node.get(x1);
+            }
+        } finally { bpTree.finishReadBlkMgr(); }
+    }
+
+    /** The least key greater than the key of the record, or null if there is none. */
+    private static Record successor(Record record) {
+        byte[] key = record.getKey().clone();
+        for ( int i = key.length - 1 ; i >= 0 ; i-- ) {
+            key[i]++;
+            if ( key[i] != 0 )
+                return new Record(key, null);
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+}
@@ -135,8 +135,10 @@ public final class BPTreeRecords extends BPTreePage {
         } else {
             Block oldBlock = getBackingBlock();
             boolean b = bprRecordsMgr.promoteDuplicate(this);
-            if ( b )
+            if ( b ) {
                 bprRecordsMgr.getBlockMgr().release(oldBlock);
+                bpTree.state().releaseRecordsBlock(oldBlock.getId().intValue());
+            }
             return b;
         }
 
@@ -149,6 +151,9 @@ public final class BPTreeRecords extends BPTreePage {
 
     @Override
     final public void free() {
+        BptTxnState state = ( bpTree == null ) ? null : bpTree.state();
+        if ( state != null )
+            state.releaseRecordsBlock(getId());
         bprRecordsMgr.free(this);
     }
 
@@ -73,6 +73,20 @@ final public class BPTreeRecordsMgr extends PageBlockMgr<BPTreeRecords>
         }
     }
 
+    /** Use a free block if the transaction has one. */
+    @Override
+    protected Block allocateBlock() {
+        BptTxnState state = ( bpTree == null ) ? null : bpTree.state();
+        int id = ( state == null ) ? -1 : state.reuseRecordsBlock();
+        if ( id < 0 )
+            return super.allocateBlock();
+        Block block = blockMgr.getWrite(id);
+        block.getByteBuffer().rewind();
+        block.setReadOnly(false);
+        block.setModified(true);
+        return block;
+    }
+
     public BPTreeRecords create() {
         return super.create(BlockType.RECORD_BLOCK);
 //
@@ -20,6 +20,7 @@ package org.apache.jena.dboe.trans.bplustree;
 
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 import org.apache.jena.atlas.io.IndentedWriter;
 import org.apache.jena.atlas.iterator.Iter;
@@ -128,6 +129,8 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
     private final BPlusTreeParams bpTreeParams;
     private Mode mode = Mode.TRANSACTIONAL;
     private BptTxnState nonTxnState = null;
+    // Null if blocks are not reused.
+    private BptFreeBlocks freeBlocks = null;
 
     // Construction is a two stage process
     //    1/ Create the object, uninitialized
@@ -364,6 +367,21 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
         return BPTreeRangeIteratorMapper.create(node, minRec, maxRec, keyLen, mapper);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The spliterator splits the range at the boundaries of subtrees.
+     */
+    @Override
+    public <X> Spliterator<X> spliterator(Record minRec, Record maxRec, RecordMapper<X> mapper) {
+        startReadBlkMgr();
+        BPTreeNode root = getRootRead();
+        releaseRootRead(root);
+        finishReadBlkMgr();
+        int keyLen = recordsMgr.getRecordBufferPageMgr().getRecordFactory().keyLength();
+        return new BPTreeRangeSpliterator<>(root, minRec, maxRec, keyLen, mapper);
+    }
+
     // Internal calls.
     void startReadBlkMgr() {
         nodeManager.startRead();
@@ -469,6 +487,24 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
         setMode(Mode.MUTABLE);
     }
 
+    /**
+     * Reuse the blocks that a write transaction no longer needs, once no
+     * transaction can still see them, instead of always extending the files.
+     * Set before the B+Tree is used.
+     */
+    public void setReuseBlocks(boolean reuse) {
+        if ( !reuse ) {
+            freeBlocks = null;
+            return;
+        }
+        if ( freeBlocks == null )
+            freeBlocks = new BptFreeBlocks(stateManager.getFreeNodeBlocks(), stateManager.getFreeRecordsBlocks());
+    }
+
+    public boolean isReuseBlocks() {
+        return freeBlocks != null;
+    }
+
     private void setMode(Mode newMode) {
 
         mode = newMode;
@@ -502,6 +538,8 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
         rootIdx = stateManager.getRoot();
         nodeManager.resetAlloc(stateManager.getNodeBlocksLimit());
         recordsMgr.resetAlloc(stateManager.getRecordsBlocksLimit());
+        if ( freeBlocks != null )
+            freeBlocks.reset(stateManager.getFreeNodeBlocks(), stateManager.getFreeRecordsBlocks());
     }
 
     @Override
@@ -514,7 +552,18 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
 
     @Override
     protected BptTxnState _begin(ReadWrite readWrite, TxnId txnId) {
-        return createState();
+        return createState(readWrite == ReadWrite.WRITE);
+    }
+
+    private BptTxnState createState(boolean isWrite) {
+        if ( freeBlocks == null )
+            return createState();
+        // The root and the generation of the free blocks must agree.
+        synchronized(freeBlocks) {
+            BptTxnState state = createState();
+            freeBlocks.begin(state, isWrite);
+            return state;
+        }
     }
 
     private BptTxnState createState() {
@@ -528,7 +577,9 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
      */
     @Override
     protected BptTxnState _promote(TxnId txnId, BptTxnState oldState) {
-        BptTxnState newState = createState();
+        if ( freeBlocks != null )
+            freeBlocks.finish(oldState);
+        BptTxnState newState = createState(true);
         return newState;
     }
 
@@ -540,14 +591,24 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
         long nodeLimit = nodeManager.allocLimit();
         long recordsLimit = recordsMgr.allocLimit();
         // But don't write it yet.
-        stateManager.setState(state.getRoot(), nodeLimit, recordsLimit);
+        if ( freeBlocks != null && state.isReuseBlocks() )
+            stateManager.setState(state.getRoot(), nodeLimit, recordsLimit,
+                                  freeBlocks.nodesAfterCommit(state), freeBlocks.recordsAfterCommit(state));
+        else
+            stateManager.setState(state.getRoot(), nodeLimit, recordsLimit);
         return stateManager.getState();
     }
 
     @Override
     protected void _commit(TxnId txnId, BptTxnState state) {
         if ( isWriteTxn() ) {
-            rootIdx = state.getRoot();
+            if ( freeBlocks != null && state.isReuseBlocks() ) {
+                synchronized(freeBlocks) {
+                    rootIdx = state.getRoot();
+                    freeBlocks.commit(state);
+                }
+            } else
+                rootIdx = state.getRoot();
             stateManager.sync();
         }
     }
@@ -562,13 +623,21 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
             // Truncate - logically in block manager space.
             nodeManager.resetAlloc(state.boundaryBlocksNode);
             recordsMgr.resetAlloc(state.boundaryBlocksRecord);
-            stateManager.setState(state.initialroot, state.boundaryBlocksNode, state.boundaryBlocksRecord);
+            if ( freeBlocks != null && state.isReuseBlocks() ) {
+                freeBlocks.abort(state);
+                stateManager.setState(state.initialroot, state.boundaryBlocksNode, state.boundaryBlocksRecord,
+                                      freeBlocks.nodes(), freeBlocks.records());
+            } else
+                stateManager.setState(state.initialroot, state.boundaryBlocksNode, state.boundaryBlocksRecord);
             stateManager.sync();
         }
     }
 
     @Override
-    protected void _complete(TxnId txnId, BptTxnState state) {}
+    protected void _complete(TxnId txnId, BptTxnState state) {
+        if ( freeBlocks != null && state != null )
+            freeBlocks.finish(state);
+    }
 
     @Override
     protected void _shutdown() {}
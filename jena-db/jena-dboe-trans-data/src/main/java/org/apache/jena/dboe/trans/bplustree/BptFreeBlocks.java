@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The blocks of a {@link BPlusTree} that are no longer part of the tree, and when
+ * they can be used again.
+ * <p>
+ * A write transaction does not change blocks of the committed tree; it copies them
+ * (copy-on-write) and the old blocks are then unused by the tree after the commit.
+ * Merging nodes on delete also frees blocks. These blocks are still part of the tree
+ * seen by any transaction that started before the commit, so they are held, tagged
+ * with the commit, until all those transactions have finished. They then go on the
+ * free list and a later write transaction uses them before extending the file.
+ * <p>
+ * The free list, including the blocks being held, is part of the persistent state of
+ * the tree ({@link BPTStateMgr}) so it is written to the journal on commit. After a
+ * restart, there are no active transactions and all the blocks are free.
+ * <p>
+ * Synchronization: the {@link BPlusTree} holds the lock of this object while it
+ * sets the root and the commit generation together.
+ */
+final class BptFreeBlocks {
+    private record Held(long generation, List<Integer> nodes, List<Integer> records) {}
+
+    // Number of commits of write transactions since this object was created.
+    private long generation = 0;
+    // Count of active transactions, by the generation they started in.
+    private final NavigableMap<Long, Integer> active = new TreeMap<>();
+    private final Deque<Integer> freeNodes = new ArrayDeque<>();
+    private final Deque<Integer> freeRecords = new ArrayDeque<>();
+    private final Deque<Held> held = new ArrayDeque<>();
+
+    BptFreeBlocks(int[] nodes, int[] records) {
+        reset(nodes, records);
+    }
+
+    /** Set the free blocks (no transactions active). */
+    synchronized void reset(int[] nodes, int[] records) {
+        freeNodes.clear();
+        freeRecords.clear();
+        held.clear();
+        for ( int id : nodes )
+            freeNodes.add(id);
+        for ( int id : records )
+            freeRecords.add(id);
+    }
+
+    /** Start tracking a transaction. A write transaction takes the free blocks. */
+    synchronized void begin(BptTxnState state, boolean isWrite) {
+        state.generation = generation;
+        active.merge(generation, 1, Integer::sum);
+        if ( isWrite ) {
+            freeHeld();
+            state.setFreeBlocks(new ArrayDeque<>(freeNodes), new ArrayDeque<>(freeRecords));
+            freeNodes.clear();
+            freeRecords.clear();
+        }
+    }
+
+    /** The transaction has finished. Safe to call more than once. */
+    synchronized void finish(BptTxnState state) {
+        if ( state.generation < 0 )
+            return;
+        active.computeIfPresent(state.generation, (g, x) -> x == 1 ? null : x - 1);
+        state.generation = -1;
+    }
+
+    /** A write transaction commits. Unused free blocks are returned, and the blocks it released are held. */
+    synchronized void commit(BptTxnState state) {
+        generation++;
+        freeNodes.addAll(state.getFreeNodes());
+        freeRecords.addAll(state.getFreeRecords());
+        if ( ! state.getReleasedNodes().isEmpty() || ! state.getReleasedRecords().isEmpty() )
+            held.add(new Held(generation, new ArrayList<>(state.getReleasedNodes()), new ArrayList<>(state.getReleasedRecords())));
+    }
+
+    /** A write transaction aborts. All the free blocks it took are free again. */
+    synchronized void abort(BptTxnState state) {
+        freeNodes.addAll(state.getFreeNodes());
+        freeNodes.addAll(state.getReusedNodes());
+        freeRecords.addAll(state.getFreeRecords());
+        freeRecords.addAll(state.getReusedRecords());
+    }
+
+    // Move blocks to the free lists where all transactions that might use them have finished.
+    private void freeHeld() {
+        long oldest = active.isEmpty() ? generation : active.firstKey();
+        while ( ! held.isEmpty() && held.peekFirst().generation() <= oldest ) {
+            Held h = held.removeFirst();
+            freeNodes.addAll(h.nodes());
+            freeRecords.addAll(h.records());
+        }
+    }
+
+    /** The free node blocks, including held ones, as they will be after the commit of a write transaction. */
+    synchronized int[] nodesAfterCommit(BptTxnState state) {
+        return toArray(freeNodes, state.getFreeNodes(), state.getReleasedNodes(), held.stream().flatMap(h->h.nodes().stream()).toList());
+    }
+
+    /** The free records blocks, including held ones, as they will be after the commit of a write transaction. */
+    synchronized int[] recordsAfterCommit(BptTxnState state) {
+        return toArray(freeRecords, state.getFreeRecords(), state.getReleasedRecords(), held.stream().flatMap(h->h.records().stream()).toList());
+    }
+
+    /** The free node blocks, including held ones. */
+    synchronized int[] nodes() {
+        return toArray(freeNodes, held.stream().flatMap(h->h.nodes().stream()).toList());
+    }
+
+    /** The free records blocks, including held ones. */
+    synchronized int[] records() {
+        return toArray(freeRecords, held.stream().flatMap(h->h.records().stream()).toList());
+    }
+
+    @SafeVarargs
+    private static int[] toArray(Collection<Integer>... collections) {
+        int size = 0;
+        for ( Collection<Integer> c : collections )
+            size += c.size();
+        int[] ids = new int[size];
+        int i = 0;
+        for ( Collection<Integer> c : collections ) {
+            for ( int id : c )
+                ids[i++] = id;
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BptFreeBlocks: [generation=%d, nodes=%d, records=%d, held=%d]",
+                             generation, freeNodes.size(), freeRecords.size(), held.size());
+    }
+}
@@ -18,6 +18,11 @@
 
 package org.apache.jena.dboe.trans.bplustree;
 
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /** Transactional state of a {@link BPlusTree} */
 final class BptTxnState {
     final int initialroot;
@@ -29,6 +34,20 @@ final class BptTxnState {
     final long boundaryBlocksNode;
     final long boundaryBlocksRecord;
 
+    // Block reuse (see BptFreeBlocks).
+    // The commit generation when the transaction started; -1 if not tracked.
+    long generation = -1;
+    // Only set for a write transaction when there is block reuse.
+    // Blocks available to the transaction.
+    private Deque<Integer> freeNodes = null;
+    private Deque<Integer> freeRecords = null;
+    // Free blocks used by this transaction. They are modifiable in-place.
+    private Set<Integer> reusedNodes = null;
+    private Set<Integer> reusedRecords = null;
+    // Blocks this transaction has stopped using.
+    private Set<Integer> releasedNodes = null;
+    private Set<Integer> releasedRecords = null;
+
     BptTxnState(int initRoot, long boundaryNode, long boundaryRecords) {
         this.initialroot = initRoot;
         this.root = initRoot;
@@ -39,15 +58,67 @@ final class BptTxnState {
     boolean modifiableNodeBlock(int id) {
         if ( BPT.forcePromoteModes )
             return ! BPT.promoteDuplicateNodes;
-        return id >= boundaryBlocksNode;
+        return id >= boundaryBlocksNode || ( reusedNodes != null && reusedNodes.contains(id) );
     }
 
     boolean modifiableRecordsBlock(int id) {
         if ( BPT.forcePromoteModes )
             return ! BPT.promoteDuplicateRecords;
-        return id >= boundaryBlocksRecord;
+        return id >= boundaryBlocksRecord || ( reusedRecords != null && reusedRecords.contains(id) );
     }
 
+    /** Make free blocks available to this (write) transaction. */
+    void setFreeBlocks(Deque<Integer> nodes, Deque<Integer> records) {
+        freeNodes = nodes;
+        freeRecords = records;
+        reusedNodes = new HashSet<>();
+        reusedRecords = new HashSet<>();
+        releasedNodes = new LinkedHashSet<>();
+        releasedRecords = new LinkedHashSet<>();
+    }
+
+    boolean isReuseBlocks() {
+        return freeNodes != null;
+    }
+
+    /** A free node block to use, or -1 for none. */
+    int reuseNodeBlock() {
+        return reuse(freeNodes, reusedNodes);
+    }
+
+    /** A free records block to use, or -1 for none. */
+    int reuseRecordsBlock() {
+        return reuse(freeRecords, reusedRecords);
+    }
+
+    private static int reuse(Deque<Integer> free, Set<Integer> reused) {
+        if ( free == null || free.isEmpty() )
+            return -1;
+        int id = free.removeFirst();
+        reused.add(id);
+        return id;
+    }
+
+    /** Note that the tree of this transaction no longer uses a node block. */
+    void releaseNodeBlock(int id) {
+        if ( isReuseBlocks() )
+            releasedNodes.add(id);
+    }
+
+    /** Note that the tree of this transaction no longer uses a records block. */
+    void releaseRecordsBlock(int id) {
+        if ( isReuseBlocks() )
+            releasedRecords.add(id);
+    }
+
+    // Accessors for BptFreeBlocks: only called if isReuseBlocks() is true.
+    Deque<Integer> getFreeNodes()       { return freeNodes; }
+    Deque<Integer> getFreeRecords()     { return freeRecords; }
+    Set<Integer> getReusedNodes()       { return reusedNodes; }
+    Set<Integer> getReusedRecords()     { return reusedRecords; }
+    Set<Integer> getReleasedNodes()     { return releasedNodes; }
+    Set<Integer> getReleasedRecords()   { return releasedRecords; }
+
     @Override
     public String toString() {
         return "BptTxnState: [root="+root+", n="+boundaryBlocksNode+", r="+boundaryBlocksRecord+"]";
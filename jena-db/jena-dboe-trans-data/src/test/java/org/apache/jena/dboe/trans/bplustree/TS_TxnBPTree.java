@@ -33,6 +33,8 @@ import org.junit.runners.Suite;
 
     // Transactional tests
     TestBPlusTreeTxn.class,
+    TestBPlusTreeReuseBlocks.class,
+    TestBPlusTreeSpliterator.class,
 
     // Rewriter
     TestBPlusTreeRewriterNonTxn.class
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.apache.jena.dboe.index.testlib.IndexTestLib;
+import org.apache.jena.dboe.test.RecordLib;
+import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.system.Txn;
+import org.junit.Test;
+
+/** Tests of a B+Tree reusing blocks that are no longer in use */
+public class TestBPlusTreeReuseBlocks {
+
+    private static int[] keys = IntStream.rangeClosed(1, 100).toArray();
+
+    private static BPlusTree createBPTree(boolean reuse) {
+        BPlusTree bpt = BPlusTreeFactory.makeMem(2, 2, RecordLib.TestRecordLength, 0);
+        bpt.setReuseBlocks(reuse);
+        return bpt;
+    }
+
+    // Each round deletes and re-adds some keys.
+    private static void updates(Transactional thing, BPlusTree bpt, int rounds) {
+        for ( int i = 0 ; i < rounds ; i++ ) {
+            int k = 1 + (i * 7) % 90;
+            Txn.executeWrite(thing, () -> IndexTestLib.delete(bpt, k, k + 1, k + 5));
+            Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, k, k + 1, k + 5));
+        }
+    }
+
+    private static long allocated(BPlusTree bpt) {
+        return bpt.getNodeManager().allocLimit() + bpt.getRecordsMgr().allocLimit();
+    }
+
+    @Test public void reuse_01() {
+        BPlusTree bpt = createBPTree(true);
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, keys));
+        updates(thing, bpt, 20);
+        long size1 = allocated(bpt);
+        updates(thing, bpt, 50);
+        long size2 = allocated(bpt);
+        assertEquals(size1, size2);
+        Txn.executeRead(thing, () -> {
+            bpt.check();
+            IndexTestLib.testIndexContents(bpt, keys);
+        });
+    }
+
+    // Without reuse, the files grow.
+    @Test public void reuse_02() {
+        BPlusTree bpt = createBPTree(false);
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, keys));
+        updates(thing, bpt, 20);
+        long size1 = allocated(bpt);
+        updates(thing, bpt, 50);
+        long size2 = allocated(bpt);
+        assertTrue(size2 > size1);
+    }
+
+    // A reader keeps its view of the tree while there are writers, and the blocks
+    // it can see are reused after it finishes.
+    @Test public void reuse_03() throws Exception {
+        BPlusTree bpt = createBPTree(true);
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, keys));
+        updates(thing, bpt, 20);
+        long size1 = allocated(bpt);
+
+        CountDownLatch readerStarted = new CountDownLatch(1);
+        CountDownLatch writesDone = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader = executor.submit(() -> Txn.executeRead(thing, () -> {
+                readerStarted.countDown();
+                try { writesDone.await(); } catch (InterruptedException ex) { throw new RuntimeException(ex); }
+                bpt.check();
+                IndexTestLib.testIndexContents(bpt, keys);
+            }));
+            readerStarted.await();
+            for ( int i = 1 ; i <= 50 ; i++ ) {
+                int k = i;
+                Txn.executeWrite(thing, () -> IndexTestLib.delete(bpt, k));
+            }
+            long size2 = allocated(bpt);
+            assertTrue(size2 > size1);
+            writesDone.countDown();
+            reader.get();
+            Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, IntStream.rangeClosed(1, 50).toArray()));
+            updates(thing, bpt, 20);
+            assertEquals(size2, allocated(bpt));
+        } finally {
+            executor.shutdown();
+        }
+        Txn.executeRead(thing, () -> IndexTestLib.testIndexContents(bpt, keys));
+    }
+
+    // Abort returns the blocks taken.
+    @Test public void reuse_04() {
+        BPlusTree bpt = createBPTree(true);
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, keys));
+        updates(thing, bpt, 20);
+        long size1 = allocated(bpt);
+        int free1 = bpt.getStateManager().getFreeNodeBlocks().length + bpt.getStateManager().getFreeRecordsBlocks().length;
+        assertTrue(free1 > 0);
+
+        thing.begin(ReadWrite.WRITE);
+        IndexTestLib.delete(bpt, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        thing.abort();
+        thing.end();
+        int free2 = bpt.getStateManager().getFreeNodeBlocks().length + bpt.getStateManager().getFreeRecordsBlocks().length;
+        assertEquals(free1, free2);
+        assertEquals(size1, allocated(bpt));
+        updates(thing, bpt, 20);
+        assertEquals(size1, allocated(bpt));
+        Txn.executeRead(thing, () -> IndexTestLib.testIndexContents(bpt, keys));
+    }
+
+    // The free blocks are kept in the persistent state.
+    @Test public void reuse_05() {
+        BPlusTree bpt = createBPTree(true);
+        Transactional thing = TestBPlusTreeTxn.transactional(bpt);
+        Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, keys));
+        updates(thing, bpt, 5);
+        BPTStateMgr stateMgr = bpt.getStateManager();
+        assertTrue(stateMgr.getFreeNodeBlocks().length > 0);
+
+        BPTStateMgr stateMgr2 = new BPTStateMgr(stateMgr.getBufferChannel());
+        assertEquals(stateMgr.getRoot(), stateMgr2.getRoot());
+        assertEquals(stateMgr.getNodeBlocksLimit(), stateMgr2.getNodeBlocksLimit());
+        assertEquals(stateMgr.getRecordsBlocksLimit(), stateMgr2.getRecordsBlocksLimit());
+        assertArrayEquals(stateMgr.getFreeNodeBlocks(), stateMgr2.getFreeNodeBlocks());
+        assertArrayEquals(stateMgr.getFreeRecordsBlocks(), stateMgr2.getFreeRecordsBlocks());
+
+        // Delete everything; fewer free blocks are recorded later.
+        Txn.executeWrite(thing, () -> IndexTestLib.delete(bpt, keys));
+        Txn.executeWrite(thing, () -> IndexTestLib.add(bpt, 1));
+        BPTStateMgr stateMgr3 = new BPTStateMgr(stateMgr.getBufferChannel());
+        assertArrayEquals(stateMgr.getFreeNodeBlocks(), stateMgr3.getFreeNodeBlocks());
+        assertArrayEquals(stateMgr.getFreeRecordsBlocks(), stateMgr3.getFreeRecordsBlocks());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import static org.apache.jena.dboe.test.RecordLib.r;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.index.testlib.IndexTestLib;
+import org.apache.jena.dboe.test.RecordLib;
+import org.junit.Test;
+
+/** Tests of splitting a B+Tree range scan */
+public class TestBPlusTreeSpliterator {
+
+    private static BPlusTree createBPTree(int N) {
+        BPlusTree bpt = BPlusTreeFactory.makeMem(2, 2, RecordLib.TestRecordLength, 0);
+        bpt.nonTransactional();
+        IndexTestLib.add(bpt, IntStream.range(0, N).map(i -> 2 * i).toArray());
+        return bpt;
+    }
+
+    // Split all the way down, then process the splits in order.
+    private static List<Record> splitAll(Spliterator<Record> spliterator) {
+        List<Record> results = new ArrayList<>();
+        Spliterator<Record> prefix = spliterator.trySplit();
+        if ( prefix == null ) {
+            spliterator.forEachRemaining(results::add);
+            return results;
+        }
+        results.addAll(splitAll(prefix));
+        results.addAll(splitAll(spliterator));
+        return results;
+    }
+
+    private static List<Record> sequential(BPlusTree bpt, Record min, Record max) {
+        List<Record> results = new ArrayList<>();
+        Iterator<Record> iter = bpt.iterator(min, max);
+        iter.forEachRemaining(results::add);
+        return results;
+    }
+
+    private static void test(BPlusTree bpt, Record min, Record max) {
+        List<Record> expected = sequential(bpt, min, max);
+        List<Record> actual = splitAll(bpt.spliterator(min, max, RecordFactory.mapperRecord));
+        assertEquals(expected, actual);
+        long count = StreamSupport.stream(bpt.spliterator(min, max, RecordFactory.mapperRecord), true).count();
+        assertEquals(expected.size(), count);
+    }
+
+    @Test public void spliterator_01() {
+        BPlusTree bpt = createBPTree(0);
+        test(bpt, null, null);
+    }
+
+    @Test public void spliterator_02() {
+        BPlusTree bpt = createBPTree(1000);
+        test(bpt, null, null);
+    }
+
+    @Test public void spliterator_03() {
+        BPlusTree bpt = createBPTree(1000);
+        test(bpt, r(101), r(1501));
+        test(bpt, r(100), r(1500));
+        test(bpt, null, r(7));
+        test(bpt, r(1990), null);
+        test(bpt, r(500), r(500));
+    }
+
+    @Test public void spliterator_04() {
+        BPlusTree bpt = createBPTree(1000);
+        Spliterator<Record> spliterator = bpt.spliterator(null, null, RecordFactory.mapperRecord);
+        Spliterator<Record> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        // Once started, no more splits.
+        assertTrue(spliterator.tryAdvance(rec -> {}));
+        assertNull(spliterator.trySplit());
+    }
+}
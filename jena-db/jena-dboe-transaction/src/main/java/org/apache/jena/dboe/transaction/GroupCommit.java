@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.transaction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.jena.dboe.transaction.txn.TransactionException;
+import org.apache.jena.query.TxnType;
+
+/**
+ * Group commit: write actions from different threads that arrive together are
+ * executed back to back in one write transaction, so they share the journal write
+ * and the disk syncs of a single commit.
+ * <p>
+ * The first thread to arrive when no group is being executed becomes the leader.
+ * It waits up to {@code maxDelayMillis} for more actions (or until there are
+ * {@code maxGroupSize} actions), then runs them all in one write transaction and
+ * commits. The other threads wait until their action has been committed, or has
+ * failed. When the leader's own action is done, a waiting thread takes over
+ * leadership so that queued actions commit in groups one after another.
+ * <p>
+ * If an action throws an exception, the transaction is aborted; the action is
+ * reported to its caller as failed and the rest of the group is executed again.
+ * Actions must therefore be safe to run more than once; only the effects of the
+ * run that commits are kept. Actions must not start or finish transactions.
+ * <p>
+ * The changes of a group become visible together and a crash loses or keeps the
+ * group as a whole. Each caller returns only after the commit of its group.
+ */
+public class GroupCommit {
+
+    private static class Request {
+        final Supplier<?> action;
+        boolean done = false;
+        Object result = null;
+        Throwable error = null;
+        Request(Supplier<?> action) { this.action = action; }
+    }
+
+    private final org.apache.jena.sparql.core.Transactional transactional;
+    private final int maxGroupSize;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<Request> queue = new ArrayDeque<>();
+    private boolean hasLeader = false;
+
+    private final AtomicLong countActions = new AtomicLong(0);
+    private final AtomicLong countCommits = new AtomicLong(0);
+
+    /**
+     * Group commit for the given transactional.
+     *
+     * @param transactional  The dataset or other transactional object.
+     * @param maxGroupSize   Maximum number of actions in one transaction.
+     * @param maxDelayMillis Time for a leader to wait for other actions; 0 for "no wait"
+     *     (groups are then formed only from actions queued while the previous group
+     *     was executing).
+     */
+    public GroupCommit(org.apache.jena.sparql.core.Transactional transactional, int maxGroupSize, long maxDelayMillis) {
+        Objects.requireNonNull(transactional);
+        if ( maxGroupSize < 1 )
+            throw new IllegalArgumentException("maxGroupSize must be at least 1: "+maxGroupSize);
+        if ( maxDelayMillis < 0 )
+            throw new IllegalArgumentException("maxDelayMillis is negative: "+maxDelayMillis);
+        this.transactional = transactional;
+        this.maxGroupSize = maxGroupSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    /** Execute the action in a write transaction, possibly shared with other actions. */
+    public void executeWrite(Runnable action) {
+        calculateWrite(() -> { action.run(); return null; });
+    }
+
+    /** Execute the action in a write transaction, possibly shared with other actions, and return its result. */
+    @SuppressWarnings("unchecked")
+    public <X> X calculateWrite(Supplier<X> action) {
+        Objects.requireNonNull(action);
+        if ( transactional.isInTransaction() )
+            throw new TransactionException("Already in a transaction");
+        Request request = new Request(action);
+        lock.lock();
+        try {
+            queue.add(request);
+            changed.signalAll();
+            while ( !request.done && hasLeader )
+                changed.awaitUninterruptibly();
+            if ( !request.done )
+                hasLeader = true;
+        } finally { lock.unlock(); }
+
+        if ( !request.done )
+            lead(request);
+
+        if ( request.error != null ) {
+            if ( request.error instanceof RuntimeException ex )
+                throw ex;
+            if ( request.error instanceof Error err )
+                throw err;
+            throw new TransactionException(request.error);
+        }
+        return (X)request.result;
+    }
+
+    /** Execute groups until the leader's own action is done, then hand over. */
+    private void lead(Request own) {
+        try {
+            while ( !own.done ) {
+                List<Request> group = nextGroup();
+                execute(group);
+                lock.lock();
+                try {
+                    group.forEach(r -> r.done = true);
+                    changed.signalAll();
+                } finally { lock.unlock(); }
+            }
+        } finally {
+            lock.lock();
+            try {
+                hasLeader = false;
+                changed.signalAll();
+            } finally { lock.unlock(); }
+        }
+    }
+
+    private List<Request> nextGroup() {
+        lock.lock();
+        try {
+            if ( maxDelayNanos > 0 ) {
+                long remaining = maxDelayNanos;
+                while ( queue.size() < maxGroupSize && remaining > 0 ) {
+                    try { remaining = changed.awaitNanos(remaining); }
+                    catch (InterruptedException ex) { Thread.currentThread().interrupt(); break; }
+                }
+            }
+            List<Request> group = new ArrayList<>(Math.min(queue.size(), maxGroupSize));
+            while ( !queue.isEmpty() && group.size() < maxGroupSize )
+                group.add(queue.removeFirst());
+            return group;
+        } finally { lock.unlock(); }
+    }
+
+    private void execute(List<Request> group) {
+        List<Request> remaining = new ArrayList<>(group);
+        while ( !remaining.isEmpty() ) {
+            Request failed = null;
+            try {
+                transactional.begin(TxnType.WRITE);
+                for ( Request r : remaining ) {
+                    try {
+                        r.result = r.action.get();
+                    } catch (Throwable th) {
+                        r.error = th;
+                        failed = r;
+                        break;
+                    }
+                }
+                if ( failed == null ) {
+                    transactional.commit();
+                    countCommits.incrementAndGet();
+                    countActions.addAndGet(remaining.size());
+                    remaining.clear();
+                } else {
+                    abortSilent();
+                    remaining.remove(failed);
+                    // Results of other actions are recalculated.
+                }
+            } catch (Throwable th) {
+                // Begin or commit failed: the whole group fails.
+                abortSilent();
+                for ( Request r : remaining ) {
+                    r.result = null;
+                    r.error = th;
+                }
+                remaining.clear();
+            } finally {
+                if ( transactional.isInTransaction() )
+                    transactional.end();
+            }
+        }
+    }
+
+    private void abortSilent() {
+        try {
+            if ( transactional.isInTransaction() )
+                transactional.abort();
+        } catch (Throwable th) {}
+    }
+
+    /** Number of actions waiting to be executed. */
+    /*package*/ int queueLength() {
+        lock.lock();
+        try { return queue.size(); }
+        finally { lock.unlock(); }
+    }
+
+    /** Number of actions committed. */
+    public long getCountActions() {
+        return countActions.get();
+    }
+
+    /** Number of commits. */
+    public long getCountCommits() {
+        return countCommits.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupCommit[maxGroupSize=%d, maxDelay=%dms, actions=%d, commits=%d]",
+                             maxGroupSize, TimeUnit.NANOSECONDS.toMillis(maxDelayNanos), getCountActions(), getCountCommits());
+    }
+}
@@ -27,8 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** Helper class for the manage the persistent state of a transactional.
- * The persistent state is assumed to be a fixed size, or at least
- * of known maximum size.
+ * The persistent state is assumed to be small; it is written in full
+ * each time. It is usually of fixed size but {@link #serialize} may
+ * return a larger or smaller buffer.
  * May not be suitable for all transactional component implementations.
  */
 
@@ -123,7 +124,9 @@ public abstract class StateMgrBase implements Sync, Closeable {
      */
     public ByteBuffer getState() {
         bb.rewind();
-        serialize(bb);
+        ByteBuffer bb1 = serialize(bb);
+        if ( bb1 != null )
+            bb = bb1;
         return bb;
     }
 
@@ -149,6 +152,9 @@ public abstract class StateMgrBase implements Sync, Closeable {
             bb = bb1;
         bb.rewind();
         int len = storage.write(bb, 0);
+        // Variable sized state may have become shorter.
+        if ( storage.size() > len )
+            storage.truncate(len);
         storage.sync();
         clearDirtyFlag();
         writeStateEvent();
@@ -156,7 +162,10 @@ public abstract class StateMgrBase implements Sync, Closeable {
 
     /** The read process : get all bytes on disk, deserialize */
     public void readState() {
-        bb.rewind();
+        long size = storage.size();
+        if ( size > bb.capacity() )
+            bb = ByteBuffer.allocate((int)size);
+        bb.clear();
         int len = storage.read(bb, 0);
         bb.rewind();
         deserialize(bb);
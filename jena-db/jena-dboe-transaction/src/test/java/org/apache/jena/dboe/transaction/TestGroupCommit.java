@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.transaction;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.dboe.transaction.txn.TransactionException;
+import org.apache.jena.system.Txn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGroupCommit {
+    private final long InitValue = 7;
+    private TransactionalInteger integer;
+    private ExecutorService executor;
+
+    @Before public void setup() {
+        TransactionCoordinator coord = TransactionCoordinator.create(Location.mem());
+        integer = new TransactionalInteger(coord, InitValue);
+        coord.start();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After public void clearup() {
+        executor.shutdownNow();
+        integer.shutdown();
+    }
+
+    @Test public void groupCommit_01() {
+        GroupCommit groupCommit = new GroupCommit(integer, 10, 0);
+        groupCommit.executeWrite(integer::inc);
+        long x = groupCommit.calculateWrite(()->{ integer.inc(); return integer.get(); });
+        assertEquals(InitValue+2, x);
+        assertEquals(InitValue+2, integer.value());
+        assertEquals(2, groupCommit.getCountActions());
+        assertEquals(2, groupCommit.getCountCommits());
+    }
+
+    // Actions that arrive while a group is executing are committed together.
+    @Test public void groupCommit_02() throws Exception {
+        GroupCommit groupCommit = new GroupCommit(integer, 100, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> first = executor.submit(()->groupCommit.executeWrite(()->{
+            started.countDown();
+            await(release);
+            integer.inc();
+        }));
+        started.await();
+        int N = 10;
+        List<Future<?>> others = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ )
+            others.add(executor.submit(()->groupCommit.executeWrite(integer::inc)));
+        while ( groupCommit.queueLength() < N )
+            Lib.sleep(10);
+        release.countDown();
+        first.get();
+        for ( Future<?> f : others )
+            f.get();
+        assertEquals(InitValue+N+1, integer.value());
+        assertEquals(N+1, groupCommit.getCountActions());
+        assertEquals(2, groupCommit.getCountCommits());
+    }
+
+    // A failing action does not stop the others in its group.
+    @Test public void groupCommit_03() throws Exception {
+        GroupCommit groupCommit = new GroupCommit(integer, 100, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> first = executor.submit(()->groupCommit.executeWrite(()->{
+            started.countDown();
+            await(release);
+        }));
+        started.await();
+        Future<?> f1 = executor.submit(()->groupCommit.executeWrite(integer::inc));
+        while ( groupCommit.queueLength() < 1 )
+            Lib.sleep(10);
+        Future<?> f2 = executor.submit(()->groupCommit.executeWrite(()->{
+            integer.inc();
+            throw new IllegalStateException();
+        }));
+        while ( groupCommit.queueLength() < 2 )
+            Lib.sleep(10);
+        Future<?> f3 = executor.submit(()->groupCommit.executeWrite(integer::inc));
+        while ( groupCommit.queueLength() < 3 )
+            Lib.sleep(10);
+        release.countDown();
+        first.get();
+        f1.get();
+        f3.get();
+        try {
+            f2.get();
+            fail("Expected an exception");
+        } catch (java.util.concurrent.ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(InitValue+2, integer.value());
+        assertEquals(3, groupCommit.getCountActions());
+        assertEquals(2, groupCommit.getCountCommits());
+    }
+
+    // Many threads.
+    @Test public void groupCommit_04() throws Exception {
+        GroupCommit groupCommit = new GroupCommit(integer, 20, 2);
+        int threads = 8;
+        int each = 25;
+        List<Future<?>> futures = new ArrayList<>();
+        for ( int i = 0 ; i < threads ; i++ )
+            futures.add(executor.submit(()->{
+                for ( int j = 0 ; j < each ; j++ )
+                    groupCommit.executeWrite(integer::inc);
+            }));
+        for ( Future<?> f : futures )
+            f.get();
+        assertEquals(InitValue+threads*each, integer.value());
+        assertEquals(threads*each, groupCommit.getCountActions());
+        assertTrue(groupCommit.getCountCommits() <= threads*each);
+    }
+
+    @Test(expected=TransactionException.class)
+    public void groupCommit_05() {
+        GroupCommit groupCommit = new GroupCommit(integer, 10, 0);
+        Txn.executeWrite(integer, ()->groupCommit.executeWrite(integer::inc));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try { latch.await(); } catch (InterruptedException ex) { throw new RuntimeException(ex); }
+    }
+}
@@ -47,6 +47,8 @@ import org.apache.jena.sparql.service.enhancer.impl.ServiceOpts;
  * Checks for the presence of <code>SERVICE &lt;loop:&gt; { }</code>
  * transforms those into linear joins using {@link OpSequence} / {@link OpDisjunction}
  * and adjust variable scopes.
+ * Joins with <code>SERVICE &lt;semijoin:&gt; { }</code> also become linear so that
+ * the service executor receives the lhs bindings; their variable scopes are left as they are.
  *
  * All variables mentioned on the rhs which have the same reverse-renaming as variables
  * visible on the lhs will be substituted with the lhs variant.
@@ -68,6 +70,9 @@ public class TransformSE_JoinStrategy extends TransformCopy
             if (canDoLinear) {
                 NodeTransform joinVarRename = renameForImplicitJoinVars(left);
                 effectiveRight = NodeTransformLib.transform(joinVarRename, right);
+            } else {
+                // A semi-join needs the lhs as input but joins (rather than substitutes) by itself
+                canDoLinear = opts.containsKey(ServiceOpts.SO_SEMIJOIN);
             }
         }
 
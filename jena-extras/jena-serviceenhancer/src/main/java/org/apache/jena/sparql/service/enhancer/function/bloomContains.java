@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.service.enhancer.function;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.QueryBuildException;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.sparql.expr.ExprEvalException;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionBase;
+import org.apache.jena.sparql.service.enhancer.assembler.ServiceEnhancerVocab;
+
+/**
+ * Membership test against a bloom filter over RDF terms:
+ * <code>bloomContains(filter, ?x1, ..., ?xn)</code> is true if the tuple of
+ * the given terms may be in the filter and false if it is definitely not.
+ * The filter is a string produced by {@link #encode(BloomFilter)}.
+ * This is used to send a compact summary of join keys to a remote endpoint.
+ */
+public class bloomContains
+    extends FunctionBase
+{
+    public static final String DEFAULT_IRI = ServiceEnhancerVocab.NS + "bloomContains";
+
+    public static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+
+    /** Decoding is costly; retain the filter for the most recently seen argument. */
+    private record Decoded(String encoded, BloomFilter<CharSequence> filter) {}
+    private volatile Decoded lastDecoded = null;
+
+    @Override
+    public NodeValue exec(List<NodeValue> args) {
+        NodeValue filterArg = args.get(0);
+        if (!filterArg.isString()) {
+            throw new ExprEvalException("bloomContains: first argument must be a string: " + filterArg);
+        }
+
+        String encoded = filterArg.getString();
+        Decoded decoded = lastDecoded;
+        if (decoded == null || !decoded.encoded().equals(encoded)) {
+            decoded = new Decoded(encoded, decode(encoded));
+            lastDecoded = decoded;
+        }
+
+        List<Node> nodes = new ArrayList<>(args.size() - 1);
+        for (int i = 1; i < args.size(); ++i) {
+            nodes.add(args.get(i).asNode());
+        }
+        boolean result = decoded.filter().mightContain(key(nodes));
+        return NodeValue.booleanReturn(result);
+    }
+
+    @Override
+    public void checkBuild(String uri, ExprList args) {
+        if (args.size() < 2) {
+            throw new QueryBuildException("bloomContains: Requires a filter and at least one term");
+        }
+    }
+
+    /** The string under which a tuple of terms is recorded in a filter. */
+    public static String key(List<Node> nodes) {
+        return NodeFmtLib.strNodesNT(nodes.toArray(new Node[0]));
+    }
+
+    public static String encode(BloomFilter<CharSequence> filter) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            filter.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    public static BloomFilter<CharSequence> decode(String encoded) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(encoded);
+            return BloomFilter.readFrom(new ByteArrayInputStream(bytes), FUNNEL);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ExprEvalException("bloomContains: Failed to decode filter", e);
+        }
+    }
+}
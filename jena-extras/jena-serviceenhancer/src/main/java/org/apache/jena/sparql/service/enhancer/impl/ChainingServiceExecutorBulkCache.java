@@ -39,14 +39,23 @@ public class ChainingServiceExecutorBulkCache
     public static final int DFT_BULK_SIZE = 30;
     public static final int DFT_MAX_BULK_SIZE = 100;
     public static final int DFT_MAX_OUT_OUF_BAND_SIZE = 30;
+    public static final int DFT_CONCURRENT_REQUESTS = 1;
 
     protected int bulkSize;
     protected CacheMode cacheMode;
 
+    /** Number of requests in flight at the same time; a value less than 1 defers to the context */
+    protected int concurrentRequests;
+
     public ChainingServiceExecutorBulkCache(int bulkSize, CacheMode cacheMode) {
+        this(bulkSize, cacheMode, -1);
+    }
+
+    public ChainingServiceExecutorBulkCache(int bulkSize, CacheMode cacheMode, int concurrentRequests) {
         super();
         this.cacheMode = cacheMode;
         this.bulkSize = bulkSize;
+        this.concurrentRequests = concurrentRequests;
     }
 
     @Override
@@ -71,7 +80,13 @@ public class ChainingServiceExecutorBulkCache
         Batcher<Node, Binding> scheduler = new Batcher<>(serviceInfo::getSubstServiceNode, bulkSize, maxOutOfBandItemCount);
         IteratorCloseable<GroupedBatch<Node, Long, Binding>> inputBatchIterator = scheduler.batch(input);
 
-        RequestExecutor exec = new RequestExecutor(opExecutor, serviceInfo, resultSizeCache, serviceCache, cacheMode, inputBatchIterator);
+        int effConcurrentRequests = concurrentRequests > 0
+                ? concurrentRequests
+                : cxt.getInt(ServiceEnhancerConstants.serviceConcurrentRequestCount, DFT_CONCURRENT_REQUESTS);
+        boolean orderedMerge = cxt.isTrueOrUndef(ServiceEnhancerConstants.serviceConcurrentOrderedMerge);
+
+        RequestExecutor exec = new RequestExecutor(opExecutor, serviceInfo, resultSizeCache, serviceCache, cacheMode, inputBatchIterator,
+                effConcurrentRequests, orderedMerge);
 
         return exec;
     }
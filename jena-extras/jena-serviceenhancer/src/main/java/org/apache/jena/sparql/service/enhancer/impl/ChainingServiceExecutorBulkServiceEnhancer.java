@@ -18,9 +18,11 @@
 
 package org.apache.jena.sparql.service.enhancer.impl;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.QueryExecException;
@@ -28,6 +30,10 @@ import org.apache.jena.sparql.algebra.Op;
 import org.apache.jena.sparql.algebra.op.OpService;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.join.Join;
 import org.apache.jena.sparql.service.bulk.ChainingServiceExecutorBulk;
 import org.apache.jena.sparql.service.bulk.ServiceExecutorBulk;
 import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerConstants;
@@ -47,6 +53,9 @@ public class ChainingServiceExecutorBulkServiceEnhancer
         boolean enableBulk = false;
 
         int bulkSize = 1;
+        int concurrentRequests = -1;
+        boolean enableLoop = false;
+        int semiJoinMaxValues = -1;
 
         CacheMode cacheMode = null;
         Context cxt = execCxt.getContext();
@@ -62,6 +71,20 @@ public class ChainingServiceExecutorBulkServiceEnhancer
                 // Loop (lateral join) is handled on the algebra level
                 // nothing to do here except for suppressing forward to
                 // to the remainder of the chain
+                enableLoop = true;
+                break;
+            case ServiceOpts.SO_SEMIJOIN: // Restrict the request to the join keys of the input
+                semiJoinMaxValues = cxt.getInt(ServiceEnhancerConstants.serviceSemiJoinMaxValues, ServiceSemiJoin.DFT_MAX_VALUES);
+                try {
+                    if (val == null || val.isBlank()) {
+                        // Ignored
+                    } else {
+                        semiJoinMaxValues = Integer.parseInt(val);
+                    }
+                } catch (Exception e) {
+                    throw new QueryExecException("Failed to configure semi-join", e);
+                }
+                semiJoinMaxValues = Math.max(semiJoinMaxValues, 0);
                 break;
             case ServiceOpts.SO_CACHE: // Enables caching
                 String v = val == null ? "" : val.toLowerCase();
@@ -89,6 +112,19 @@ public class ChainingServiceExecutorBulkServiceEnhancer
                 }
                 bulkSize = Math.max(Math.min(bulkSize, maxBulkSize), 1);
                 break;
+            case ServiceOpts.SO_CONCURRENT: // Number of requests in flight at the same time
+                concurrentRequests = cxt.getInt(ServiceEnhancerConstants.serviceConcurrentRequestCount, ChainingServiceExecutorBulkCache.DFT_CONCURRENT_REQUESTS);
+                try {
+                    if (val == null || val.isBlank()) {
+                        // Ignored
+                    } else {
+                        concurrentRequests = Integer.parseInt(val);
+                    }
+                } catch (Exception e) {
+                    throw new QueryExecException("Failed to configure the number of concurrent requests", e);
+                }
+                concurrentRequests = Math.max(concurrentRequests, 1);
+                break;
             default:
                 break outer;
             }
@@ -111,17 +147,37 @@ public class ChainingServiceExecutorBulkServiceEnhancer
             newOp = new OpService(node, opService.getSubOp(), opService.getSilent());
         }
 
+        // Semi-join: send the input's join keys with a single request and join locally
+        List<Binding> semiJoinInputs = null;
+        if (semiJoinMaxValues >= 0) {
+            if (enableLoop) {
+                throw new QueryExecException("SERVICE options 'semijoin' and 'loop' cannot be combined");
+            }
+            semiJoinInputs = Iter.toList(input);
+            input.close();
+            if (semiJoinInputs.isEmpty()) {
+                return QueryIterPlainWrapper.create(Collections.<Binding>emptyIterator(), execCxt);
+            }
+            Op reducedSubOp = ServiceSemiJoin.reduce(newOp.getSubOp(), semiJoinInputs, semiJoinMaxValues, ServiceSemiJoin.falsePositiveRate(cxt));
+            newOp = new OpService(newOp.getService(), reducedSubOp, newOp.getSilent());
+            input = QueryIterRoot.create(execCxt);
+        }
+
         CacheMode effCacheMode = CacheMode.effectiveMode(cacheMode);
 
-        boolean enableSpecial = effCacheMode != CacheMode.OFF || enableBulk; // || enableLoopJoin; // || !overrides.isEmpty();
+        boolean enableSpecial = effCacheMode != CacheMode.OFF || enableBulk || concurrentRequests > 0; // || enableLoopJoin; // || !overrides.isEmpty();
 
         if (enableSpecial) {
-            ChainingServiceExecutorBulkCache exec = new ChainingServiceExecutorBulkCache(bulkSize, effCacheMode);
+            ChainingServiceExecutorBulkCache exec = new ChainingServiceExecutorBulkCache(bulkSize, effCacheMode, concurrentRequests);
             result = exec.createExecution(newOp, input, execCxt, chain);
         } else {
             result = chain.createExecution(newOp, input, execCxt);
         }
 
+        if (semiJoinInputs != null) {
+            result = Join.hashJoin(QueryIterPlainWrapper.create(semiJoinInputs.iterator(), execCxt), result, execCxt);
+        }
+
         return result;
     }
 }
@@ -47,6 +47,11 @@ public class OpServiceExecutorImpl
     public ExecutionContext getExecCxt() {
         return execCxt;
     }
+
+    /** An executor for the same service operation that creates its iterators in the given execution context. */
+    public OpServiceExecutorImpl withExecCxt(ExecutionContext execCxt) {
+        return new OpServiceExecutorImpl(originalOp, execCxt, delegate);
+    }
     
     @Override
     public QueryIterator exec(OpService substitutedOp) {
@@ -27,10 +27,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.jena.atlas.iterator.IteratorCloseable;
 import org.apache.jena.atlas.lib.Closeable;
 import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.ARQConstants;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
@@ -40,12 +43,17 @@ import org.apache.jena.sparql.engine.iterator.QueryIterConvert;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek;
 import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
 import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionEnvBase;
 import org.apache.jena.sparql.graph.NodeTransform;
 import org.apache.jena.sparql.service.enhancer.impl.util.BindingUtils;
+import org.apache.jena.sparql.service.enhancer.impl.util.QueryIterAsync;
+import org.apache.jena.sparql.service.enhancer.impl.util.QueryIterPrefetcher;
+import org.apache.jena.sparql.service.enhancer.impl.util.QueryIterPrefetcher.Item;
 import org.apache.jena.sparql.service.enhancer.impl.util.QueryIterSlottedBase;
 import org.apache.jena.sparql.service.enhancer.impl.util.VarUtilsExtra;
 import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerInit;
 import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerConstants;
+import org.apache.jena.sparql.util.Context;
 
 /**
  * Prepare and execute bulk requests
@@ -59,7 +67,20 @@ public class RequestExecutor
     protected int fetchAhead = 5;
     protected int maxRequestSize = 2000;
 
-    protected OpServiceExecutor opExecutor;
+    /** Maximum number of bulk requests in flight at the same time; 1 executes them lazily one after another */
+    protected int concurrentRequests;
+
+    /** Whether to emit the results of concurrent requests in the order of the input bindings */
+    protected boolean orderedMerge;
+
+    /** Executes requests on worker threads; null unless concurrentRequests is greater than 1 */
+    protected QueryIterPrefetcher prefetcher;
+
+    /** Unordered mode: the queue shared by all in-flight requests and their count */
+    protected BlockingQueue<Item> mergeQueue;
+    protected int activeRequests = 0;
+
+    protected OpServiceExecutorImpl opExecutor;
     protected ExecutionContext execCxt;
     protected ServiceResultSizeCache resultSizeCache;
     protected ServiceResponseCache cache;
@@ -84,6 +105,18 @@ public class RequestExecutor
             ServiceResponseCache cache,
             CacheMode cacheMode,
             IteratorCloseable<GroupedBatch<Node, Long, Binding>> batchIterator) {
+        this(opExector, serviceInfo, resultSizeCache, cache, cacheMode, batchIterator, 1, true);
+    }
+
+    public RequestExecutor(
+            OpServiceExecutorImpl opExector,
+            OpServiceInfo serviceInfo,
+            ServiceResultSizeCache resultSizeCache,
+            ServiceResponseCache cache,
+            CacheMode cacheMode,
+            IteratorCloseable<GroupedBatch<Node, Long, Binding>> batchIterator,
+            int concurrentRequests,
+            boolean orderedMerge) {
         this.opExecutor = opExector;
         // this.useLoopJoin = useLoopJoin;
         this.serviceInfo = serviceInfo;
@@ -98,10 +131,63 @@ public class RequestExecutor
         this.globalIdxVar = VarUtilsExtra.freshVar("__idx__", visibleServiceSubOpVars);
         this.execCxt = opExector.getExecCxt();
         this.activeIter = QueryIterPeek.create(QueryIterPlainWrapper.create(Collections.<Binding>emptyList().iterator(), execCxt), execCxt);
+
+        // Requests against the active dataset run on the calling thread because
+        // transactions are bound to it
+        Node targetServiceNode = ServiceOpts.getEffectiveService(serviceInfo.getOpService()).getTargetService().getService();
+        this.concurrentRequests = ServiceEnhancerConstants.SELF.equals(targetServiceNode) ? 1 : Math.max(concurrentRequests, 1);
+        this.orderedMerge = orderedMerge;
+        if (this.concurrentRequests > 1) {
+            this.prefetcher = new QueryIterPrefetcher(this.concurrentRequests);
+            if (!orderedMerge) {
+                this.mergeQueue = prefetcher.newQueue();
+            }
+        }
     }
 
     @Override
     protected Binding moveToNext() {
+        return mergeQueue == null
+                ? moveToNextOrdered()
+                : moveToNextUnordered();
+    }
+
+    /**
+     * Emit bindings in whichever order the responses of the in-flight requests deliver them.
+     * A new request is started whenever one completes.
+     */
+    protected Binding moveToNextUnordered() {
+        Binding result = null;
+        while (true) {
+            while (activeRequests < concurrentRequests && batchIterator.hasNext()) {
+                GroupedBatch<Node, Long, Binding> batchRequest = batchIterator.next();
+                prefetcher.submit(createBatchExec(batchRequest.getBatch()), mergeQueue);
+                ++activeRequests;
+            }
+
+            if (activeRequests == 0) {
+                break;
+            }
+
+            Item item = QueryIterPrefetcher.take(mergeQueue);
+            if (item.isEnd()) {
+                --activeRequests;
+            } else {
+                Binding childBindingWithIdx = item.binding();
+                result = BindingUtils.project(childBindingWithIdx, childBindingWithIdx.vars(), globalIdxVar);
+                break;
+            }
+        }
+
+        if (result == null) {
+            freeResources();
+        }
+
+        return result;
+    }
+
+    /** Emit bindings in the order of the input bindings. */
+    protected Binding moveToNextOrdered() {
 
         Binding parentBinding = null;
         Binding childBindingWithIdx = null;
@@ -148,6 +234,11 @@ public class RequestExecutor
                 break;
             }
 
+            // Keep up to concurrentRequests requests in flight; the batches not yet closed are those in inputToClose
+            while (inputToClose.size() < concurrentRequests && batchIterator.hasNext()) {
+                prepareNextBatchExec();
+            }
+
             activeIter = inputToOutputIt.get(currentInputId);
         }
 
@@ -173,15 +264,34 @@ public class RequestExecutor
     public void prepareNextBatchExec() {
 
         GroupedBatch<Node, Long, Binding> batchRequest = batchIterator.next();
+        Batch<Long, Binding> batch = batchRequest.getBatch();
+
+        QueryIterator tmp = createBatchExec(batch);
+        if (prefetcher != null) {
+            tmp = new QueryIterAsync(prefetcher.submit(tmp));
+        }
 
+        QueryIterPeek queryIter = QueryIterPeek.create(tmp, execCxt);
+        // Register the iterator with the input ids
+        // for (int i = 0; i < batchItems.size(); ++i) {
+        for (Long e : batch.getItems().keySet()) {
+            inputToOutputIt.put(e, queryIter);
+        }
+
+        long lastKey = batch.getItems().lastKey();
+        inputToClose.add(lastKey);
+    }
+
+    /**
+     * Create the execution of a batch. The bindings of the returned iterator
+     * carry the global input id in {@link #globalIdxVar}.
+     */
+    protected QueryIterator createBatchExec(Batch<Long, Binding> batch) {
         // TODO Support ServiceOpts from Node directly
         ServiceOpts so = ServiceOpts.getEffectiveService(serviceInfo.getOpService());
 
         Node targetServiceNode = so.getTargetService().getService();
 
-        // Refine the request w.r.t. the cache
-        Batch<Long, Binding> batch = batchRequest.getBatch();
-
         // This block sets up the execution of the batch
         // For aesthetics, bindings are re-numbered starting with 0 when creating the backend request
         // These ids are subsequently mapped back to the offset of the input iterator
@@ -207,8 +317,13 @@ public class RequestExecutor
 
             BatchQueryRewriter rewriter = builder.build();
 
+            ExecutionContext batchExecCxt = createBatchExecCxt();
+            OpServiceExecutorImpl batchOpExecutor = batchExecCxt == execCxt
+                    ? opExecutor
+                    : opExecutor.withExecCxt(batchExecCxt);
+
             QueryIterServiceBulk baseIt = new QueryIterServiceBulk(
-                    serviceInfo, rewriter, cacheKeyFactory, opExecutor, execCxt, inputs,
+                    serviceInfo, rewriter, cacheKeyFactory, batchOpExecutor, batchExecCxt, inputs,
                     resultSizeCache, cache, cacheMode);
 
             QueryIterator tmp = baseIt;
@@ -225,19 +340,27 @@ public class RequestExecutor
                 Binding r = BindingFactory.binding(q, globalIdxVar, NodeValue.makeInteger(globalId).asNode());
 
                 return r;
-            }, execCxt);
+            }, batchExecCxt);
 
+            return tmp;
+        }
+    }
 
-            QueryIterPeek queryIter = QueryIterPeek.create(tmp, execCxt);
-            // Register the iterator with the input ids
-            // for (int i = 0; i < batchItems.size(); ++i) {
-            for (Long e : batchItems.keySet()) {
-                inputToOutputIt.put(e, queryIter);
-            }
-
-            long lastKey = batch.getItems().lastKey();
-            inputToClose.add(lastKey);
+    /**
+     * The execution context for the iterators of a batch. A batch that is executed on a worker
+     * thread gets its own context so that the iterators it opens and closes are not tracked in
+     * the context of the query, which is not thread safe. It also has its own cancel signal:
+     * a batch that is closed before it is exhausted is cancelled, which must not cancel the query.
+     */
+    protected ExecutionContext createBatchExecCxt() {
+        if (prefetcher == null) {
+            return execCxt;
         }
+        Context cxt = execCxt.getContext().copy();
+        cxt.set(ARQConstants.symCancelQuery, new AtomicBoolean(false));
+        ExecutionContext result = ExecutionContext.fromFunctionEnv(new FunctionEnvBase(cxt, execCxt.getActiveGraph(), execCxt.getDataset()));
+        result.setExecutor(execCxt.getExecutor());
+        return result;
     }
 
     protected void freeResources() {
@@ -245,6 +368,11 @@ public class RequestExecutor
             Closeable closable = inputToOutputIt.get(inputId);
             closable.close();
         }
+        activeIter.close();
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher.awaitTermination();
+        }
         batchIterator.close();
     }
 
@@ -52,6 +52,7 @@ import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerConstants;
  * <pre>
  * SERVICE &lt;cache:&gt; {} Trailing colon is needed to discriminate from relative IRIs. Resulting map: {cache=null}
  * SERVICE &lt;cache:bulk+20&gt; {cache=null, bulk=20}
+ * SERVICE &lt;bulk+20:concurrent+4&gt; {bulk=20, concurrent=4}
  * </pre>
  */
 public class ServiceOpts {
@@ -64,6 +65,8 @@ public class ServiceOpts {
     public static final String SO_OPTIMIZE = "optimize";
     public static final String SO_CACHE = "cache";
     public static final String SO_BULK = "bulk";
+    public static final String SO_CONCURRENT = "concurrent";
+    public static final String SO_SEMIJOIN = "semijoin";
 
     // Undo scoping of variables
     public static final String SO_LOOP = "loop";
@@ -201,6 +204,8 @@ public class ServiceOpts {
         Set<String> knownOptions = new LinkedHashSet<>();
         knownOptions.add(SO_CACHE);
         knownOptions.add(SO_BULK);
+        knownOptions.add(SO_CONCURRENT);
+        knownOptions.add(SO_SEMIJOIN);
         knownOptions.add(SO_LOOP);
         knownOptions.add(SO_OPTIMIZE);
 
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.service.enhancer.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.hash.BloomFilter;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.Table;
+import org.apache.jena.sparql.algebra.TableFactory;
+import org.apache.jena.sparql.algebra.op.OpFilter;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.expr.E_Bound;
+import org.apache.jena.sparql.expr.E_Function;
+import org.apache.jena.sparql.expr.E_LogicalNot;
+import org.apache.jena.sparql.expr.E_LogicalOr;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.service.enhancer.function.bloomContains;
+import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerConstants;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * Semi-join reduction of a service request: the service pattern is restricted to the
+ * join keys of the local input so that the endpoint only returns rows that can join.
+ * <p>
+ * The join keys are the variables that are bound in every input binding and visible in
+ * the service pattern. Up to a threshold, the distinct key tuples are sent as a VALUES block.
+ * Beyond it, they are summarised by a bloom filter that is tested by the
+ * {@link bloomContains} function; the endpoint must understand that function.
+ * False positives are removed by the local join.
+ * <p>
+ * Rows of the service pattern that leave a join key unbound join with any input
+ * binding and are retained by the reduction.
+ */
+public class ServiceSemiJoin {
+    public static final int DFT_MAX_VALUES = 100;
+    public static final double DFT_FALSE_POSITIVE_RATE = 0.01;
+
+    /** The false positive rate for bloom filters from the context; the entry can be a string or a number. */
+    public static double falsePositiveRate(Context cxt) {
+        Object obj = cxt.get(ServiceEnhancerConstants.serviceSemiJoinFalsePositiveRate);
+        if (obj == null) {
+            return DFT_FALSE_POSITIVE_RATE;
+        }
+        return obj instanceof Number n ? n.doubleValue() : Double.parseDouble(obj.toString());
+    }
+
+    /** The variables bound in all input bindings and visible in the service pattern. */
+    public static List<Var> joinVars(Op subOp, List<Binding> inputs) {
+        Set<Var> result = new LinkedHashSet<>(OpVars.visibleVars(subOp));
+        for (Binding b : inputs) {
+            result.removeIf(v -> !b.contains(v));
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Restrict the service pattern to the join keys of the input bindings.
+     * Returns the pattern unchanged if there are no join variables.
+     */
+    public static Op reduce(Op subOp, List<Binding> inputs, int maxValues, double falsePositiveRate) {
+        List<Var> joinVars = joinVars(subOp, inputs);
+        if (joinVars.isEmpty()) {
+            return subOp;
+        }
+
+        Set<List<Node>> keys = new LinkedHashSet<>();
+        for (Binding b : inputs) {
+            List<Node> key = new ArrayList<>(joinVars.size());
+            for (Var v : joinVars) {
+                key.add(b.get(v));
+            }
+            keys.add(key);
+        }
+
+        Op result = keys.size() <= maxValues
+                ? reduceByValues(subOp, joinVars, keys)
+                : reduceByBloomFilter(subOp, joinVars, keys, falsePositiveRate);
+        return result;
+    }
+
+    static Op reduceByValues(Op subOp, List<Var> joinVars, Set<List<Node>> keys) {
+        Table table = TableFactory.create(joinVars);
+        for (List<Node> key : keys) {
+            BindingBuilder builder = BindingBuilder.create();
+            for (int i = 0; i < joinVars.size(); ++i) {
+                builder.add(joinVars.get(i), key.get(i));
+            }
+            table.addBinding(builder.build());
+        }
+        return OpJoin.create(OpTable.create(table), subOp);
+    }
+
+    static Op reduceByBloomFilter(Op subOp, List<Var> joinVars, Set<List<Node>> keys, double falsePositiveRate) {
+        BloomFilter<CharSequence> filter = BloomFilter.create(bloomContains.FUNNEL, keys.size(), falsePositiveRate);
+        for (List<Node> key : keys) {
+            filter.put(bloomContains.key(key));
+        }
+
+        ExprList args = new ExprList(NodeValue.makeString(bloomContains.encode(filter)));
+        joinVars.forEach(v -> args.add(new ExprVar(v)));
+        Expr expr = new E_Function(bloomContains.DEFAULT_IRI, args);
+
+        // Keep rows that leave a key unbound
+        for (int i = joinVars.size() - 1; i >= 0; --i) {
+            expr = new E_LogicalOr(new E_LogicalNot(new E_Bound(new ExprVar(joinVars.get(i)))), expr);
+        }
+        return OpFilter.filterBy(new ExprList(expr), subOp);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.service.enhancer.impl.util;
+
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.service.enhancer.impl.util.QueryIterPrefetcher.Item;
+import org.apache.jena.sparql.service.enhancer.impl.util.QueryIterPrefetcher.Task;
+
+/**
+ * A query iterator over the bindings that a {@link QueryIterPrefetcher} task
+ * drains into a queue of its own. Blocks until the next binding arrives.
+ */
+public class QueryIterAsync
+    extends QueryIterSlottedBase
+{
+    protected Task task;
+
+    public QueryIterAsync(Task task) {
+        this.task = task;
+    }
+
+    @Override
+    protected Binding moveToNext() {
+        Item item = QueryIterPrefetcher.take(task.getQueue());
+        return item.isEnd() ? null : item.binding();
+    }
+
+    @Override
+    protected void closeIterator() {
+        task.cancel();
+        super.closeIterator();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.service.enhancer.impl.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * Drains query iterators on worker threads into bounded queues.
+ * Consumers can start reading the bindings of a request as soon as the first one arrives
+ * while further requests are in flight.
+ * Several tasks may share a queue in which case their bindings are interleaved
+ * in the order in which they become available.
+ */
+public class QueryIterPrefetcher
+    extends AutoCloseableBase
+{
+    /** Default number of bindings buffered per queue before a worker blocks. */
+    public static final int DFT_QUEUE_CAPACITY = 1000;
+
+    /** Time to wait for cancelled workers to release their resources. */
+    public static final long DFT_TERMINATION_TIMEOUT_MS = 5000;
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /** A queue entry: either a binding, a failure or the end of a task's bindings. */
+    public record Item(Task task, Binding binding, Throwable error) {
+        public boolean isEnd() {
+            return binding == null && error == null;
+        }
+    }
+
+    /** The draining of a single query iterator. */
+    public class Task implements Runnable {
+        protected final QueryIterator iterator;
+        protected final BlockingQueue<Item> queue;
+        protected volatile boolean cancelled = false;
+        protected volatile boolean done = false;
+
+        protected Task(QueryIterator iterator, BlockingQueue<Item> queue) {
+            this.iterator = iterator;
+            this.queue = queue;
+        }
+
+        public BlockingQueue<Item> getQueue() {
+            return queue;
+        }
+
+        /** Request the worker to stop; the iterator is closed by the worker thread. */
+        public void cancel() {
+            if ( !cancelled ) {
+                cancelled = true;
+                if ( !done )
+                    iterator.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!cancelled && iterator.hasNext()) {
+                    Binding binding = iterator.next();
+                    if ( !put(new Item(this, binding, null)) )
+                        return;
+                }
+                put(new Item(this, null, null));
+            } catch (Throwable t) {
+                put(new Item(this, null, t));
+            } finally {
+                try {
+                    done = true;
+                    iterator.close();
+                } finally {
+                    synchronized (QueryIterPrefetcher.this) {
+                        tasks.remove(this);
+                    }
+                }
+            }
+        }
+
+        /** Blocks while the queue is full. Returns false if the task was cancelled meanwhile. */
+        protected boolean put(Item item) {
+            try {
+                while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    if ( cancelled )
+                        return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    protected final ExecutorService executor;
+    protected final int queueCapacity;
+    protected final Set<Task> tasks = new HashSet<>();
+
+    public QueryIterPrefetcher(int threadCount) {
+        this(threadCount, DFT_QUEUE_CAPACITY);
+    }
+
+    public QueryIterPrefetcher(int threadCount, int queueCapacity) {
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "ServiceEnhancer-Request-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newFixedThreadPool(threadCount, threadFactory);
+        this.queueCapacity = queueCapacity;
+    }
+
+    public BlockingQueue<Item> newQueue() {
+        return new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    /** Start draining the iterator into a new queue of its own. */
+    public Task submit(QueryIterator iterator) {
+        return submit(iterator, newQueue());
+    }
+
+    /** Start draining the iterator into the given (possibly shared) queue. */
+    public synchronized Task submit(QueryIterator iterator, BlockingQueue<Item> queue) {
+        ensureOpen();
+        Task task = new Task(iterator, queue);
+        tasks.add(task);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Take the next item from the queue. Failures of a task are rethrown on the calling thread.
+     * Returns the end marker item unchanged.
+     */
+    public static Item take(BlockingQueue<Item> queue) {
+        Item item;
+        try {
+            item = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException();
+        }
+        Throwable error = item.error();
+        if ( error != null ) {
+            if ( error instanceof RuntimeException ex )
+                throw ex;
+            if ( error instanceof Error err )
+                throw err;
+            throw new QueryExecException(error);
+        }
+        return item;
+    }
+
+    @Override
+    protected synchronized void closeActual() {
+        // Workers deregister themselves when they finish
+        new ArrayList<>(tasks).forEach(Task::cancel);
+        executor.shutdown();
+    }
+
+    /** Wait for the workers to close their iterators after {@link #close()}. */
+    public void awaitTermination() {
+        try {
+            executor.awaitTermination(DFT_TERMINATION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -42,6 +42,18 @@ public class ServiceEnhancerConstants {
     /** Number of bindings to group into a single bulk request */
     public static final Symbol serviceBulkBindingCount = SystemARQ.allocSymbol(NS, "serviceBulkBindingCount") ;
 
+    /** Number of bulk requests per SERVICE clause that may be in flight at the same time; 1 executes them one after another */
+    public static final Symbol serviceConcurrentRequestCount = SystemARQ.allocSymbol(NS, "serviceConcurrentRequestCount") ;
+
+    /** Whether results of concurrent bulk requests are emitted in the order of the input bindings (default true) */
+    public static final Symbol serviceConcurrentOrderedMerge = SystemARQ.allocSymbol(NS, "serviceConcurrentOrderedMerge") ;
+
+    /** Maximum number of distinct join keys a semi-join sends as VALUES; larger key sets are sent as a bloom filter */
+    public static final Symbol serviceSemiJoinMaxValues = SystemARQ.allocSymbol(NS, "serviceSemiJoinMaxValues") ;
+
+    /** False positive rate (double) of the bloom filters sent by a semi-join */
+    public static final Symbol serviceSemiJoinFalsePositiveRate = SystemARQ.allocSymbol(NS, "serviceSemiJoinFalsePositiveRate") ;
+
     /** Symbol for the cache of services' result sets */
     public static final Symbol serviceCache = SystemARQ.allocSymbol(NS, "serviceCache") ;
 
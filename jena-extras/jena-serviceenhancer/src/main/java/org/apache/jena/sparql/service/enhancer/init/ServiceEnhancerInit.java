@@ -61,6 +61,7 @@ import org.apache.jena.sparql.service.enhancer.algebra.TransformSE_EffectiveOpti
 import org.apache.jena.sparql.service.enhancer.algebra.TransformSE_JoinStrategy;
 import org.apache.jena.sparql.service.enhancer.assembler.DatasetAssemblerServiceEnhancer;
 import org.apache.jena.sparql.service.enhancer.assembler.ServiceEnhancerVocab;
+import org.apache.jena.sparql.service.enhancer.function.bloomContains;
 import org.apache.jena.sparql.service.enhancer.function.cacheRm;
 import org.apache.jena.sparql.service.enhancer.impl.ChainingServiceExecutorBulkServiceEnhancer;
 import org.apache.jena.sparql.service.enhancer.impl.ServiceOpts;
@@ -109,6 +110,7 @@ public class ServiceEnhancerInit
 
     public static void registerFunctions(FunctionRegistry reg) {
         reg.put(cacheRm.DEFAULT_IRI, cacheRm.class);
+        reg.put(bloomContains.DEFAULT_IRI, bloomContains.class);
     }
 
     public static void registerPFunctions(PropertyFunctionRegistry reg) {
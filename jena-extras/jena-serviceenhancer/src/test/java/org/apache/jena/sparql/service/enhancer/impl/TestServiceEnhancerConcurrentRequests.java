@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.service.enhancer.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Substitute;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.service.ServiceExecutorRegistry;
+import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerConstants;
+import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerInit;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for bulk requests with several requests in flight at the same time.
+ * The remote endpoint is an in-process stand-in that answers with a delay
+ * and records the number of requests it serves concurrently.
+ */
+public class TestServiceEnhancerConcurrentRequests {
+
+    private static final Node REMOTE = NodeFactory.createURI("urn:example:remote");
+
+    private static final String QUERY_TEMPLATE = String.join("\n",
+            "SELECT * {",
+            "  { SELECT ?d { ?d a <urn:Department> } ORDER BY ASC(?d) }",
+            "  SERVICE <${mode}urn:example:remote> { ?d <urn:hasEmployee> ?p }",
+            "}");
+
+    /** Number of requests served at the same time; the maximum is recorded. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    /** The execution contexts of the requests. */
+    private final Set<ExecutionContext> execCxts = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    private final Dataset dataset = DatasetFactory.wrap(AbstractTestServiceEnhancerResultSetLimits.createModel(20));
+    private final DatasetGraph remote = DatasetGraphFactory.wrap(AbstractTestServiceEnhancerResultSetLimits.createModel(20).getGraph());
+
+    private ServiceExecutorRegistry createRegistry(boolean fail) {
+        ServiceExecutorRegistry reg = ServiceExecutorRegistry.get().copy();
+        reg.addSingleLink((opExec, opOrig, binding, execCxt, chain) -> {
+            if (!REMOTE.equals(opExec.getService())) {
+                return chain.createExecution(opExec, opOrig, binding, execCxt);
+            }
+            requestCount.incrementAndGet();
+            execCxts.add(execCxt);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                if (fail) {
+                    throw new QueryExecException("Remote failure");
+                }
+                Op op = Substitute.substitute(opExec.getSubOp(), binding);
+                List<Binding> rows = Iter.toList(Algebra.exec(op, remote));
+                return QueryIterPlainWrapper.create(rows.iterator(), execCxt);
+            } catch (InterruptedException e) {
+                throw new QueryExecException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        return reg;
+    }
+
+    private List<String> exec(String mode, Boolean orderedMerge, boolean fail) {
+        String queryStr = QUERY_TEMPLATE.replace("${mode}", mode);
+        List<String> result = new ArrayList<>();
+        try (QueryExecution qe = QueryExecution.create(queryStr, dataset)) {
+            Context cxt = qe.getContext();
+            ServiceEnhancerInit.wrapOptimizer(cxt);
+            ServiceExecutorRegistry.set(cxt, createRegistry(fail));
+            if (orderedMerge != null) {
+                cxt.set(ServiceEnhancerConstants.serviceConcurrentOrderedMerge, orderedMerge);
+            }
+            ResultSet rs = qe.execSelect();
+            while (rs.hasNext()) {
+                result.add(rs.nextBinding().toString());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSequentialByDefault() {
+        List<String> rows = exec("loop:bulk+2:", null, false);
+        Assert.assertEquals(210, rows.size());
+        Assert.assertEquals(10, requestCount.get());
+        Assert.assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    public void testConcurrentOrdered() {
+        List<String> expected = exec("loop:bulk+2:", null, false);
+        maxInFlight.set(0);
+
+        List<String> actual = exec("loop:bulk+2:concurrent+4:", null, false);
+        Assert.assertEquals(expected, actual);
+        Assert.assertTrue("Expected requests in flight at the same time", maxInFlight.get() > 1);
+        Assert.assertTrue(maxInFlight.get() <= 4);
+    }
+
+    @Test
+    public void testConcurrentUnordered() {
+        List<String> expected = exec("loop:bulk+2:", null, false);
+        maxInFlight.set(0);
+
+        List<String> actual = exec("loop:bulk+2:concurrent+4:", false, false);
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.stream().sorted().toList(), actual.stream().sorted().toList());
+        Assert.assertTrue("Expected requests in flight at the same time", maxInFlight.get() > 1);
+    }
+
+    @Test
+    public void testConcurrentViaContext() {
+        String queryStr = QUERY_TEMPLATE.replace("${mode}", "loop:bulk+2:") + " LIMIT 5";
+        try (QueryExecution qe = QueryExecution.create(queryStr, dataset)) {
+            Context cxt = qe.getContext();
+            ServiceEnhancerInit.wrapOptimizer(cxt);
+            ServiceExecutorRegistry.set(cxt, createRegistry(false));
+            cxt.set(ServiceEnhancerConstants.serviceConcurrentRequestCount, 3);
+            ResultSet rs = qe.execSelect();
+            int rows = 0;
+            while (rs.hasNext()) {
+                rs.next();
+                ++rows;
+            }
+            Assert.assertEquals(5, rows);
+        }
+        Assert.assertTrue(maxInFlight.get() > 1);
+    }
+
+    /** The number of concurrent requests in the context may be given as a string. */
+    @Test
+    public void testConcurrentViaContextString() {
+        String queryStr = QUERY_TEMPLATE.replace("${mode}", "loop:bulk+2:concurrent:");
+        try (QueryExecution qe = QueryExecution.create(queryStr, dataset)) {
+            Context cxt = qe.getContext();
+            ServiceEnhancerInit.wrapOptimizer(cxt);
+            ServiceExecutorRegistry.set(cxt, createRegistry(false));
+            cxt.set(ServiceEnhancerConstants.serviceConcurrentRequestCount, "3");
+            Assert.assertEquals(210, Iter.count(qe.execSelect()));
+        }
+        Assert.assertTrue(maxInFlight.get() > 1);
+        Assert.assertTrue(maxInFlight.get() <= 3);
+    }
+
+    /**
+     * Requests executed on worker threads do not share an execution context,
+     * whose iterator tracking is not thread safe.
+     */
+    @Test
+    public void testConcurrentExecCxtPerRequest() {
+        exec("loop:bulk+2:concurrent+4:", null, false);
+        Assert.assertEquals(10, requestCount.get());
+        Assert.assertEquals(10, execCxts.size());
+    }
+
+    /** Closing requests before they are exhausted does not cancel the rest of the query. */
+    @Test
+    public void testConcurrentEarlyClose() {
+        String queryStr = String.join("\n",
+                "SELECT * {",
+                "  { SELECT * {",
+                "      { SELECT ?d { ?d a <urn:Department> } ORDER BY ASC(?d) }",
+                "      SERVICE <loop:bulk+2:concurrent+4:urn:example:remote> { ?d <urn:hasEmployee> ?p }",
+                "    } LIMIT 3 }",
+                "  UNION",
+                "  { ?d a <urn:Department> }",
+                "}");
+        try (QueryExecution qe = QueryExecution.create(queryStr, dataset)) {
+            Context cxt = qe.getContext();
+            ServiceEnhancerInit.wrapOptimizer(cxt);
+            ServiceExecutorRegistry.set(cxt, createRegistry(false));
+            Assert.assertEquals(23, Iter.count(qe.execSelect()));
+        }
+    }
+
+    /** A failing request on a worker thread surfaces on the consuming thread. */
+    @Test(expected = RuntimeException.class)
+    public void testConcurrentFailure() {
+        exec("loop:bulk+2:concurrent+4:", null, true);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.service.enhancer.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Substitute;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.service.ServiceExecutorRegistry;
+import org.apache.jena.sparql.service.enhancer.init.ServiceEnhancerInit;
+import org.apache.jena.sparql.util.Context;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for semi-join reduction of service requests.
+ * The remote endpoint is an in-process stand-in that records the requests
+ * it serves and the number of rows it returns.
+ */
+public class TestServiceEnhancerSemiJoin {
+
+    private static final Node REMOTE = NodeFactory.createURI("urn:example:remote");
+
+    private static final String QUERY_TEMPLATE = String.join("\n",
+            "SELECT * {",
+            "  VALUES ?d { <urn:dept1> <urn:dept3> <urn:dept5> <urn:dept7> <urn:dept30> }",
+            "  SERVICE <${mode}urn:example:remote> { ?d <urn:hasEmployee> ?p }",
+            "}");
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger remoteRowCount = new AtomicInteger();
+
+    private final Dataset dataset = DatasetFactory.wrap(ModelFactory.createDefaultModel());
+    private final DatasetGraph remote = DatasetGraphFactory.wrap(AbstractTestServiceEnhancerResultSetLimits.createModel(20).getGraph());
+
+    private ServiceExecutorRegistry createRegistry() {
+        ServiceExecutorRegistry reg = ServiceExecutorRegistry.get().copy();
+        reg.addSingleLink((opExec, opOrig, binding, execCxt, chain) -> {
+            if (!REMOTE.equals(opExec.getService())) {
+                return chain.createExecution(opExec, opOrig, binding, execCxt);
+            }
+            requestCount.incrementAndGet();
+            Op op = Substitute.substitute(opExec.getSubOp(), binding);
+            List<Binding> rows = Iter.toList(Algebra.exec(op, remote));
+            remoteRowCount.addAndGet(rows.size());
+            return QueryIterPlainWrapper.create(rows.stream().map(row -> BindingFactory.builder(binding).addAll(row).build()).iterator(), execCxt);
+        });
+        return reg;
+    }
+
+    private List<String> exec(String queryStr) {
+        requestCount.set(0);
+        remoteRowCount.set(0);
+        List<String> result = new ArrayList<>();
+        try (QueryExecution qe = QueryExecution.create(queryStr, dataset)) {
+            Context cxt = qe.getContext();
+            ServiceEnhancerInit.wrapOptimizer(cxt);
+            ServiceExecutorRegistry.set(cxt, createRegistry());
+            ResultSet rs = qe.execSelect();
+            while (rs.hasNext()) {
+                QuerySolution qs = rs.next();
+                result.add(rs.getResultVars().stream().map(v -> v + "=" + qs.get(v)).collect(Collectors.joining(" ")));
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /** 20 + 18 + 16 + 14 employees; dept30 does not exist remotely. */
+    private static final int EXPECTED_ROWS = 68;
+
+    @Test
+    public void testSemiJoinWithValues() {
+        List<String> expected = exec(QUERY_TEMPLATE.replace("${mode}", ""));
+        Assert.assertEquals(EXPECTED_ROWS, expected.size());
+
+        List<String> actual = exec(QUERY_TEMPLATE.replace("${mode}", "semijoin+10:"));
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(1, requestCount.get());
+        Assert.assertEquals(EXPECTED_ROWS, remoteRowCount.get());
+    }
+
+    @Test
+    public void testSemiJoinWithBloomFilter() {
+        List<String> expected = exec(QUERY_TEMPLATE.replace("${mode}", ""));
+
+        // More keys than allowed as VALUES
+        List<String> actual = exec(QUERY_TEMPLATE.replace("${mode}", "semijoin+2:"));
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(1, requestCount.get());
+        // All 210 employee rows minus the ones ruled out by the filter, except for rare false positives
+        Assert.assertTrue(remoteRowCount.get() >= EXPECTED_ROWS);
+        Assert.assertTrue(remoteRowCount.get() < 100);
+    }
+
+    @Test
+    public void testSemiJoinWithoutJoinVars() {
+        String queryStr = String.join("\n",
+                "SELECT * {",
+                "  VALUES ?x { 1 2 }",
+                "  SERVICE <semijoin:urn:example:remote> { <urn:dept19> <urn:hasEmployee> ?p }",
+                "}");
+        List<String> actual = exec(queryStr);
+        Assert.assertEquals(4, actual.size());
+        Assert.assertEquals(1, requestCount.get());
+    }
+
+    @Test(expected = QueryExecException.class)
+    public void testSemiJoinWithLoop() {
+        exec(QUERY_TEMPLATE.replace("${mode}", "loop:semijoin:"));
+    }
+}
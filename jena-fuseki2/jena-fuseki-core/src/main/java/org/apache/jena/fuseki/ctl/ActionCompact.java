@@ -28,6 +28,7 @@ import org.apache.jena.fuseki.servlets.ServletOps;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphWrapper;
 import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.CompactionStats;
 import org.apache.jena.tdb2.sys.TDBInternal;
 import org.slf4j.Logger;
 
@@ -92,14 +93,16 @@ public class ActionCompact extends ActionAsyncTask
         static private final Logger log = Fuseki.compactLog;
 
         private final boolean shouldDeleteOld;
+        private final boolean online;
 
         public CompactTask(HttpAction action) {
             super(action);
+            this.shouldDeleteOld = isTrue(action.getRequestParameter("deleteOld"));
+            this.online = isTrue(action.getRequestParameter("online"));
+        }
 
-            String deleteOldParam = action.getRequestParameter("deleteOld");
-
-            this.shouldDeleteOld = ( deleteOldParam != null
-                                     && ( deleteOldParam.isEmpty() || deleteOldParam.equalsIgnoreCase("true") ) );
+        private static boolean isTrue(String param) {
+            return param != null && ( param.isEmpty() || param.equalsIgnoreCase("true") );
         }
 
         @Override
@@ -107,7 +110,11 @@ public class ActionCompact extends ActionAsyncTask
             try {
                 DatasetGraph dsg = getTDB2(dataset);
                 log.info(format("[%d] >>>> Start compact %s", actionId, datasetName));
-                DatabaseMgr.compact(dsg, this.shouldDeleteOld);
+                if ( online ) {
+                    CompactionStats stats = DatabaseMgr.compactOnline(dsg, this.shouldDeleteOld);
+                    log.info(format("[%d] %s", actionId, stats));
+                } else
+                    DatabaseMgr.compact(dsg, this.shouldDeleteOld);
                 log.info(format("[%d] <<<< Finish compact %s", actionId, datasetName));
             } catch (Throwable ex) {
                 log.warn(format("[%d] **** Exception in compact", actionId), ex);
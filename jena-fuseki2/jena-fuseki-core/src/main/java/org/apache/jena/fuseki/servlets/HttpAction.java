@@ -29,6 +29,7 @@ import java.io.PrintWriter;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.zip.DeflaterInputStream;
 import java.util.zip.GZIPInputStream;
 
@@ -40,6 +41,7 @@ import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.lib.NotImplemented;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.fuseki.FusekiException;
 import org.apache.jena.fuseki.metrics.MetricsProvider;
@@ -542,6 +544,28 @@ public class HttpAction
         end();
     }
 
+    /**
+     * Execute a write operation in a transaction shared with other write operations
+     * by a {@link GroupCommit}. This is the lifecycle of {@link #beginWrite()},
+     * {@link #commit()} and {@link #endWrite()}, including the transaction accounting
+     * of the {@link DataService}, except that the transaction is begun and committed
+     * by the group commit, possibly on another thread. The operation is given the
+     * active dataset of this action. It may be run more than once and must not send
+     * the response. An exception from the operation means the action has been aborted.
+     */
+    public void executeWrite(GroupCommit groupCommit, Consumer<DatasetGraph> operation) {
+        enterActionTxn();
+        activeDSG = dsg;
+        if ( dataService != null )
+            // Paired with finishTxn in endWrite()
+            dataService.startTxn(WRITE);
+        startActionTxn();
+        DatasetGraph dsgAction = activeDSG;
+        try {
+            groupCommit.executeWrite(()->operation.accept(dsgAction));
+        } finally { endWrite(); }
+    }
+
     /** If inside the transaction for the action, return the active {@link DatasetGraph},
      *  otherwise return null.
      * @return Current active {@link DatasetGraph}
@@ -44,6 +44,7 @@ import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.atlas.lib.StrUtils;
 import org.apache.jena.atlas.web.ContentType;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
@@ -57,6 +58,8 @@ import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.shared.OperationDeniedException;
 import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
 import org.apache.jena.sparql.modify.UsingList;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.SystemTDB;
 import org.apache.jena.update.UpdateAction;
 import org.apache.jena.update.UpdateException;
 import org.apache.jena.update.UpdateFactory;
@@ -212,6 +215,10 @@ public class SPARQL_Update extends ActionService
         // If it isn't, we need to read the entire update request before performing any updates, because
         // we have to attempt to make the request atomic in the face of malformed updates.
         UpdateRequest req = null;
+        if ( isGroupCommit(action) ) {
+            executeGroupCommit(action, usingList, input);
+            return;
+        }
         if (!action.isTransactional()) {
             try {
                 req = UpdateFactory.read(usingList, input, UpdateParseBase, Syntax.syntaxARQ);
@@ -258,6 +265,47 @@ public class SPARQL_Update extends ActionService
         } finally { action.endWrite(); }
     }
 
+    /** Whether the dataset is a TDB2 database with group commit enabled in the context. */
+    private static boolean isGroupCommit(HttpAction action) {
+        return action.getContext().isTrue(SystemTDB.symGroupCommit) && DatabaseMgr.isTDB2(action.getDataset());
+    }
+
+    /**
+     * Execute the update as part of a group commit, with other updates arriving at the
+     * same time. The request is parsed first because it may be executed more than
+     * once if another update in the group fails.
+     */
+    private void executeGroupCommit(HttpAction action, UsingList usingList, InputStream input) {
+        UpdateRequest req;
+        try {
+            req = UpdateFactory.read(usingList, input, UpdateParseBase, Syntax.syntaxARQ);
+        }
+        catch (UpdateException ex) { ServletOps.errorBadRequest(ex.getMessage()); return; }
+        catch (QueryParseException ex) { ServletOps.errorBadRequest(messageForException(ex)); return; }
+
+        GroupCommit groupCommit = DatabaseMgr.getGroupCommit(action.getDataset());
+        try {
+            action.executeWrite(groupCommit, dsg->UpdateAction.execute(req, dsg));
+        } catch (UpdateException ex) {
+            ActionLib.consumeBody(action);
+            incCounter(action.getEndpoint().getCounters(), UpdateExecErrors);
+            ServletOps.errorOccurred(ex.getMessage());
+        } catch (QueryBuildException|QueryExceptionHTTP ex) {
+            ActionLib.consumeBody(action);
+            // Counter inc'ed further out.
+            String msg = messageForException(ex);
+            action.log.warn(format("[%d] Bad request: %s", action.id, msg));
+            ServletOps.errorBadRequest(messageForException(ex));
+        } catch (OperationDeniedException ex) {
+            ActionLib.consumeBody(action);
+            throw ex;
+        } catch (Throwable ex) {
+            ActionLib.consumeBody(action);
+            if ( ! ( ex instanceof ActionErrorException ) )
+                ServletOps.errorOccurred(ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Content type, with a default depending on whether it looks like a HTMLform
      * using the query string.
@@ -24,6 +24,7 @@ import org.junit.platform.suite.api.Suite;
 import org.apache.jena.fuseki.server.TestDatasetDescriptionMap;
 import org.apache.jena.fuseki.server.TestDispatchOnURI;
 import org.apache.jena.fuseki.servlets.TestCrossOriginFilterMock;
+import org.apache.jena.fuseki.servlets.TestHttpActionGroupCommit;
 import org.apache.jena.fuseki.servlets.TestPrefixesCore;
 
 @Suite
@@ -32,7 +33,8 @@ import org.apache.jena.fuseki.servlets.TestPrefixesCore;
     TestDispatchOnURI.class,
     TestCrossOriginFilterMock.class,
     TestDatasetDescriptionMap.class,
-    TestPrefixesCore.class
+    TestPrefixesCore.class,
+    TestHttpActionGroupCommit.class
 })
 public class TS_FusekiCore {}
 
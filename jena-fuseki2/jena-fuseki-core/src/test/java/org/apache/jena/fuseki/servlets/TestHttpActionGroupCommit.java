@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.fuseki.servlets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.apache.jena.dboe.transaction.GroupCommit;
+import org.apache.jena.fuseki.Fuseki;
+import org.apache.jena.fuseki.server.DataAccessPoint;
+import org.apache.jena.fuseki.server.DataAccessPointRegistry;
+import org.apache.jena.fuseki.server.DataService;
+import org.apache.jena.fuseki.server.OperationRegistry;
+import org.apache.jena.fuseki.system.ActionCategory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+
+/** {@link HttpAction#executeWrite(GroupCommit, java.util.function.Consumer)} */
+public class TestHttpActionGroupCommit {
+
+    private DatasetGraph dsg;
+    private DataService dataService;
+    private DataAccessPoint dataAccessPoint;
+    private GroupCommit groupCommit;
+
+    @BeforeEach
+    public void before() {
+        dsg = DatabaseMgr.createDatasetGraph();
+        dataService = DataService.newBuilder(dsg).build();
+        dataService.goActive();
+        dataAccessPoint = new DataAccessPoint("/ds", dataService);
+        groupCommit = DatabaseMgr.getGroupCommit(dsg);
+    }
+
+    private HttpAction action(long id) {
+        ServletContext servletContext = mock(ServletContext.class);
+        when(servletContext.getContextPath()).thenReturn("");
+        when(servletContext.getAttribute(Fuseki.attrOperationRegistry)).thenReturn(OperationRegistry.createStd());
+        when(servletContext.getAttribute(Fuseki.attrNameRegistry)).thenReturn(new DataAccessPointRegistry());
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getServletContext()).thenReturn(servletContext);
+        when(request.getRequestURI()).thenReturn("/ds/update");
+        HttpAction action = new HttpAction(id, Fuseki.actionLog, ActionCategory.ACTION, request, mock(HttpServletResponse.class));
+        action.setRequest(dataAccessPoint, dataService);
+        return action;
+    }
+
+    private static Quad quad(int i) {
+        return SSE.parseQuad("(_ :s :p "+i+")");
+    }
+
+    private long size() {
+        return Txn.calculateRead(dsg, ()->dsg.getDefaultGraph().size());
+    }
+
+    @Test
+    public void groupCommit_action_1() {
+        HttpAction action = action(1);
+        action.executeWrite(groupCommit, d->{
+            assertSame(dsg, d);
+            d.add(quad(1));
+        });
+        assertNull(action.getActiveDSG());
+        assertEquals(1, size());
+        assertEquals(1, dataService.totalTxn.get());
+        assertEquals(0, dataService.activeTxn.get());
+    }
+
+    @Test
+    public void groupCommit_action_error() {
+        HttpAction action = action(1);
+        assertThrows(UnsupportedOperationException.class, ()->
+            action.executeWrite(groupCommit, d->{
+                d.add(quad(1));
+                throw new UnsupportedOperationException();
+            }));
+        assertNull(action.getActiveDSG());
+        assertEquals(0, size());
+        assertEquals(1, dataService.totalTxn.get());
+        assertEquals(0, dataService.activeTxn.get());
+        // The dataset is usable afterwards.
+        action(2).executeWrite(groupCommit, d->d.add(quad(2)));
+        assertEquals(1, size());
+    }
+
+    @Test
+    public void groupCommit_action_concurrent() throws Exception {
+        int N = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(N);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int i = 0 ; i < N ; i++ ) {
+                int x = i;
+                futures.add(executor.submit(()->action(x).executeWrite(groupCommit, d->d.add(quad(x)))));
+            }
+            for ( Future<?> f : futures )
+                f.get();
+        } finally { executor.shutdown(); }
+        assertEquals(N, size());
+        assertEquals(N, dataService.totalTxn.get());
+        assertEquals(0, dataService.activeTxn.get());
+        assertEquals(N, groupCommit.getCountActions());
+    }
+}
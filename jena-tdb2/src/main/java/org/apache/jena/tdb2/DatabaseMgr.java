@@ -19,11 +19,13 @@
 package org.apache.jena.tdb2;
 
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.sys.CompactionStats;
 import org.apache.jena.tdb2.sys.DatabaseConnection;
 import org.apache.jena.tdb2.sys.DatabaseOps;
 import org.apache.jena.tdb2.sys.TDBInternal;
@@ -92,6 +94,22 @@ public class DatabaseMgr {
         DatabaseOps.compact(dsg, shouldDeleteOld);
     }
 
+    /**
+     * Compact a dataset which must be a switchable TDB database, allowing updates
+     * while the database is copied. Writers are held up only at the start and
+     * for the switch to the compacted database.
+     * <p>
+     * Deletes old database after successful compaction if {@code shouldDeleteOld} is {@code true}.
+     *
+     * @param container
+     * @param shouldDeleteOld
+     * @return Measurements of the compaction.
+     */
+    public static CompactionStats compactOnline(DatasetGraph container, boolean shouldDeleteOld) {
+        DatasetGraphSwitchable dsg = requireSwitchable(container);
+        return DatabaseOps.compactOnline(dsg, shouldDeleteOld);
+    }
+
     /**
      * Create a backup for a switchable TDB database. This is the normal dataset type for
      * on-disk TDB2 databases.
@@ -109,6 +127,18 @@ public class DatabaseMgr {
         return DatabaseOps.backup(dsg);
     }
 
+    /**
+     * Return the group commit of a switchable TDB database. Write actions executed
+     * with it from different threads at about the same time share one commit.
+     *
+     * @param container
+     * @return The group commit for the database.
+     */
+    public static GroupCommit getGroupCommit(DatasetGraph container) {
+        DatasetGraphSwitchable dsg = requireSwitchable(container);
+        return dsg.getGroupCommit();
+    }
+
     /** Create an in-memory TDB2-backed dataset (for testing) */
     public static DatasetGraph createDatasetGraph() {
         return connectDatasetGraph(Location.mem());
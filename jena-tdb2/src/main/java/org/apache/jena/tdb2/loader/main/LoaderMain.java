@@ -33,6 +33,7 @@ import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.tdb2.loader.DataLoader;
 import org.apache.jena.tdb2.loader.base.*;
+import org.apache.jena.system.Txn;
 import org.apache.jena.system.progress.MonitorOutput;
 import org.apache.jena.system.progress.ProgressMonitor;
 import org.apache.jena.system.progress.ProgressMonitorOutput;
@@ -268,6 +269,11 @@ public class LoaderMain extends LoaderBase implements DataLoader {
         }
         super.finishBulk();
         dsgtdb.getTxnSystem().getTxnMgr().finishExclusiveMode();
+        // The indexes were written directly: recalculate any statistics and closures.
+        if ( ( doTriples || doQuads ) && dsgtdb.getStats() != null )
+            Txn.executeWrite(dsgtdb, dsgtdb::rebuildStats);
+        if ( doTriples && dsgtdb.getClosureIndex() != null )
+            Txn.executeWrite(dsgtdb, dsgtdb::rebuildClosureIndex);
     }
 
     /** Execute secondary index building of a {@link LoaderPlan} */
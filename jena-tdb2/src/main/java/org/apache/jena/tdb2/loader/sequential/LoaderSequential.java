@@ -93,6 +93,9 @@ public class LoaderSequential extends LoaderBase {
     public void finishBulk() {
         triplesLoader.loadDataFinish();
         quadsLoader.loadDataFinish();
+        // The tables were written directly: recalculate any statistics and closures.
+        dsgtdb.rebuildStats();
+        dsgtdb.rebuildClosureIndex();
         super.finishBulk();
         //dsgtdb.getTxnSystem().getTxnMgr().finishExclusiveMode();
     }
@@ -57,6 +57,8 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
     /*package*/ final Item<Integer>            prefixNodeId2NodeCacheSize;
     /*package*/ final Item<Integer>            prefixNodeMissCacheSize;
     /*package*/ final Item<Double>             nodeCacheInitialCapacityFactor;
+    /*package*/ final Item<Long>               nodeId2NodeOffHeapCacheSize;
+    /*package*/ final Item<String[]>           closurePredicates;
 
     /*
      * These are items affect database layout and
@@ -67,6 +69,12 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
      */
     /*package*/ final Item<Integer>            blockSize;
 
+    /*package*/ final Item<Boolean>            persistentStats;
+
+    /*package*/ final Item<Boolean>            reuseBlocks;
+
+    /*package*/ final Item<Boolean>            compressNodes;
+
     /*package*/ final Item<String>             nodeTableBaseName;
 
     /*package*/ final Item<String>             primaryIndexTriples;
@@ -114,6 +122,12 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
                             Item<Integer> prefixNodeMissCacheSize,
 
                             Item<Double> nodeCacheInitialCapacityFactor,
+                            Item<Long> nodeId2NodeOffHeapCacheSize,
+                            Item<String[]> closurePredicates,
+
+                            Item<Boolean> persistentStats,
+                            Item<Boolean> reuseBlocks,
+                            Item<Boolean> compressNodes,
 
                             Item<String> nodeTableBaseName,
                             Item<String> primaryIndexTriples, Item<String[]> tripleIndexes,
@@ -136,6 +150,12 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
         this.prefixNodeMissCacheSize      = prefixNodeMissCacheSize;
 
         this.nodeCacheInitialCapacityFactor = nodeCacheInitialCapacityFactor;
+        this.nodeId2NodeOffHeapCacheSize    = nodeId2NodeOffHeapCacheSize;
+        this.closurePredicates              = closurePredicates;
+
+        this.persistentStats        = persistentStats;
+        this.reuseBlocks            = reuseBlocks;
+        this.compressNodes          = compressNodes;
 
         this.nodeTableBaseName      = nodeTableBaseName;
 
@@ -284,6 +304,59 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
         return nodeCacheInitialCapacityFactor.isSet;
     }
 
+    @Override
+    public Long getNodeId2NodeOffHeapCacheSize() {
+        return nodeId2NodeOffHeapCacheSize.value;
+    }
+
+    @Override
+    public boolean isSetNodeId2NodeOffHeapCacheSize() {
+        return nodeId2NodeOffHeapCacheSize.isSet;
+    }
+
+    @Override
+    public String[] getClosurePredicates() {
+        return closurePredicates.value;
+    }
+
+    @Override
+    public boolean isSetClosurePredicates() {
+        return closurePredicates.isSet;
+    }
+
+    /** Whether the database maintains statistics, updated on each commit. */
+    public boolean isPersistentStats() {
+        return persistentStats.value;
+    }
+
+    public boolean isSetPersistentStats() {
+        return persistentStats.isSet;
+    }
+
+    /**
+     * Whether the B+Tree indexes reuse the blocks that are no longer part of the
+     * tree, once no transaction can see them, instead of always growing the files.
+     */
+    public boolean isReuseBlocks() {
+        return reuseBlocks.value;
+    }
+
+    public boolean isSetReuseBlocks() {
+        return reuseBlocks.isSet;
+    }
+
+    /**
+     * Whether the node table stores IRIs as a reference to their namespace and a
+     * local name, and compresses large RDF terms.
+     */
+    public boolean isCompressNodes() {
+        return compressNodes.value;
+    }
+
+    public boolean isSetCompressNodes() {
+        return compressNodes.isSet;
+    }
+
     public String getNodeTableBaseName() {
         return nodeTableBaseName.value;
     }
@@ -343,7 +416,12 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
         fmt(buff, "prefixNodeId2NodeCacheSize", getPrefixNodeId2NodeCacheSize(), prefixNodeId2NodeCacheSize.isSet);
         fmt(buff, "prefixNodeMissCacheSize", getPrefixNodeMissCacheSize(), prefixNodeMissCacheSize.isSet);
         fmt(buff, "nodeCacheInitialCapacityFactor", getNodeCacheInitialCapacityFactor(), nodeCacheInitialCapacityFactor.isSet);
+        fmt(buff, "nodeId2NodeOffHeapCacheSize", getNodeId2NodeOffHeapCacheSize(), nodeId2NodeOffHeapCacheSize.isSet);
+        fmt(buff, "closurePredicates", getClosurePredicates(), closurePredicates.isSet);
 
+        fmt(buff, "persistentStats", Boolean.toString(isPersistentStats()), persistentStats.isSet);
+        fmt(buff, "reuseBlocks", Boolean.toString(isReuseBlocks()), reuseBlocks.isSet);
+        fmt(buff, "compressNodes", Boolean.toString(isCompressNodes()), compressNodes.isSet);
         fmt(buff, "nodeTableBaseName", getNodeTableBaseName(), nodeTableBaseName.isSet);
         fmt(buff, "primaryIndexTriples", getPrimaryIndexTriples(), primaryIndexTriples.isSet);
         fmt(buff, "tripleIndexes", getTripleIndexes(), tripleIndexes.isSet);
@@ -378,6 +456,13 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
         buff.append(String.format("%-20s   %s%s\n", name, dftStr, value));
     }
 
+    private void fmt(StringBuilder buff, String name, long value, boolean isSet) {
+        String dftStr = "";
+        if ( ! isSet )
+            dftStr = "dft:";
+        buff.append(String.format("%-20s   %s%s\n", name, dftStr, value));
+    }
+
     private void fmt(StringBuilder buff, String name, double value, boolean isSet) {
         String dftStr = "";
         if ( ! isSet )
@@ -415,6 +500,16 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
             return false;
         if ( !sameValues(params1.nodeCacheInitialCapacityFactor, params2.nodeCacheInitialCapacityFactor) )
             return false;
+        if ( !sameValues(params1.nodeId2NodeOffHeapCacheSize, params2.nodeId2NodeOffHeapCacheSize) )
+            return false;
+        if ( !sameValues(params1.closurePredicates, params2.closurePredicates) )
+            return false;
+        if ( !sameValues(params1.persistentStats, params2.persistentStats) )
+            return false;
+        if ( !sameValues(params1.reuseBlocks, params2.reuseBlocks) )
+            return false;
+        if ( !sameValues(params1.compressNodes, params2.compressNodes) )
+            return false;
         if ( !sameValues(params1.nodeTableBaseName, params2.nodeTableBaseName) )
             return false;
         if ( !sameValues(params1.primaryIndexTriples, params2.primaryIndexTriples) )
@@ -449,10 +544,15 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
         result = prime * result + ((prefixNodeId2NodeCacheSize == null) ? 0 : prefixNodeId2NodeCacheSize.hashCode());
         result = prime * result + ((prefixNodeMissCacheSize == null) ? 0 : prefixNodeMissCacheSize.hashCode());
         result = prime * result + ((nodeCacheInitialCapacityFactor == null) ? 0 : nodeCacheInitialCapacityFactor.hashCode());
+        result = prime * result + ((nodeId2NodeOffHeapCacheSize == null) ? 0 : nodeId2NodeOffHeapCacheSize.hashCode());
+        result = prime * result + ((closurePredicates == null) ? 0 : closurePredicates.hashCode());
         result = prime * result + ((blockReadCacheSize == null) ? 0 : blockReadCacheSize.hashCode());
         result = prime * result + ((blockSize == null) ? 0 : blockSize.hashCode());
         result = prime * result + ((blockWriteCacheSize == null) ? 0 : blockWriteCacheSize.hashCode());
         result = prime * result + ((fileMode == null) ? 0 : fileMode.hashCode());
+        result = prime * result + ((persistentStats == null) ? 0 : persistentStats.hashCode());
+        result = prime * result + ((reuseBlocks == null) ? 0 : reuseBlocks.hashCode());
+        result = prime * result + ((compressNodes == null) ? 0 : compressNodes.hashCode());
         result = prime * result + ((nodeTableBaseName == null) ? 0 : nodeTableBaseName.hashCode());
         result = prime * result + ((prefixTableBaseName == null) ? 0 : prefixTableBaseName.hashCode());
         result = prime * result + ((prefixIndexes == null) ? 0 : prefixIndexes.hashCode());
@@ -508,6 +608,16 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
                 return false;
         } else if ( !nodeCacheInitialCapacityFactor.equals(other.nodeCacheInitialCapacityFactor) )
             return false;
+        if ( nodeId2NodeOffHeapCacheSize == null ) {
+            if ( other.nodeId2NodeOffHeapCacheSize != null )
+                return false;
+        } else if ( !nodeId2NodeOffHeapCacheSize.equals(other.nodeId2NodeOffHeapCacheSize) )
+            return false;
+        if ( closurePredicates == null ) {
+            if ( other.closurePredicates != null )
+                return false;
+        } else if ( !closurePredicates.equals(other.closurePredicates) )
+            return false;
         if ( blockReadCacheSize == null ) {
             if ( other.blockReadCacheSize != null )
                 return false;
@@ -528,6 +638,21 @@ public class StoreParams implements IndexParams, BlockParams, StoreParamsDynamic
                 return false;
         } else if ( !fileMode.equals(other.fileMode) )
             return false;
+        if ( persistentStats == null ) {
+            if ( other.persistentStats != null )
+                return false;
+        } else if ( !persistentStats.equals(other.persistentStats) )
+            return false;
+        if ( reuseBlocks == null ) {
+            if ( other.reuseBlocks != null )
+                return false;
+        } else if ( !reuseBlocks.equals(other.reuseBlocks) )
+            return false;
+        if ( compressNodes == null ) {
+            if ( other.compressNodes != null )
+                return false;
+        } else if ( !compressNodes.equals(other.compressNodes) )
+            return false;
         if ( nodeTableBaseName == null ) {
             if ( other.nodeTableBaseName != null )
                 return false;
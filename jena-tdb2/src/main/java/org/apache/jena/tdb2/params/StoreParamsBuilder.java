@@ -85,10 +85,20 @@ public class StoreParamsBuilder {
 
     private Item<Double>             nodeCacheInitialCapacityFactor = new Item<>(StoreParamsConst.NodeCacheInitialCapacityFactor, false);
 
+    private Item<Long>               nodeId2NodeOffHeapCacheSize    = new Item<>(StoreParamsConst.NodeId2NodeOffHeapCacheSize, false);
+
+    private Item<String[]>           closurePredicates              = new Item<>(StoreParamsConst.closurePredicates, false);
+
     /** Database layout - ignored after a database is created */
 
     private Item<Integer>            blockSize             = new Item<>(StoreParamsConst.blockSize, false);
 
+    private Item<Boolean>            persistentStats       = new Item<>(StoreParamsConst.persistentStats, false);
+
+    private Item<Boolean>            reuseBlocks           = new Item<>(StoreParamsConst.reuseBlocks, false);
+
+    private Item<Boolean>            compressNodes         = new Item<>(StoreParamsConst.compressNodes, false);
+
     private Item<String>             nodeTableBaseName     = new Item<>(StoreParamsConst.nodeTableBaseName, false);
 
     private Item<String>             primaryIndexTriples   = new Item<>(StoreParamsConst.primaryIndexTriples, false);
@@ -164,6 +174,12 @@ public class StoreParamsBuilder {
         if ( additionalParams.isSetNodeCacheInitialCapacityFactor() )
             b.nodeCacheInitialCapacityFactor(additionalParams.getNodeCacheInitialCapacityFactor());
 
+        if ( additionalParams.isSetNodeId2NodeOffHeapCacheSize() )
+            b.nodeId2NodeOffHeapCacheSize(additionalParams.getNodeId2NodeOffHeapCacheSize());
+
+        if ( additionalParams.isSetClosurePredicates() )
+            b.closurePredicates(additionalParams.getClosurePredicates());
+
         return b.build();
     }
 
@@ -186,6 +202,12 @@ public class StoreParamsBuilder {
         this.prefixNodeMissCacheSize      = other.prefixNodeMissCacheSize;
 
         this.nodeCacheInitialCapacityFactor = other.nodeCacheInitialCapacityFactor;
+        this.nodeId2NodeOffHeapCacheSize    = other.nodeId2NodeOffHeapCacheSize;
+        this.closurePredicates              = other.closurePredicates;
+
+        this.persistentStats        = other.persistentStats;
+        this.reuseBlocks            = other.reuseBlocks;
+        this.compressNodes          = other.compressNodes;
 
         this.nodeTableBaseName      = other.nodeTableBaseName;
 
@@ -205,7 +227,9 @@ public class StoreParamsBuilder {
                  label, fileMode, blockSize, blockReadCacheSize, blockWriteCacheSize,
                  Node2NodeIdCacheSize, NodeId2NodeCacheSize, NodeMissCacheSize,
                  prefixNode2NodeIdCacheSize, prefixNodeId2NodeCacheSize, prefixNodeMissCacheSize,
-                 nodeCacheInitialCapacityFactor,
+                 nodeCacheInitialCapacityFactor, nodeId2NodeOffHeapCacheSize,
+                 closurePredicates,
+                 persistentStats, reuseBlocks, compressNodes,
                  nodeTableBaseName,
                  primaryIndexTriples, tripleIndexes,
                  primaryIndexQuads, quadIndexes,
@@ -321,6 +345,51 @@ public class StoreParamsBuilder {
         return this;
     }
 
+    public long getNodeId2NodeOffHeapCacheSize() {
+        return nodeId2NodeOffHeapCacheSize.value;
+    }
+
+    public StoreParamsBuilder nodeId2NodeOffHeapCacheSize(long nodeId2NodeOffHeapCacheSize) {
+        this.nodeId2NodeOffHeapCacheSize = new Item<>(nodeId2NodeOffHeapCacheSize, true);
+        return this;
+    }
+
+    public String[] getClosurePredicates() {
+        return closurePredicates.value;
+    }
+
+    public StoreParamsBuilder closurePredicates(String... closurePredicates) {
+        this.closurePredicates = new Item<>(closurePredicates, true);
+        return this;
+    }
+
+    public boolean isPersistentStats() {
+        return persistentStats.value;
+    }
+
+    public StoreParamsBuilder persistentStats(boolean persistentStats) {
+        this.persistentStats = new Item<>(persistentStats, true);
+        return this;
+    }
+
+    public boolean isReuseBlocks() {
+        return reuseBlocks.value;
+    }
+
+    public StoreParamsBuilder reuseBlocks(boolean reuseBlocks) {
+        this.reuseBlocks = new Item<>(reuseBlocks, true);
+        return this;
+    }
+
+    public boolean isCompressNodes() {
+        return compressNodes.value;
+    }
+
+    public StoreParamsBuilder compressNodes(boolean compressNodes) {
+        this.compressNodes = new Item<>(compressNodes, true);
+        return this;
+    }
+
     public String getNodeTableBaseName() {
         return nodeTableBaseName.value;
     }
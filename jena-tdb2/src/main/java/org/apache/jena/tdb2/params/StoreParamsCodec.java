@@ -98,6 +98,11 @@ public class StoreParamsCodec {
         encode(builder, key(fPrefixNodeId2NodeCacheSize),     params.getPrefixNodeId2NodeCacheSize());
         encode(builder, key(fPrefixNodeMissCacheSize),        params.getPrefixNodeMissCacheSize());
         encode(builder, key(fNodeCacheInitialCapacityFactor), params.getNodeCacheInitialCapacityFactor());
+        encode(builder, key(fNodeId2NodeOffHeapCacheSize),    params.getNodeId2NodeOffHeapCacheSize());
+        encode(builder, key(fClosurePredicates),              params.getClosurePredicates());
+        encode(builder, key(fPersistentStats),                params.isPersistentStats());
+        encode(builder, key(fReuseBlocks),                    params.isReuseBlocks());
+        encode(builder, key(fCompressNodes),                  params.isCompressNodes());
         encode(builder, key(fNodeTableBaseName),              params.getNodeTableBaseName());
         encode(builder, key(fPrimaryIndexTriples),            params.getPrimaryIndexTriples());
         encode(builder, key(fTripleIndexes),                  params.getTripleIndexes());
@@ -145,7 +150,12 @@ public class StoreParamsCodec {
                 case fPrefixNodeId2NodeCacheSize:     builder.prefixNodeId2NodeCacheSize(getInt(json, key));        break ;
                 case fPrefixNodeMissCacheSize:        builder.prefixNodeMissCacheSize(getInt(json, key));           break ;
                 case fNodeCacheInitialCapacityFactor: builder.nodeCacheInitialCapacityFactor(getDouble(json, key)); break ;
+                case fNodeId2NodeOffHeapCacheSize:    builder.nodeId2NodeOffHeapCacheSize(getLong(json, key));      break ;
+                case fClosurePredicates:              builder.closurePredicates(getStringArray(json, key));         break ;
 
+                case fPersistentStats:                builder.persistentStats(getBoolean(json, key));               break ;
+                case fReuseBlocks:                    builder.reuseBlocks(getBoolean(json, key));                   break ;
+                case fCompressNodes:                  builder.compressNodes(getBoolean(json, key));                 break ;
                 case fNodeTableBaseName:              builder.nodeTableBaseName(getString(json, key));              break ;
                 case fPrimaryIndexTriples:            builder.primaryIndexTriples(getString(json, key));            break ;
                 case fTripleIndexes:                  builder.tripleIndexes(getStringArray(json, key));             break ;
@@ -179,6 +189,20 @@ public class StoreParamsCodec {
         return x;
     }
 
+    private static Long getLong(JsonObject json, String key) {
+        if ( ! json.hasKey(key) )
+            throw new TDBException("StoreParamsCodec.getLong: no such key: "+key);
+        Long x = json.get(key).getAsNumber().value().longValue();
+        return x;
+    }
+
+    private static Boolean getBoolean(JsonObject json, String key) {
+        if ( ! json.hasKey(key) )
+            throw new TDBException("StoreParamsCodec.getBoolean: no such key: "+key);
+        Boolean x = json.get(key).getAsBoolean().value();
+        return x;
+    }
+
     private static Double getDouble(JsonObject json, String key) {
         if ( ! json.hasKey(key) )
             throw new TDBException("StoreParamsCodec.getDouble: no such key: "+key);
@@ -212,6 +236,10 @@ public class StoreParamsCodec {
             builder.key(name).value(str);
             return;
         }
+        if ( value instanceof Boolean bool ) {
+            builder.key(name).value(bool.booleanValue());
+            return;
+        }
         if ( value instanceof String[] strArray ) {
             builder.key(name);
             builder.startArray();
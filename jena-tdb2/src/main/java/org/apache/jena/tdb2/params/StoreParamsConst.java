@@ -61,10 +61,25 @@ public class StoreParamsConst {
     public static final String  fNodeCacheInitialCapacityFactor = "node_cache_initial_capacity_factor";
     public static final double  NodeCacheInitialCapacityFactor  = SystemTDB.NodeCacheInitialCapacityFactor;
 
+    public static final String  fNodeId2NodeOffHeapCacheSize    = "nodeid2node_offheap_cache_size";
+    public static final long    NodeId2NodeOffHeapCacheSize     = SystemTDB.NodeId2NodeOffHeapCacheSize;
+
+    public static final String   fClosurePredicates    = "closure_predicates";
+    public static final String[] closurePredicates     = new String[0];
+
     /** Database layout - ignored after a database is created */
     public static final String   fBlockSize            = "block_size";
     public static final int      blockSize             = SystemTDB.BlockSize;
 
+    public static final String   fPersistentStats      = "persistent_stats";
+    public static final boolean  persistentStats       = false;
+
+    public static final String   fReuseBlocks          = "reuse_blocks";
+    public static final boolean  reuseBlocks           = false;
+
+    public static final String   fCompressNodes        = "compress_nodes";
+    public static final boolean  compressNodes         = false;
+
     public static final String   fNodeTableBaseName    = "nodetable";
     public static final String   nodeTableBaseName     = Names.nodeTableBaseName;
 
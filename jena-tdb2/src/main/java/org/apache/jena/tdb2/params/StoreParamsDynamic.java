@@ -77,4 +77,20 @@ public interface StoreParamsDynamic {
      */
     public Double getNodeCacheInitialCapacityFactor();
     public boolean isSetNodeCacheInitialCapacityFactor();
+
+    /**
+     * Size, in bytes, of the off-heap NodeId{@literal ->}Node cache for the data node table.
+     * If greater than zero, nodes are cached outside the Java heap and
+     * {@link #getNodeId2NodeCacheSize} is not used for the data node table.
+     */
+    public Long getNodeId2NodeOffHeapCacheSize();
+    public boolean isSetNodeId2NodeOffHeapCacheSize();
+
+    /**
+     * IRIs of the predicates for which the transitive closure over the default graph
+     * is kept in a persistent index. Adding or removing a predicate takes effect
+     * the next time the database is attached.
+     */
+    public String[] getClosurePredicates();
+    public boolean isSetClosurePredicates();
 }
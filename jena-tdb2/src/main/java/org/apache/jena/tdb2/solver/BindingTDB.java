@@ -37,17 +37,29 @@ public class BindingTDB extends BindingBase
 {
     private final NodeTable nodeTable;
     private final BindingNodeId idBinding;
+    // Nodes already looked up, possibly shared with other bindings. May be null.
+    private final Map<NodeId, Node> resolved;
 
     private static final boolean caching = false;
     // Whether the cache is worthwhile is unclear - the NodeTable keeps a cache.
     private final Map<Var,Node> cache = ( caching ? new HashMap<>() : null );
 
     public BindingTDB(BindingNodeId idBinding, NodeTable nodeTable)
+    {
+        this(idBinding, nodeTable, null);
+    }
+
+    /**
+     * Create a binding where some or all of the NodeIds have already been turned into Nodes.
+     * NodeIds not in {@code resolved} are looked up in the node table on demand.
+     */
+    public BindingTDB(BindingNodeId idBinding, NodeTable nodeTable, Map<NodeId, Node> resolved)
     {
         // BindingNodeId contains the bindings actually used  copied down when created.
         super(idBinding.getParentBinding());
         this.idBinding = idBinding;
         this.nodeTable = nodeTable;
+        this.resolved = resolved;
     }
 
     @Override
@@ -124,7 +136,12 @@ public class BindingTDB extends BindingBase
                 return null;
             if ( NodeId.isDoesNotExist(id) )
                 return null;
-            n = nodeTable.getNodeForNodeId(id);
+            // Only NodeIds in the node table are resolved in advance.
+            // (NodeId equality does not include the inline type.)
+            if ( resolved != null && id.isPtr() )
+                n = resolved.get(id);
+            if ( n == null )
+                n = nodeTable.getNodeForNodeId(id);
             if ( n == null )
                 // But there was to put it in the BindingNodeId.
                 throw new TDBException("No node in NodeTable for NodeId "+id);
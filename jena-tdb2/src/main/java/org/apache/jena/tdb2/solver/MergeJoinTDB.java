@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.iterator.IteratorSlotted;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.mgt.Explain;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.tupletable.TupleIndexRecord;
+import org.apache.jena.tdb2.sys.SystemTDB;
+
+/**
+ * Merge join of patterns that have a single variable in common and no other
+ * variables, such as a star of {@code ?s :p1 :o1 . ?s :p2 :o2} or
+ * {@code :s :p ?o . :t :q ?o}.
+ * <p>
+ * Each such pattern is a prefix of some index, with the variable in the next
+ * slot, so a range scan of that index returns the values for the variable in
+ * sorted order. The scans are intersected by leapfrog: the scan with the
+ * smallest value seeks to the largest value of the other scans, using the
+ * B+Tree to skip, until all scans agree.
+ * <p>
+ * Patterns with more than one variable, patterns with RDF-star triple terms and
+ * execution over the union graph are left for the usual index nested loop
+ * evaluation. Enabled with the context setting {@link SystemTDB#symMergeJoin}.
+ */
+public class MergeJoinTDB {
+
+    /** Number of entries stepped over before a seek uses the index. */
+    private static final int SeekLinear = 8;
+
+    /** Whether merge joins are enabled for this execution. */
+    static boolean enabled(Context context) {
+        return context != null && context.isTrue(SystemTDB.symMergeJoin);
+    }
+
+    /**
+     * A group of patterns sharing their only variable, and the indexes to scan.
+     */
+    static class Group {
+        final Var var;
+        final List<Triple> triples = new ArrayList<>();
+        final List<Tuple<Node>> patterns = new ArrayList<>();
+        final List<Integer> varSlots = new ArrayList<>();
+        final List<TupleIndexRecord> indexes = new ArrayList<>();
+
+        Group(Var var) { this.var = var; }
+
+        int size() { return patterns.size(); }
+
+        @Override
+        public String toString() {
+            return "MergeJoin "+var+" "+triples;
+        }
+    }
+
+    /**
+     * Split the triples of a basic graph pattern into merge join groups. Triples
+     * that are evaluated by a merge join are removed from {@code triples}, which
+     * keeps the remaining triples in their original order.
+     */
+    static List<Group> plan(NodeTupleTable nodeTupleTable, Node graphNode, List<Triple> triples) {
+        Map<Var, Group> candidates = new LinkedHashMap<>();
+        for ( Triple triple : triples ) {
+            Tuple<Node> patternTuple = ( graphNode == null )
+                ? TupleFactory.create3(triple.getSubject(), triple.getPredicate(), triple.getObject())
+                : TupleFactory.create4(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject());
+            int varSlot = singleVarSlot(patternTuple);
+            if ( varSlot < 0 )
+                continue;
+            TupleIndexRecord index = chooseIndex(nodeTupleTable, varSlot, patternTuple.len());
+            if ( index == null )
+                continue;
+            Var var = Var.alloc(patternTuple.get(varSlot));
+            Group group = candidates.computeIfAbsent(var, Group::new);
+            group.triples.add(triple);
+            group.patterns.add(patternTuple);
+            group.varSlots.add(varSlot);
+            group.indexes.add(index);
+        }
+        List<Group> groups = new ArrayList<>();
+        for ( Group group : candidates.values() ) {
+            if ( group.size() < 2 )
+                continue;
+            groups.add(group);
+            triples.removeAll(group.triples);
+        }
+        return groups;
+    }
+
+    /**
+     * The slot of the only variable in the pattern, or -1 if the pattern does not
+     * have exactly one variable slot with concrete terms in all other slots.
+     */
+    private static int singleVarSlot(Tuple<Node> patternTuple) {
+        int varSlot = -1;
+        for ( int i = 0 ; i < patternTuple.len() ; i++ ) {
+            Node n = patternTuple.get(i);
+            if ( Var.isVar(n) ) {
+                if ( varSlot >= 0 )
+                    return -1;
+                varSlot = i;
+                continue;
+            }
+            if ( n == null || ! n.isConcrete() || n.isTripleTerm() )
+                return -1;
+        }
+        return varSlot;
+    }
+
+    /** Find an index that has the variable slot last in its order. */
+    private static TupleIndexRecord chooseIndex(NodeTupleTable nodeTupleTable, int varSlot, int len) {
+        for ( TupleIndex index : nodeTupleTable.getTupleTable().getIndexes() ) {
+            if ( index.getMapping().mapIdx(len-1) != varSlot )
+                continue;
+            if ( index.baseTupleIndex() instanceof TupleIndexRecord indexRecord )
+                return indexRecord;
+        }
+        return null;
+    }
+
+    /** Add the evaluation of a merge join group to a chain of bindings. */
+    static Iterator<BindingNodeId> execute(Iterator<BindingNodeId> input, Group group, NodeTable nodeTable,
+                                           Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+        Explain.explain(execCxt.getContext(), "%s", group);
+        // Constants are the same for every input binding.
+        List<Tuple<NodeId>> patterns = new ArrayList<>(group.size());
+        for ( Tuple<Node> patternTuple : group.patterns ) {
+            NodeId[] ids = new NodeId[patternTuple.len()];
+            for ( int i = 0 ; i < ids.length ; i++ ) {
+                Node n = patternTuple.get(i);
+                if ( Var.isVar(n) ) {
+                    ids[i] = NodeId.NodeIdAny;
+                    continue;
+                }
+                NodeId id = nodeTable.getNodeIdForNode(n);
+                if ( NodeId.isDoesNotExist(id) )
+                    // A term that is not in the database: no matches at all.
+                    return Iter.nullIterator();
+                ids[i] = id;
+            }
+            patterns.add(TupleFactory.create(ids));
+        }
+        return Iter.flatMap(input, bnid -> {
+            NodeId value = bnid.get(group.var);
+            if ( value == null )
+                return Iter.map(new Leapfrog(group, patterns, filter, execCxt.getCancelSignal()),
+                                id -> { BindingNodeId b = new BindingNodeId(bnid); b.put(group.var, id); return b; });
+            // Variable already bound : test each pattern.
+            for ( int i = 0 ; i < group.size() ; i++ ) {
+                if ( ! contains(group.indexes.get(i), patterns.get(i), group.varSlots.get(i), value, filter) )
+                    return Iter.nullIterator();
+            }
+            return Iter.singletonIterator(bnid);
+        });
+    }
+
+    private static boolean contains(TupleIndexRecord index, Tuple<NodeId> pattern, int varSlot, NodeId value, Predicate<Tuple<NodeId>> filter) {
+        if ( NodeId.isDoesNotExist(value) )
+            return false;
+        NodeId[] ids = pattern.asList().toArray(new NodeId[pattern.len()]);
+        ids[varSlot] = value;
+        Iterator<Tuple<NodeId>> iter = index.find(TupleFactory.create(ids));
+        if ( filter != null )
+            iter = Iter.filter(iter, filter);
+        try {
+            return iter.hasNext();
+        } finally {
+            Iter.close(iter);
+        }
+    }
+
+    /** A sorted scan of one index for the values of the variable. */
+    private static class Cursor {
+        private final TupleIndexRecord index;
+        private final Tuple<NodeId> pattern;
+        private final int varSlot;
+        private final Predicate<Tuple<NodeId>> filter;
+        private Iterator<Tuple<NodeId>> iter = null;
+        // Current value; null when the scan is exhausted.
+        private NodeId key = null;
+
+        Cursor(TupleIndexRecord index, Tuple<NodeId> pattern, int varSlot, Predicate<Tuple<NodeId>> filter) {
+            this.index = index;
+            this.pattern = pattern;
+            this.varSlot = varSlot;
+            this.filter = filter;
+        }
+
+        /** Position at the first value at or after {@code target} (null for "first"). */
+        void seek(NodeId target) {
+            if ( iter != null ) {
+                // Nearby values are cheaper to step to than to search for.
+                for ( int i = 0 ; key != null && i < SeekLinear ; i++ ) {
+                    if ( NodeIdFactory.compareIndexOrder(key, target) >= 0 )
+                        return;
+                    next();
+                }
+                if ( key == null )
+                    return;
+                if ( NodeIdFactory.compareIndexOrder(key, target) >= 0 )
+                    return;
+                Iter.close(iter);
+            }
+            iter = index.findFrom(pattern, target);
+            next();
+        }
+
+        void next() {
+            while ( iter.hasNext() ) {
+                Tuple<NodeId> tuple = iter.next();
+                if ( filter == null || filter.test(tuple) ) {
+                    key = tuple.get(varSlot);
+                    return;
+                }
+            }
+            key = null;
+        }
+
+        void close() {
+            Iter.close(iter);
+            key = null;
+        }
+    }
+
+    /** Leapfrog intersection of the cursors. */
+    private static class Leapfrog extends IteratorSlotted<NodeId> {
+        private final Cursor[] cursors;
+        private final AtomicBoolean cancelSignal;
+        private boolean started = false;
+        private boolean done = false;
+        private int p = 0;
+
+        Leapfrog(Group group, List<Tuple<NodeId>> patterns, Predicate<Tuple<NodeId>> filter, AtomicBoolean cancelSignal) {
+            this.cursors = new Cursor[group.size()];
+            for ( int i = 0 ; i < cursors.length ; i++ )
+                cursors[i] = new Cursor(group.indexes.get(i), patterns.get(i), group.varSlots.get(i), filter);
+            this.cancelSignal = cancelSignal;
+        }
+
+        private void start() {
+            started = true;
+            for ( Cursor c : cursors ) {
+                c.seek(null);
+                if ( c.key == null ) {
+                    done = true;
+                    return;
+                }
+            }
+            Arrays.sort(cursors, (c1, c2) -> NodeIdFactory.compareIndexOrder(c1.key, c2.key));
+            p = 0;
+        }
+
+        @Override
+        protected boolean hasMore() {
+            return !done;
+        }
+
+        @Override
+        protected NodeId moveToNext() {
+            if ( !started )
+                start();
+            int k = cursors.length;
+            while ( !done ) {
+                if ( cancelSignal != null && cancelSignal.get() )
+                    throw new QueryCancelledException();
+                Cursor c = cursors[p];
+                NodeId max = cursors[(p+k-1)%k].key;
+                if ( NodeIdFactory.compareIndexOrder(c.key, max) == 0 ) {
+                    // All cursors agree.
+                    NodeId result = c.key;
+                    c.next();
+                    if ( c.key == null )
+                        done = true;
+                    p = (p+1)%k;
+                    return result;
+                }
+                c.seek(max);
+                if ( c.key == null )
+                    done = true;
+                p = (p+1)%k;
+            }
+            return null;
+        }
+
+        @Override
+        protected void closeIterator() {
+            for ( Cursor c : cursors )
+                c.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.*;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * A table of solutions, indexed by {@link NodeIdKey NodeId keys} of the
+ * variables they have in common with the solutions that are looked up.
+ * <p>
+ * Solutions are grouped by which of the common variables they bind. For each
+ * group, there is an index on the variables that are bound in both the group and
+ * the solution being looked up, built when first needed.
+ */
+class NodeIdHashTable {
+    /** Most common variables handled. */
+    static final int MaxVars = 31;
+
+    private final List<Var> vars;
+    private final NodeTable nodeTable;
+    private final Map<Integer, List<Binding>> rows = new LinkedHashMap<>();
+    private final Map<Long, Map<NodeIdKey, List<Binding>>> indexes = new HashMap<>();
+    private final Map<Integer, List<Var>> varLists = new HashMap<>();
+
+    NodeIdHashTable(Collection<Var> vars, NodeTable nodeTable) {
+        if ( vars.size() > MaxVars )
+            throw new IllegalArgumentException("Too many variables: "+vars.size());
+        this.vars = List.copyOf(vars);
+        this.nodeTable = nodeTable;
+    }
+
+    void add(Binding binding) {
+        rows.computeIfAbsent(mask(binding), k->new ArrayList<>()).add(binding);
+    }
+
+    boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    /**
+     * Whether there is a solution in the table that is compatible with
+     * {@code binding} and has at least one variable in common with it (the test for MINUS).
+     */
+    boolean containsCompatibleWithSharedDomain(Binding binding) {
+        int mask = mask(binding);
+        for ( int rowMask : rows.keySet() ) {
+            int shared = rowMask & mask;
+            if ( shared == 0 )
+                continue;
+            if ( lookup(binding, rowMask, shared) != null )
+                return true;
+        }
+        return false;
+    }
+
+    /** The solutions in the table that are compatible with {@code binding}. */
+    Iterator<Binding> compatible(Binding binding) {
+        int mask = mask(binding);
+        List<List<Binding>> matches = new ArrayList<>();
+        for ( Map.Entry<Integer, List<Binding>> e : rows.entrySet() ) {
+            int rowMask = e.getKey();
+            int shared = rowMask & mask;
+            List<Binding> x = ( shared == 0 ) ? e.getValue() : lookup(binding, rowMask, shared);
+            if ( x != null )
+                matches.add(x);
+        }
+        if ( matches.size() == 1 )
+            return matches.get(0).iterator();
+        return matches.stream().flatMap(List::stream).iterator();
+    }
+
+    private List<Binding> lookup(Binding binding, int rowMask, int shared) {
+        long indexKey = ((long)rowMask << 32) | shared;
+        Map<NodeIdKey, List<Binding>> index = indexes.get(indexKey);
+        List<Var> keyVars = vars(shared);
+        if ( index == null ) {
+            index = new HashMap<>();
+            for ( Binding row : rows.get(rowMask) )
+                index.computeIfAbsent(NodeIdKey.create(row, keyVars, nodeTable), k->new ArrayList<>(1)).add(row);
+            indexes.put(indexKey, index);
+        }
+        return index.get(NodeIdKey.create(binding, keyVars, nodeTable));
+    }
+
+    private List<Var> vars(int mask) {
+        return varLists.computeIfAbsent(mask, m->{
+            List<Var> x = new ArrayList<>(Integer.bitCount(m));
+            for ( int i = 0 ; i < vars.size() ; i++ ) {
+                if ( (m & (1 << i)) != 0 )
+                    x.add(vars.get(i));
+            }
+            return x;
+        });
+    }
+
+    private int mask(Binding binding) {
+        int mask = 0;
+        for ( int i = 0 ; i < vars.size() ; i++ ) {
+            if ( binding.contains(vars.get(i)) )
+                mask |= (1 << i);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.function.FunctionEnv;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.sys.SystemTDB;
+
+/**
+ * A hash key made from the values of some variables of a solution.
+ * <p>
+ * A term in the database has exactly one NodeId, so keys of NodeIds are equal
+ * when the solutions have the same RDF terms, and hashing and equality do not
+ * need the Nodes. Solutions from a TDB2 pattern match ({@link BindingTDB}) carry
+ * their NodeIds; for other solutions the Node is looked up in the node table.
+ * Terms not in the database, such as the results of BIND, are kept as Nodes.
+ * <p>
+ * Used when the context setting {@link SystemTDB#symNodeIdExecution} is true.
+ */
+public final class NodeIdKey {
+
+    // Marker for an unbound variable.
+    private static final Object Unbound = new Object() {
+        @Override public String toString() { return "UNDEF"; }
+    };
+
+    // The 64 bit forms of the NodeIds; zero where the slot is in "others".
+    private final long[] ids;
+    // Null unless some variable is unbound, bound to a term not in the database,
+    // or is the result of an expression.
+    private final Object[] others;
+    private final int hash;
+
+    private NodeIdKey(long[] ids, Object[] others) {
+        this.ids = ids;
+        this.others = others;
+        this.hash = 31 * Arrays.hashCode(ids) + Arrays.hashCode(others);
+    }
+
+    /** Whether NodeId execution is enabled for this execution. */
+    static boolean enabled(Context context) {
+        return context != null && context.isTrue(SystemTDB.symNodeIdExecution);
+    }
+
+    /** The key of the values of {@code vars} in the solution. */
+    public static NodeIdKey create(Binding binding, List<Var> vars, NodeTable nodeTable) {
+        return create(binding, vars, null, nodeTable, null);
+    }
+
+    /**
+     * The key of the values of {@code vars} in the solution. Variables
+     * defined by an expression in {@code exprs} are keyed by the value of the expression.
+     */
+    public static NodeIdKey create(Binding binding, VarExprList exprs, NodeTable nodeTable, FunctionEnv env) {
+        return create(binding, exprs.getVars(), exprs, nodeTable, env);
+    }
+
+    private static NodeIdKey create(Binding binding, List<Var> vars, VarExprList exprs, NodeTable nodeTable, FunctionEnv env) {
+        long[] ids = new long[vars.size()];
+        Object[] others = null;
+        for ( int i = 0 ; i < ids.length ; i++ ) {
+            Var var = vars.get(i);
+            Object other;
+            if ( exprs != null && exprs.getExpr(var) != null ) {
+                // Null for unbound and error.
+                Node n = exprs.get(var, binding, env);
+                other = ( n == null ) ? Unbound : n;
+            } else {
+                NodeId id = nodeId(binding, var, nodeTable);
+                if ( id != null ) {
+                    ids[i] = NodeIdFactory.encode64(id);
+                    continue;
+                }
+                Node n = binding.get(var);
+                other = ( n == null ) ? Unbound : n;
+            }
+            if ( others == null )
+                others = new Object[ids.length];
+            others[i] = other;
+        }
+        return new NodeIdKey(ids, others);
+    }
+
+    /**
+     * The NodeId for the value of a variable, or null if the variable is unbound
+     * or its value is not in the node table.
+     */
+    static NodeId nodeId(Binding binding, Var var, NodeTable nodeTable) {
+        if ( binding instanceof BindingTDB bindingTDB ) {
+            NodeId id = bindingTDB.getNodeId(var);
+            if ( id != null && ! NodeId.isDoesNotExist(id) )
+                return id;
+        }
+        Node n = binding.get(var);
+        if ( n == null )
+            return null;
+        NodeId id = nodeTable.getNodeIdForNode(n);
+        if ( NodeId.isDoesNotExist(id) )
+            return null;
+        // Inline values are stored in canonical form, so "01"^^xsd:integer has
+        // the NodeId of 1, but they are different terms.
+        if ( id.isInline() && ! n.equals(NodeId.extract(id)) )
+            return null;
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ( this == obj )
+            return true;
+        if ( !(obj instanceof NodeIdKey other) )
+            return false;
+        return hash == other.hash && Arrays.equals(ids, other.ids) && Arrays.equals(others, other.others);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for ( int i = 0 ; i < ids.length ; i++ ) {
+            if ( i > 0 )
+                sb.append(" ");
+            if ( others != null && others[i] != null )
+                sb.append(others[i]);
+            else
+                sb.append(String.format("0x%016X", ids[i]));
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -18,14 +18,19 @@
 
 package org.apache.jena.tdb2.solver;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
 
 import org.apache.jena.atlas.lib.tuple.Tuple;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
 import org.apache.jena.sparql.ARQInternalErrorException;
 import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
 import org.apache.jena.sparql.algebra.op.*;
 import org.apache.jena.sparql.algebra.optimize.TransformFilterPlacement;
 import org.apache.jena.sparql.core.BasicPattern;
@@ -34,23 +39,30 @@ import org.apache.jena.sparql.core.Substitute;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterFilterExpr;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
 import org.apache.jena.sparql.engine.main.OpExecutor;
 import org.apache.jena.sparql.engine.main.OpExecutorFactory;
 import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.engine.main.iterator.QueryIterGraph;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderProc;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.sparql.expr.Expr;
 import org.apache.jena.sparql.expr.ExprList;
 import org.apache.jena.sparql.mgt.Explain;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
 import org.apache.jena.tdb2.store.GraphTDB;
 import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.sys.SystemTDB;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** TDB executor for algebra expressions.  It is the standard ARQ executor
  *  except for basic graph patterns and filtered basic graph patterns (currently).
+ *  With {@link SystemTDB#symNodeIdExecution}, DISTINCT, GROUP BY, MINUS and joins
+ *  work on NodeIds.
  *
  * See also: StageGeneratorDirectTDB, a non-reordering
  */
@@ -94,7 +106,15 @@ public class OpExecutorTDB2 extends OpExecutor
     @Override
     protected QueryIterator execute(OpDistinct opDistinct, QueryIterator input)
     {
-        return super.execute(opDistinct, input);
+        NodeTable nodeTable = nodeIdExecution();
+        // The solutions of the sub-op include the input solution.
+        // ARQ's DISTINCT can spill to disk.
+        if ( nodeTable == null || ! ( input instanceof QueryIterRoot )
+             || execCxt.getContext().isDefined(ARQ.spillToDiskThreshold) )
+            return super.execute(opDistinct, input);
+        List<Var> vars = OpVars.visibleVars(opDistinct.getSubOp()).stream().filter(v->v.isNamedVar()).toList();
+        QueryIterator qIter = exec(opDistinct.getSubOp(), input);
+        return new QueryIterDistinctTDB(qIter, vars, nodeTable, execCxt);
     }
 
     @Override
@@ -134,6 +154,59 @@ public class OpExecutorTDB2 extends OpExecutor
         return super.execute(opFilter, input);
         }
 
+    @Override
+    protected QueryIterator execute(OpGroup opGroup, QueryIterator input)
+    {
+        NodeTable nodeTable = nodeIdExecution();
+        if ( nodeTable == null )
+            return super.execute(opGroup, input);
+        QueryIterator qIter = exec(opGroup.getSubOp(), input);
+        return new QueryIterGroupTDB(qIter, opGroup.getGroupVars(), opGroup.getAggregators(), nodeTable, execCxt);
+    }
+
+    @Override
+    protected QueryIterator execute(OpMinus opMinus, QueryIterator input)
+    {
+        NodeTable nodeTable = nodeIdExecution();
+        Set<Var> commonVars = OpVars.visibleVars(opMinus.getLeft());
+        commonVars.retainAll(OpVars.visibleVars(opMinus.getRight()));
+        if ( nodeTable == null || commonVars.size() > NodeIdHashTable.MaxVars )
+            return super.execute(opMinus, input);
+        QueryIterator left = exec(opMinus.getLeft(), input);
+        QueryIterator right = exec(opMinus.getRight(), root());
+        if ( ! right.hasNext() ) {
+            right.close();
+            return left;
+        }
+        return new QueryIterMinusTDB(left, right, commonVars, nodeTable, execCxt);
+    }
+
+    @Override
+    protected QueryIterator execute(OpJoin opJoin, QueryIterator input)
+    {
+        NodeTable nodeTable = nodeIdExecution();
+        Set<Var> commonVars = OpVars.visibleVars(opJoin.getLeft());
+        commonVars.retainAll(OpVars.visibleVars(opJoin.getRight()));
+        // The solutions of the left side include the input solution.
+        if ( nodeTable == null || ! ( input instanceof QueryIterRoot ) || commonVars.size() > NodeIdHashTable.MaxVars )
+            return super.execute(opJoin, input);
+        QueryIterator left = exec(opJoin.getLeft(), input);
+        QueryIterator right = exec(opJoin.getRight(), root());
+        return new QueryIterJoinTDB(left, right, commonVars, nodeTable, execCxt);
+    }
+
+    /**
+     * The node table, if solutions are kept as NodeIds for this execution
+     * ({@link SystemTDB#symNodeIdExecution}), else null.
+     */
+    private NodeTable nodeIdExecution()
+    {
+        if ( ! isForTDB || ! NodeIdKey.enabled(execCxt.getContext()) )
+            return null;
+        GraphTDB graph = (GraphTDB)execCxt.getActiveGraph();
+        return graph.getDSG().getTripleTable().getNodeTupleTable().getNodeTable();
+    }
+
     // ---- Triple patterns
 
     @Override
@@ -376,6 +449,36 @@ public class OpExecutorTDB2 extends OpExecutor
             filter = QC2.getFilter(execCxt.getContext());
         }
 
+        @Override
+        public QueryIterator execute(OpFilter opFilter, QueryIterator input)
+        {
+            // (filter (bgp ...)) and (filter (quadpattern ...)) after filter placement.
+            if ( ! RangeFilterTDB.enabled(execCxt.getContext()) )
+                return super.execute(opFilter, input);
+            Map<Var, RangeFilterTDB.Range> ranges = RangeFilterTDB.ranges(opFilter.getExprs());
+            if ( ranges.isEmpty() )
+                return super.execute(opFilter, input);
+            QueryIterator qIter = null;
+            if ( opFilter.getSubOp() instanceof OpBGP opBGP && execCxt.getActiveGraph() instanceof GraphTDB gtdb ) {
+                BasicPattern bgp = opBGP.getPattern();
+                Explain.explain("Execute", bgp, execCxt.getContext());
+                Node gn = decideGraphNode(gtdb.getGraphName(), execCxt);
+                qIter = PatternMatchTDB2.execute(gtdb.getDSG(), gn, bgp, input, filter, ranges, execCxt);
+            } else if ( opFilter.getSubOp() instanceof OpQuadPattern opQuadPattern
+                        && execCxt.getDataset() instanceof DatasetGraphTDB dsgtdb ) {
+                BasicPattern bgp = opQuadPattern.getBasicPattern();
+                Explain.explain("Execute", opQuadPattern.getPattern(), execCxt.getContext());
+                Node gn = decideGraphNode(opQuadPattern.getGraphNode(), execCxt);
+                qIter = PatternMatchTDB2.execute(dsgtdb, gn, bgp, input, filter, ranges, execCxt);
+            }
+            if ( qIter == null )
+                return super.execute(opFilter, input);
+            // The ranges only remove rows that fail : apply the filter as usual.
+            for ( Expr expr : opFilter.getExprs() )
+                qIter = new QueryIterFilterExpr(qIter, expr, execCxt);
+            return qIter;
+        }
+
         @Override
         public QueryIterator execute(OpBGP opBGP, QueryIterator input)
         {
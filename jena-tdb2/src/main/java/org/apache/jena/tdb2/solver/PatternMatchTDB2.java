@@ -23,6 +23,7 @@ import static org.apache.jena.sparql.engine.main.solver.SolverLib.makeAbortable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 import org.apache.jena.atlas.iterator.Iter;
@@ -32,6 +33,7 @@ import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.sparql.core.BasicPattern;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
@@ -57,7 +59,7 @@ public class PatternMatchTDB2 {
     {
         // Maybe default graph or named graph.
         NodeTupleTable ntt = graph.getNodeTupleTable();
-        return execute(ntt, graph.getGraphName(), pattern, input, filter, execCxt);
+        return execute(ntt, graph.getGraphName(), pattern, input, filter, null, execCxt);
     }
 
     /**
@@ -70,7 +72,20 @@ public class PatternMatchTDB2 {
                                         ExecutionContext execCxt)
     {
         NodeTupleTable ntt = ds.chooseNodeTupleTable(graphNode);
-        return execute(ntt, graphNode, pattern, input, filter, execCxt);
+        return execute(ntt, graphNode, pattern, input, filter, null, execCxt);
+    }
+
+    /**
+     * Non-reordering execution of a quad pattern, with the FILTER comparisons of
+     * {@link RangeFilterTDB} applied when the variables are bound.
+     * The FILTER must still be applied to the results.
+     */
+    /*package*/ static QueryIterator execute(DatasetGraphTDB ds, Node graphNode, BasicPattern pattern,
+                                             QueryIterator input, Predicate<Tuple<NodeId>> filter,
+                                             Map<Var, RangeFilterTDB.Range> ranges, ExecutionContext execCxt)
+    {
+        NodeTupleTable ntt = ds.chooseNodeTupleTable(graphNode);
+        return execute(ntt, graphNode, pattern, input, filter, ranges, execCxt);
     }
 
     // The worker.  Callers choose the NodeTupleTable.
@@ -79,7 +94,7 @@ public class PatternMatchTDB2 {
 
     private static QueryIterator execute(NodeTupleTable nodeTupleTable, Node graphNode, BasicPattern pattern,
                                          QueryIterator input, Predicate<Tuple<NodeId>> filter,
-                                         ExecutionContext execCxt)
+                                         Map<Var, RangeFilterTDB.Range> ranges, ExecutionContext execCxt)
     {
         if ( Quad.isUnionGraph(graphNode) )
             graphNode = Node.ANY;
@@ -103,6 +118,15 @@ public class PatternMatchTDB2 {
         Iterator<BindingNodeId> chain = Iter.map(input, SolverLibTDB.convFromBinding(nodeTable));
         List<Abortable> killList = new ArrayList<>();
 
+        if ( ! anyGraph && MergeJoinTDB.enabled(execCxt.getContext()) ) {
+            // Patterns joined by sorted index scans go first; the rest keep their order.
+            triples = new ArrayList<>(triples);
+            for ( MergeJoinTDB.Group group : MergeJoinTDB.plan(nodeTupleTable, graphNode, triples) ) {
+                chain = MergeJoinTDB.execute(chain, group, nodeTable, filter, execCxt);
+                chain = makeAbortable(chain, killList);
+            }
+        }
+
         for ( Triple triple : triples ) {
             Tuple<Node> patternTuple = null;
             if ( graphNode == null )
@@ -115,12 +139,12 @@ public class PatternMatchTDB2 {
             // chain = solve(nodeTupleTable, tuple, anyGraph, chain, filter, execCxt)
             // ;
             // RDF-star SA
-            chain = matchQuadPattern(chain, graphNode, triple, nodeTupleTable, patternTuple, anyGraph, filter, execCxt);
+            chain = matchQuadPattern(chain, graphNode, triple, nodeTupleTable, patternTuple, anyGraph, filter, ranges, execCxt);
 
             chain = makeAbortable(chain, killList);
         }
 
-        Iterator<Binding> iterBinding = SolverLibTDB.convertToNodes(chain, nodeTable);
+        Iterator<Binding> iterBinding = SolverLibTDB.convertToNodes(chain, nodeTable, execCxt);
 
         // "input" will be closed by QueryIterAbortable but is otherwise unused.
         // "killList" will be aborted on timeout.
@@ -129,7 +153,8 @@ public class PatternMatchTDB2 {
 
     private static Iterator<BindingNodeId> matchQuadPattern(Iterator<BindingNodeId> chain, Node graphNode, Triple tPattern,
                                                             NodeTupleTable nodeTupleTable, Tuple<Node> patternTuple, boolean anyGraph,
-                                                            Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
-        return SolverRX.matchQuadPattern(chain, graphNode, tPattern, nodeTupleTable, patternTuple, anyGraph, filter, execCxt);
+                                                            Predicate<Tuple<NodeId>> filter, Map<Var, RangeFilterTDB.Range> ranges,
+                                                            ExecutionContext execCxt) {
+        return SolverRX.matchQuadPattern(chain, graphNode, tPattern, nodeTupleTable, patternTuple, anyGraph, filter, ranges, execCxt);
     }
 }
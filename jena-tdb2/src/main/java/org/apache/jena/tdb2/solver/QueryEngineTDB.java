@@ -20,6 +20,7 @@ package org.apache.jena.tdb2.solver;
 
 
 import org.apache.jena.atlas.lib.Lib ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.query.Query ;
 import org.apache.jena.sparql.algebra.Algebra ;
 import org.apache.jena.sparql.algebra.Op ;
@@ -38,7 +39,9 @@ import org.apache.jena.sparql.mgt.Explain ;
 import org.apache.jena.sparql.util.Context ;
 import org.apache.jena.tdb2.TDB2;
 import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.store.CardinalityStatsTDB;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.PathClosureIndexTDB;
 import org.apache.jena.tdb2.sys.TDBInternal;
 
 // This exists to intercept the query execution setup.
@@ -81,6 +84,14 @@ public class QueryEngineTDB extends QueryEngineMain
     protected Op modifyOp(Op op)
     {
         op = Substitute.substitute(op, getStartBinding());
+        // Join ordering uses the database statistics, if any.
+        if ( context.isTrue(ARQ.optJoinReorder) && !context.isDefined(ARQ.cardinalityEstimator)
+             && dataset instanceof DatasetGraphTDB dsgtdb )
+            context.set(ARQ.cardinalityEstimator, new CardinalityStatsTDB(dsgtdb));
+        // Paths of predicates with a stored closure.
+        if ( !context.isDefined(ARQ.pathClosureIndex) && dataset instanceof DatasetGraphTDB dsgtdb
+             && dsgtdb.getClosureIndex() != null )
+            context.set(ARQ.pathClosureIndex, new PathClosureIndexTDB(dsgtdb));
         // Optimize (high-level)
         op = super.modifyOp(op);
 
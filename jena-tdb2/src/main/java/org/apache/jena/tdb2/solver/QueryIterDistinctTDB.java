@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingProjectNamed;
+import org.apache.jena.sparql.engine.iterator.QueryIter1;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * DISTINCT where solutions are compared by the NodeIds of their variables.
+ * Solutions are passed on unchanged so their Nodes are only retrieved if used later.
+ * This is in-memory; it does not spill to disk.
+ */
+public class QueryIterDistinctTDB extends QueryIter1 {
+    private final List<Var> vars;
+    private final NodeTable nodeTable;
+    private Set<NodeIdKey> seen = new HashSet<>();
+    private Binding slot = null;
+
+    /**
+     * @param vars All the named variables the solutions of {@code input} may bind.
+     */
+    public QueryIterDistinctTDB(QueryIterator input, List<Var> vars, NodeTable nodeTable, ExecutionContext execCxt) {
+        super(input, execCxt);
+        this.vars = vars;
+        this.nodeTable = nodeTable;
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        if ( slot != null )
+            return true;
+        while ( getInput().hasNext() ) {
+            Binding b = getInput().nextBinding();
+            if ( seen.add(NodeIdKey.create(b, vars, nodeTable)) ) {
+                // Hide unnamed and internal variables, as QueryIterDistinct does.
+                slot = new BindingProjectNamed(b);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        Binding r = slot;
+        slot = null;
+        return r;
+    }
+
+    @Override
+    protected void closeSubIterator() {
+        seen = null;
+        slot = null;
+    }
+
+    @Override
+    protected void requestSubCancel() {}
+}
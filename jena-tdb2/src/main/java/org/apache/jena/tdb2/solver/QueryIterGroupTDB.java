@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.*;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.iterator.IteratorDelayedInitialization;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.expr.aggregate.Accumulator;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * GROUP BY where the group keys are the NodeIds of the group variables.
+ * The group variables of a result are NodeIds ({@link BindingTDB}) where
+ * possible, so their Nodes are only retrieved if used later.
+ * <p>
+ * This follows {@link org.apache.jena.sparql.engine.iterator.QueryIterGroup}.
+ */
+public class QueryIterGroupTDB extends QueryIterPlainWrapper {
+    private final QueryIterator embeddedIterator;
+
+    public QueryIterGroupTDB(QueryIterator qIter, VarExprList groupVars, List<ExprAggregator> aggregators,
+                             NodeTable nodeTable, ExecutionContext execCxt) {
+        super(calc(qIter, groupVars, aggregators, nodeTable, execCxt), execCxt);
+        this.embeddedIterator = qIter;
+    }
+
+    @Override
+    public void requestCancel() {
+        this.embeddedIterator.cancel();
+        super.requestCancel();
+    }
+
+    @Override
+    protected void closeIterator() {
+        this.embeddedIterator.close();
+        super.closeIterator();
+    }
+
+    /** A group: the first solution seen, for the key values, and the accumulators. */
+    private record Group(Binding first, Accumulator[] accumulators) {}
+
+    private static Iterator<Binding> calc(QueryIterator iter, VarExprList groupVarExpr, List<ExprAggregator> aggregators,
+                                          NodeTable nodeTable, ExecutionContext execCxt) {
+        return new IteratorDelayedInitialization<Binding>() {
+            @Override
+            protected Iterator<Binding> initializeIterator() {
+                List<ExprAggregator> aggs = ( aggregators == null ) ? List.of() : aggregators;
+                boolean hasGroupBy = ! groupVarExpr.isEmpty();
+
+                if ( ! iter.hasNext() ) {
+                    // As QueryIterGroup.
+                    if ( hasGroupBy )
+                        return Iter.nullIterator();
+                    BindingBuilder builder = Binding.builder();
+                    for ( ExprAggregator agg : aggs ) {
+                        Node value = agg.getAggregator().getValueEmpty();
+                        if ( value != null )
+                            builder.add(agg.getVar(), value);
+                    }
+                    return Iter.singletonIterator(builder.build());
+                }
+
+                Map<NodeIdKey, Group> groups = new LinkedHashMap<>();
+                while ( iter.hasNext() ) {
+                    Binding b = iter.nextBinding();
+                    NodeIdKey key = NodeIdKey.create(b, groupVarExpr, nodeTable, execCxt);
+                    Group group = groups.get(key);
+                    if ( group == null ) {
+                        Accumulator[] accs = new Accumulator[aggs.size()];
+                        for ( int i = 0 ; i < accs.length ; i++ )
+                            accs[i] = aggs.get(i).getAggregator().createAccumulator();
+                        group = new Group(b, accs);
+                        groups.put(key, group);
+                    }
+                    for ( Accumulator acc : group.accumulators() )
+                        acc.accumulate(b, execCxt);
+                }
+
+                List<Binding> results = new ArrayList<>(groups.size());
+                for ( Group group : groups.values() )
+                    results.add(result(group, groupVarExpr, aggs, nodeTable, execCxt));
+                return results.iterator();
+            }
+        };
+    }
+
+    private static Binding result(Group group, VarExprList groupVarExpr, List<ExprAggregator> aggs,
+                                  NodeTable nodeTable, ExecutionContext execCxt) {
+        BindingBuilder builder = Binding.builder();
+        List<Var> idVars = null;
+        List<NodeId> ids = null;
+        for ( Var var : groupVarExpr.getVars() ) {
+            if ( groupVarExpr.getExpr(var) == null ) {
+                NodeId id = NodeIdKey.nodeId(group.first(), var, nodeTable);
+                if ( id != null ) {
+                    if ( idVars == null ) {
+                        idVars = new ArrayList<>();
+                        ids = new ArrayList<>();
+                    }
+                    idVars.add(var);
+                    ids.add(id);
+                    continue;
+                }
+            }
+            // Null for unbound and error.
+            Node n = groupVarExpr.get(var, group.first(), execCxt);
+            if ( n != null )
+                builder.add(var, n);
+        }
+        for ( int i = 0 ; i < aggs.size() ; i++ ) {
+            NodeValue value = group.accumulators()[i].getValue();
+            if ( value != null )
+                builder.add(aggs.get(i).getVar(), value.asNode());
+        }
+        Binding binding = builder.build();
+        if ( idVars == null )
+            return binding;
+        BindingNodeId bindingIds = new BindingNodeId(binding);
+        for ( int i = 0 ; i < idVars.size() ; i++ )
+            bindingIds.put(idVars.get(i), ids.get(i));
+        return new BindingTDB(bindingIds, nodeTable);
+    }
+}
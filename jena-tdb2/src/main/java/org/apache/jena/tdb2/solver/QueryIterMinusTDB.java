@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIter2;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * MINUS by materializing the right hand side in a table indexed by the NodeIds of
+ * the common variables. Solutions on the left are passed on unchanged.
+ */
+public class QueryIterMinusTDB extends QueryIter2 {
+    private NodeIdHashTable tableRight = null;
+    private final Supplier<NodeIdHashTable> tableRightMaker;
+    private Binding slot = null;
+
+    public QueryIterMinusTDB(QueryIterator left, QueryIterator right, Set<Var> commonVars, NodeTable nodeTable, ExecutionContext execCxt) {
+        super(left, right, execCxt);
+        // Build the table when execution starts so it sees timeouts.
+        tableRightMaker = ()->{
+            NodeIdHashTable table = new NodeIdHashTable(commonVars, nodeTable);
+            right.forEachRemaining(table::add);
+            return table;
+        };
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        if ( slot != null )
+            return true;
+        if ( tableRight == null )
+            tableRight = tableRightMaker.get();
+        while ( getLeft().hasNext() ) {
+            Binding bindingLeft = getLeft().nextBinding();
+            if ( ! tableRight.containsCompatibleWithSharedDomain(bindingLeft) ) {
+                slot = bindingLeft;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        Binding r = slot;
+        slot = null;
+        return r;
+    }
+
+    @Override
+    protected void closeSubIterator() {
+        tableRight = null;
+        slot = null;
+    }
+
+    @Override
+    protected void requestSubCancel() {}
+}
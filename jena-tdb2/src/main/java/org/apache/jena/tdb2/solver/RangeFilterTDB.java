@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.expr.*;
+import org.apache.jena.sparql.function.FunctionEnv;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.NodeIdType;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.tupletable.TupleIndexRecord;
+import org.apache.jena.tdb2.store.value.IntegerNode;
+import org.apache.jena.tdb2.sys.SystemTDB;
+
+/**
+ * Use FILTER comparisons of a variable with a constant, such as {@code ?x > 30} or
+ * {@code ?d < "2020-01-01"^^xsd:date}, when matching the pattern that binds the
+ * variable.
+ * <p>
+ * Numbers, dates and date-times are usually inline in the NodeId. These are tested
+ * without a node table lookup, and rows that fail are dropped before the solver
+ * turns NodeIds into nodes. Terms in the node table, which includes numbers too
+ * large to be inline, are kept for the FILTER to decide.
+ * <p>
+ * If an index has the slot of the variable straight after the concrete slots of the
+ * pattern, only the parts of the index that may hold passing values are scanned:
+ * the node table terms and the inline types that can be compared with the
+ * constants. Integers are stored in value order (non-negative numbers, then negative
+ * numbers) so the scan of an integer type is limited to the range of values.
+ * <p>
+ * The FILTER is still evaluated on the results. Enabled unless the context setting
+ * {@link SystemTDB#symRangeFilter} is false.
+ */
+public class RangeFilterTDB {
+
+    /** Whether range filters are enabled for this execution. */
+    static boolean enabled(Context context) {
+        return context == null || ! context.isFalse(SystemTDB.symRangeFilter);
+    }
+
+    private static final EnumSet<NodeIdType> integerTypes = EnumSet.of(
+        NodeIdType.XSD_INTEGER,
+        NodeIdType.XSD_POSITIVE_INTEGER, NodeIdType.XSD_NEGATIVE_INTEGER,
+        NodeIdType.XSD_NON_NEGATIVE_INTEGER, NodeIdType.XSD_NON_POSITIVE_INTEGER,
+        NodeIdType.XSD_LONG, NodeIdType.XSD_INT, NodeIdType.XSD_SHORT, NodeIdType.XSD_BYTE,
+        NodeIdType.XSD_UNSIGNEDLONG, NodeIdType.XSD_UNSIGNEDINT, NodeIdType.XSD_UNSIGNEDSHORT, NodeIdType.XSD_UNSIGNEDBYTE);
+
+    private static final EnumSet<NodeIdType> numericTypes = EnumSet.copyOf(integerTypes);
+    static {
+        numericTypes.add(NodeIdType.XSD_DECIMAL);
+        numericTypes.add(NodeIdType.XSD_DOUBLE);
+        numericTypes.add(NodeIdType.XSD_FLOAT);
+    }
+
+    private static final EnumSet<NodeIdType> temporalTypes =
+        EnumSet.of(NodeIdType.XSD_DATETIME, NodeIdType.XSD_DATETIMESTAMP, NodeIdType.XSD_DATE);
+
+    private static final EnumSet<NodeIdType> inlineTypes = EnumSet.copyOf(numericTypes);
+    static {
+        inlineTypes.addAll(temporalTypes);
+        inlineTypes.add(NodeIdType.XSD_BOOLEAN);
+    }
+
+    /** Comparison of a variable with a constant, with the variable on the left. */
+    private enum Op { LT, LE, GT, GE, EQ }
+
+    /** The conditions on one variable from the conjunction of a FILTER. */
+    static class Range {
+        final Var var;
+        final List<Expr> exprs = new ArrayList<>();
+        // Inline types that can pass all the conditions.
+        final EnumSet<NodeIdType> types = EnumSet.copyOf(inlineTypes);
+        // Inclusive bounds for inline integers, if exact.
+        private boolean intBounds = true;
+        private long intMin = IntegerNode.MIN;
+        private long intMax = IntegerNode.MAX;
+
+        Range(Var var) { this.var = var; }
+
+        private void add(Expr expr, Op op, NodeValue nv) {
+            exprs.add(expr);
+            if ( nv.isNumber() ) {
+                types.retainAll(numericTypes);
+                narrow(op, nv);
+            } else if ( nv.isDateTime() || nv.isDate() ) {
+                types.retainAll(temporalTypes);
+            } else if ( nv.isString() || nv.isLangString() ) {
+                types.clear();
+            }
+        }
+
+        // Integer bounds. Comparing an integer with an integer or decimal is exact;
+        // with a float or double, the integer is converted so there are no bounds.
+        private void narrow(Op op, NodeValue nv) {
+            if ( ! nv.isInteger() && ! nv.isDecimal() ) {
+                intBounds = false;
+                return;
+            }
+            BigDecimal c = nv.getDecimal();
+            BigDecimal floor = c.setScale(0, RoundingMode.FLOOR);
+            BigDecimal ceiling = c.setScale(0, RoundingMode.CEILING);
+            switch (op) {
+                case GT -> setMin(floor.add(BigDecimal.ONE));
+                case GE -> setMin(ceiling);
+                case LT -> setMax(ceiling.subtract(BigDecimal.ONE));
+                case LE -> setMax(floor);
+                case EQ -> { setMin(ceiling); setMax(floor); }
+            }
+        }
+
+        private void setMin(BigDecimal x) {
+            if ( x.compareTo(BigDecimal.valueOf(intMax)) > 0 ) {
+                intMin = 1;
+                intMax = 0;
+                return;
+            }
+            if ( x.compareTo(BigDecimal.valueOf(intMin)) > 0 )
+                intMin = x.longValueExact();
+        }
+
+        private void setMax(BigDecimal x) {
+            if ( x.compareTo(BigDecimal.valueOf(intMin)) < 0 ) {
+                intMin = 1;
+                intMax = 0;
+                return;
+            }
+            if ( x.compareTo(BigDecimal.valueOf(intMax)) < 0 )
+                intMax = x.longValueExact();
+        }
+
+        /**
+         * Test a NodeId. Return false only if the value is known to fail the
+         * conditions; terms in the node table are not tested.
+         */
+        boolean test(NodeId nodeId, FunctionEnv env) {
+            if ( ! nodeId.isInline() )
+                return true;
+            NodeIdType type = nodeId.type();
+            if ( ! types.contains(type) )
+                // A comparison of values that can not be compared is an error.
+                return false;
+            if ( intBounds && integerTypes.contains(type) ) {
+                long v = IntegerNode.unpack56(nodeId.getPtrLocation());
+                return intMin <= v && v <= intMax;
+            }
+            Node node = NodeId.extract(nodeId);
+            if ( node == null )
+                return true;
+            Binding binding = BindingFactory.binding(var, node);
+            for ( Expr expr : exprs ) {
+                if ( ! expr.isSatisfied(binding, env) )
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * The parts of an index, in NodeId index order, that may contain values that
+         * pass : pairs of inclusive start and finish, with null for "to the end".
+         */
+        List<NodeId[]> keyRanges() {
+            List<NodeId[]> ranges = new ArrayList<>();
+            // Terms in the node table.
+            ranges.add(new NodeId[] {NodeIdFactory.createPtr(0), NodeIdFactory.createPtr(Long.MAX_VALUE)});
+            for ( NodeIdType type : types ) {
+                if ( type == NodeIdType.XSD_DOUBLE ) {
+                    // Last in index order.
+                    ranges.add(new NodeId[] {NodeIdFactory.createValue(type, 0), null});
+                    continue;
+                }
+                if ( ! intBounds || ! integerTypes.contains(type) ) {
+                    ranges.add(new NodeId[] {NodeIdFactory.createValue(type, 0),
+                                             NodeIdFactory.createValue(type, 0x00FFFFFFFFFFFFFFL)});
+                    continue;
+                }
+                // Two's complement: non-negative numbers then negative numbers.
+                if ( intMax >= 0 && intMin <= intMax )
+                    ranges.add(new NodeId[] {intValue(type, Math.max(intMin, 0)), intValue(type, intMax)});
+                if ( intMin < 0 && intMin <= intMax )
+                    ranges.add(new NodeId[] {intValue(type, intMin), intValue(type, Math.min(intMax, -1))});
+            }
+            return ranges;
+        }
+
+        private static NodeId intValue(NodeIdType type, long value) {
+            return NodeIdFactory.createValue(type, IntegerNode.pack56(value));
+        }
+
+        @Override
+        public String toString() {
+            return "Range "+var+" "+exprs;
+        }
+    }
+
+    /**
+     * Find the comparisons of a variable with a constant in a FILTER expression
+     * list (which is a conjunction).
+     */
+    static Map<Var, Range> ranges(ExprList exprs) {
+        Map<Var, Range> ranges = new LinkedHashMap<>();
+        for ( Expr expr : exprs ) {
+            if ( ! ( expr instanceof ExprFunction2 f ) )
+                continue;
+            Op op = op(f);
+            if ( op == null )
+                continue;
+            Expr arg1 = f.getArg1();
+            Expr arg2 = f.getArg2();
+            if ( arg2.isVariable() && arg1.isConstant() ) {
+                // Constant on the left.
+                Expr x = arg1;
+                arg1 = arg2;
+                arg2 = x;
+                op = switch (op) {
+                    case LT -> Op.GT;
+                    case LE -> Op.GE;
+                    case GT -> Op.LT;
+                    case GE -> Op.LE;
+                    case EQ -> Op.EQ;
+                };
+            }
+            if ( ! arg1.isVariable() || ! arg2.isConstant() )
+                continue;
+            Var var = arg1.asVar();
+            ranges.computeIfAbsent(var, Range::new).add(expr, op, arg2.getConstant());
+        }
+        return ranges;
+    }
+
+    private static Op op(ExprFunction2 f) {
+        if ( f instanceof E_LessThan )           return Op.LT;
+        if ( f instanceof E_LessThanOrEqual )    return Op.LE;
+        if ( f instanceof E_GreaterThan )        return Op.GT;
+        if ( f instanceof E_GreaterThanOrEqual ) return Op.GE;
+        if ( f instanceof E_Equals )             return Op.EQ;
+        return null;
+    }
+
+    /**
+     * Scan the parts of an index for a range on the variable in slot {@code varSlot}
+     * of the pattern. Return null if no index has the slot next after the concrete
+     * slots of the pattern.
+     */
+    static Iterator<Tuple<NodeId>> find(NodeTupleTable nodeTupleTable, NodeId[] ids, int varSlot, Range range) {
+        int prefixLen = 0;
+        for ( NodeId id : ids ) {
+            if ( ! NodeId.isAny(id) )
+                prefixLen++;
+        }
+        TupleIndexRecord index = chooseIndex(nodeTupleTable, ids, prefixLen, varSlot);
+        if ( index == null )
+            return null;
+        Tuple<NodeId> pattern = TupleFactory.create(ids);
+        return Iter.flatMap(range.keyRanges().iterator(), r -> index.findRange(pattern, r[0], r[1]));
+    }
+
+    /** Find an index with the concrete slots first then the variable slot. */
+    private static TupleIndexRecord chooseIndex(NodeTupleTable nodeTupleTable, NodeId[] ids, int prefixLen, int varSlot) {
+        loop:
+        for ( TupleIndex index : nodeTupleTable.getTupleTable().getIndexes() ) {
+            for ( int i = 0 ; i < prefixLen ; i++ ) {
+                if ( NodeId.isAny(ids[index.getMapping().mapIdx(i)]) )
+                    continue loop;
+            }
+            if ( index.getMapping().mapIdx(prefixLen) != varSlot )
+                continue;
+            if ( index.baseTupleIndex() instanceof TupleIndexRecord indexRecord )
+                return indexRecord;
+        }
+        return null;
+    }
+}
@@ -38,6 +38,7 @@ import org.apache.jena.sparql.engine.binding.BindingFactory;
 import org.apache.jena.sparql.engine.iterator.Abortable;
 import org.apache.jena.sparql.engine.iterator.QueryIterAbortable;
 import org.apache.jena.sparql.engine.iterator.QueryIterNullIterator;
+import org.apache.jena.sparql.util.Context;
 import org.apache.jena.tdb2.lib.NodeLib;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
 import org.apache.jena.tdb2.store.NodeId;
@@ -46,6 +47,7 @@ import org.apache.jena.tdb2.store.nodetable.NodeTable;
 import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
 import org.apache.jena.tdb2.store.tupletable.TupleIndex;
 import org.apache.jena.tdb2.store.tupletable.TupleIndexRecord;
+import org.apache.jena.tdb2.sys.SystemTDB;
 import org.apache.jena.tdb2.sys.TDBInternal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,6 +66,31 @@ public class SolverLibTDB
     static Iterator<Binding> convertToNodes(Iterator<BindingNodeId> iterBindingIds, NodeTable nodeTable)
     { return Iter.map(iterBindingIds, bindingNodeIds -> convToBinding(bindingNodeIds, nodeTable)); }
 
+    /**
+     * Convert from Iterator<BindingNodeId> to Iterator<Binding>.
+     * If the context setting {@link SystemTDB#symBatchNodeResolution} is set,
+     * NodeIds are resolved a block of rows at a time ({@link BatchNodeResolver}),
+     * otherwise conversion is "on demand".
+     */
+    static Iterator<Binding> convertToNodes(Iterator<BindingNodeId> iterBindingIds, NodeTable nodeTable, ExecutionContext execCxt) {
+        int batchSize = batchNodeResolution(execCxt.getContext());
+        if ( batchSize <= 0 )
+            return convertToNodes(iterBindingIds, nodeTable);
+        return new BatchNodeResolver(iterBindingIds, nodeTable, batchSize, execCxt.getContext());
+    }
+
+    /** Block size for batch node resolution; zero or less means "not enabled". */
+    private static int batchNodeResolution(Context context) {
+        Object x = context.get(SystemTDB.symBatchNodeResolution);
+        if ( x == null )
+            return 0;
+        if ( Boolean.TRUE.equals(x) || "true".equalsIgnoreCase(x.toString()) )
+            return BatchNodeResolver.DftBatchSize;
+        if ( Boolean.FALSE.equals(x) || "false".equalsIgnoreCase(x.toString()) )
+            return 0;
+        return context.getInt(SystemTDB.symBatchNodeResolution, 0);
+    }
+
     static Binding convToBinding(BindingNodeId bindingNodeIds, NodeTable nodeTable) {
         if ( true )
             return new BindingTDB(bindingNodeIds, nodeTable);
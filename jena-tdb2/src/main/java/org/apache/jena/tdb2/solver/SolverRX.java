@@ -23,6 +23,7 @@ import static org.apache.jena.sparql.engine.main.solver.SolverLib.tripleHasEmbTr
 import static org.apache.jena.tdb2.solver.SolverLibTDB.convFromBinding;
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -34,6 +35,7 @@ import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sparql.core.Substitute;
+import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.binding.BindingFactory;
@@ -57,11 +59,12 @@ public class SolverRX {
     /*package*/
     static Iterator<BindingNodeId> matchQuadPattern(Iterator<BindingNodeId> chain, Node graphNode, Triple tPattern,
                                                     NodeTupleTable nodeTupleTable, Tuple<Node> patternTuple,
-                                                    boolean anyGraph, Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
+                                                    boolean anyGraph, Predicate<Tuple<NodeId>> filter,
+                                                    Map<Var, RangeFilterTDB.Range> ranges, ExecutionContext execCxt) {
         if ( DATAPATH ) {
             if ( ! tripleHasEmbTripleWithVars(tPattern) )
                 // No RDF-star <<>> with variables which are wildcards at this point.
-                return StageMatchTuple.access(nodeTupleTable, chain, patternTuple, filter, anyGraph, execCxt);
+                return StageMatchTuple.access(nodeTupleTable, chain, patternTuple, filter, ranges, anyGraph, execCxt);
         }
 
         // RDF-star <<>> with wildcards.
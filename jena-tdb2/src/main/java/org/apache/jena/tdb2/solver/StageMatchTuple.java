@@ -20,6 +20,7 @@ package org.apache.jena.tdb2.solver;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -46,13 +47,24 @@ class StageMatchTuple {
      */
     static Iterator<BindingNodeId> access(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input, Tuple<Node> patternTuple,
                                           Predicate<Tuple<NodeId>> filter, boolean anyGraph, ExecutionContext execCxt) {
+        return access(nodeTupleTable, input, patternTuple, filter, null, anyGraph, execCxt);
+    }
+
+    /**
+     * As {@link #access(NodeTupleTable, Iterator, Tuple, Predicate, boolean, ExecutionContext)}
+     * with FILTER comparisons on variables (see {@link RangeFilterTDB}), which may be null.
+     */
+    static Iterator<BindingNodeId> access(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input, Tuple<Node> patternTuple,
+                                          Predicate<Tuple<NodeId>> filter, Map<Var, RangeFilterTDB.Range> ranges,
+                                          boolean anyGraph, ExecutionContext execCxt) {
         return Iter.flatMap(input, bnid -> {
-            return StageMatchTuple.access(nodeTupleTable, bnid, patternTuple, filter, anyGraph, execCxt);
+            return StageMatchTuple.access(nodeTupleTable, bnid, patternTuple, filter, ranges, anyGraph, execCxt);
         });
     }
 
     private static Iterator<BindingNodeId> access(NodeTupleTable nodeTupleTable, BindingNodeId input, Tuple<Node> patternTuple,
-                                                  Predicate<Tuple<NodeId>> filter, boolean anyGraph, ExecutionContext execCxt) {
+                                                  Predicate<Tuple<NodeId>> filter, Map<Var, RangeFilterTDB.Range> ranges,
+                                                  boolean anyGraph, ExecutionContext execCxt) {
         // ---- Convert to NodeIds
         NodeId ids[] = new NodeId[patternTuple.len()];
         // Variables for this tuple after substitution
@@ -63,7 +75,22 @@ class StageMatchTuple {
             // Short cut - known unknown NodeId
             return Iter.nullIterator();
 
-        Iterator<Tuple<NodeId>> iterMatches = nodeTupleTable.find(TupleFactory.create(ids));
+        Iterator<Tuple<NodeId>> iterMatches = null;
+        if ( ranges != null && ! ranges.isEmpty() ) {
+            for ( int i = 0 ; i < vars.length ; i++ ) {
+                RangeFilterTDB.Range range = ( vars[i] == null ) ? null : ranges.get(vars[i]);
+                if ( range == null )
+                    continue;
+                // The union graph relies on the index order; see below.
+                if ( iterMatches == null && ! anyGraph )
+                    iterMatches = RangeFilterTDB.find(nodeTupleTable, ids, i, range);
+                int slot = i;
+                Predicate<Tuple<NodeId>> test = tuple -> range.test(tuple.get(slot), execCxt);
+                filter = ( filter == null ) ? test : filter.and(test);
+            }
+        }
+        if ( iterMatches == null )
+            iterMatches = nodeTupleTable.find(TupleFactory.create(ids));
         if ( false ) {
             List<Tuple<NodeId>> x = Iter.toList(iterMatches);
             System.out.println(x);
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.store;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.algebra.optimize.CardinalityEstimator;
+import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
+import org.apache.jena.sparql.engine.optimizer.reorder.PatternTriple;
+
+/**
+ * Cardinality estimates from the statistics maintained by {@link TransStats},
+ * as seen by the current transaction, for cost-based join ordering.
+ * Estimates are "unknown" if the database does not keep statistics or is empty.
+ */
+public class CardinalityStatsTDB implements CardinalityEstimator {
+
+    private final DatasetGraphTDB dsg;
+    private StatsTDB stats = null;
+    private StatsMatcher matcher = null;
+
+    public CardinalityStatsTDB(DatasetGraphTDB dsg) {
+        this.dsg = dsg;
+    }
+
+    @Override
+    public double cardinality(Node graph, Triple triple) {
+        StatsMatcher m = matcher();
+        if ( m == null )
+            return -1;
+        return m.match(new PatternTriple(triple));
+    }
+
+    private StatsMatcher matcher() {
+        StatsTDB current = dsg.getStats();
+        if ( current == null )
+            return null;
+        if ( current != stats ) {
+            stats = current;
+            boolean empty = current.getTriples().getCount() == 0 && current.getQuads().getCount() == 0;
+            matcher = empty ? null : new StatsMatcher(current.asStatsItem());
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.dboe.transaction.txn.Transaction;
+import org.apache.jena.dboe.transaction.txn.TransactionListener;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Record the changes made to the storage by committed transactions, while
+ * capture is switched on. This is used by online compaction to bring the copy of
+ * a database up to date with the changes made during the copy.
+ * <p>
+ * The changes of a write transaction are kept until it finishes; they are added
+ * to the log on commit and dropped on abort. There is only one writer at a time,
+ * so the log is in commit order.
+ * <p>
+ * Changes made by the bulk loaders, which write the indexes directly,
+ * are not recorded.
+ */
+public class ChangeCaptureTDB implements TransactionListener {
+
+    /** An add or delete of a triple (graph is null) or quad. */
+    public record Change(boolean isAdd, Node g, Node s, Node p, Node o) {
+        /** Apply the change to a dataset. */
+        public void apply(DatasetGraph dsg) {
+            Node gn = ( g == null ) ? Quad.defaultGraphIRI : g;
+            if ( isAdd )
+                dsg.add(gn, s, p, o);
+            else
+                dsg.delete(gn, s, p, o);
+        }
+    }
+
+    private volatile boolean active = false;
+    private final ThreadLocal<List<Change>> txnChanges = new ThreadLocal<>();
+    private final Object lock = new Object();
+    private List<Change> committed = new ArrayList<>();
+
+    public ChangeCaptureTDB() {}
+
+    /**
+     * Start recording. The caller must make sure there is no active writer, so
+     * that all changes of every transaction that commits after this call are
+     * recorded.
+     */
+    public void start() {
+        synchronized(lock) {
+            committed = new ArrayList<>();
+            active = true;
+        }
+    }
+
+    /** Stop recording and discard any changes not yet taken. */
+    public void stop() {
+        synchronized(lock) {
+            active = false;
+            committed = new ArrayList<>();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /** Take the changes committed since the last call (or since {@link #start}). */
+    public List<Change> drain() {
+        synchronized(lock) {
+            List<Change> x = committed;
+            committed = new ArrayList<>();
+            return x;
+        }
+    }
+
+    /*package*/ void record(boolean isAdd, Node g, Node s, Node p, Node o) {
+        if ( !active )
+            return;
+        List<Change> changes = txnChanges.get();
+        if ( changes == null ) {
+            changes = new ArrayList<>();
+            txnChanges.set(changes);
+        }
+        changes.add(new Change(isAdd, g, s, p, o));
+    }
+
+    @Override
+    public void notifyCommitFinish(Transaction transaction) {
+        List<Change> changes = txnChanges.get();
+        if ( changes == null )
+            return;
+        synchronized(lock) {
+            if ( active )
+                committed.addAll(changes);
+        }
+        txnChanges.remove();
+    }
+
+    @Override
+    public void notifyTxnFinish(Transaction transaction) {
+        // Abort, or end without commit.
+        if ( txnChanges.get() != null )
+            txnChanges.remove();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import java.util.*;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.dboe.trans.data.TransBlob;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleTable;
+
+/**
+ * The transitive closure, {@code p+}, of selected predicates of the default graph.
+ * <p>
+ * For each configured predicate {@code p}, the index has a tuple {@code (x, p, y)}
+ * whenever {@code y} can be reached from {@code x} by one or more {@code p} triples.
+ * The tuples are kept in two indexes, "PSO" and "POS", so the nodes reachable from
+ * a node, in either direction, and whether two nodes are connected, are each one
+ * index lookup.
+ * <p>
+ * The index is changed in the same write transaction as the data:
+ * <ul>
+ * <li>Adding {@code (a p b)}, when {@code b} is not already reachable from {@code a},
+ * connects each of {@code a} and the nodes that reach {@code a}
+ * to each of {@code b} and the nodes reachable from {@code b}.
+ * <li>Deleting {@code (a p b)} recalculates the closure of {@code a} and of the nodes
+ * that reach {@code a}. The closure of any other node is unchanged
+ * so it is used as it is by the recalculation.
+ * </ul>
+ * The predicates indexed are recorded with the index. When the database is attached
+ * with a different set of predicates, the entries of removed predicates are deleted
+ * and the closure of added predicates is calculated (see {@link #isCurrent} and {@link #update}).
+ * An existing index is updated, to no predicates, when the database is attached without
+ * any configured so that it does not miss changes to the data and then, on a later
+ * attach, appear current.
+ */
+public class ClosureIndexTDB {
+    private final Set<Node> predicates;
+    private final TupleTable closure;
+    // The predicates in the index: IRIs, one per line.
+    private final TransBlob state;
+    private final NodeTupleTable triples;
+
+    public ClosureIndexTDB(String[] predicates, TupleTable closure, TransBlob state, NodeTupleTable triples) {
+        Set<Node> x = new LinkedHashSet<>();
+        for ( String p : predicates )
+            x.add(NodeFactory.createURI(p));
+        this.predicates = Collections.unmodifiableSet(x);
+        this.closure = closure;
+        this.state = state;
+        this.triples = triples;
+    }
+
+    /** The predicates with a closure in this index. */
+    public Set<Node> getPredicates() {
+        return predicates;
+    }
+
+    public boolean isIndexed(Node predicate) {
+        return predicates.contains(predicate);
+    }
+
+    private NodeTable nodeTable() {
+        return triples.getNodeTable();
+    }
+
+    // ---- Access
+
+    /**
+     * The nodes reachable from {@code start} by one or more steps along ({@code forward}),
+     * or against, an indexed predicate. There are no duplicates.
+     */
+    public Iterator<NodeId> oneOrMore(NodeId start, NodeId predicate, boolean forward) {
+        if ( forward )
+            return Iter.map(closure.find(TupleFactory.tuple(start, predicate, NodeId.NodeIdAny)), t->t.get(2));
+        return Iter.map(closure.find(TupleFactory.tuple(NodeId.NodeIdAny, predicate, start)), t->t.get(0));
+    }
+
+    /** Whether {@code end} is reachable from {@code start} by one or more steps along an indexed predicate. */
+    public boolean connected(NodeId start, NodeId predicate, NodeId end) {
+        return contains(start, predicate, end);
+    }
+
+    private boolean contains(NodeId s, NodeId p, NodeId o) {
+        return closure.find(TupleFactory.tuple(s, p, o)).hasNext();
+    }
+
+    // ---- Maintenance. Called in a write transaction.
+
+    /** Update the index after the triple has been added to the default graph. */
+    /*package*/ void add(Node s, Node p, Node o) {
+        if ( !isIndexed(p) )
+            return;
+        NodeTable nodeTable = nodeTable();
+        insert(nodeTable.getNodeIdForNode(s), nodeTable.getNodeIdForNode(p), nodeTable.getNodeIdForNode(o));
+    }
+
+    /** Update the index after the triple has been deleted from the default graph. */
+    /*package*/ void delete(Node s, Node p, Node o) {
+        if ( !isIndexed(p) )
+            return;
+        NodeTable nodeTable = nodeTable();
+        NodeId pId = nodeTable.getNodeIdForNode(p);
+        if ( NodeId.isDoesNotExist(pId) )
+            return;
+        remove(nodeTable.getNodeIdForNode(s), pId, nodeTable.getNodeIdForNode(o));
+    }
+
+    /** Update the index after the triple, given as {@code NodeIds}, has been deleted from the default graph. */
+    /*package*/ void delete(Tuple<NodeId> triple) {
+        NodeId pId = triple.get(1);
+        if ( !isIndexed(nodeTable().getNodeForNodeId(pId)) )
+            return;
+        remove(triple.get(0), pId, triple.get(2));
+    }
+
+    private void insert(NodeId a, NodeId p, NodeId b) {
+        // Already connected: the triple adds nothing to the closure.
+        if ( contains(a, p, b) )
+            return;
+        List<NodeId> sources = new ArrayList<>();
+        sources.add(a);
+        oneOrMore(a, p, false).forEachRemaining(sources::add);
+        List<NodeId> targets = new ArrayList<>();
+        targets.add(b);
+        oneOrMore(b, p, true).forEachRemaining(targets::add);
+        for ( NodeId x : sources ) {
+            for ( NodeId y : targets ) {
+                if ( !contains(x, p, y) )
+                    closure.add(TupleFactory.tuple(x, p, y));
+            }
+        }
+    }
+
+    private void remove(NodeId a, NodeId p, NodeId b) {
+        if ( NodeId.isDoesNotExist(a) || NodeId.isDoesNotExist(b) || !contains(a, p, b) )
+            return;
+        // Only the closures of a, and of the nodes that reach a, can change.
+        List<NodeId> affected = new ArrayList<>();
+        affected.add(a);
+        oneOrMore(a, p, false).forEachRemaining(affected::add);
+        recalculate(p, affected);
+    }
+
+    /**
+     * Recalculate the closure of each of {@code nodes}. The closure, in the
+     * index, of any other node must be correct.
+     */
+    private void recalculate(NodeId p, Collection<NodeId> nodes) {
+        Set<NodeId> pending = new HashSet<>(nodes);
+        for ( NodeId x : nodes ) {
+            List<NodeId> old = Iter.toList(oneOrMore(x, p, true));
+            old.forEach(y->closure.delete(TupleFactory.tuple(x, p, y)));
+            for ( NodeId y : reachable(x, p, pending) )
+                closure.add(TupleFactory.tuple(x, p, y));
+            pending.remove(x);
+        }
+    }
+
+    /**
+     * Walk the data from {@code x}. Only nodes in {@code pending} are walked;
+     * the closure of any other node is taken from the index.
+     */
+    private Set<NodeId> reachable(NodeId x, NodeId p, Set<NodeId> pending) {
+        Set<NodeId> reached = new HashSet<>();
+        Deque<NodeId> queue = new ArrayDeque<>();
+        queue.add(x);
+        while ( !queue.isEmpty() ) {
+            NodeId n = queue.removeFirst();
+            Iterator<Tuple<NodeId>> iter = triples.find(n, p, NodeId.NodeIdAny);
+            while ( iter.hasNext() ) {
+                NodeId y = iter.next().get(2);
+                if ( !reached.add(y) )
+                    continue;
+                if ( pending.contains(y) )
+                    queue.add(y);
+                else
+                    oneOrMore(y, p, true).forEachRemaining(reached::add);
+            }
+        }
+        return reached;
+    }
+
+    /** Recalculate the closures of all the indexed predicates from the data. */
+    public void rebuild() {
+        closure.clear();
+        for ( Node p : predicates )
+            build(p);
+        writeState();
+    }
+
+    private void build(Node p) {
+        NodeId pId = nodeTable().getNodeIdForNode(p);
+        if ( NodeId.isDoesNotExist(pId) )
+            return;
+        Set<NodeId> subjects = new LinkedHashSet<>();
+        triples.find(NodeId.NodeIdAny, pId, NodeId.NodeIdAny).forEachRemaining(t->subjects.add(t.get(0)));
+        recalculate(pId, subjects);
+    }
+
+    private void drop(Node p) {
+        NodeId pId = nodeTable().getNodeIdForNode(p);
+        if ( NodeId.isDoesNotExist(pId) )
+            return;
+        List<Tuple<NodeId>> entries = Iter.toList(closure.find(TupleFactory.tuple(NodeId.NodeIdAny, pId, NodeId.NodeIdAny)));
+        entries.forEach(closure::delete);
+    }
+
+    // ---- Configuration
+
+    private Set<Node> indexedPredicates() {
+        Set<Node> x = new LinkedHashSet<>();
+        String str = state.getString();
+        if ( str == null )
+            return x;
+        for ( String line : str.split("\n") ) {
+            if ( !line.isEmpty() )
+                x.add(NodeFactory.createURI(line));
+        }
+        return x;
+    }
+
+    private void writeState() {
+        StringBuilder sb = new StringBuilder();
+        predicates.forEach(p->sb.append(p.getURI()).append('\n'));
+        state.setString(sb.toString());
+    }
+
+    /** Whether the index has the closures of exactly the configured predicates. */
+    public boolean isCurrent() {
+        return indexedPredicates().equals(predicates);
+    }
+
+    /**
+     * Bring the index into line with the configured predicates: delete the entries
+     * of predicates no longer configured and calculate the closure of newly
+     * configured predicates. Must be called in a write transaction.
+     */
+    public void update() {
+        Set<Node> indexed = indexedPredicates();
+        for ( Node p : indexed ) {
+            if ( !predicates.contains(p) )
+                drop(p);
+        }
+        for ( Node p : predicates ) {
+            if ( !indexed.contains(p) )
+                build(p);
+        }
+        writeState();
+    }
+}
@@ -25,11 +25,13 @@ import org.apache.jena.atlas.lib.Cache;
 import org.apache.jena.atlas.lib.CacheFactory;
 import org.apache.jena.dboe.base.file.Location;
 import org.apache.jena.dboe.storage.system.DatasetGraphTxnCtl;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.riot.system.PrefixMap;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb2.sys.SystemTDB;
 
 final
 public class DatasetGraphSwitchable extends DatasetGraphTxnCtl
@@ -39,6 +41,8 @@ public class DatasetGraphSwitchable extends DatasetGraphTxnCtl
     private final Path basePath;
     private final Location location;
     private final PrefixMapSwitchable prefixes;
+    // Created on first use.
+    private GroupCommit groupCommit = null;
 
     public DatasetGraphSwitchable(Path base, Location location, DatasetGraph dsg) {
         // Don't use the slot in DatasetGraphWrapper - use the AtomicReference
@@ -75,6 +79,16 @@ public class DatasetGraphSwitchable extends DatasetGraphTxnCtl
         return dsgx.getAndSet(dsg);
     }
 
+    /**
+     * The group commit for this dataset. It is shared by all users of the dataset
+     * and works across switches of the base dataset.
+     */
+    public synchronized GroupCommit getGroupCommit() {
+        if ( groupCommit == null )
+            groupCommit = new GroupCommit(this, SystemTDB.GroupCommitMaxSize, SystemTDB.GroupCommitDelay);
+        return groupCommit;
+    }
+
     @Override
     public PrefixMap prefixes() {
         return prefixes;
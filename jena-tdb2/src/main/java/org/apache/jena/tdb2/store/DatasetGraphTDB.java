@@ -95,6 +95,49 @@ public class DatasetGraphTDB extends DatasetGraphStorage
         return reorderTransformation;
     }
 
+    /**
+     * The statistics for the database, as seen by the current transaction.
+     * Returns null if the database does not maintain statistics
+     * (see {@link StoreParams#isPersistentStats()}).
+     */
+    public StatsTDB getStats() {
+        checkNotClosed();
+        TransStats transStats = storageTDB.getTransStats();
+        return ( transStats == null ) ? null : transStats.getStats();
+    }
+
+    /** The recorder of committed changes, used by online compaction. */
+    public ChangeCaptureTDB getChangeCapture() {
+        return storageTDB.getChangeCapture();
+    }
+
+    /**
+     * Recalculate the statistics from the indexes, if the database maintains
+     * statistics. Must be called in a write transaction.
+     */
+    public void rebuildStats() {
+        checkNotClosed();
+        storageTDB.rebuildStats();
+    }
+
+    /**
+     * The index of the transitive closures of the predicates given by
+     * {@link StoreParams#getClosurePredicates()}, or null if there are none.
+     */
+    public ClosureIndexTDB getClosureIndex() {
+        checkNotClosed();
+        return storageTDB.getClosureIndex();
+    }
+
+    /**
+     * Recalculate the transitive closure index from the data, if the database
+     * has one. Must be called in a write transaction.
+     */
+    public void rebuildClosureIndex() {
+        checkNotClosed();
+        storageTDB.rebuildClosureIndex();
+    }
+
     @Override
     public void close() {
         if ( isClosed )
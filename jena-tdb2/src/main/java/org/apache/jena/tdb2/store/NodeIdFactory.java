@@ -177,6 +177,23 @@ public class NodeIdFactory
         Bytes.setLong(v2+1, b, idx);
     }
 
+    /**
+     * The 64 bit form of a NodeId, as held in indexes.
+     * Unlike {@link NodeId#equals}, this includes the type of an inline value.
+     */
+    public static long encode64(NodeId nodeId) {
+        return encode(nodeId);
+    }
+
+    /**
+     * Compare two NodeIds in the order they are held in indexes
+     * (unsigned order of the 64 bit encoded form).
+     * This is not the same as {@link NodeId#compare}.
+     */
+    public static int compareIndexOrder(NodeId nodeId1, NodeId nodeId2) {
+        return Long.compareUnsigned(encode(nodeId1), encode(nodeId2));
+    }
+
     // (int,long) versions : check before use
 //    /** Relative {@code ByteBuffer} {@code get} */
 //    public static NodeId get(ByteBuffer b)   {
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import java.util.Iterator;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.path.eval.PathClosureIndex;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * The {@link ClosureIndexTDB} of a database, as seen by the current transaction,
+ * for path evaluation. It covers the indexed predicates in the stored default graph,
+ * not named graphs nor the union graph.
+ */
+public class PathClosureIndexTDB implements PathClosureIndex {
+
+    private final DatasetGraphTDB dsg;
+    private final ClosureIndexTDB closureIndex;
+
+    public PathClosureIndexTDB(DatasetGraphTDB dsg) {
+        this.dsg = dsg;
+        this.closureIndex = dsg.getClosureIndex();
+    }
+
+    @Override
+    public boolean covers(Graph graph, Node property) {
+        if ( closureIndex == null || !closureIndex.isIndexed(property) )
+            return false;
+        return graph instanceof GraphTDB graphTDB && graphTDB.getDSG() == dsg && graphTDB.getGraphName() == null;
+    }
+
+    @Override
+    public Iterator<Node> oneOrMore(Node start, Node property, boolean forward) {
+        NodeTable nodeTable = dsg.getTripleTable().getNodeTupleTable().getNodeTable();
+        NodeId startId = nodeTable.getNodeIdForNode(start);
+        NodeId propertyId = nodeTable.getNodeIdForNode(property);
+        if ( NodeId.isDoesNotExist(startId) || NodeId.isDoesNotExist(propertyId) )
+            return Iter.nullIterator();
+        return Iter.map(closureIndex.oneOrMore(startId, propertyId, forward), nodeTable::getNodeForNodeId);
+    }
+
+    @Override
+    public boolean connected(Node start, Node property, Node end) {
+        NodeTable nodeTable = dsg.getTripleTable().getNodeTupleTable().getNodeTable();
+        NodeId startId = nodeTable.getNodeIdForNode(start);
+        NodeId propertyId = nodeTable.getNodeIdForNode(property);
+        NodeId endId = nodeTable.getNodeIdForNode(end);
+        if ( NodeId.isDoesNotExist(startId) || NodeId.isDoesNotExist(propertyId) || NodeId.isDoesNotExist(endId) )
+            return false;
+        return closureIndex.connected(startId, propertyId, endId);
+    }
+}
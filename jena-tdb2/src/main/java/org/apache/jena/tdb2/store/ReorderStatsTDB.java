@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderProc;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderWeighted;
+
+/**
+ * A {@link ReorderTransformation} that uses the statistics maintained by
+ * {@link TransStats}, as seen by the current transaction.
+ * The weighted reorder is recreated when the statistics change.
+ * An empty database uses the fixed reorder.
+ */
+public class ReorderStatsTDB implements ReorderTransformation {
+
+    private record Current(StatsTDB stats, ReorderTransformation reorder) {}
+
+    private final TransStats transStats;
+    private volatile Current current = null;
+
+    public ReorderStatsTDB(TransStats transStats) {
+        this.transStats = transStats;
+    }
+
+    @Override
+    public ReorderProc reorderIndexes(BasicPattern pattern) {
+        return get().reorderIndexes(pattern);
+    }
+
+    @Override
+    public BasicPattern reorder(BasicPattern pattern) {
+        return get().reorder(pattern);
+    }
+
+    private ReorderTransformation get() {
+        StatsTDB stats = transStats.getStats();
+        Current x = current;
+        if ( x != null && x.stats == stats )
+            return x.reorder;
+        ReorderTransformation reorder = create(stats);
+        // Cache committed statistics, not the changing statistics of a writer.
+        if ( !transStats.hasChanged() )
+            current = new Current(stats, reorder);
+        return reorder;
+    }
+
+    private static ReorderTransformation create(StatsTDB stats) {
+        if ( stats.getTriples().getCount() == 0 && stats.getQuads().getCount() == 0 )
+            return ReorderLib.fixed();
+        return new ReorderWeighted(new StatsMatcher(stats.asStatsItem()));
+    }
+
+    @Override
+    public String toString() {
+        return "ReorderStatsTDB";
+    }
+}
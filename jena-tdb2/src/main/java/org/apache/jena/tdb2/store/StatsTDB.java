@@ -0,0 +1,451 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import static org.apache.jena.sparql.sse.Item.addPair;
+import static org.apache.jena.sparql.sse.Item.createTagged;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.jena.riot.thrift.ThriftConvert;
+import org.apache.jena.riot.thrift.wire.RDF_Term;
+import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
+import org.apache.jena.sparql.graph.NodeConst;
+import org.apache.jena.sparql.sse.Item;
+import org.apache.jena.sparql.sse.ItemList;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.tupletable.TupleTable;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+
+/**
+ * Statistics for a TDB2 database: the default graph (the triple table) and the
+ * named graphs (the quad table, as the union of all named graphs) have the
+ * number of tuples, distinct subjects and distinct objects, and, for each predicate,
+ * the number of tuples, distinct subjects and distinct objects.
+ * The number of {@code rdf:type} triples for each class and the number of quads
+ * in each named graph are also kept.
+ * <p>
+ * These are maintained by {@link TransStats}. A {@code StatsTDB} that has been
+ * committed is not changed afterwards.
+ */
+public class StatsTDB {
+
+    /** Counts for a predicate */
+    public static class PredicateStats {
+        private long count;
+        private long subjects;
+        private long objects;
+
+        PredicateStats() {}
+
+        PredicateStats(PredicateStats other) {
+            this.count = other.count;
+            this.subjects = other.subjects;
+            this.objects = other.objects;
+        }
+
+        /** Number of triples or quads with this predicate. */
+        public long getCount()      { return count; }
+
+        /** Number of distinct subjects used with this predicate. */
+        public long getSubjects()   { return subjects; }
+
+        /** Number of distinct objects used with this predicate. */
+        public long getObjects()    { return objects; }
+    }
+
+    /** Counts for the triple table or the quad table. */
+    public static class TableStats {
+        private long count;
+        private long subjects;
+        private long objects;
+        private final Map<Node, PredicateStats> predicates = new HashMap<>();
+        private final Map<Node, Long> types = new HashMap<>();
+
+        TableStats() {}
+
+        TableStats(TableStats other) {
+            this.count = other.count;
+            this.subjects = other.subjects;
+            this.objects = other.objects;
+            other.predicates.forEach((p, ps)->predicates.put(p, new PredicateStats(ps)));
+            types.putAll(other.types);
+        }
+
+        /** Number of triples or quads. */
+        public long getCount()                              { return count; }
+
+        /** Number of distinct subjects. */
+        public long getSubjects()                           { return subjects; }
+
+        /** Number of distinct objects. */
+        public long getObjects()                            { return objects; }
+
+        public Map<Node, PredicateStats> getPredicates()    { return Collections.unmodifiableMap(predicates); }
+
+        /** Number of {@code rdf:type} statements for each class. */
+        public Map<Node, Long> getTypes()                   { return Collections.unmodifiableMap(types); }
+
+        private void update(Node s, Node p, Node o, int delta,
+                            boolean firstSubject, boolean firstObject, boolean firstPredSubject, boolean firstPredObject) {
+            count += delta;
+            if ( firstSubject )
+                subjects += delta;
+            if ( firstObject )
+                objects += delta;
+            PredicateStats ps = predicates.computeIfAbsent(p, x->new PredicateStats());
+            ps.count += delta;
+            if ( firstPredSubject )
+                ps.subjects += delta;
+            if ( firstPredObject )
+                ps.objects += delta;
+            if ( ps.count <= 0 )
+                predicates.remove(p);
+            if ( NodeConst.nodeRDFType.equals(p) )
+                adjust(types, o, delta);
+        }
+    }
+
+    private final TableStats triples;
+    private final TableStats quads;
+    private final Map<Node, Long> graphs;
+
+    public StatsTDB() {
+        this.triples = new TableStats();
+        this.quads = new TableStats();
+        this.graphs = new HashMap<>();
+    }
+
+    /** Copy - used to start changes in a write transaction. */
+    StatsTDB(StatsTDB other) {
+        this.triples = new TableStats(other.triples);
+        this.quads = new TableStats(other.quads);
+        this.graphs = new HashMap<>(other.graphs);
+    }
+
+    /** Statistics for the default graph. */
+    public TableStats getTriples()      { return triples; }
+
+    /** Statistics for the named graphs, taken together. */
+    public TableStats getQuads()        { return quads; }
+
+    /** Number of quads in each named graph. */
+    public Map<Node, Long> getGraphs()  { return Collections.unmodifiableMap(graphs); }
+
+    /**
+     * Record a triple (graph is null) or quad that has been added. The flags are
+     * true when the term, or the predicate and term, did not appear in the table
+     * before this change.
+     */
+    void add(Node g, Node s, Node p, Node o,
+             boolean firstSubject, boolean firstObject, boolean firstPredSubject, boolean firstPredObject) {
+        update(g, s, p, o, +1, firstSubject, firstObject, firstPredSubject, firstPredObject);
+    }
+
+    /**
+     * Record a triple (graph is null) or quad that has been deleted. The flags are
+     * true when the term, or the predicate and term, no longer appear in the table
+     * after this change.
+     */
+    void delete(Node g, Node s, Node p, Node o,
+                boolean lastSubject, boolean lastObject, boolean lastPredSubject, boolean lastPredObject) {
+        update(g, s, p, o, -1, lastSubject, lastObject, lastPredSubject, lastPredObject);
+    }
+
+    private void update(Node g, Node s, Node p, Node o, int delta,
+                        boolean subject, boolean object, boolean predSubject, boolean predObject) {
+        if ( g == null ) {
+            triples.update(s, p, o, delta, subject, object, predSubject, predObject);
+            return;
+        }
+        quads.update(s, p, o, delta, subject, object, predSubject, predObject);
+        adjust(graphs, g, delta);
+    }
+
+    private static void adjust(Map<Node, Long> map, Node key, long delta) {
+        long x = map.getOrDefault(key, 0L) + delta;
+        if ( x <= 0 )
+            map.remove(key);
+        else
+            map.put(key, x);
+    }
+
+    // ---- Optimizer
+
+    /**
+     * Statistics for the BGP optimizer, in the format of a stats file (see
+     * {@link StatsMatcher}). The default graph and the named graphs are added
+     * together. Patterns with one of subject or object fixed are weighted by the
+     * average number of triples per distinct subject or object of the predicate.
+     */
+    public Item asStatsItem() {
+        TableStats all = new TableStats(triples);
+        all.count += quads.count;
+        quads.predicates.forEach((p, ps)->{
+            PredicateStats x = all.predicates.computeIfAbsent(p, k->new PredicateStats());
+            x.count += ps.count;
+            x.subjects += ps.subjects;
+            x.objects += ps.objects;
+        });
+        quads.types.forEach((t, n)->adjust(all.types, t, n));
+
+        Item stats = Item.createList();
+        ItemList statsList = stats.getList();
+        statsList.add(StatsMatcher.STATS);
+        Item meta = createTagged(StatsMatcher.META);
+        addPair(meta.getList(), StatsMatcher.COUNT, NodeFactoryExtra.intToNode(all.count));
+        statsList.add(meta);
+
+        // Most specific first : the first pattern to match is used.
+        all.types.forEach((type, n)->
+            addPattern(statsList, Item.createSymbol("VAR"), Item.createNode(NodeConst.nodeRDFType), Item.createNode(type), n));
+        all.predicates.forEach((p, ps)->{
+            Item pItem = Item.createNode(p);
+            addPattern(statsList, Item.createSymbol("TERM"), pItem, Item.createSymbol("ANY"), average(ps.count, ps.subjects));
+            addPattern(statsList, Item.createSymbol("ANY"), pItem, Item.createSymbol("TERM"), average(ps.count, ps.objects));
+            addPattern(statsList, Item.createSymbol("ANY"), pItem, Item.createSymbol("ANY"), ps.count);
+        });
+        // A predicate not in the data does not match anything.
+        addPair(statsList, StatsMatcher.OTHER, Item.createNode(NodeFactoryExtra.intToNode(0)));
+        return stats;
+    }
+
+    private static double average(long count, long distinct) {
+        if ( distinct <= 0 )
+            return count;
+        return Math.max(1.0, (double)count / distinct);
+    }
+
+    private static void addPattern(ItemList statsList, Item s, Item p, Item o, double weight) {
+        Item pattern = Item.createList();
+        pattern.getList().add(s);
+        pattern.getList().add(p);
+        pattern.getList().add(o);
+        addPair(statsList, pattern, Item.createNode(NodeFactoryExtra.doubleToNode(weight)));
+    }
+
+    // ---- Calculate from the tables.
+
+    /**
+     * Calculate the statistics from the triple and quad tables by scanning the
+     * indexes. Used to set the statistics after a bulk load that writes the indexes
+     * directly, or if the statistics are missing.
+     */
+    static StatsTDB calculate(TripleTable tripleTable, QuadTable quadTable) {
+        StatsTDB stats = new StatsTDB();
+        calculate(stats, stats.triples, tripleTable.getNodeTupleTable().getTupleTable(), tripleTable.getNodeTupleTable().getNodeTable(), 0);
+        calculate(stats, stats.quads, quadTable.getNodeTupleTable().getTupleTable(), quadTable.getNodeTupleTable().getNodeTable(), 1);
+        return stats;
+    }
+
+    private static void calculate(StatsTDB stats, TableStats table, TupleTable tupleTable, NodeTable nodeTable, int offset) {
+        final int S = offset;
+        final int P = offset+1;
+        final int O = offset+2;
+        Map<NodeId, Long> predicates = new HashMap<>();
+        Map<NodeId, Long> types = new HashMap<>();
+        Map<NodeId, Long> graphs = new HashMap<>();
+        NodeId rdfType = nodeTable.getNodeIdForNode(NodeConst.nodeRDFType);
+        tupleTable.getIndex(0).all().forEachRemaining(tuple->{
+            table.count++;
+            predicates.merge(tuple.get(P), 1L, Long::sum);
+            if ( tuple.get(P).equals(rdfType) )
+                types.merge(tuple.get(O), 1L, Long::sum);
+            if ( offset > 0 )
+                graphs.merge(tuple.get(0), 1L, Long::sum);
+        });
+        table.subjects = countDistinct(tupleTable, -1, S).getOrDefault(NodeId.NodeIdAny, 0L);
+        table.objects = countDistinct(tupleTable, -1, O).getOrDefault(NodeId.NodeIdAny, 0L);
+        Map<NodeId, Long> predSubjects = countDistinct(tupleTable, P, S, P);
+        Map<NodeId, Long> predObjects = countDistinct(tupleTable, P, P, O);
+        predicates.forEach((pid, n)->{
+            PredicateStats ps = new PredicateStats();
+            ps.count = n;
+            ps.subjects = predSubjects.getOrDefault(pid, 0L);
+            ps.objects = predObjects.getOrDefault(pid, 0L);
+            table.predicates.put(nodeTable.getNodeForNodeId(pid), ps);
+        });
+        types.forEach((tid, n)->table.types.put(nodeTable.getNodeForNodeId(tid), n));
+        graphs.forEach((gid, n)->stats.graphs.put(nodeTable.getNodeForNodeId(gid), n));
+    }
+
+    /**
+     * Count distinct combinations of the key slots, grouped by the group slot
+     * (or all under {@link NodeId#NodeIdAny} if the group slot is -1). If there is
+     * an index that starts with the key slots, it is scanned and changes of key
+     * are counted; otherwise the keys are collected in memory.
+     */
+    private static Map<NodeId, Long> countDistinct(TupleTable tupleTable, int groupSlot, int... keySlots) {
+        Map<NodeId, Long> counts = new HashMap<>();
+        TupleIndex index = findIndexStartingWith(tupleTable, keySlots);
+        Iterator<Tuple<NodeId>> iter = ( index != null ) ? index.all() : tupleTable.getIndex(0).all();
+        Set<List<NodeId>> seen = ( index != null ) ? null : new HashSet<>();
+        List<NodeId> previous = null;
+        while ( iter.hasNext() ) {
+            Tuple<NodeId> tuple = iter.next();
+            List<NodeId> key = new ArrayList<>(keySlots.length);
+            for ( int slot : keySlots )
+                key.add(tuple.get(slot));
+            boolean isNew = ( seen != null ) ? seen.add(key) : !key.equals(previous);
+            previous = key;
+            if ( isNew ) {
+                NodeId group = ( groupSlot < 0 ) ? NodeId.NodeIdAny : tuple.get(groupSlot);
+                counts.merge(group, 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static TupleIndex findIndexStartingWith(TupleTable tupleTable, int... slots) {
+        for ( TupleIndex index : tupleTable.getIndexes() ) {
+            Set<Integer> leading = new HashSet<>();
+            for ( int i = 0 ; i < slots.length ; i++ )
+                leading.add(index.getMapping().mapIdx(i));
+            boolean matches = true;
+            for ( int slot : slots )
+                matches = matches && leading.contains(slot);
+            if ( matches )
+                return index;
+        }
+        return null;
+    }
+
+    // ---- Encoding
+
+    private static final int formatVersion = 1;
+
+    /** Encode as bytes, for the journal and the statistics file. */
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( DataOutputStream out = new DataOutputStream(bytes) ) {
+            out.writeInt(formatVersion);
+            encode(out, triples);
+            encode(out, quads);
+            encodeCounts(out, graphs);
+        } catch (IOException ex) {
+            throw new TDBException("Failed to encode statistics", ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Decode bytes produced by {@link #encode}. Zero bytes is no statistics. */
+    static StatsTDB decode(byte[] bytes) {
+        StatsTDB stats = new StatsTDB();
+        if ( bytes.length == 0 )
+            return stats;
+        try ( DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)) ) {
+            int version = in.readInt();
+            if ( version != formatVersion )
+                throw new TDBException("Unrecognized statistics format: "+version);
+            decode(in, stats.triples);
+            decode(in, stats.quads);
+            decodeCounts(in, stats.graphs);
+        } catch (IOException ex) {
+            throw new TDBException("Failed to decode statistics", ex);
+        }
+        return stats;
+    }
+
+    private static void encode(DataOutputStream out, TableStats table) throws IOException {
+        out.writeLong(table.count);
+        out.writeLong(table.subjects);
+        out.writeLong(table.objects);
+        out.writeInt(table.predicates.size());
+        for ( Map.Entry<Node, PredicateStats> e : table.predicates.entrySet() ) {
+            writeNode(out, e.getKey());
+            out.writeLong(e.getValue().count);
+            out.writeLong(e.getValue().subjects);
+            out.writeLong(e.getValue().objects);
+        }
+        encodeCounts(out, table.types);
+    }
+
+    private static void decode(DataInputStream in, TableStats table) throws IOException {
+        table.count = in.readLong();
+        table.subjects = in.readLong();
+        table.objects = in.readLong();
+        int n = in.readInt();
+        for ( int i = 0 ; i < n ; i++ ) {
+            Node p = readNode(in);
+            PredicateStats ps = new PredicateStats();
+            ps.count = in.readLong();
+            ps.subjects = in.readLong();
+            ps.objects = in.readLong();
+            table.predicates.put(p, ps);
+        }
+        decodeCounts(in, table.types);
+    }
+
+    private static void encodeCounts(DataOutputStream out, Map<Node, Long> counts) throws IOException {
+        out.writeInt(counts.size());
+        for ( Map.Entry<Node, Long> e : counts.entrySet() ) {
+            writeNode(out, e.getKey());
+            out.writeLong(e.getValue());
+        }
+    }
+
+    private static void decodeCounts(DataInputStream in, Map<Node, Long> counts) throws IOException {
+        int n = in.readInt();
+        for ( int i = 0 ; i < n ; i++ ) {
+            Node node = readNode(in);
+            counts.put(node, in.readLong());
+        }
+    }
+
+    // Nodes use the same Thrift encoding as the node table.
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TProtocol protocol = TRDF.protocol(bytes);
+        try {
+            ThriftConvert.convert(node, true).write(protocol);
+        } catch (TException ex) {
+            throw new TDBException("Failed to encode node: "+node, ex);
+        }
+        TRDF.flush(protocol);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Node readNode(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        TProtocol protocol = TRDF.protocol(new ByteArrayInputStream(bytes));
+        RDF_Term term = new RDF_Term();
+        try {
+            term.read(protocol);
+        } catch (TException ex) {
+            throw new TDBException("Failed to decode node", ex);
+        }
+        return ThriftConvert.convert(term);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Stats[triples=%d, quads=%d, predicates=%d, graphs=%d]",
+                             triples.count, quads.count, triples.predicates.size()+quads.predicates.size(), graphs.size());
+    }
+}
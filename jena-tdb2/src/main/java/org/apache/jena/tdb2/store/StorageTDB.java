@@ -30,12 +30,20 @@ import org.apache.jena.dboe.transaction.txn.TransactionalSystem;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
 
 /** {@link StorageRDF} for TDB2 */
 public class StorageTDB implements StorageRDF {
     private TripleTable                 tripleTable;
     private QuadTable                   quadTable;
     private TransactionalSystem         txnSystem;
+    // Statistics, or null if not maintained.
+    private final TransStats            transStats;
+    // Changes recorded for online compaction, or null.
+    private final ChangeCaptureTDB      changeCapture;
+    // Transitive closures of selected predicates, or null.
+    private final ClosureIndexTDB       closureIndex;
 
     // In notifyAdd and notifyDelete,  check whether the change is a real change or not.
     // e.g. Adding a quad already present is not a real change.
@@ -45,9 +53,26 @@ public class StorageTDB implements StorageRDF {
     private boolean                     closed         = false;
 
     public StorageTDB(TransactionalSystem txnSystem, TripleTable tripleTable, QuadTable quadTable) {
+        this(txnSystem, tripleTable, quadTable, null);
+    }
+
+    public StorageTDB(TransactionalSystem txnSystem, TripleTable tripleTable, QuadTable quadTable, TransStats transStats) {
+        this(txnSystem, tripleTable, quadTable, transStats, null);
+    }
+
+    public StorageTDB(TransactionalSystem txnSystem, TripleTable tripleTable, QuadTable quadTable,
+                      TransStats transStats, ChangeCaptureTDB changeCapture) {
+        this(txnSystem, tripleTable, quadTable, transStats, changeCapture, null);
+    }
+
+    public StorageTDB(TransactionalSystem txnSystem, TripleTable tripleTable, QuadTable quadTable,
+                      TransStats transStats, ChangeCaptureTDB changeCapture, ClosureIndexTDB closureIndex) {
         this.txnSystem = txnSystem;
         this.tripleTable = tripleTable;
         this.quadTable = quadTable;
+        this.transStats = transStats;
+        this.changeCapture = changeCapture;
+        this.closureIndex = closureIndex;
     }
 
     public QuadTable getQuadTable() {
@@ -60,11 +85,108 @@ public class StorageTDB implements StorageRDF {
         return tripleTable;
     }
 
+    /** The statistics component, or null if statistics are not maintained. */
+    public TransStats getTransStats() {
+        return transStats;
+    }
+
+    /** The change recorder used for online compaction, or null. */
+    public ChangeCaptureTDB getChangeCapture() {
+        return changeCapture;
+    }
+
+    /** The index of the transitive closures of selected predicates, or null. */
+    public ClosureIndexTDB getClosureIndex() {
+        return closureIndex;
+    }
+
+    /**
+     * Recalculate the statistics from the indexes. This is needed after changes
+     * that do not go through this class, such as the bulk loaders.
+     * Must be called in a write transaction.
+     */
+    public void rebuildStats() {
+        if ( transStats == null )
+            return;
+        ensureWriteTxn();
+        transStats.setStats(StatsTDB.calculate(tripleTable, quadTable));
+    }
+
+    /**
+     * Recalculate the transitive closure index from the default graph. This is needed
+     * after changes that do not go through this class, such as the bulk loaders.
+     * Must be called in a write transaction.
+     */
+    public void rebuildClosureIndex() {
+        if ( closureIndex == null )
+            return;
+        ensureWriteTxn();
+        closureIndex.rebuild();
+    }
+
     private void checkActive() {}
 
-    private final void notifyAdd(Node g, Node s, Node p, Node o) { }
+    // Statistics are updated before the change so that the data can be examined
+    // to see whether a term is new to the table.
 
-    private final void notifyDelete(Node g, Node s, Node p, Node o) { }
+    private final void notifyAdd(Node g, Node s, Node p, Node o) {
+        if ( changeCapture != null )
+            changeCapture.record(true, g, s, p, o);
+        if ( transStats == null )
+            return;
+        NodeTupleTable table = statsTable(g);
+        if ( exists(table, g, s, p, o) )
+            return;
+        boolean firstSubject     = !exists(table, g, s, Node.ANY, Node.ANY);
+        boolean firstObject      = !exists(table, g, Node.ANY, Node.ANY, o);
+        boolean firstPredSubject = firstSubject || !exists(table, g, s, p, Node.ANY);
+        boolean firstPredObject  = firstObject || !exists(table, g, Node.ANY, p, o);
+        transStats.getStatsForUpdate().add(g, s, p, o, firstSubject, firstObject, firstPredSubject, firstPredObject);
+    }
+
+    private final void notifyDelete(Node g, Node s, Node p, Node o) {
+        if ( changeCapture != null )
+            changeCapture.record(false, g, s, p, o);
+        if ( transStats == null )
+            return;
+        NodeTupleTable table = statsTable(g);
+        if ( !exists(table, g, s, p, o) )
+            return;
+        // The tuple is present; is it the only one for the term?
+        boolean lastSubject     = !exists2(table, g, s, Node.ANY, Node.ANY);
+        boolean lastObject      = !exists2(table, g, Node.ANY, Node.ANY, o);
+        boolean lastPredSubject = lastSubject || !exists2(table, g, s, p, Node.ANY);
+        boolean lastPredObject  = lastObject || !exists2(table, g, Node.ANY, p, o);
+        transStats.getStatsForUpdate().delete(g, s, p, o, lastSubject, lastObject, lastPredSubject, lastPredObject);
+    }
+
+    private NodeTupleTable statsTable(Node g) {
+        return ( g == null ) ? tripleTable.getNodeTupleTable() : quadTable.getNodeTupleTable();
+    }
+
+    /** Whether there is a match for the pattern. */
+    private static boolean exists(NodeTupleTable table, Node g, Node s, Node p, Node o) {
+        Iterator<Tuple<NodeId>> iter = find(table, g, s, p, o);
+        return iter.hasNext();
+    }
+
+    /** Whether there are at least two matches for the pattern. */
+    private static boolean exists2(NodeTupleTable table, Node g, Node s, Node p, Node o) {
+        Iterator<Tuple<NodeId>> iter = find(table, g, s, p, o);
+        if ( !iter.hasNext() )
+            return false;
+        iter.next();
+        return iter.hasNext();
+    }
+
+    private static Iterator<Tuple<NodeId>> find(NodeTupleTable table, Node g, Node s, Node p, Node o) {
+        if ( g == null )
+            return table.findAsNodeIds(s, p, o);
+        // The exact quad, or any graph for a term test:
+        // terms are counted over all the named graphs.
+        Node gPattern = ( s != Node.ANY && p != Node.ANY && o != Node.ANY ) ? g : Node.ANY;
+        return table.findAsNodeIds(gPattern, s, p, o);
+    }
 
     @Override
     public void add(Node s, Node p, Node o) {
@@ -72,6 +194,8 @@ public class StorageTDB implements StorageRDF {
         ensureWriteTxn();
         notifyAdd(null, s, p, o);
         getTripleTable().add(s, p, o);
+        if ( closureIndex != null )
+            closureIndex.add(s, p, o);
     }
 
     @Override
@@ -88,6 +212,8 @@ public class StorageTDB implements StorageRDF {
         ensureWriteTxn();
         notifyDelete(null, s, p, o);
         getTripleTable().delete(s, p, o);
+        if ( closureIndex != null )
+            closureIndex.delete(s, p, o);
     }
 
     @Override
@@ -102,16 +228,34 @@ public class StorageTDB implements StorageRDF {
     public void removeAll(Node s, Node p, Node o) {
         checkActive();
         ensureWriteTxn();
-        removeWorker(() -> tripleTable.getNodeTupleTable().findAsNodeIds(s,p,o),
-                     x  -> tripleTable.getNodeTupleTable().getTupleTable().delete(x) );
+        NodeTupleTable table = tripleTable.getNodeTupleTable();
+        removeWorker(() -> table.findAsNodeIds(s,p,o),
+                     x  -> { notifyDelete(table.getNodeTable(), x);
+                             table.getTupleTable().delete(x);
+                             if ( closureIndex != null )
+                                 closureIndex.delete(x); } );
     }
 
     @Override
     public void removeAll(Node g, Node s, Node p, Node o) {
         checkActive();
         ensureWriteTxn();
-        removeWorker(() -> quadTable.getNodeTupleTable().findAsNodeIds(g,s,p,o),
-                     x  -> quadTable.getNodeTupleTable().getTupleTable().delete(x) );
+        NodeTupleTable table = quadTable.getNodeTupleTable();
+        removeWorker(() -> table.findAsNodeIds(g,s,p,o),
+                     x  -> { notifyDelete(table.getNodeTable(), x); table.getTupleTable().delete(x); } );
+    }
+
+    private void notifyDelete(NodeTable nodeTable, Tuple<NodeId> tuple) {
+        if ( transStats == null && ( changeCapture == null || !changeCapture.isActive() ) )
+            return;
+        if ( tuple.len() == 3 )
+            notifyDelete(null, node(nodeTable, tuple, 0), node(nodeTable, tuple, 1), node(nodeTable, tuple, 2));
+        else
+            notifyDelete(node(nodeTable, tuple, 0), node(nodeTable, tuple, 1), node(nodeTable, tuple, 2), node(nodeTable, tuple, 3));
+    }
+
+    private static Node node(NodeTable nodeTable, Tuple<NodeId> tuple, int i) {
+        return nodeTable.getNodeForNodeId(tuple.get(i));
     }
 
     private static final int DeleteBufferSize = 1000;
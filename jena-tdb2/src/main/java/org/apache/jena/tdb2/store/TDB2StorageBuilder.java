@@ -35,10 +35,12 @@ import org.apache.jena.dboe.sys.Names;
 import org.apache.jena.dboe.trans.bplustree.BPlusTree;
 import org.apache.jena.dboe.trans.bplustree.BPlusTreeFactory;
 import org.apache.jena.dboe.trans.data.TransBinaryDataFile;
+import org.apache.jena.dboe.trans.data.TransBlob;
 import org.apache.jena.dboe.transaction.txn.*;
 import org.apache.jena.dboe.transaction.txn.journal.Journal;
 import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.system.Txn;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.solver.OpExecutorTDB2;
@@ -50,6 +52,7 @@ import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
 import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTableConcrete;
 import org.apache.jena.tdb2.store.tupletable.TupleIndex;
 import org.apache.jena.tdb2.store.tupletable.TupleIndexRecord;
+import org.apache.jena.tdb2.store.tupletable.TupleTable;
 import org.apache.jena.tdb2.sys.ComponentIdMgr;
 import org.apache.jena.tdb2.sys.DatabaseConnection;
 import org.apache.jena.tdb2.sys.DatabaseOps;
@@ -85,9 +88,6 @@ public class TDB2StorageBuilder {
                 params = StoreParams.getDftStoreParams();
         }
 
-        if ( reorderTransform == null )
-            reorderTransform = SystemTDB.getDefaultReorderTransform();
-
         // Builder pattern for adding components.
         TransactionCoordinator txnCoord = buildTransactionCoordinator(location);
         TransactionalSystem txnSystem = new TransactionalBase(txnCoord);
@@ -101,14 +101,41 @@ public class TDB2StorageBuilder {
         builder.listeners.forEach(txnCoord::addListener);
         // Freezes the TransactionCoordinator components
         txnCoord.start();
+
+        TransStats transStats = storage.getTransStats();
+        if ( reorderTransform == null )
+            reorderTransform = ( transStats != null ) ? new ReorderStatsTDB(transStats) : SystemTDB.getDefaultReorderTransform();
         DatasetGraphTDB dsg = new DatasetGraphTDB(location, params, reorderTransform,
                                                   storage, prefixes, txnSystem);
 
+        // Statistics enabled for an existing database.
+        if ( transStats != null && !transStats.isInitialized() )
+            initStats(dsg);
+
+        // Closure index for a change of the configured predicates, including
+        // none, when an index from an earlier attach is cleared.
+        ClosureIndexTDB closureIndex = builder.closureIndex;
+        if ( closureIndex != null && !closureIndex.isCurrent() )
+            initClosureIndex(dsg, closureIndex);
+
         // Enable query processing.
         QC.setFactory(dsg.getContext(), OpExecutorTDB2.OpExecFactoryTDB);
         return dsg;
     }
 
+    private static void initStats(DatasetGraphTDB dsg) {
+        boolean isEmpty = Txn.calculateRead(dsg, ()->dsg.getTripleTable().isEmpty() && dsg.getQuadTable().isEmpty());
+        if ( isEmpty )
+            return;
+        log.info("Calculating statistics: "+dsg.getLocation());
+        Txn.executeWrite(dsg, ()->dsg.rebuildStats());
+    }
+
+    private static void initClosureIndex(DatasetGraphTDB dsg, ClosureIndexTDB closureIndex) {
+        log.info("Updating closure index: "+dsg.getLocation());
+        Txn.executeWrite(dsg, ()->closureIndex.update());
+    }
+
     private static TransactionCoordinator buildTransactionCoordinator(Location location) {
         Journal journal = Journal.create(location);
         TransactionCoordinator txnCoord = new TransactionCoordinator(journal);
@@ -161,6 +188,11 @@ public class TDB2StorageBuilder {
         throw new TDBException(msg);
     }
 
+    private static final String statsName = "stats";
+    private static final String statsExt = "dat";
+    private static final String closureName = "closure";
+    private static final String closureExt = "dat";
+
     // ---- Object starts
     private final Location location;
     private final StoreParams params;
@@ -169,6 +201,8 @@ public class TDB2StorageBuilder {
     // Accumulate TransactionalComponents as they are used to build the database.
     private final Collection<TransactionalComponent> components = new ArrayList<>();
     private final Collection<TransactionListener> listeners = new ArrayList<>();
+    // The closure index, if configured or left by an earlier attach.
+    private ClosureIndexTDB closureIndex = null;
 
     private TDB2StorageBuilder(TransactionalSystem txnSystem,
                                Location location, StoreParams params,
@@ -188,10 +222,44 @@ public class TDB2StorageBuilder {
         NodeTable nodeTable = buildNodeTable(params.getNodeTableBaseName(), true);
         TripleTable tripleTable = buildTripleTable(nodeTable);
         QuadTable quadTable = buildQuadTable(nodeTable);
-        StorageTDB dsg = new StorageTDB(txnSystem, tripleTable, quadTable);
+        TransStats transStats = params.isPersistentStats() ? buildStats() : null;
+        ChangeCaptureTDB changeCapture = new ChangeCaptureTDB();
+        listeners.add(changeCapture);
+        // An existing index is opened even when no predicates are configured so that
+        // it is cleared, not left to go stale while the data changes.
+        boolean hasClosurePredicates = params.getClosurePredicates().length > 0;
+        if ( hasClosurePredicates || ( !location.isMem() && location.exists(closureName, closureExt) ) )
+            closureIndex = buildClosureIndex(tripleTable);
+        StorageTDB dsg = new StorageTDB(txnSystem, tripleTable, quadTable, transStats, changeCapture,
+                                        hasClosurePredicates ? closureIndex : null);
         return dsg;
     }
 
+    private ClosureIndexTDB buildClosureIndex(TripleTable tripleTable) {
+        // Tuples (start, predicate, reachable), by predicate then either end.
+        String primary = "SPO";
+        TupleIndex[] indexes = {
+            makeTupleIndex(primary, "PSO", closureName+"PSO"),
+            makeTupleIndex(primary, "POS", closureName+"POS")
+        };
+        TupleTable closure = new TupleTable(primary.length(), indexes);
+        ComponentId cid = componentIdMgr.getComponentId(closureName);
+        FileSet fs = new FileSet(location, closureName);
+        BufferChannel file = FileFactory.createBufferChannel(fs, closureExt);
+        TransBlob state = new TransBlob(cid, file);
+        components.add(state);
+        return new ClosureIndexTDB(params.getClosurePredicates(), closure, state, tripleTable.getNodeTupleTable());
+    }
+
+    private TransStats buildStats() {
+        ComponentId cid = componentIdMgr.getComponentId(statsName);
+        FileSet fs = new FileSet(location, statsName);
+        BufferChannel file = FileFactory.createBufferChannel(fs, statsExt);
+        TransStats transStats = new TransStats(cid, file);
+        components.add(transStats);
+        return transStats;
+    }
+
     private StoragePrefixesTDB buildPrefixes() {
         NodeTable nodeTablePrefixes = buildNodeTable(params.getPrefixTableBaseName(), false);
         StoragePrefixesTDB prefixes = buildPrefixTable(nodeTablePrefixes);
@@ -267,7 +335,7 @@ public class TDB2StorageBuilder {
     private TupleIndex makeTupleIndex(String primary, String index, String name) {
         TupleMap cmap = TupleMap.create(primary, index);
         RecordFactory rf = new RecordFactory(SystemTDB.SizeOfNodeId * cmap.length(), 0);
-        RangeIndex rIdx = makeRangeIndex(rf, index);
+        RangeIndex rIdx = makeRangeIndex(rf, name);
         TupleIndex tIdx = new TupleIndexRecord(primary.length(), cmap, index, rf, rIdx);
         return tIdx;
     }
@@ -276,12 +344,16 @@ public class TDB2StorageBuilder {
         ComponentId cid = componentIdMgr.getComponentId(name);
         FileSet fs = new FileSet(location, name);
         BPlusTree bpt = BPlusTreeFactory.createBPTree(cid, fs, recordFactory);
+        bpt.setReuseBlocks(params.isReuseBlocks());
         components.add(bpt);
         return bpt;
     }
 
     private NodeTable buildNodeTable(String name, boolean isData) {
-        NodeTable nodeTable = buildBaseNodeTable(name);
+        NodeTable nodeTable = buildBaseNodeTable(name, isData && params.isCompressNodes());
+
+        if ( nodeTable instanceof NodeTableTRDF nodeTableTRDF && nodeTableTRDF.isCompressed() )
+            listeners.add(nodeTableTRDF);
 
         nodeTable = addNodeTableCache(nodeTable, params, isData);
 
@@ -297,19 +369,20 @@ public class TDB2StorageBuilder {
         int idToNodeCacheSize   = isData ? params.getNodeId2NodeCacheSize() : params.getPrefixNodeId2NodeCacheSize();
         int missCacheSize       = isData ? params.getNodeMissCacheSize()    : params.getPrefixNodeMissCacheSize();
         double nodeCacheInitialCapacityFactor = params.getNodeCacheInitialCapacityFactor();
+        long idToNodeOffHeapSize = isData ? params.getNodeId2NodeOffHeapCacheSize() : 0L;
         nodeTable = NodeTableCache.create(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, missCacheSize,
-                nodeCacheInitialCapacityFactor);
+                nodeCacheInitialCapacityFactor, idToNodeOffHeapSize);
         return nodeTable;
     }
 
-    private NodeTable buildBaseNodeTable(String name) {
+    private NodeTable buildBaseNodeTable(String name, boolean compressed) {
         RecordFactory recordFactory = new RecordFactory(SystemTDB.LenNodeHash, SystemTDB.SizeOfNodeId);
         Index index = makeRangeIndex(recordFactory, name);
 
         String dataname = name+"-data";
         TransBinaryDataFile transBinFile = makeBinaryDataFile(dataname);
         components.add(transBinFile);
-        return new NodeTableTRDF(index, transBinFile);
+        return new NodeTableTRDF(index, transBinFile, compressed);
     }
 
     private TransBinaryDataFile makeBinaryDataFile(String name) {
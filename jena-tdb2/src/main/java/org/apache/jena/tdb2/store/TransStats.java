@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.dboe.base.file.BufferChannel;
+import org.apache.jena.dboe.transaction.txn.ComponentId;
+import org.apache.jena.dboe.transaction.txn.TransactionalComponentLifecycle;
+import org.apache.jena.dboe.transaction.txn.TxnId;
+import org.apache.jena.query.ReadWrite;
+
+/**
+ * Transactional management of the {@link StatsTDB statistics} of a database.
+ * <p>
+ * Readers see the statistics of the last commit when their transaction started.
+ * A write transaction changes a private copy, which is written to the journal
+ * during prepare and replaces the committed statistics on commit.
+ * The statistics are kept in one file, rewritten on each commit that changes them.
+ */
+public class TransStats extends TransactionalComponentLifecycle<TransStats.StatsState> {
+
+    // The last committed state. Not changed after it is set.
+    private final AtomicReference<StatsTDB> statsRef = new AtomicReference<>();
+    private final BufferChannel file;
+    // Whether there were statistics on disk when this component was created.
+    private final boolean initialized;
+
+    static class StatsState {
+        private final StatsTDB base;
+        // Copy on first change.
+        private StatsTDB $txnStats = null;
+        // Set during prepare.
+        private byte[] encoded = null;
+
+        StatsState(StatsTDB base) {
+            this.base = base;
+        }
+
+        StatsTDB get()              { return $txnStats != null ? $txnStats : base; }
+
+        StatsTDB getForUpdate() {
+            if ( $txnStats == null )
+                $txnStats = new StatsTDB(base);
+            return $txnStats;
+        }
+
+        void set(StatsTDB stats)    { $txnStats = stats; }
+
+        boolean hasChanged()        { return $txnStats != null; }
+    }
+
+    public TransStats(ComponentId cid, BufferChannel file) {
+        super(cid);
+        this.file = file;
+        this.initialized = file.size() > 0;
+        statsRef.set(StatsTDB.decode(read()));
+    }
+
+    private byte[] read() {
+        long x = file.size();
+        if ( x == 0 )
+            return new byte[0];
+        ByteBuffer bb = ByteBuffer.allocate((int)x);
+        int len = file.read(bb, 0);
+        if ( len != x )
+            throw new RuntimeIOException("Short read: "+len+" of "+x);
+        return bb.array();
+    }
+
+    private void write(byte[] bytes) {
+        file.truncate(0);
+        int len = file.write(ByteBuffer.wrap(bytes), 0);
+        if ( len != bytes.length )
+            throw new RuntimeIOException("Short write: "+len+" of "+bytes.length);
+        file.sync();
+    }
+
+    /** Whether statistics were found when the database was opened. */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /** The statistics as seen by the current transaction, or the last committed statistics. */
+    public StatsTDB getStats() {
+        if ( isActiveTxn() )
+            return getDataState().get();
+        return statsRef.get();
+    }
+
+    /** Whether the current transaction has changed the statistics. */
+    public boolean hasChanged() {
+        return isActiveTxn() && getDataState().hasChanged();
+    }
+
+    /** The statistics of the current write transaction, to be updated. */
+    /*package*/ StatsTDB getStatsForUpdate() {
+        requireWriteTxn();
+        return getDataState().getForUpdate();
+    }
+
+    /** Replace the statistics in the current write transaction. */
+    /*package*/ void setStats(StatsTDB stats) {
+        requireWriteTxn();
+        getDataState().set(stats);
+    }
+
+    private boolean recoveryChange = false;
+    @Override
+    public void startRecovery() {
+        recoveryChange = false;
+    }
+
+    @Override
+    public void recover(ByteBuffer ref) {
+        byte[] bytes = new byte[ref.remaining()];
+        ref.get(bytes);
+        statsRef.set(StatsTDB.decode(bytes));
+        recoveryChange = true;
+    }
+
+    @Override
+    public void finishRecovery() {
+        if ( recoveryChange )
+            write(statsRef.get().encode());
+    }
+
+    @Override
+    public void cleanStart() { }
+
+    @Override
+    protected StatsState _begin(ReadWrite readWrite, TxnId txnId) {
+        return new StatsState(statsRef.get());
+    }
+
+    @Override
+    protected StatsState _promote(TxnId txnId, StatsState state) {
+        return new StatsState(statsRef.get());
+    }
+
+    @Override
+    protected ByteBuffer _commitPrepare(TxnId txnId, StatsState state) {
+        if ( ! state.hasChanged() )
+            return null;
+        state.encoded = state.get().encode();
+        return ByteBuffer.wrap(state.encoded);
+    }
+
+    @Override
+    protected void _commit(TxnId txnId, StatsState state) {
+        if ( ! state.hasChanged() )
+            return;
+        statsRef.set(state.get());
+        // It's in the journal already, and is rewritten from the journal
+        // if there is a crash at this point.
+        write(state.encoded);
+    }
+
+    @Override
+    protected void _commitEnd(TxnId txnId, StatsState state) {}
+
+    @Override
+    protected void _abort(TxnId txnId, StatsState state) {}
+
+    @Override
+    protected void _complete(TxnId txnId, StatsState state) {}
+
+    @Override
+    protected void _shutdown() {}
+
+    @Override
+    public String toString()    { return getComponentId().label(); }
+}
@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store.nodetable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.lib.cache.CacheInfo;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.jena.riot.thrift.ThriftConvert;
+import org.apache.jena.riot.thrift.wire.RDF_Term;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+
+/**
+ * A NodeId{@literal ->}Node cache that keeps the nodes outside the Java heap.
+ * <p>
+ * Nodes are serialized with the same Thrift encoding as {@link NodeTableTRDF} and
+ * stored in direct {@link ByteBuffer ByteBuffers}. The cache is sized in bytes, not
+ * in entries, so a large cache does not add to the work of the garbage collector.
+ * <p>
+ * The cache is split into lock-striped shards, chosen by the NodeId, so concurrent
+ * readers do not contend. Each shard has an arena of fixed size segments, allocated
+ * on first use. Entries are appended to the current segment; when the shard is full,
+ * the oldest segment is emptied and reused (FIFO eviction at segment granularity).
+ * The only heap space used per entry is a slot in a primitive hash index.
+ * <p>
+ * Only NodeIds for nodes stored in the node table ({@link NodeId#isPtr()}) are
+ * cached; inline NodeIds never reach this cache. Direct memory is limited by the
+ * JVM setting {@code -XX:MaxDirectMemorySize}.
+ */
+public class CacheOffHeapNodes implements Cache<NodeId, Node> {
+    // Entry layout: [key:8][length:4][bytes]
+    private static final int HEADER            = Long.BYTES + Integer.BYTES;
+    private static final int DftShards         = 16;
+    private static final int SegmentsPerShard  = 8;
+    private static final int MinSegmentSize    = 64 * 1024;
+    private static final int MaxSegmentSize    = 1 << 30;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long capacity;
+
+    private final LongAdder hits   = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Create an off-heap cache of (approximately) {@code sizeBytes} bytes. */
+    public static CacheOffHeapNodes create(long sizeBytes) {
+        return new CacheOffHeapNodes(sizeBytes, DftShards);
+    }
+
+    /**
+     * Create an off-heap cache of (approximately) {@code sizeBytes} bytes, split into
+     * at most {@code numShards} shards. The number of shards is rounded down to a
+     * power of two and reduced if the segments would become very small.
+     */
+    public CacheOffHeapNodes(long sizeBytes, int numShards) {
+        if ( sizeBytes <= 0 )
+            throw new IllegalArgumentException("Cache size must be positive: "+sizeBytes);
+        if ( numShards <= 0 )
+            throw new IllegalArgumentException("Number of shards must be positive: "+numShards);
+        int n = Integer.highestOneBit(numShards);
+        while ( n > 1 && sizeBytes / ((long)n * SegmentsPerShard) < MinSegmentSize )
+            n = n / 2;
+        long shardSize = sizeBytes / n;
+        int segments = SegmentsPerShard;
+        while ( shardSize / segments > MaxSegmentSize )
+            segments = segments * 2;
+        int segmentSize = (int)Math.max(shardSize / segments, HEADER + 1);
+        this.shards = new Shard[n];
+        for ( int i = 0 ; i < n ; i++ )
+            shards[i] = new Shard(segments, segmentSize);
+        this.shardMask = n - 1;
+        this.capacity = (long)n * segments * segmentSize;
+    }
+
+    /** Maximum number of bytes that can be used by this cache. */
+    public long capacity() {
+        return capacity;
+    }
+
+    /** Number of bytes currently allocated off-heap. */
+    public long allocatedBytes() {
+        long x = 0;
+        for ( Shard shard : shards )
+            x += shard.allocatedBytes();
+        return x;
+    }
+
+    private Shard shard(long key) {
+        // Spread the bits - pointers are file offsets.
+        long h = key * 0x9E3779B97F4A7C15L;
+        return shards[(int)(h >>> 40) & shardMask];
+    }
+
+    private static boolean cacheable(NodeId id) {
+        return id != null && id.isPtr();
+    }
+
+    @Override
+    public boolean containsKey(NodeId key) {
+        if ( !cacheable(key) )
+            return false;
+        long k = key.getPtrLocation();
+        return shard(k).contains(k);
+    }
+
+    @Override
+    public Node getIfPresent(NodeId key) {
+        if ( !cacheable(key) )
+            return null;
+        long k = key.getPtrLocation();
+        byte[] bytes = shard(k).get(k);
+        if ( bytes == null ) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return decode(bytes);
+    }
+
+    @Override
+    public Node get(NodeId key, Function<NodeId, Node> callable) {
+        Node node = getIfPresent(key);
+        if ( node != null )
+            return node;
+        node = callable.apply(key);
+        if ( node != null )
+            put(key, node);
+        return node;
+    }
+
+    @Override
+    public void put(NodeId key, Node thing) {
+        if ( !cacheable(key) )
+            return;
+        long k = key.getPtrLocation();
+        if ( thing == null ) {
+            shard(k).remove(k);
+            return;
+        }
+        byte[] bytes = encode(thing);
+        shard(k).put(k, bytes);
+    }
+
+    @Override
+    public void remove(NodeId key) {
+        if ( !cacheable(key) )
+            return;
+        long k = key.getPtrLocation();
+        shard(k).remove(k);
+    }
+
+    @Override
+    public Iterator<NodeId> keys() {
+        List<NodeId> x = new ArrayList<>();
+        for ( Shard shard : shards )
+            shard.keys(k -> x.add(NodeIdFactory.createPtr(k)));
+        return x.iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        for ( Shard shard : shards )
+            shard.clear();
+    }
+
+    @Override
+    public long size() {
+        long x = 0;
+        for ( Shard shard : shards )
+            x += shard.size();
+        return x;
+    }
+
+    @Override
+    public CacheInfo stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        long requests = h + m;
+        double hitRate = (requests == 0) ? 1.0 : (double)h / requests;
+        return new CacheInfo(requests, h, m, hitRate);
+    }
+
+    // ---- Encoding, as NodeTableTRDF.
+
+    private static byte[] encode(Node node) {
+        RDF_Term term = ThriftConvert.convert(node, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        TProtocol protocol = TRDF.protocol(out);
+        try {
+            term.write(protocol);
+        } catch (TException ex) {
+            throw new TDBException("CacheOffHeapNodes/encode", ex);
+        }
+        TRDF.flush(protocol);
+        return out.toByteArray();
+    }
+
+    private static Node decode(byte[] bytes) {
+        TProtocol protocol = TRDF.protocol(new ByteArrayInputStream(bytes));
+        RDF_Term term = new RDF_Term();
+        try {
+            term.read(protocol);
+        } catch (TException ex) {
+            throw new TDBException("CacheOffHeapNodes/decode", ex);
+        }
+        return ThriftConvert.convert(term);
+    }
+
+    // ---- Shard
+
+    /**
+     * One lock stripe: an arena of segments and an open-addressing index from key
+     * (pointer location) to location in the arena. Location is (segment, offset)
+     * packed into a long.
+     */
+    private static class Shard {
+        private static final long EMPTY = -1L;
+
+        private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+        private final Lock readLock        = rwLock.readLock();
+        private final Lock writeLock       = rwLock.writeLock();
+
+        private final ByteBuffer[] segments;
+        private final int[] segmentFill;
+        private final int segmentSize;
+        private int current = 0;
+
+        // Index. keys[i] == EMPTY means unused slot. Pointer locations are not negative.
+        private long[] keys;
+        private long[] locs;
+        private int count = 0;
+
+        Shard(int numSegments, int segmentSize) {
+            this.segments = new ByteBuffer[numSegments];
+            this.segmentFill = new int[numSegments];
+            this.segmentSize = segmentSize;
+            initIndex(1024);
+        }
+
+        private void initIndex(int slots) {
+            keys = new long[slots];
+            locs = new long[slots];
+            Arrays.fill(keys, EMPTY);
+            count = 0;
+        }
+
+        long allocatedBytes() {
+            readLock.lock();
+            try {
+                long x = 0;
+                for ( ByteBuffer bb : segments ) {
+                    if ( bb != null )
+                        x += bb.capacity();
+                }
+                return x;
+            } finally { readLock.unlock(); }
+        }
+
+        long size() {
+            readLock.lock();
+            try {
+                return count;
+            } finally { readLock.unlock(); }
+        }
+
+        boolean contains(long key) {
+            readLock.lock();
+            try {
+                return find(key) >= 0;
+            } finally { readLock.unlock(); }
+        }
+
+        byte[] get(long key) {
+            readLock.lock();
+            try {
+                int slot = find(key);
+                if ( slot < 0 )
+                    return null;
+                long loc = locs[slot];
+                ByteBuffer bb = segments[(int)(loc >>> 32)];
+                int offset = (int)loc;
+                int len = bb.getInt(offset + Long.BYTES);
+                byte[] bytes = new byte[len];
+                // Absolute get - does not change the buffer position.
+                bb.get(offset + HEADER, bytes);
+                return bytes;
+            } finally { readLock.unlock(); }
+        }
+
+        void put(long key, byte[] bytes) {
+            int entryLen = HEADER + bytes.length;
+            if ( entryLen > segmentSize )
+                // Too large to cache.
+                return;
+            writeLock.lock();
+            try {
+                // NodeId to Node is fixed so if it is present, the value is the same.
+                if ( find(key) >= 0 )
+                    return;
+                if ( segments[current] == null )
+                    segments[current] = ByteBuffer.allocateDirect(segmentSize);
+                if ( segmentFill[current] + entryLen > segmentSize )
+                    nextSegment();
+                ByteBuffer bb = segments[current];
+                int offset = segmentFill[current];
+                bb.putLong(offset, key);
+                bb.putInt(offset + Long.BYTES, bytes.length);
+                bb.put(offset + HEADER, bytes);
+                segmentFill[current] = offset + entryLen;
+                insert(key, ((long)current << 32) | offset);
+            } finally { writeLock.unlock(); }
+        }
+
+        void remove(long key) {
+            writeLock.lock();
+            try {
+                int slot = find(key);
+                if ( slot >= 0 )
+                    delete(slot);
+            } finally { writeLock.unlock(); }
+        }
+
+        void keys(LongConsumer action) {
+            readLock.lock();
+            try {
+                for ( long k : keys ) {
+                    if ( k != EMPTY )
+                        action.accept(k);
+                }
+            } finally { readLock.unlock(); }
+        }
+
+        void clear() {
+            writeLock.lock();
+            try {
+                Arrays.fill(segments, null);
+                Arrays.fill(segmentFill, 0);
+                current = 0;
+                initIndex(1024);
+            } finally { writeLock.unlock(); }
+        }
+
+        /** Move to the next segment, evicting its entries if it is in use. Write lock held. */
+        private void nextSegment() {
+            current = (current + 1) % segments.length;
+            ByteBuffer bb = segments[current];
+            if ( bb == null ) {
+                segments[current] = ByteBuffer.allocateDirect(segmentSize);
+                segmentFill[current] = 0;
+                return;
+            }
+            // Evict everything still indexed in this segment.
+            int fill = segmentFill[current];
+            int offset = 0;
+            while ( offset < fill ) {
+                long k = bb.getLong(offset);
+                int len = bb.getInt(offset + Long.BYTES);
+                int slot = find(k);
+                // Check the index entry refers to this copy (it may have been removed).
+                if ( slot >= 0 && locs[slot] == (((long)current << 32) | offset) )
+                    delete(slot);
+                offset += HEADER + len;
+            }
+            segmentFill[current] = 0;
+        }
+
+        // -- Index : linear probing.
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for ( ;; ) {
+                long k = keys[i];
+                if ( k == EMPTY )
+                    return -1;
+                if ( k == key )
+                    return i;
+                i = (i + 1) & mask;
+            }
+        }
+
+        private void insert(long key, long loc) {
+            if ( 2 * (count + 1) > keys.length )
+                resize(2 * keys.length);
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while ( keys[i] != EMPTY )
+                i = (i + 1) & mask;
+            keys[i] = key;
+            locs[i] = loc;
+            count++;
+        }
+
+        // Backward shift deletion - no tombstones.
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            int i = slot;
+            for ( ;; ) {
+                i = (i + 1) & mask;
+                long k = keys[i];
+                if ( k == EMPTY )
+                    break;
+                int home = hash(k) & mask;
+                // Move the entry if its home slot is not cyclically in (hole, i].
+                boolean move = ( hole <= i ) ? ( home <= hole || home > i ) : ( home <= hole && home > i );
+                if ( move ) {
+                    keys[hole] = k;
+                    locs[hole] = locs[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = EMPTY;
+            count--;
+        }
+
+        private void resize(int newSize) {
+            long[] oldKeys = keys;
+            long[] oldLocs = locs;
+            keys = new long[newSize];
+            locs = new long[newSize];
+            Arrays.fill(keys, EMPTY);
+            int mask = newSize - 1;
+            for ( int j = 0 ; j < oldKeys.length ; j++ ) {
+                long k = oldKeys[j];
+                if ( k == EMPTY )
+                    continue;
+                int i = hash(k) & mask;
+                while ( keys[i] != EMPTY )
+                    i = (i + 1) & mask;
+                keys[i] = k;
+                locs[i] = oldLocs[j];
+            }
+        }
+    }
+}
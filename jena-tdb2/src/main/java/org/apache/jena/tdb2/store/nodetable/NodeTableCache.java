@@ -77,24 +77,38 @@ public class NodeTableCache implements NodeTable, TransactionListener {
         int nodeToIdCacheSize   = isData ? params.getNode2NodeIdCacheSize() : params.getPrefixNode2NodeIdCacheSize();
         int idToNodeCacheSize   = isData ? params.getNodeId2NodeCacheSize() : params.getPrefixNodeId2NodeCacheSize();
         int missCacheSize       = isData ? params.getNodeMissCacheSize()    : params.getPrefixNodeMissCacheSize();
+        long idToNodeOffHeapSize = isData ? params.getNodeId2NodeOffHeapCacheSize() : 0L;
         return create(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, missCacheSize,
-                params.getNodeCacheInitialCapacityFactor());
+                params.getNodeCacheInitialCapacityFactor(), idToNodeOffHeapSize);
     }
 
     /** Build a node table cache. */
     public static NodeTable create(NodeTable nodeTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize,
                                    double nodeCacheInitialCapacityFactor) {
-        if ( nodeToIdCacheSize <= 0 && idToNodeCacheSize <= 0 )
+        return create(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, nodeMissesCacheSize, nodeCacheInitialCapacityFactor, 0L);
+    }
+
+    /**
+     * Build a node table cache.
+     * If {@code idToNodeOffHeapSize} is greater than zero, the NodeId{@literal ->}Node cache
+     * is held off-heap ({@link CacheOffHeapNodes}), sized in bytes, and {@code idToNodeCacheSize} is ignored.
+     */
+    public static NodeTable create(NodeTable nodeTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize,
+                                   double nodeCacheInitialCapacityFactor, long idToNodeOffHeapSize) {
+        if ( nodeToIdCacheSize <= 0 && idToNodeCacheSize <= 0 && idToNodeOffHeapSize <= 0 )
             return nodeTable;
-        return new NodeTableCache(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, nodeMissesCacheSize, nodeCacheInitialCapacityFactor);
+        return new NodeTableCache(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, nodeMissesCacheSize, nodeCacheInitialCapacityFactor,
+                                  idToNodeOffHeapSize);
     }
 
     private NodeTableCache(NodeTable baseTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize,
-                           double nodeCacheInitialCapacityFactor) {
+                           double nodeCacheInitialCapacityFactor, long idToNodeOffHeapSize) {
         this.baseTable = baseTable;
         if ( nodeToIdCacheSize > 0 )
             node2id_Cache = createCache("nodeToId", nodeToIdCacheSize, nodeCacheInitialCapacityFactor, 1000);
-        if ( idToNodeCacheSize > 0 )
+        if ( idToNodeOffHeapSize > 0 )
+            id2node_Cache = new ThreadBufferingCache<>("idToNode", CacheOffHeapNodes.create(idToNodeOffHeapSize), 1000);
+        else if ( idToNodeCacheSize > 0 )
             id2node_Cache = createCache("idToNode", idToNodeCacheSize, nodeCacheInitialCapacityFactor, 1000);
         if ( nodeMissesCacheSize > 0 )
             notPresent = CacheFactory.createCache(nodeMissesCacheSize, nodeCacheInitialCapacityFactor);
@@ -109,10 +123,14 @@ public class NodeTableCache implements NodeTable, TransactionListener {
     // ---- Cache access, no going to underlying table.
 
     public Node getNodeForNodeIdCache(NodeId id) {
+        if ( id2node_Cache == null )
+            return null;
         return id2node_Cache.getIfPresent(id);
     }
 
     public NodeId getNodeIdForNodeCache(Node node) {
+        if ( node2id_Cache == null )
+            return null;
         return node2id_Cache.getIfPresent(node);
     }
 
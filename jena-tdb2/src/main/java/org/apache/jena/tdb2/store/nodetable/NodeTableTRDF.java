@@ -18,14 +18,26 @@
 
 package org.apache.jena.tdb2.store.nodetable;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.lib.CacheFactory;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.dboe.base.file.BinaryDataFile;
 import org.apache.jena.dboe.index.Index;
+import org.apache.jena.dboe.transaction.txn.Transaction;
 import org.apache.jena.dboe.transaction.txn.TransactionException;
+import org.apache.jena.dboe.transaction.txn.TransactionListener;
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.riot.thrift.RiotThriftException;
 import org.apache.jena.riot.thrift.TRDF;
 import org.apache.jena.riot.thrift.ThriftConvert;
+import org.apache.jena.riot.thrift.wire.RDF_PrefixName;
 import org.apache.jena.riot.thrift.wire.RDF_Term;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.store.NodeId;
@@ -33,18 +45,47 @@ import org.apache.jena.tdb2.store.NodeIdFactory;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TProtocol;
 
-/** NodeTable using Thrift for the I/O and storage. */
+/**
+ * NodeTable using Thrift for the I/O and storage.
+ * <p>
+ * In a compressed node table, each entry starts with a byte for the kind of
+ * entry: {@link #EntryTerm} is followed by the Thrift encoded term,
+ * {@link #EntryDeflate} by the Thrift encoded term, compressed, as a Thrift binary.
+ * An IRI is stored as a prefix name where the prefix is the {@link NodeId}
+ * (written in base 36) of the node for its namespace, which is stored in the node table as
+ * an ordinary IRI. Namespaces are cached by {@link NodeId}.
+ */
+
+public class NodeTableTRDF extends NodeTableNative implements TransactionListener {
+    /** Compressed node table: an entry of a Thrift encoded term. */
+    public static final byte EntryTerm          = 0;
+    /** Compressed node table: an entry of a compressed Thrift encoded term. */
+    public static final byte EntryDeflate       = 1;
+    /** Compressed node table: Thrift encoded terms of this size or more are compressed. */
+    public static final int  DeflateThreshold   = 200;
+    /** Compressed node table: the shortest namespace for which an IRI is stored as a prefix name. */
+    public static final int  MinNamespaceLength = 12;
+    /** Compressed node table: the number of namespaces cached. */
+    public static final int  NamespaceCacheSize = 1000;
 
-public class NodeTableTRDF extends NodeTableNative {
     // Write buffering is done in the underlying BinaryDataFile
     private final BinaryDataFile diskFile;
     private final TReadAppendFileTransport transport;
     private final TProtocol protocol;
+    private final boolean compressed;
+    // NodeId of a namespace to the namespace.
+    private final Cache<NodeId, String> namespaces;
 
     public NodeTableTRDF(Index nodeToId, BinaryDataFile objectFile) {
+        this(nodeToId, objectFile, false);
+    }
+
+    public NodeTableTRDF(Index nodeToId, BinaryDataFile objectFile, boolean compressed) {
         super(nodeToId);
         try {
             this.diskFile = objectFile;
+            this.compressed = compressed;
+            this.namespaces = compressed ? CacheFactory.createCache(NamespaceCacheSize) : null;
             transport = new TReadAppendFileTransport(diskFile);
             if ( ! transport.isOpen() )
                 transport.open();
@@ -57,6 +98,8 @@ public class NodeTableTRDF extends NodeTableNative {
 
     @Override
     protected NodeId writeNodeToTable(Node node) {
+        if ( compressed )
+            return writeCompressed(node);
         RDF_Term term = ThriftConvert.convert(node, true);
         try {
             long x = diskFile.length();
@@ -79,6 +122,8 @@ public class NodeTableTRDF extends NodeTableNative {
             long x = id.getPtrLocation();
             transport.readPosition(x);
             RDF_Term term = new RDF_Term();
+            if ( compressed )
+                return readCompressed(term);
             term.read(protocol);
             Node n = ThriftConvert.convert(term);
             return n;
@@ -92,6 +137,141 @@ public class NodeTableTRDF extends NodeTableNative {
         }
     }
 
+    private NodeId writeCompressed(Node node) {
+        RDF_Term term = null;
+        if ( node.isURI() ) {
+            String uri = node.getURI();
+            int idx = splitPoint(uri);
+            if ( idx >= MinNamespaceLength ) {
+                // Find or write the namespace first.
+                String ns = uri.substring(0, idx);
+                NodeId nsId = accessIndex(NodeFactory.createURI(ns), true);
+                namespaces.put(nsId, ns);
+                term = new RDF_Term();
+                term.setPrefixName(new RDF_PrefixName(Long.toString(nsId.getPtrLocation(), 36), uri.substring(idx)));
+            }
+        }
+        if ( term == null )
+            term = ThriftConvert.convert(node, true);
+        try {
+            long x = diskFile.length();
+            // Paired : [*]
+            NodeId nid = NodeIdFactory.createPtr(x);
+            writeEntry(diskFile, ThriftConvert.termToBytes(term), true);
+            return nid;
+        }
+        catch(TransactionException ex) { throw ex; }
+        catch (Exception ex) {
+            throw new TDBException("NodeTableThrift/Write", ex);
+        }
+    }
+
+    private Node readCompressed(RDF_Term term) throws TException {
+        byte kind = protocol.readByte();
+        switch (kind) {
+            case EntryTerm:
+                term.read(protocol);
+                break;
+            case EntryDeflate: {
+                ByteBuffer bb = protocol.readBinary();
+                byte[] bytes = new byte[bb.remaining()];
+                bb.get(bytes);
+                ThriftConvert.termFromBytes(term, inflate(bytes));
+                break;
+            }
+            default:
+                throw new TDBException("NodeTableTRDF/Read: Bad entry kind: "+kind);
+        }
+        if ( term.isSetPrefixName() ) {
+            RDF_PrefixName pn = term.getPrefixName();
+            NodeId nsId = NodeIdFactory.createPtr(Long.parseLong(pn.getPrefix(), 36));
+            String ns = namespaces.get(nsId, id->readNodeFromTable(id).getURI());
+            return NodeFactory.createURI(ns+pn.getLocalName());
+        }
+        return ThriftConvert.convert(term);
+    }
+
+    /** The index of the start of the local part of an IRI, or -1 if none. */
+    private static int splitPoint(String uri) {
+        int idx = Math.max(uri.lastIndexOf('/'), uri.lastIndexOf('#'));
+        if ( idx < 0 || idx == uri.length()-1 )
+            return -1;
+        return idx+1;
+    }
+
+    /**
+     * Append an entry, given as a Thrift encoded term, to a node table file.
+     * For a compressed node table, the entry is framed and compressed if it is large.
+     */
+    public static void writeEntry(BinaryDataFile file, byte[] thrift, boolean compressed) {
+        if ( ! compressed ) {
+            file.write(thrift);
+            return;
+        }
+        if ( thrift.length >= DeflateThreshold ) {
+            byte[] bytes = deflate(thrift);
+            if ( bytes.length < thrift.length ) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length+6);
+                out.write(EntryDeflate);
+                // Thrift compact protocol binary: varint length, bytes.
+                int len = bytes.length;
+                while ( (len & ~0x7F) != 0 ) {
+                    out.write((len & 0x7F) | 0x80);
+                    len >>>= 7;
+                }
+                out.write(len);
+                out.write(bytes, 0, bytes.length);
+                file.write(out.toByteArray());
+                return;
+            }
+        }
+        byte[] entry = new byte[thrift.length+1];
+        entry[0] = EntryTerm;
+        System.arraycopy(thrift, 0, entry, 1, thrift.length);
+        file.write(entry);
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+            byte[] buf = new byte[1024];
+            while ( ! deflater.finished() ) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally { deflater.end(); }
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4*bytes.length);
+            byte[] buf = new byte[1024];
+            while ( ! inflater.finished() ) {
+                int n = inflater.inflate(buf);
+                if ( n == 0 && inflater.needsInput() )
+                    throw new TDBException("NodeTableTRDF/Read: Truncated compressed entry");
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException ex) {
+            throw new TDBException("NodeTableTRDF/Read: Bad compressed entry", ex);
+        } finally { inflater.end(); }
+    }
+
+    // Entries written by an aborted transaction are removed from the file
+    // and the space reused, so a NodeId may now be a different node.
+    @Override
+    public void notifyAbortFinish(Transaction transaction) {
+        if ( namespaces != null && transaction.isWriteTxn() )
+            namespaces.clear();
+    }
+
     @Override
     protected void syncSub() {
         try { transport.flush(); }
@@ -108,4 +288,5 @@ public class NodeTableTRDF extends NodeTableNative {
 
     public Index getIndex()             { return nodeHashToId; }
     public BinaryDataFile getData()     { return diskFile; }
+    public boolean isCompressed()       { return compressed; }
 }
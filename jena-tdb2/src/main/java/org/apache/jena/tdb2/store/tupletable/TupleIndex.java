@@ -20,6 +20,10 @@ package org.apache.jena.tdb2.store.tupletable;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.jena.atlas.lib.Closeable;
 import org.apache.jena.atlas.lib.Sync;
@@ -58,6 +62,24 @@ public interface TupleIndex extends Sync, Closeable
     /** return an iterator of everything */
     public Iterator<Tuple<NodeId>> all();
 
+    /**
+     * Find all matching tuples, as a {@link Spliterator} that may be split for
+     * parallel processing. The encounter order is the index order.
+     * Input pattern in natural order, not index order.
+     * <p>
+     * Use within the transaction in which it was created. Splits may be processed by
+     * other threads, for example, by a parallel stream, while the transaction is
+     * active and the index is not changed.
+     */
+    public default Spliterator<Tuple<NodeId>> spliterator(Tuple<NodeId> pattern) {
+        return Spliterators.spliteratorUnknownSize(find(pattern), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /** Find all matching tuples, as a stream, which may be parallel. See {@link #spliterator}. */
+    public default Stream<Tuple<NodeId>> stream(Tuple<NodeId> pattern, boolean parallel) {
+        return StreamSupport.stream(spliterator(pattern), parallel);
+    }
+
     /** Weight a pattern - specified in normal order (not index order).
      * Large numbers means better match. */
     public int weight(Tuple<NodeId> pattern);
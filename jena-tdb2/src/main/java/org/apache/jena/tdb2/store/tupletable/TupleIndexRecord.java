@@ -23,6 +23,9 @@ import static org.apache.jena.tdb2.sys.SystemTDB.SizeOfNodeId;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.StreamSupport;
 import java.util.function.Predicate;
 
 import org.apache.jena.atlas.iterator.Iter;
@@ -66,10 +69,9 @@ public class TupleIndexRecord extends TupleIndexBase
 
             int bbStart = entryIdx*recFactory.recordLength();
             // Extract the bytes, index order for the key test..
-            if ( key != null ) {
-                bb.position(bbStart);
-                bb.get(key, 0, keyLen);
-            }
+            // Absolute get - does not change the shared buffer's position.
+            if ( key != null )
+                bb.get(bbStart, key, 0, keyLen);
 
             // Now directly create NodeIds, no Record.
             NodeId[] nodeIds = new NodeId[numNodeIds];
@@ -241,6 +243,114 @@ public class TupleIndexRecord extends TupleIndexBase
         return tuples;
     }
 
+    /**
+     * Find tuples for a pattern where the set slots are exactly a leading prefix of
+     * this index's order, starting at the first tuple with a value of at least
+     * {@code start} in the slot after the prefix. The tuples are in index order, so
+     * they are sorted by that slot (see {@link NodeIdFactory#compareIndexOrder}).
+     * {@code start} may be null for "from the beginning".
+     * Input pattern in natural order, not index order.
+     * Returns null if the pattern is not of that form for this index.
+     */
+    public Iterator<Tuple<NodeId>> findFrom(Tuple<NodeId> patternNaturalOrder, NodeId start) {
+        Tuple<NodeId> pattern = tupleMap.map(patternNaturalOrder);
+        int prefixLen = 0;
+        while ( prefixLen < pattern.len() && ! NodeId.isAny(pattern.get(prefixLen)) )
+            prefixLen++;
+        if ( prefixLen == 0 || prefixLen == pattern.len() )
+            return null;
+        for ( int i = prefixLen ; i < pattern.len() ; i++ ) {
+            if ( ! NodeId.isAny(pattern.get(i)) )
+                return null;
+        }
+        Record minRec = factory.createKeyOnly();
+        Record maxRec = factory.createKeyOnly();
+        for ( int i = 0 ; i < prefixLen ; i++ ) {
+            NodeId X = pattern.get(i);
+            NodeIdFactory.set(X, minRec.getKey(), i*SizeOfNodeId);
+            NodeIdFactory.set(X, maxRec.getKey(), i*SizeOfNodeId);
+        }
+        if ( start != null )
+            NodeIdFactory.set(start, minRec.getKey(), prefixLen*SizeOfNodeId);
+        NodeIdFactory.setNext(pattern.get(prefixLen-1), maxRec.getKey(), (prefixLen-1)*SizeOfNodeId);
+        return index.iterator(minRec, maxRec, recordMapper);
+    }
+
+    /**
+     * Find tuples for a pattern where the set slots are exactly a leading prefix of
+     * this index's order, and the value in the slot after the prefix is between
+     * {@code min} and {@code max} inclusive, in index order (see
+     * {@link NodeIdFactory#compareIndexOrder}). {@code max} may be null for "to the
+     * end". The prefix may be empty. Input pattern in natural order, not index order.
+     * Returns null if the pattern is not of that form for this index.
+     */
+    public Iterator<Tuple<NodeId>> findRange(Tuple<NodeId> patternNaturalOrder, NodeId min, NodeId max) {
+        Tuple<NodeId> pattern = tupleMap.map(patternNaturalOrder);
+        int prefixLen = 0;
+        while ( prefixLen < pattern.len() && ! NodeId.isAny(pattern.get(prefixLen)) )
+            prefixLen++;
+        if ( prefixLen == pattern.len() )
+            return null;
+        for ( int i = prefixLen ; i < pattern.len() ; i++ ) {
+            if ( ! NodeId.isAny(pattern.get(i)) )
+                return null;
+        }
+        Record minRec = factory.createKeyOnly();
+        Record maxRec = factory.createKeyOnly();
+        for ( int i = 0 ; i < prefixLen ; i++ ) {
+            NodeId X = pattern.get(i);
+            NodeIdFactory.set(X, minRec.getKey(), i*SizeOfNodeId);
+            NodeIdFactory.set(X, maxRec.getKey(), i*SizeOfNodeId);
+        }
+        NodeIdFactory.set(min, minRec.getKey(), prefixLen*SizeOfNodeId);
+        if ( max != null )
+            NodeIdFactory.setNext(max, maxRec.getKey(), prefixLen*SizeOfNodeId);
+        else if ( prefixLen > 0 )
+            NodeIdFactory.setNext(pattern.get(prefixLen-1), maxRec.getKey(), (prefixLen-1)*SizeOfNodeId);
+        else
+            maxRec = null;
+        return index.iterator(minRec, maxRec, recordMapper);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The range of the index for the leading slots of the pattern is split at
+     * B+Tree node boundaries.
+     */
+    @Override
+    public Spliterator<Tuple<NodeId>> spliterator(Tuple<NodeId> patternNaturalOrder) {
+        Tuple<NodeId> pattern = tupleMap.map(patternNaturalOrder);
+        Record minRec = factory.createKeyOnly();
+        Record maxRec = factory.createKeyOnly();
+        int prefixLen = 0;
+        boolean otherSlots = false;
+        for ( int i = 0 ; i < pattern.len() ; i++ ) {
+            NodeId X = pattern.get(i);
+            if ( NodeId.isAny(X) )
+                continue;
+            if ( prefixLen == i ) {
+                NodeIdFactory.set(X, minRec.getKey(), i*SizeOfNodeId);
+                NodeIdFactory.set(X, maxRec.getKey(), i*SizeOfNodeId);
+                prefixLen++;
+            } else
+                otherSlots = true;
+        }
+        // No range (single lookup) - use find.
+        if ( prefixLen == pattern.len() )
+            return Spliterators.spliteratorUnknownSize(find(patternNaturalOrder), Spliterator.ORDERED | Spliterator.NONNULL);
+        Spliterator<Tuple<NodeId>> spliterator;
+        if ( prefixLen == 0 )
+            spliterator = index.spliterator(null, null, recordMapper);
+        else {
+            NodeIdFactory.setNext(pattern.get(prefixLen-1), maxRec.getKey(), (prefixLen-1)*SizeOfNodeId);
+            spliterator = index.spliterator(minRec, maxRec, recordMapper);
+        }
+        if ( ! otherSlots )
+            return spliterator;
+        return StreamSupport.stream(spliterator, false).filter(tuple->matches(patternNaturalOrder, tuple)).spliterator();
+    }
+
     @Override
     public Iterator<Tuple<NodeId>> all()
     {
@@ -253,21 +363,22 @@ public class TupleIndexRecord extends TupleIndexBase
     }
 
     private Iterator<Tuple<NodeId>> scan(Iterator<Tuple<NodeId>> iter, Tuple<NodeId> pattern) {
-        Predicate<Tuple<NodeId>> filter = (item) -> {
-            // Check on pattern and item (both in natural order)
-            for ( int i = 0; i < tupleLength ; i++ ) {
-                NodeId n = pattern.get(i);
-                // The pattern must be null/Any or match the tuple being tested.
-                if ( ! NodeId.isAny(n) )
-                    if ( ! item.get(i).equals(n) )
-                        return false;
-            }
-            return true;
-        };
-
+        Predicate<Tuple<NodeId>> filter = (item) -> matches(pattern, item);
         return Iter.filter(iter, filter);
     }
 
+    private boolean matches(Tuple<NodeId> pattern, Tuple<NodeId> item) {
+        // Check on pattern and item (both in natural order)
+        for ( int i = 0; i < tupleLength ; i++ ) {
+            NodeId n = pattern.get(i);
+            // The pattern must be null/Any or match the tuple being tested.
+            if ( ! NodeId.isAny(n) )
+                if ( ! item.get(i).equals(n) )
+                    return false;
+        }
+        return true;
+    }
+
     @Override
     public void close() {
         index.close();
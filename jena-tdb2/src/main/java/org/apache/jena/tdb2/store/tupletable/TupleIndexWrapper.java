@@ -20,6 +20,7 @@ package org.apache.jena.tdb2.store.tupletable;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 import org.apache.jena.atlas.lib.tuple.Tuple;
 import org.apache.jena.atlas.lib.tuple.TupleMap;
@@ -66,6 +67,11 @@ public class TupleIndexWrapper implements TupleIndex
         return index.all();
     }
 
+    @Override
+    public Spliterator<Tuple<NodeId>> spliterator(Tuple<NodeId> pattern) {
+        return index.spliterator(pattern);
+    }
+
     @Override
     public int getTupleLength() {
         return index.getTupleLength();
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.sys;
+
+/**
+ * Measurements of a compaction.
+ *
+ * @param elapsedMillis     Total time of the compaction.
+ * @param pauseMillis       Time for which writers were held up.
+ * @param quadsCopied       Triples and quads copied from the snapshot of the database.
+ * @param changesReplayed   Changes, committed during the copy, applied to the new database.
+ * @param bytesBefore       Size on disk of the database before compaction.
+ * @param bytesCopied       Size on disk of the new database.
+ * @param blocksReclaimed   Space recovered, in units of the database block size.
+ */
+public record CompactionStats(long elapsedMillis, long pauseMillis,
+                              long quadsCopied, long changesReplayed,
+                              long bytesBefore, long bytesCopied, long blocksReclaimed) {
+    @Override
+    public String toString() {
+        return String.format("Compaction: elapsed=%,dms pause=%,dms copied=%,d replayed=%,d bytes: %,d -> %,d reclaimed=%,d blocks",
+                             elapsedMillis, pauseMillis, quadsCopied, changesReplayed, bytesBefore, bytesCopied, blocksReclaimed);
+    }
+}
@@ -56,6 +56,12 @@ public class ComponentIdMgr {
 
         setup(50, "nodes");
         setup(51, "nodes-data");
+
+        setup(60, "stats");
+
+        setup(70, "closure");
+        setup(71, "closurePSO");
+        setup(72, "closurePOS");
     }
 
     static void setup(int idx, String unitName) {
@@ -22,13 +22,16 @@ import java.io.*;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.jena.atlas.RuntimeIOException;
 import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.io.IOX;
 import org.apache.jena.atlas.lib.DateTimeUtils;
 import org.apache.jena.atlas.lib.InternalErrorException;
@@ -39,13 +42,16 @@ import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.base.Sys;
 import org.apache.jena.dboe.DBOpEnvException;
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.storage.StoragePrefixes;
 import org.apache.jena.dboe.sys.IO_DB;
 import org.apache.jena.dboe.sys.Names;
 import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
 import org.apache.jena.query.ARQ;
+import org.apache.jena.query.TxnType;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
 import org.apache.jena.sparql.sse.SSE_ParseException;
@@ -55,6 +61,7 @@ import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.params.StoreParamsBuilder;
 import org.apache.jena.tdb2.params.StoreParamsCodec;
 import org.apache.jena.tdb2.params.StoreParamsFactory;
+import org.apache.jena.tdb2.store.ChangeCaptureTDB;
 import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
 import org.slf4j.Logger;
@@ -319,40 +326,10 @@ public class DatabaseOps {
 
         checkSupportsAdmin(container);
         synchronized(compactionLock) {
-            Path containerPath = container.getContainerPath();
-            Path db1 = findStorageLocation(containerPath);
-            if ( db1 == null )
-                throw new TDBException("No location: ("+containerPath+", "+dbNameBase+")");
-            Location loc1 = IO_DB.asLocation(db1);
-
-            // -- Checks
-            Location loc1a = ((DatasetGraphTDB)container.get()).getLocation();
-            if ( loc1a.isMem() ) {}
-            if ( ! loc1a.exists() )
-                throw new TDBException("No such location: "+loc1a);
-
-            // Is this the same database location?
-            if ( ! loc1.equals(loc1a) )
-                throw new TDBException("Inconsistent (not latest?) : "+loc1a+" : "+loc1);
-
-            // Check version
-            int v = extractIndex(db1.getFileName().toString(), dbNameBase, SEP);
-            String next = FilenameUtils.filename(dbNameBase, SEP, v+1);
-
-            Path db2 = db1.getParent().resolve(next);
-            LOG.debug(String.format("Compact %s -> %s\n", db1.getFileName(), db2.getFileName()));
-            if ( Files.exists(db2) )
-                throw new TDBException("Inconsistent : "+db2+" already exists");
-            // End checks
-
-            // Location of the storage area for the compacted database.
-            // This is a temporary directory that is atomically moved into place when complete.
-            // This is not supported by MS Windows.
-
-            Path tmpDir = makeTempDirName(db2);
-            if ( Files.exists(tmpDir) )
-                throw new TDBException("Inconsistent : tmpdir"+tmpDir+" already exists");
-            IOX.createDirectory(tmpDir);
+            CompactTarget target = compactTarget(container);
+            Location loc1 = target.loc1();
+            Path db2 = target.db2();
+            Path tmpDir = target.tmpDir();
             Location loc2tmp = Location.create(tmpDir);
 
             try {
@@ -379,6 +356,217 @@ public class DatabaseOps {
         }
     }
 
+    /** Number of changes below which online compaction goes to the final step. */
+    private static final int OnlineCatchUpThreshold = 1000;
+    /** Maximum number of rounds of catching up before the final step of online compaction. */
+    private static final int OnlineCatchUpRounds = 10;
+
+    /**
+     * Compact a database, holding up writers only briefly.
+     * <p>
+     * The database is copied from a read transaction while updates continue.
+     * Changes committed during the copy are recorded and then applied to the new
+     * database, repeatedly while there are many of them. Writers are held up at the
+     * start, to align the recording with the read transaction, and at the end to
+     * apply the last changes and switch to the new database.
+     * <p>
+     * Changes made by the bulk loaders during online compaction are not seen.
+     * On MS Windows, this is the same as {@link #compact(DatasetGraphSwitchable, boolean)}.
+     */
+    public static CompactionStats compactOnline(DatasetGraphSwitchable container, boolean shouldDeleteOld) {
+        checkSupportsAdmin(container);
+        long startTime = System.nanoTime();
+        if ( Sys.isWindows) {
+            // Moving the temporary directory does not work (see compact).
+            Location loc1 = ((DatasetGraphTDB)container.get()).getLocation();
+            long bytesBefore = sizeOfDirectory(IO_DB.asPath(loc1));
+            DatabaseOpsWindows.compact_win(container, shouldDeleteOld);
+            long elapsed = millis(System.nanoTime()-startTime);
+            DatasetGraphTDB dsgCompact = (DatasetGraphTDB)container.get();
+            long bytesAfter = sizeOfDirectory(IO_DB.asPath(dsgCompact.getLocation()));
+            return compactionStats(dsgCompact, elapsed, elapsed, -1, 0, bytesBefore, bytesAfter);
+        }
+
+        synchronized(compactionLock) {
+            CompactTarget target = compactTarget(container);
+            Location loc1 = target.loc1();
+            Path db2 = target.db2();
+            Path tmpDir = target.tmpDir();
+            Location loc2tmp = Location.create(tmpDir);
+            long bytesBefore = sizeOfDirectory(IO_DB.asPath(loc1));
+
+            CompactionStats stats;
+            try {
+                stats = compactionOnline(container, loc1, loc2tmp, db2, startTime, bytesBefore);
+            } catch (RuntimeIOException ex) {
+                try { IO.deleteAll(tmpDir); } catch (Throwable th) { /* Continue with original error. */ }
+                throw ex;
+            } catch (Throwable th) {
+                try { IO.deleteAll(tmpDir); } catch (Throwable th2) { /* Continue with original error. */ }
+                throw th;
+            }
+
+            if ( shouldDeleteOld ) {
+                Path loc1Path = IO_DB.asPath(loc1);
+                LOG.debug("Deleting old database after successful compaction (old db path='" + loc1Path + "')...");
+                IO.deleteAll(loc1Path);
+            }
+            FmtLog.info(LOG, "%s : %s", db2.getFileName(), stats);
+            return stats;
+        }
+    }
+
+    private static CompactionStats compactionOnline(DatasetGraphSwitchable container, Location loc1, Location loc2tmp, Path path2final,
+                                                    long startTime, long bytesBefore) {
+        if ( loc1.isMem() || loc2tmp.isMem() )
+            throw new TDBException("Compact involves a memory location: "+loc1+" : "+loc2tmp);
+
+        DatasetGraphTDB dsgBase = compactionSource(container, loc1);
+        TransactionCoordinator txnMgr1 = dsgBase.getTxnSystem().getTxnMgr();
+        ChangeCaptureTDB changeCapture = dsgBase.getChangeCapture();
+        long pause = 0;
+        long quadsCopied;
+        long[] changesReplayed = { 0 };
+        try {
+            // -- Start recording changes and start the read transaction for the copy
+            // with no writer active, so that every later commit is recorded.
+            long pauseStart = System.nanoTime();
+            container.execReadOnlyDatabase(()->{
+                changeCapture.start();
+                dsgBase.begin(TxnType.READ);
+            });
+            pause += System.nanoTime()-pauseStart;
+
+            // -- Copy while updates continue.
+            copyConfigFiles(loc1, loc2tmp);
+            DatasetGraphTDB dsgTmpCompact = StoreConnection.connectCreate(loc2tmp).getDatasetGraphTDB();
+            try {
+                quadsCopied = copy(dsgBase, dsgTmpCompact);
+            } finally {
+                dsgBase.end();
+            }
+
+            // -- Catch up while updates continue.
+            for ( int i = 0 ; i < OnlineCatchUpRounds ; i++ ) {
+                List<ChangeCaptureTDB.Change> changes = changeCapture.drain();
+                changesReplayed[0] += replay(changes, dsgTmpCompact);
+                if ( changes.size() <= OnlineCatchUpThreshold )
+                    break;
+            }
+
+            // -- Final changes and switch over, with writers held up.
+            pauseStart = System.nanoTime();
+            container.execReadOnlyDatabase(()->{
+                changesReplayed[0] += replay(changeCapture.drain(), dsgTmpCompact);
+                changeCapture.stop();
+                // Prefixes are small: copy them again.
+                Txn.executeRead(dsgBase, ()->Txn.executeWrite(dsgTmpCompact, ()->replacePrefixes(dsgBase, dsgTmpCompact)));
+                switchToCompacted(container, dsgBase, loc2tmp, path2final);
+            });
+            pause += System.nanoTime()-pauseStart;
+        } finally {
+            changeCapture.stop();
+        }
+
+        // Switch off the source database when its readers have finished.
+        txnMgr1.startExclusiveMode();
+        StoreConnection.release(dsgBase.getLocation());
+
+        long elapsed = millis(System.nanoTime()-startTime);
+        long bytesAfter = sizeOfDirectory(path2final);
+        return compactionStats(dsgBase, elapsed, millis(pause), quadsCopied, changesReplayed[0], bytesBefore, bytesAfter);
+    }
+
+    private static CompactionStats compactionStats(DatasetGraphTDB dsg, long elapsed, long pause, long quadsCopied, long changesReplayed,
+                                                   long bytesBefore, long bytesAfter) {
+        long blockSize = dsg.getStoreParams().getBlockSize();
+        long blocksReclaimed = Math.max(0, bytesBefore-bytesAfter) / blockSize;
+        return new CompactionStats(elapsed, pause, quadsCopied, changesReplayed, bytesBefore, bytesAfter, blocksReclaimed);
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    /** Copy from the read transaction of the caller; return the number of triples and quads. */
+    private static long copy(DatasetGraphTDB dsgSrc, DatasetGraphTDB dsgDst) {
+        return Txn.calculateWrite(dsgDst, ()->{
+            long count = 0;
+            Iterator<Quad> iter = dsgSrc.find();
+            while ( iter.hasNext() ) {
+                dsgDst.add(iter.next());
+                count++;
+            }
+            CopyDSG.copyPrefixes(dsgSrc, dsgDst);
+            return count;
+        });
+    }
+
+    private static final int ReplayBatchSize = 10_000;
+
+    /** Apply changes, in write transactions of a limited size. */
+    private static long replay(List<ChangeCaptureTDB.Change> changes, DatasetGraphTDB dsg) {
+        for ( int i = 0 ; i < changes.size() ; i += ReplayBatchSize ) {
+            List<ChangeCaptureTDB.Change> batch = changes.subList(i, Math.min(changes.size(), i+ReplayBatchSize));
+            Txn.executeWrite(dsg, ()->batch.forEach(change->change.apply(dsg)));
+        }
+        return changes.size();
+    }
+
+    private static void replacePrefixes(DatasetGraphTDB dsgSrc, DatasetGraphTDB dsgDst) {
+        StoragePrefixes src = dsgSrc.getStoragePrefixes();
+        StoragePrefixes dst = dsgDst.getStoragePrefixes();
+        Iter.toList(dst.listGraphNodes()).forEach(dst::deleteAll);
+        src.listMappings().forEachRemaining(pair->dst.add(pair.getLeft(), pair.getRight().getPrefix(), pair.getRight().getUri()));
+    }
+
+    private static long sizeOfDirectory(Path path) {
+        try ( Stream<Path> stream = Files.walk(path) ) {
+            return stream.filter(Files::isRegularFile).mapToLong(p->p.toFile().length()).sum();
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    private record CompactTarget(Location loc1, Path db2, Path tmpDir) {}
+
+    /** Checks and the locations for compaction: the current database, the next generation and the temporary area. */
+    private static CompactTarget compactTarget(DatasetGraphSwitchable container) {
+        Path containerPath = container.getContainerPath();
+        Path db1 = findStorageLocation(containerPath);
+        if ( db1 == null )
+            throw new TDBException("No location: ("+containerPath+", "+dbNameBase+")");
+        Location loc1 = IO_DB.asLocation(db1);
+
+        // -- Checks
+        Location loc1a = ((DatasetGraphTDB)container.get()).getLocation();
+        if ( loc1a.isMem() ) {}
+        if ( ! loc1a.exists() )
+            throw new TDBException("No such location: "+loc1a);
+
+        // Is this the same database location?
+        if ( ! loc1.equals(loc1a) )
+            throw new TDBException("Inconsistent (not latest?) : "+loc1a+" : "+loc1);
+
+        // Check version
+        int v = extractIndex(db1.getFileName().toString(), dbNameBase, SEP);
+        String next = FilenameUtils.filename(dbNameBase, SEP, v+1);
+
+        Path db2 = db1.getParent().resolve(next);
+        LOG.debug(String.format("Compact %s -> %s\n", db1.getFileName(), db2.getFileName()));
+        if ( Files.exists(db2) )
+            throw new TDBException("Inconsistent : "+db2+" already exists");
+        // End checks
+
+        // Location of the storage area for the compacted database.
+        // This is a temporary directory that is atomically moved into place when complete.
+        // This is not supported by MS Windows.
+
+        Path tmpDir = makeTempDirName(db2);
+        if ( Files.exists(tmpDir) )
+            throw new TDBException("Inconsistent : tmpdir"+tmpDir+" already exists");
+        IOX.createDirectory(tmpDir);
+        return new CompactTarget(loc1, db2, tmpDir);
+    }
+
     private static Path makeTempDirName(Path path) {
         String dirname = path.toString();
         if ( dirname.endsWith("/"))
@@ -391,21 +579,7 @@ public class DatabaseOps {
         if ( loc1.isMem() || loc2tmp.isMem() )
             throw new TDBException("Compact involves a memory location: "+loc1+" : "+loc2tmp);
 
-        StoreConnection srcConn = StoreConnection.connectExisting(loc1);
-
-        if ( srcConn == null )
-            throw new TDBException("No database at location : "+loc1);
-        if ( ! ( container.get() instanceof DatasetGraphTDB ) )
-            throw new TDBException("Not a TDB2 database in DatasetGraphSwitchable");
-
-        DatasetGraphTDB dsgCurrent = (DatasetGraphTDB)container.get();
-        if ( ! dsgCurrent.getLocation().equals(loc1) )
-            throw new TDBException("Inconsistent locations for base : "+dsgCurrent.getLocation()+" , "+dsgCurrent.getLocation());
-
-        DatasetGraphTDB dsgBase = srcConn.getDatasetGraphTDB();
-        if ( dsgBase != dsgCurrent )
-            throw new TDBException("Inconsistent datasets : "+dsgCurrent.getLocation()+" , "+dsgBase.getLocation());
-
+        DatasetGraphTDB dsgBase = compactionSource(container, loc1);
         TransactionCoordinator txnMgr1 = dsgBase.getTxnSystem().getTxnMgr();
 
         // -- Stop updates.
@@ -430,43 +604,7 @@ public class DatabaseOps {
 
             DatasetGraphTDB dsgTmpCompact = StoreConnection.connectCreate(loc2tmp).getDatasetGraphTDB();
             CopyDSG.copy(dsgBase, dsgTmpCompact);
-            StoreConnection.internalExpel(loc2tmp, true);
-            // Now on-disk in tmp location.
-
-            moveDirectory(loc2tmp, path2final);
-            Location loc2final = Location.create(path2final);   // Location must exist.
-
-            // Next generation storage datasetGraph.
-            DatasetGraphTDB dsgCompact = StoreConnection.connectCreate(loc2final).getDatasetGraphTDB();
-
-            // -- Switch
-            // Update TransactionCoordinator and switch over.
-            TransactionCoordinator txnMgr2 = dsgCompact.getTxnSystem().getTxnMgr();
-            txnMgr2.execExclusive(()->{
-                // No active transactions in either database.
-                txnMgr2.takeOverFrom(txnMgr1);
-
-                // Copy over external transaction components.
-                txnMgr2.modifyConfigDirect(()-> {
-                    txnMgr1.listExternals().forEach(txnMgr2::addExternal);
-                    // External listeners?
-                    // (the NodeTableCache listener is not external)
-                });
-
-                // No transactions on new database 2 (not exposed yet).
-                // No writers or promote transactions on database 1.
-                // Maybe old readers on database 1.
-                // -- Switch.
-                if ( ! container.change(dsgCurrent, dsgCompact) ) {
-                    Log.warn(DatabaseOps.class, "Inconsistent: old datasetgraph not as expected");
-                    container.set(dsgCompact);
-                }
-                // The compacted database is now active
-            });
-            // New database running.
-            // New transactions go to this database.
-            // Old readers continue on db1.
-
+            switchToCompacted(container, dsgBase, loc2tmp, path2final);
         });
 
         // This switches off the source database.
@@ -480,6 +618,69 @@ public class DatabaseOps {
         StoreConnection.release(dsgBase.getLocation());
     }
 
+    /** The current database, which is the source of the compaction. */
+    private static DatasetGraphTDB compactionSource(DatasetGraphSwitchable container, Location loc1) {
+        StoreConnection srcConn = StoreConnection.connectExisting(loc1);
+
+        if ( srcConn == null )
+            throw new TDBException("No database at location : "+loc1);
+        if ( ! ( container.get() instanceof DatasetGraphTDB ) )
+            throw new TDBException("Not a TDB2 database in DatasetGraphSwitchable");
+
+        DatasetGraphTDB dsgCurrent = (DatasetGraphTDB)container.get();
+        if ( ! dsgCurrent.getLocation().equals(loc1) )
+            throw new TDBException("Inconsistent locations for base : "+dsgCurrent.getLocation()+" , "+dsgCurrent.getLocation());
+
+        DatasetGraphTDB dsgBase = srcConn.getDatasetGraphTDB();
+        if ( dsgBase != dsgCurrent )
+            throw new TDBException("Inconsistent datasets : "+dsgCurrent.getLocation()+" , "+dsgBase.getLocation());
+        return dsgBase;
+    }
+
+    /**
+     * Move the compacted database into place and switch the container to it.
+     * Called with writers blocked on the container.
+     */
+    private static void switchToCompacted(DatasetGraphSwitchable container, DatasetGraphTDB dsgCurrent, Location loc2tmp, Path path2final) {
+        TransactionCoordinator txnMgr1 = dsgCurrent.getTxnSystem().getTxnMgr();
+        StoreConnection.internalExpel(loc2tmp, true);
+        // Now on-disk in tmp location.
+
+        moveDirectory(loc2tmp, path2final);
+        Location loc2final = Location.create(path2final);   // Location must exist.
+
+        // Next generation storage datasetGraph.
+        DatasetGraphTDB dsgCompact = StoreConnection.connectCreate(loc2final).getDatasetGraphTDB();
+
+        // -- Switch
+        // Update TransactionCoordinator and switch over.
+        TransactionCoordinator txnMgr2 = dsgCompact.getTxnSystem().getTxnMgr();
+        txnMgr2.execExclusive(()->{
+            // No active transactions in either database.
+            txnMgr2.takeOverFrom(txnMgr1);
+
+            // Copy over external transaction components.
+            txnMgr2.modifyConfigDirect(()-> {
+                txnMgr1.listExternals().forEach(txnMgr2::addExternal);
+                // External listeners?
+                // (the NodeTableCache listener is not external)
+            });
+
+            // No transactions on new database 2 (not exposed yet).
+            // No writers or promote transactions on database 1.
+            // Maybe old readers on database 1.
+            // -- Switch.
+            if ( ! container.change(dsgCurrent, dsgCompact) ) {
+                Log.warn(DatabaseOps.class, "Inconsistent: old datasetgraph not as expected");
+                container.set(dsgCompact);
+            }
+            // The compacted database is now active
+        });
+        // New database running.
+        // New transactions go to this database.
+        // Old readers continue on db1.
+    }
+
     private static void moveDirectory(Location locTmp, Path pathDst) {
         Path pathSrc = IO_DB.asPath(locTmp);
         try {
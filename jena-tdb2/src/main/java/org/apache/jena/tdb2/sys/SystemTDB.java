@@ -120,6 +120,39 @@ public class SystemTDB
     /** Experimental : triple and quad filtering at scan level */
     public static final Symbol symTupleFilter       = allocSymbol("tupleFilter");
 
+    /**
+     * Resolve NodeIds to Nodes for blocks of results in one pass over the node table.
+     * The value is the number of rows in a block, or "true" for the default block size.
+     */
+    public static final Symbol symBatchNodeResolution = allocSymbol("batchNodeResolution");
+
+    /**
+     * Evaluate groups of patterns that share their only variable by a merge
+     * (leapfrog) join of sorted index scans instead of by nested loops.
+     */
+    public static final Symbol symMergeJoin = allocSymbol("mergeJoin");
+
+    /**
+     * Use FILTER comparisons with constants when matching patterns, testing values
+     * inline in NodeIds and limiting index scans. On unless set to false.
+     * @see org.apache.jena.tdb2.solver.RangeFilterTDB
+     */
+    public static final Symbol symRangeFilter = allocSymbol("rangeFilter");
+
+    /**
+     * Keep solutions as NodeIds through DISTINCT, GROUP BY, MINUS and joins, so
+     * that hashing and equality are on NodeIds, not on RDF terms.
+     * @see org.apache.jena.tdb2.solver.NodeIdKey
+     */
+    public static final Symbol symNodeIdExecution = allocSymbol("nodeIdExecution");
+
+    /**
+     * Execute SPARQL updates that arrive together (e.g. at a Fuseki server) in one
+     * write transaction with a single commit.
+     * @see org.apache.jena.dboe.transaction.GroupCommit
+     */
+    public static final Symbol symGroupCommit = allocSymbol("groupCommit");
+
     private static final String PropertyFileKey1    = tdbPropertyRoot+".settings";
     private static final String PropertyFileKey2    = tdbSymbolPrefix+":settings";
 
@@ -171,12 +204,23 @@ public class SystemTDB
     /** Initial capacity factor for node caches. */
     public static final double NodeCacheInitialCapacityFactor = doubleValue("NodeCacheInitialCapacityFactor", 0.25);
 
+    /** Size, in bytes, of the off-heap NodeId to Node cache. 0 means "use the on-heap cache". */
+    public static final long NodeId2NodeOffHeapCacheSize = longValue("NodeId2NodeOffHeapCacheSize", 0L);
+
     /** Size of the delayed-write block cache (32 bit systems only). Per file. */
     public static final int BlockWriteCacheSize     = intValue("BlockWriteCacheSize", 1000);
 
     /** Size of read block cache (32 bit systems only). Per file. */
     public static final int BlockReadCacheSize      = intValue("BlockReadCacheSize", 5*1000);
 
+    // ---- Group commit
+
+    /** Maximum number of write actions committed together by group commit. */
+    public static final int GroupCommitMaxSize      = intValue("GroupCommitMaxSize", 100);
+
+    /** Time, in milliseconds, a group commit waits for more write actions to arrive. */
+    public static final long GroupCommitDelay       = longValue("GroupCommitDelay", 1L);
+
     // ---- Misc
 
     /** Default BGP optimizer */
@@ -268,6 +312,10 @@ public class SystemTDB
         return value(name, defaultValue, Integer::parseInt);
     }
 
+    private static long longValue(String name, long defaultValue) {
+        return value(name, defaultValue, Long::parseLong);
+    }
+
     private static double doubleValue(String name, double defaultValue) {
         return value(name, defaultValue, Double::parseDouble);
     }
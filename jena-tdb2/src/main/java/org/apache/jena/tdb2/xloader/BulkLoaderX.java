@@ -41,6 +41,12 @@ public class BulkLoaderX {
      */
     public static final String StageMarker = "==";
 
+    /**
+     * Whether to sort the indexes with the external "sort" program.
+     * The default is to sort within the JVM (see {@link SortRecords}).
+     */
+    public static boolean UseSortProgram = false;
+
     /**
      * Whether to compress the triple.tmp and quads.tmp files.
      * These are read multiple times.
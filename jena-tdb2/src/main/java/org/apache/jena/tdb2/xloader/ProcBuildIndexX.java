@@ -155,6 +155,8 @@ public class ProcBuildIndexX
                                          List<String>sortKeyArgs) {
         if ( isEmpty(datafile) )
             return 0;
+        if ( ! BulkLoaderX.UseSortProgram )
+            return jvm_sort_build_index(LOG, datafile, dsg, indexName, sortThreads, TMPDIR);
         // Sort task.
         Process proc2;
         OutputStream toSortOutputStream; // Not used. Input is a file.
@@ -237,7 +239,53 @@ public class ProcBuildIndexX
         return count;
     }
 
+    /**
+     * Sort within this JVM : read the data file, sort in runs in parallel, merge and
+     * write the B+Tree.
+     */
+    private static long jvm_sort_build_index(Logger LOG, String datafile, DatasetGraph dsg, String indexName,
+                                             int sortThreads, String TMPDIR) {
+        if ( sortThreads <= 0 )
+            sortThreads = 2;
+        int tupleLength = indexName.length();
+        TupleMap colMap = TupleMap.create(primaryOrder(indexName), indexName);
+        Timer timer = new Timer();
+        timer.startTimer();
+        // IO.openFile handles .gz
+        try ( InputStream input = IO.openFile(datafile);
+              SortRecords sorter = new SortRecords(tupleLength, SortRecords.defaultMemory(), sortThreads, TMPDIR,
+                                                   BulkLoaderX.CompressSortIndexFiles) ) {
+            int rowBlock = 1000;
+            sorter.addAll(new RecordsFromInput(input, tupleLength, colMap, rowBlock));
+            Iterator<Record> sorted = sorter.sorted();
+            long timeMillis = timer.endTimer();
+            FmtLog.info(LOG, "%s Sort %s : %,d rows, %d runs : %s seconds", BulkLoaderX.StageMarker, indexName,
+                        sorter.count(), sorter.spilled(), Timer.timeStr(timeMillis));
+            return indexBuilder(dsg, sorted, indexName);
+        } catch (IOException ex) {
+            IO.exception(ex);
+            return -1;
+        }
+    }
+
+    private static String primaryOrder(String indexName) {
+        switch (indexName.length()) {
+            case 3: return Names.primaryIndexTriples;
+            case 4: return Names.primaryIndexQuads;
+            default:
+                throw new TDBException("Index name: " + indexName);
+        }
+    }
+
     private static long indexBuilder(DatasetGraph dsg, InputStream input, String indexName) {
+        int tupleLength = indexName.length();
+        TupleMap colMap = TupleMap.create(primaryOrder(indexName), indexName);
+        int rowBlock = 1000;
+        Iterator<Record> iter = new RecordsFromInput(input, tupleLength, colMap, rowBlock);
+        return indexBuilder(dsg, iter, indexName);
+    }
+
+    private static long indexBuilder(DatasetGraph dsg, Iterator<Record> iter, String indexName) {
         long tickPoint = BulkLoaderX.DataTick;
         int superTick = BulkLoaderX.DataSuperTick;
 
@@ -249,22 +297,10 @@ public class ProcBuildIndexX
 
         // The name is the order. Input is already in the right order.
 
-        int tupleLength = indexName.length();
-
         TupleIndex index = TDBInternal.findIndex(dsg, indexName);
         if ( index == null )
             throw new TDBException("Can not find index: " + indexName);
 
-        String primaryOrder;
-        if ( tupleLength == 3 ) {
-            primaryOrder = Names.primaryIndexTriples;
-        } else if ( tupleLength == 4 ) {
-            primaryOrder = Names.primaryIndexQuads;
-        } else {
-            throw new TDBException("Index name: " + indexName);
-        }
-        TupleMap colMap = TupleMap.create(primaryOrder, indexName);
-
         int blockSize = SystemTDB.BlockSize;
         RecordFactory recordFactory = ((TupleIndexRecord)index).getRangeIndex().getRecordFactory();
 
@@ -278,8 +314,6 @@ public class ProcBuildIndexX
         BlockMgr blkMgrRecords = bpt.getRecordsMgr().getBlockMgr();
         BufferChannel blkState = bpt.getStateManager().getBufferChannel();
         // ----
-        int rowBlock = 1000;
-        Iterator<Record> iter = new RecordsFromInput(input, tupleLength, colMap, rowBlock);
         // ProgressMonitor.
         ProgressMonitor monitor = ProgressMonitorOutput.create(BulkLoaderX.LOG_Index, indexName, tickPoint, superTick);
         ProgressIterator<Record> iter2 = new ProgressIterator<>(iter, monitor);
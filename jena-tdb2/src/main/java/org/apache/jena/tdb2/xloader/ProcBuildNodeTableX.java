@@ -224,7 +224,7 @@ public class ProcBuildNodeTableX {
 
             dsg.executeWrite(()->{
                 BinaryDataFile objectFile = nodeTable.getData();
-                Iterator<Record> rIter = records(BulkLoaderX.LOG_Terms, input, objectFile);
+                Iterator<Record> rIter = records(BulkLoaderX.LOG_Terms, input, objectFile, nodeTable.isCompressed());
                 rIter = new ProgressIterator<>(rIter, monitor);
                 BPlusTree bpt1 = (BPlusTree)(nodeTable.getIndex());
                 BPlusTreeParams bptParams = bpt1.getParams();
@@ -276,8 +276,8 @@ public class ProcBuildNodeTableX {
         return Pair.create(countParseTicks.get(), countIndexedNodes.get());
     }
 
-    private static Iterator<Record> records(Logger logger, InputStream input, BinaryDataFile objectFile) {
-        return new IteratorNodeTableRecords(logger, input, objectFile);
+    private static Iterator<Record> records(Logger logger, InputStream input, BinaryDataFile objectFile, boolean compressed) {
+        return new IteratorNodeTableRecords(logger, input, objectFile, compressed);
     }
 
     private static class IteratorNodeTableRecords extends IteratorSlotted<Record> {
@@ -288,11 +288,13 @@ public class ProcBuildNodeTableX {
         private final Logger logger;
         private final InputStream input;
         private final BinaryDataFile objectFile;
+        private final boolean compressed;
 
-        IteratorNodeTableRecords(Logger logger, InputStream input, BinaryDataFile objectFile) {
+        IteratorNodeTableRecords(Logger logger, InputStream input, BinaryDataFile objectFile, boolean compressed) {
             this.logger = logger;
             this.input = input;
             this.objectFile = objectFile;
+            this.compressed = compressed;
         }
 
         long count = 0;
@@ -333,7 +335,9 @@ public class ProcBuildNodeTableX {
                 // write to nodes.dat -> NodeId
                 long x = objectFile.length();
                 NodeId nodeId = NodeIdFactory.createPtr(x);
-                objectFile.write(thrift);
+                // IRIs are not split into namespace and local name here
+                // because the node index is being built.
+                NodeTableTRDF.writeEntry(objectFile, thrift, compressed);
                 Bytes.setLong(nodeId.getPtrLocation(), bbNodeId);
                 Record r = factory.create(key, bbNodeId);
                 return r;
@@ -0,0 +1,532 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.xloader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.lib.Bytes;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.sys.SysDB;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.sys.SystemTDB;
+
+/**
+ * External merge sort of records with a key of a fixed number of longs (NodeIds) and
+ * no value. The sort order is the order of keys in a B+Tree; duplicates are removed.
+ * <p>
+ * Records are collected into runs in memory. A full run is sorted, and written to a
+ * temporary file, by a pool of threads while the next run is filled. At the end, the
+ * run files are merged. If all the records fit in one run, no files are written.
+ * <p>
+ * The memory used for runs is bounded: there are at most {@code threads+1} runs in
+ * memory, each of at most {@code memory/(threads+1)} bytes.
+ */
+public class SortRecords implements Closeable {
+    /** Maximum number of runs merged at once. More runs than this causes intermediate merges. */
+    public static int MergeWidth = 100;
+    /** Initial size, in rows, of an in-memory run. */
+    private static final int InitialRunRows = 64*1024;
+    private static final int FileBufferSize = 128*1024;
+
+    private final int rowLength;
+    private final int maxRunLength;
+    private final int maxBuffers;
+    private final Path tmpDir;
+    private final boolean compress;
+    private final RecordFactory recordFactory;
+    private final ExecutorService executor;
+    private final BlockingQueue<long[]> freeBuffers = new LinkedBlockingQueue<>();
+    private final List<Future<Path>> runs = new ArrayList<>();
+    // All files, for clearing up.
+    private final List<Path> files = Collections.synchronizedList(new ArrayList<>());
+    private int allocatedBuffers = 0;
+    private long[] current = null;
+    private int currentRows = 0;
+    private long count = 0;
+    private boolean finished = false;
+
+    /** Default memory for runs : half the available heap. */
+    public static long defaultMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return available / 2;
+    }
+
+    /**
+     * @param rowLength Number of NodeIds in a record.
+     * @param memory    Bytes of memory for the runs in memory.
+     * @param threads   Number of threads sorting and writing runs.
+     * @param tmpDir    Directory for the run files. If null, the system temporary directory.
+     * @param compress  Whether to compress the run files.
+     */
+    public SortRecords(int rowLength, long memory, int threads, String tmpDir, boolean compress) {
+        if ( threads <= 0 )
+            throw new IllegalArgumentException("Threads must be positive: "+threads);
+        this.rowLength = rowLength;
+        this.maxBuffers = threads + 1;
+        long runLength = memory / SysDB.SizeOfLong / maxBuffers;
+        // Java array size limit.
+        runLength = Math.min(runLength, Integer.MAX_VALUE - 16);
+        runLength = Math.max(runLength, (long)rowLength * InitialRunRows);
+        this.maxRunLength = (int)(runLength - runLength % rowLength);
+        this.tmpDir = ( tmpDir == null ) ? null : Path.of(tmpDir);
+        this.compress = compress;
+        this.recordFactory = new RecordFactory(rowLength * SystemTDB.SizeOfNodeId, 0);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "SortRecords");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Add a record. The key is copied. */
+    public void add(Record record) {
+        if ( finished )
+            throw new TDBException("SortRecords: already finished");
+        byte[] key = record.getKey();
+        if ( current == null )
+            current = takeBuffer();
+        int idx = currentRows * rowLength;
+        if ( idx == current.length ) {
+            if ( current.length < maxRunLength ) {
+                current = Arrays.copyOf(current, (int)Math.min((long)current.length * 2, maxRunLength));
+            } else {
+                spill();
+                current = takeBuffer();
+                idx = 0;
+            }
+        }
+        for ( int i = 0 ; i < rowLength ; i++ )
+            current[idx + i] = Bytes.getLong(key, i * SystemTDB.SizeOfNodeId);
+        currentRows++;
+        count++;
+    }
+
+    /** Add records. */
+    public void addAll(Iterator<Record> records) {
+        records.forEachRemaining(this::add);
+    }
+
+    /** Number of records added, including any duplicates. */
+    public long count() {
+        return count;
+    }
+
+    /** Number of runs written to file so far. */
+    public int spilled() {
+        return runs.size();
+    }
+
+    /**
+     * Finish adding records and return the sorted records, without duplicates.
+     * The temporary files are removed when the iterator ends or when this object is closed.
+     */
+    public Iterator<Record> sorted() {
+        if ( finished )
+            throw new TDBException("SortRecords: already finished");
+        finished = true;
+        if ( runs.isEmpty() ) {
+            executor.shutdown();
+            if ( current == null )
+                return Collections.emptyIterator();
+            long[] rows = current;
+            int numRows = currentRows;
+            current = null;
+            sortRows(rows, rowLength, 0, numRows);
+            return new MemoryIterator(rows, numRows);
+        }
+        if ( currentRows > 0 )
+            spill();
+        current = null;
+        try {
+            List<Path> paths = new ArrayList<>();
+            for ( Future<Path> f : runs )
+                paths.add(await(f));
+            freeBuffers.clear();
+            while ( paths.size() > MergeWidth )
+                paths = mergePass(paths);
+            return new MergeIterator(paths);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        current = null;
+        freeBuffers.clear();
+        synchronized(files) {
+            files.forEach(SortRecords::delete);
+            files.clear();
+        }
+    }
+
+    private long[] takeBuffer() {
+        long[] buffer = freeBuffers.poll();
+        if ( buffer != null )
+            return buffer;
+        if ( allocatedBuffers < maxBuffers ) {
+            allocatedBuffers++;
+            return new long[(int)Math.min((long)rowLength * InitialRunRows, maxRunLength)];
+        }
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException ex) {
+            throw new TDBException("Interrupted", ex);
+        }
+    }
+
+    // Sort and write the current run, asynchronously.
+    private void spill() {
+        long[] rows = current;
+        int numRows = currentRows;
+        current = null;
+        currentRows = 0;
+        Path path = newFile();
+        Future<Path> f = executor.submit(() -> {
+            try {
+                sortRows(rows, rowLength, 0, numRows);
+                try ( DataOutputStream out = output(path) ) {
+                    writeRows(out, rows, numRows);
+                }
+                return path;
+            } finally {
+                freeBuffers.add(rows);
+            }
+        });
+        runs.add(f);
+    }
+
+    // Merge groups of runs into new runs.
+    private List<Path> mergePass(List<Path> paths) {
+        List<Future<Path>> merges = new ArrayList<>();
+        for ( int i = 0 ; i < paths.size() ; i += MergeWidth ) {
+            List<Path> group = paths.subList(i, Math.min(i + MergeWidth, paths.size()));
+            Path path = newFile();
+            merges.add(executor.submit(() -> {
+                MergeIterator iter = new MergeIterator(group);
+                try ( DataOutputStream out = output(path) ) {
+                    while ( iter.hasNextRow() ) {
+                        long[] row = iter.nextRow();
+                        for ( long x : row )
+                            out.writeLong(x);
+                    }
+                }
+                return path;
+            }));
+        }
+        List<Path> results = new ArrayList<>();
+        for ( Future<Path> f : merges )
+            results.add(await(f));
+        return results;
+    }
+
+    private static Path await(Future<Path> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            throw new TDBException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if ( cause instanceof UncheckedIOException ioEx )
+                throw ioEx;
+            if ( cause instanceof IOException ioEx )
+                IO.exception(ioEx);
+            throw new TDBException("Sort failed", cause);
+        }
+    }
+
+    private Path newFile() {
+        try {
+            Path path = ( tmpDir == null )
+                    ? Files.createTempFile("sort-", ".run")
+                    : Files.createTempFile(tmpDir, "sort-", ".run");
+            files.add(path);
+            return path;
+        } catch (IOException ex) {
+            IO.exception(ex);
+            return null;
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) { /* ignore */ }
+    }
+
+    private DataOutputStream output(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        if ( compress )
+            out = new GZIPOutputStream(out, FileBufferSize);
+        return new DataOutputStream(new BufferedOutputStream(out, FileBufferSize));
+    }
+
+    private DataInputStream input(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if ( compress )
+            in = new GZIPInputStream(in, FileBufferSize);
+        return new DataInputStream(new BufferedInputStream(in, FileBufferSize));
+    }
+
+    // Write rows, skipping duplicates. The rows are sorted.
+    private void writeRows(DataOutputStream out, long[] rows, int numRows) throws IOException {
+        for ( int r = 0 ; r < numRows ; r++ ) {
+            if ( r > 0 && compareRows(rows, r, rows, r-1, rowLength) == 0 )
+                continue;
+            int idx = r * rowLength;
+            for ( int i = 0 ; i < rowLength ; i++ )
+                out.writeLong(rows[idx + i]);
+        }
+    }
+
+    private Record toRecord(long[] rows, int row) {
+        Record record = recordFactory.create();
+        int idx = row * rowLength;
+        for ( int i = 0 ; i < rowLength ; i++ )
+            Bytes.setLong(rows[idx + i], record.getKey(), i * SystemTDB.SizeOfNodeId);
+        return record;
+    }
+
+    // ---- Sorting rows, where a row is rowLength consecutive longs in an array.
+
+    /*package*/ static int compareRows(long[] a, int row1, long[] b, int row2, int rowLength) {
+        int idx1 = row1 * rowLength;
+        int idx2 = row2 * rowLength;
+        for ( int i = 0 ; i < rowLength ; i++ ) {
+            int x = Long.compareUnsigned(a[idx1 + i], b[idx2 + i]);
+            if ( x != 0 )
+                return x;
+        }
+        return 0;
+    }
+
+    private static void swapRows(long[] a, int row1, int row2, int rowLength) {
+        int idx1 = row1 * rowLength;
+        int idx2 = row2 * rowLength;
+        for ( int i = 0 ; i < rowLength ; i++ ) {
+            long x = a[idx1 + i];
+            a[idx1 + i] = a[idx2 + i];
+            a[idx2 + i] = x;
+        }
+    }
+
+    /**
+     * Sort the rows [lo, hi) in place.
+     * Quicksort, with a three way partition because there are often many duplicates
+     * in leading slots, and insertion sort for short sections.
+     */
+    /*package*/ static void sortRows(long[] a, int rowLength, int lo, int hi) {
+        long[] pivot = new long[rowLength];
+        while ( hi - lo > 16 ) {
+            int mid = lo + (hi - lo) / 2;
+            // Median of three.
+            if ( compareRows(a, mid, a, lo, rowLength) < 0 )
+                swapRows(a, mid, lo, rowLength);
+            if ( compareRows(a, hi-1, a, lo, rowLength) < 0 )
+                swapRows(a, hi-1, lo, rowLength);
+            if ( compareRows(a, hi-1, a, mid, rowLength) < 0 )
+                swapRows(a, hi-1, mid, rowLength);
+            System.arraycopy(a, mid * rowLength, pivot, 0, rowLength);
+            // [lo, lt) < pivot, [lt, i) = pivot, [gt, hi) > pivot
+            int lt = lo;
+            int i = lo;
+            int gt = hi;
+            while ( i < gt ) {
+                int x = compareRows(a, i, pivot, 0, rowLength);
+                if ( x < 0 )
+                    swapRows(a, lt++, i++, rowLength);
+                else if ( x > 0 )
+                    swapRows(a, i, --gt, rowLength);
+                else
+                    i++;
+            }
+            // Recurse on the smaller part, loop on the larger.
+            if ( lt - lo < hi - gt ) {
+                sortRows(a, rowLength, lo, lt);
+                lo = gt;
+            } else {
+                sortRows(a, rowLength, gt, hi);
+                hi = lt;
+            }
+        }
+        for ( int i = lo + 1 ; i < hi ; i++ ) {
+            for ( int j = i ; j > lo && compareRows(a, j, a, j-1, rowLength) < 0 ; j-- )
+                swapRows(a, j, j-1, rowLength);
+        }
+    }
+
+    // ---- Iterators
+
+    /** Iterator over a sorted run in memory, skipping duplicates. */
+    private class MemoryIterator implements Iterator<Record> {
+        private final long[] rows;
+        private final int numRows;
+        private int row = 0;
+
+        MemoryIterator(long[] rows, int numRows) {
+            this.rows = rows;
+            this.numRows = numRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return row < numRows;
+        }
+
+        @Override
+        public Record next() {
+            if ( !hasNext() )
+                throw new NoSuchElementException();
+            Record record = toRecord(rows, row);
+            row++;
+            while ( row < numRows && compareRows(rows, row, rows, row-1, rowLength) == 0 )
+                row++;
+            return record;
+        }
+    }
+
+    /** One run file being read. */
+    private class RunReader {
+        private final Path path;
+        private final DataInputStream input;
+        private final long[] row = new long[rowLength];
+
+        RunReader(Path path) {
+            this.path = path;
+            try {
+                this.input = input(path);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        // Read the next row; return false at the end of the run.
+        boolean advance() {
+            try {
+                row[0] = input.readLong();
+            } catch (EOFException ex) {
+                return false;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            try {
+                for ( int i = 1 ; i < rowLength ; i++ )
+                    row[i] = input.readLong();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return true;
+        }
+
+        void finish() {
+            IO.close(input);
+            delete(path);
+            files.remove(path);
+        }
+    }
+
+    /** K-way merge of run files, skipping duplicates. */
+    private class MergeIterator implements Iterator<Record> {
+        private final PriorityQueue<RunReader> queue;
+        private final long[] last = new long[rowLength];
+        private boolean started = false;
+        private boolean slot = false;
+
+        MergeIterator(List<Path> paths) {
+            this.queue = new PriorityQueue<>(Math.max(1, paths.size()),
+                                             (r1, r2) -> compareRows(r1.row, 0, r2.row, 0, rowLength));
+            for ( Path path : paths ) {
+                RunReader reader = new RunReader(path);
+                if ( reader.advance() )
+                    queue.add(reader);
+                else
+                    reader.finish();
+            }
+        }
+
+        boolean hasNextRow() {
+            if ( slot )
+                return true;
+            while ( !queue.isEmpty() ) {
+                RunReader reader = queue.poll();
+                boolean duplicate = started && compareRows(reader.row, 0, last, 0, rowLength) == 0;
+                if ( !duplicate ) {
+                    System.arraycopy(reader.row, 0, last, 0, rowLength);
+                    started = true;
+                    slot = true;
+                }
+                if ( reader.advance() )
+                    queue.add(reader);
+                else
+                    reader.finish();
+                if ( slot )
+                    return true;
+            }
+            return false;
+        }
+
+        // The returned array is reused.
+        long[] nextRow() {
+            if ( !hasNextRow() )
+                throw new NoSuchElementException();
+            slot = false;
+            return last;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNextRow();
+        }
+
+        @Override
+        public Record next() {
+            return toRecord(nextRow(), 0);
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.GroupCommit;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sparql.sse.SSE;
@@ -110,4 +111,23 @@ public class TestDatabaseMgr
         StoreParams storeParams2 = TDBInternal.requireStorage(dg1).getStoreParams();
         assertEquals(testBlockSize, storeParams2.getBlockSize().intValue());
     }
+
+    @Test
+    public void testDatabaseMgrGroupCommit() throws Exception {
+        TDBInternal.reset();
+        DatasetGraph dg1 = DatabaseMgr.connectDatasetGraph(Location.mem());
+        GroupCommit groupCommit = DatabaseMgr.getGroupCommit(dg1);
+        assertSame(groupCommit, DatabaseMgr.getGroupCommit(dg1));
+        int N = 20;
+        Thread[] threads = new Thread[N];
+        for ( int i = 0 ; i < N ; i++ ) {
+            Quad quad = SSE.parseQuad("(_ <s> <p> "+i+")");
+            threads[i] = new Thread(()->groupCommit.executeWrite(()->dg1.add(quad)));
+            threads[i].start();
+        }
+        for ( Thread t : threads )
+            t.join();
+        assertEquals(N, Txn.calculateRead(dg1, ()->dg1.stream().count()).intValue());
+        assertTrue(groupCommit.getCountCommits() <= N);
+    }
 }
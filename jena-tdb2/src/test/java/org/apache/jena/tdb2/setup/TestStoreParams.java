@@ -73,6 +73,33 @@ public class TestStoreParams {
         assertEqualsStoreParams(paramsExpected,paramsActual);
     }
 
+    @Test public void store_params_07() {
+        long offHeapSize = 3L*1024*1024*1024;
+        StoreParams params = StoreParams.builder(label()).nodeId2NodeOffHeapCacheSize(offHeapSize).build();
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(offHeapSize, params2.getNodeId2NodeOffHeapCacheSize().longValue());
+        assertTrue(params2.isSetNodeId2NodeOffHeapCacheSize());
+    }
+
+    @Test public void store_params_08() {
+        StoreParams params = StoreParams.builder(label()).persistentStats(true).build();
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertTrue(params2.isPersistentStats());
+        assertTrue(params2.isSetPersistentStats());
+        assertFalse(StoreParams.getDftStoreParams().isPersistentStats());
+    }
+
+    @Test public void store_params_09() {
+        StoreParams params = StoreParams.builder(label()).reuseBlocks(true).build();
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertTrue(params2.isReuseBlocks());
+        assertTrue(params2.isSetReuseBlocks());
+        assertFalse(StoreParams.getDftStoreParams().isReuseBlocks());
+    }
+
     // ----
 
     @Test public void store_params_10() {
@@ -116,6 +143,29 @@ public class TestStoreParams {
         assertArrayEquals(expected, params.getTripleIndexes());
     }
 
+    @Test public void store_params_15() {
+        StoreParams params = StoreParams.builder(label()).compressNodes(true).build();
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertTrue(params2.isCompressNodes());
+        assertTrue(params2.isSetCompressNodes());
+        assertFalse(StoreParams.getDftStoreParams().isCompressNodes());
+        // Not dynamic.
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertFalse(params3.isCompressNodes());
+    }
+
+    @Test public void store_params_16() {
+        StoreParams params = StoreParams.builder(label()).closurePredicates("http://example/p", "http://example/q").build();
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertArrayEquals(new String[] {"http://example/p", "http://example/q"}, params2.getClosurePredicates());
+        assertEquals(0, StoreParams.getDftStoreParams().getClosurePredicates().length);
+        // Dynamic.
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertArrayEquals(params.getClosurePredicates(), params3.getClosurePredicates());
+    }
+
     // Check that setting gets recorded and propagated.
 
     @Test public void store_params_20() {
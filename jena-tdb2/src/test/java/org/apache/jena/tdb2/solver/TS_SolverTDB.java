@@ -25,6 +25,10 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses( {
     TestSolverTDB.class
     , TestStats.class
+    , TestBatchNodeResolver.class
+    , TestMergeJoinTDB.class
+    , TestRangeFilterTDB.class
+    , TestNodeIdExecution.class
 })
 
 public class TS_SolverTDB
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.junit.BuildTestLib;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.junit.Test;
+
+public class TestBatchNodeResolver {
+
+    private static Var x = Var.alloc("x");
+    private static Var y = Var.alloc("y");
+
+    private static NodeTable nodeTable() {
+        StoreParams params = StoreParams.builder("TestBatchNodeResolver").build();
+        return BuildTestLib.makeNodeTable(Location.mem(), "test", params);
+    }
+
+    @Test public void batchResolve_01() {
+        NodeTable nodeTable = nodeTable();
+        Node n1 = SSE.parseNode("<http://example/a>");
+        Node n2 = SSE.parseNode("'abc'");
+        Node n3 = SSE.parseNode("123");
+        NodeId id1 = nodeTable.getAllocateNodeId(n1);
+        NodeId id2 = nodeTable.getAllocateNodeId(n2);
+        NodeId id3 = nodeTable.getAllocateNodeId(n3);
+
+        List<BindingNodeId> rows = new ArrayList<>();
+        for ( int i = 0 ; i < 5 ; i++ ) {
+            BindingNodeId b = new BindingNodeId();
+            b.put(x, (i%2 == 0) ? id1 : id2);
+            b.put(y, id3);
+            rows.add(b);
+        }
+
+        BatchNodeResolver iter = new BatchNodeResolver(rows.iterator(), nodeTable, 2, null);
+        List<Binding> results = Iter.toList(iter);
+        assertEquals(5, results.size());
+        for ( int i = 0 ; i < 5 ; i++ ) {
+            Binding b = results.get(i);
+            assertEquals((i%2 == 0) ? n1 : n2, b.get(x));
+            assertEquals(n3, b.get(y));
+        }
+        assertEquals(5, iter.getRows());
+        // Batches (2,2,1) : {id1, id2} {id1, id2} {id1}
+        assertEquals(5, iter.getDistinctNodeIds());
+        assertEquals(5, iter.getInlineNodeIds());
+        assertEquals(iter.getDistinctNodeIds(), iter.getCacheHits()+iter.getNodeTableReads());
+        assertTrue(iter.getCacheHitRatio() >= 0.0 && iter.getCacheHitRatio() <= 1.0);
+    }
+
+    @Test public void batchResolve_02() {
+        NodeTable nodeTable = nodeTable();
+        BatchNodeResolver iter = new BatchNodeResolver(Iter.nullIterator(), nodeTable, 10, null);
+        assertTrue(!iter.hasNext());
+        assertEquals(1.0, iter.getCacheHitRatio(), 0.0);
+    }
+
+    // Same results with and without batch resolution.
+    @Test public void batchResolve_03() {
+        Dataset dataset = TDB2Factory.createDataset();
+        DatasetGraph dsg = dataset.asDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 50 ; i++ ) {
+                dsg.getDefaultGraph().add(SSE.parseTriple("(<http://example/s"+i+"> <http://example/p> 'v"+(i%7)+"')"));
+                dsg.getDefaultGraph().add(SSE.parseTriple("(<http://example/s"+i+"> <http://example/q> "+i+")"));
+            }
+        });
+        String qs = "SELECT * { ?s <http://example/p> ?v ; <http://example/q> ?n } ORDER BY ?n";
+        List<QuerySolution> rows1 = query(dataset, qs, null);
+        List<QuerySolution> rows2 = query(dataset, qs, "7");
+        List<QuerySolution> rows3 = query(dataset, qs, "true");
+        assertEquals(50, rows1.size());
+        for ( int i = 0 ; i < rows1.size() ; i++ ) {
+            assertEquals(rows1.get(i).toString(), rows2.get(i).toString());
+            assertEquals(rows1.get(i).toString(), rows3.get(i).toString());
+        }
+    }
+
+    private static List<QuerySolution> query(Dataset dataset, String qs, String batchSetting) {
+        return Txn.calculateRead(dataset, ()->{
+            QueryExecutionDatasetBuilder builder = QueryExecution.dataset(dataset).query(qs);
+            if ( batchSetting != null )
+                builder.set(SystemTDB.symBatchNodeResolution, batchSetting);
+            try ( QueryExecution qExec = builder.build() ) {
+                List<QuerySolution> x = new ArrayList<>();
+                qExec.execSelect().forEachRemaining(x::add);
+                return x;
+            }
+        });
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestMergeJoinTDB {
+
+    private static Dataset dataset;
+
+    @BeforeClass public static void beforeClass() {
+        dataset = TDB2Factory.createDataset();
+        DatasetGraph dsg = dataset.asDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 200 ; i++ ) {
+                String s = "<http://example/s"+i+">";
+                if ( i%2 == 0 )
+                    add(dsg, s+" <http://example/type> <http://example/Even>");
+                if ( i%3 == 0 )
+                    add(dsg, s+" <http://example/type> <http://example/Three>");
+                if ( i%5 == 0 )
+                    add(dsg, s+" <http://example/five> true");
+                add(dsg, s+" <http://example/value> "+i);
+                add(dsg, "<http://example/a> <http://example/link> "+s);
+                if ( i%7 == 0 )
+                    add(dsg, "<http://example/b> <http://example/link> "+s);
+                if ( i%4 == 0 )
+                    dsg.add(SSE.parseQuad("(<http://example/g> "+s+" <http://example/type> <http://example/Four>)"));
+                if ( i%6 == 0 )
+                    dsg.add(SSE.parseQuad("(<http://example/g> "+s+" <http://example/type> <http://example/Six>)"));
+            }
+        });
+    }
+
+    private static void add(DatasetGraph dsg, String str) {
+        dsg.getDefaultGraph().add(SSE.parseTriple("("+str+")"));
+    }
+
+    @Test public void mergeJoin_star_1() {
+        test("SELECT * { ?s <http://example/type> <http://example/Even> ; <http://example/type> <http://example/Three> }", 34);
+    }
+
+    @Test public void mergeJoin_star_2() {
+        test("SELECT * { ?s <http://example/type> <http://example/Even> ; <http://example/type> <http://example/Three> ; <http://example/five> true }", 7);
+    }
+
+    // Merge join and then nested loop for the remaining pattern.
+    @Test public void mergeJoin_star_3() {
+        test("SELECT * { ?s <http://example/type> <http://example/Even> ; <http://example/value> ?v ; <http://example/five> true }", 20);
+    }
+
+    // Shared object.
+    @Test public void mergeJoin_object_1() {
+        test("SELECT * { <http://example/a> <http://example/link> ?x . <http://example/b> <http://example/link> ?x }", 29);
+    }
+
+    // Variable bound before the merge join.
+    @Test public void mergeJoin_bound_1() {
+        test("SELECT * { VALUES ?s { <http://example/s6> <http://example/s4> <http://example/s99> } ?s <http://example/type> <http://example/Even> ; <http://example/type> <http://example/Three> }", 1);
+    }
+
+    // A term not in the database.
+    @Test public void mergeJoin_unknown_1() {
+        test("SELECT * { ?s <http://example/type> <http://example/Even> ; <http://example/type> <http://example/Unknown> }", 0);
+    }
+
+    @Test public void mergeJoin_named_1() {
+        test("SELECT * { GRAPH <http://example/g> { ?s <http://example/type> <http://example/Four> ; <http://example/type> <http://example/Six> } }", 17);
+    }
+
+    @Test public void mergeJoin_plan_1() {
+        DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(dataset);
+        List<Triple> triples = new ArrayList<>();
+        triples.add(SSE.parseTriple("(?s <http://example/p> ?o)"));
+        triples.add(SSE.parseTriple("(?s <http://example/type> <http://example/Even>)"));
+        triples.add(SSE.parseTriple("(?s <http://example/five> true)"));
+        triples.add(SSE.parseTriple("(?o <http://example/type> <http://example/Even>)"));
+        Txn.executeRead(dsg, ()->{
+            List<Triple> remaining = new ArrayList<>(triples);
+            List<MergeJoinTDB.Group> groups = MergeJoinTDB.plan(dsg.getTripleTable().getNodeTupleTable(), null, remaining);
+            assertEquals(1, groups.size());
+            assertEquals(2, groups.get(0).size());
+            assertEquals(List.of(triples.get(0), triples.get(3)), remaining);
+        });
+    }
+
+    private static void test(String qs, int expected) {
+        List<String> rows1 = query(qs, false);
+        List<String> rows2 = query(qs, true);
+        assertEquals(expected, rows1.size());
+        rows1.sort(null);
+        rows2.sort(null);
+        assertEquals(rows1, rows2);
+    }
+
+    private static List<String> query(String qs, boolean mergeJoin) {
+        return Txn.calculateRead(dataset, ()->{
+            try ( QueryExecution qExec = QueryExecution.dataset(dataset).query(qs).set(SystemTDB.symMergeJoin, mergeJoin).build() ) {
+                List<String> x = new ArrayList<>();
+                qExec.execSelect().forEachRemaining(row->x.add(row.toString()));
+                return x;
+            }
+        });
+    }
+}
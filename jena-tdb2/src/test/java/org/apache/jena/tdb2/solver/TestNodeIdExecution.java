@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestNodeIdExecution {
+
+    private static Dataset dataset;
+
+    private static final String PRE = "PREFIX : <http://example/> ";
+
+    @BeforeClass public static void beforeClass() {
+        dataset = TDB2Factory.createDataset();
+        DatasetGraph dsg = dataset.asDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 40 ; i++ ) {
+                String s = "<http://example/s"+i+">";
+                add(dsg, s+" <http://example/p> <http://example/o"+(i%5)+">");
+                add(dsg, s+" <http://example/v> "+(i%7));
+                add(dsg, s+" <http://example/label> 'label"+(i%3)+"'");
+                if ( i%2 == 0 )
+                    add(dsg, s+" <http://example/q> <http://example/s"+(i+1)+">");
+                if ( i%4 == 0 )
+                    add(dsg, s+" <http://example/r> <http://example/o"+(i%5)+">");
+            }
+            // Same value, different term. TDB2 stores '01'^^xsd:integer as 1.
+            add(dsg, "<http://example/x> <http://example/v> '01'^^<http://www.w3.org/2001/XMLSchema#integer>");
+            add(dsg, "<http://example/x> <http://example/v> 1.0");
+        });
+    }
+
+    private static void add(DatasetGraph dsg, String str) {
+        dsg.getDefaultGraph().add(SSE.parseTriple("("+str+")"));
+    }
+
+    @Test public void nodeIdExec_distinct_1() {
+        test("SELECT DISTINCT ?o { ?s :p ?o }", 5);
+    }
+
+    @Test public void nodeIdExec_distinct_2() {
+        test("SELECT DISTINCT ?v { ?s :v ?v }", 8);
+    }
+
+    @Test public void nodeIdExec_distinct_3() {
+        test("SELECT DISTINCT ?o ?z { ?s :p ?o OPTIONAL { ?s :r ?z } }", 10);
+    }
+
+    @Test public void nodeIdExec_distinct_4() {
+        test("SELECT DISTINCT ?x { ?s :label ?l BIND(CONCAT(?l, '!') AS ?x) }", 3);
+    }
+
+    @Test public void nodeIdExec_group_1() {
+        test("SELECT ?o (COUNT(*) AS ?c) { ?s :p ?o } GROUP BY ?o", 5);
+    }
+
+    @Test public void nodeIdExec_group_2() {
+        test("SELECT ?o ?l (SUM(?v) AS ?sum) (SAMPLE(?s) AS ?x) { ?s :p ?o ; :label ?l ; :v ?v } GROUP BY ?o ?l", 15);
+    }
+
+    @Test public void nodeIdExec_group_3() {
+        test("SELECT ?z (COUNT(?s) AS ?c) { ?s :p ?o OPTIONAL { ?s :r ?z } } GROUP BY ?z", 6);
+    }
+
+    @Test public void nodeIdExec_group_4() {
+        test("SELECT ?k (COUNT(*) AS ?c) { ?s :v ?v } GROUP BY (?v > 3 AS ?k)", 2);
+    }
+
+    @Test public void nodeIdExec_group_5() {
+        test("SELECT (COUNT(*) AS ?c) { ?s :p :nothing }", 1);
+    }
+
+    @Test public void nodeIdExec_group_6() {
+        test("SELECT ?o (COUNT(*) AS ?c) { ?s :p :nothing } GROUP BY ?o", 0);
+    }
+
+    @Test public void nodeIdExec_group_7() {
+        test("SELECT ?x (COUNT(*) AS ?c) { ?s :label ?l BIND(CONCAT(?l, '!') AS ?x) } GROUP BY ?x HAVING (?c > 10)", 3);
+    }
+
+    @Test public void nodeIdExec_minus_1() {
+        test("SELECT * { ?s :p ?o MINUS { ?s :q ?x } }", 20);
+    }
+
+    @Test public void nodeIdExec_minus_2() {
+        test("SELECT * { ?s :p ?o OPTIONAL { ?s :r ?z } MINUS { ?y :r ?z } }", 30);
+    }
+
+    @Test public void nodeIdExec_minus_3() {
+        test("SELECT * { ?s :p ?o MINUS { ?a :b ?c } }", 40);
+    }
+
+    @Test public void nodeIdExec_join_1() {
+        test("SELECT * { { ?s :p ?o OPTIONAL { ?s :r ?z } } { ?s :q ?t } }", 20);
+    }
+
+    @Test public void nodeIdExec_join_2() {
+        test("SELECT * { { ?s :p ?o OPTIONAL { ?s :r ?z } } { ?y :r ?z } }", 320);
+    }
+
+    @Test public void nodeIdExec_join_3() {
+        test("SELECT * { { SELECT ?o (COUNT(*) AS ?c) { ?s :p ?o } GROUP BY ?o } { SELECT ?o (COUNT(*) AS ?n) { ?s :r ?o } GROUP BY ?o } }", 5);
+    }
+
+    // Equal values, different terms, different keys.
+    @Test public void nodeIdKey_1() {
+        DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(dataset);
+        Txn.executeRead(dsg, ()->{
+            NodeTable nodeTable = dsg.getTripleTable().getNodeTupleTable().getNodeTable();
+            Var v = Var.alloc("v");
+            List<Var> vars = List.of(v);
+            Binding b1 = BindingFactory.binding(v, SSE.parseNode("1"));
+            Binding b2 = BindingFactory.binding(v, SSE.parseNode("'01'^^xsd:integer"));
+            Binding b3 = BindingFactory.binding(v, SSE.parseNode("1.0"));
+            Binding b4 = BindingFactory.binding(v, SSE.parseNode("1"));
+            Binding b5 = BindingFactory.binding();
+            NodeIdKey k1 = NodeIdKey.create(b1, vars, nodeTable);
+            assertNotEquals(k1, NodeIdKey.create(b2, vars, nodeTable));
+            assertNotEquals(k1, NodeIdKey.create(b3, vars, nodeTable));
+            assertEquals(k1, NodeIdKey.create(b4, vars, nodeTable));
+            assertNotEquals(k1, NodeIdKey.create(b5, vars, nodeTable));
+        });
+    }
+
+    private static void test(String qs, int expected) {
+        List<String> rows1 = query(qs, false);
+        List<String> rows2 = query(qs, true);
+        rows1.sort(null);
+        rows2.sort(null);
+        assertEquals(rows1, rows2);
+        assertEquals(expected, rows1.size());
+    }
+
+    private static List<String> query(String qs, boolean nodeIdExecution) {
+        return Txn.calculateRead(dataset, ()->{
+            try ( QueryExecution qExec = QueryExecution.dataset(dataset).query(PRE+qs)
+                                                       .set(SystemTDB.symNodeIdExecution, nodeIdExecution).build() ) {
+                List<String> x = new ArrayList<>();
+                ResultSet rs = qExec.execSelect();
+                rs.forEachRemaining(row->{
+                    StringBuilder sb = new StringBuilder();
+                    for ( String v : rs.getResultVars() )
+                        sb.append(v).append("=").append(row.get(v)).append(" ");
+                    x.add(sb.toString());
+                });
+                return x;
+            }
+        });
+    }
+}
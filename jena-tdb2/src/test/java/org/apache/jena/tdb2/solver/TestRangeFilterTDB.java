@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.ExprUtils;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestRangeFilterTDB {
+
+    private static Dataset dataset;
+
+    @BeforeClass public static void beforeClass() {
+        dataset = TDB2Factory.createDataset();
+        DatasetGraph dsg = dataset.asDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = -50 ; i < 150 ; i++ ) {
+                String s = "<http://example/s"+i+">";
+                add(dsg, s+" <http://example/value> "+i);
+                if ( i%10 == 0 ) {
+                    add(dsg, s+" <http://example/value> "+i+".5");
+                    add(dsg, s+" <http://example/value> '"+i+"'^^xsd:int");
+                    add(dsg, s+" <http://example/value> "+i+".0e0");
+                    add(dsg, s+" <http://example/value> 'abc"+i+"'");
+                    add(dsg, s+" <http://example/value> <http://example/x"+i+">");
+                    dsg.add(SSE.parseQuad("(<http://example/g> "+s+" <http://example/value> "+i+")"));
+                }
+                if ( i >= 1 && i <= 28 )
+                    add(dsg, s+" <http://example/date> '2020-02-"+String.format("%02d", i)+"'^^xsd:date");
+            }
+            // Not inline.
+            add(dsg, "<http://example/big> <http://example/value> 123456789012345678901234567890");
+            add(dsg, "<http://example/big> <http://example/value> -123456789012345678901234567890");
+            add(dsg, "<http://example/big> <http://example/value> true");
+        });
+    }
+
+    private static void add(DatasetGraph dsg, String str) {
+        dsg.getDefaultGraph().add(SSE.parseTriple("("+str+")"));
+    }
+
+    @Test public void rangeFilter_int_1() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v > 30) }", 154);
+    }
+
+    @Test public void rangeFilter_int_2() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v >= -5 && ?v < 5) }", 13);
+    }
+
+    @Test public void rangeFilter_int_3() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v <= -20) }", 44);
+    }
+
+    @Test public void rangeFilter_int_4() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(100 < ?v) }", 63);
+    }
+
+    @Test public void rangeFilter_decimal_1() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v > 139.5) }", 14);
+    }
+
+    @Test public void rangeFilter_double_1() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v < -4.5e1) }", 9);
+    }
+
+    @Test public void rangeFilter_equals_1() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v = 40) }", 3);
+    }
+
+    @Test public void rangeFilter_string_1() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v < 'abc2') }", 12);
+    }
+
+    @Test public void rangeFilter_date_1() {
+        test("SELECT * { ?s <http://example/date> ?d FILTER(?d >= '2020-02-20'^^xsd:date) }", 9);
+    }
+
+    // Join after the filtered pattern.
+    @Test public void rangeFilter_join_1() {
+        test("SELECT * { ?s <http://example/value> ?v FILTER(?v > 20) ?s <http://example/date> ?d }", 9);
+    }
+
+    // Variable in the leading slot.
+    @Test public void rangeFilter_any_1() {
+        test("SELECT * { ?s ?p ?v FILTER(?v < 0) }", 66);
+    }
+
+    @Test public void rangeFilter_named_1() {
+        test("SELECT * { GRAPH <http://example/g> { ?s <http://example/value> ?v FILTER(?v >= 100) } }", 5);
+    }
+
+    @Test public void rangeFilter_union_1() {
+        test("SELECT * { GRAPH <urn:x-arq:UnionGraph> { ?s <http://example/value> ?v FILTER(?v >= 100) } }", 5);
+    }
+
+    // Only the parts of the index that may match are scanned.
+    @Test public void rangeFilter_scan_1() {
+        DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(dataset);
+        ExprList exprs = new ExprList(ExprUtils.parse("?v >= 100 && ?v < 110"));
+        exprs = ExprList.splitConjunction(exprs);
+        Map<Var, RangeFilterTDB.Range> ranges = RangeFilterTDB.ranges(exprs);
+        assertEquals(1, ranges.size());
+        RangeFilterTDB.Range range = ranges.get(Var.alloc("v"));
+        Txn.executeRead(dsg, ()->{
+            NodeTupleTable ntt = dsg.getTripleTable().getNodeTupleTable();
+            NodeId p = ntt.getNodeTable().getNodeIdForNode(SSE.parseNode("<http://example/value>"));
+            NodeId[] ids = { null, p, null };
+            Iterator<Tuple<NodeId>> iter = RangeFilterTDB.find(ntt, ids, 2, range);
+            assertNotNull(iter);
+            List<Tuple<NodeId>> x = Iter.toList(Iter.filter(iter, t->range.test(t.get(2), null)));
+            // 10 integers, the xsd:int, decimal and double for 100,
+            // and the terms in the node table (strings, IRIs, big integers) which are left to the FILTER.
+            assertEquals(10 + 3 + 20 + 20 + 2, x.size());
+        });
+    }
+
+    private static void test(String qs, int expected) {
+        List<String> rows1 = query(qs, false);
+        List<String> rows2 = query(qs, true);
+        rows1.sort(null);
+        rows2.sort(null);
+        assertEquals(rows1, rows2);
+        assertEquals(expected, rows1.size());
+    }
+
+    private static List<String> query(String qs, boolean rangeFilter) {
+        return Txn.calculateRead(dataset, ()->{
+            try ( QueryExecution qExec = QueryExecution.dataset(dataset)
+                                                       .query("PREFIX xsd: <http://www.w3.org/2001/XMLSchema#> "+qs)
+                                                       .set(SystemTDB.symRangeFilter, rangeFilter).build() ) {
+                List<String> x = new ArrayList<>();
+                qExec.execSelect().forEachRemaining(row->x.add(row.toString()));
+                return x;
+            }
+        });
+    }
+}
@@ -47,6 +47,9 @@ import org.junit.runners.Suite;
     , TestTransPromoteTDB.class
     , TestQuadFilter.class
     , TestGraphView_Prefixes.class
+    , TestStatsTDB.class
+    , TestCardinalityStatsTDB.class
+    , TestClosureIndexTDB.class
 } )
 public class TS_Store
 {
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.algebra.optimize.CardinalityEstimator;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.junit.Test;
+
+public class TestCardinalityStatsTDB {
+
+    private static DatasetGraphTDB create() {
+        StoreParams base = StoreParams.getDftMemStoreParams();
+        StoreParams params = StoreParams.builder("TestCardinalityStatsTDB", base).persistentStats(true).build();
+        return TDB2StorageBuilder.build(Location.mem(), params, null);
+    }
+
+    private static void load(DatasetGraphTDB dsg) {
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 20 ; i++ )
+                dsg.add(SSE.parseQuad("(_ <http://example/s"+i+"> <http://example/p> <http://example/o"+(i%5)+">)"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s1> <http://example/q> 1)"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s2> <http://example/q> 2)"));
+        });
+    }
+
+    @Test public void cardinality_01() {
+        DatasetGraphTDB dsg = create();
+        CardinalityEstimator estimator = new CardinalityStatsTDB(dsg);
+        Txn.executeRead(dsg, ()->
+            assertTrue(estimator.cardinality(null, SSE.parseTriple("(?s <http://example/p> ?o)")) < 0));
+        load(dsg);
+        Txn.executeRead(dsg, ()->{
+            assertEquals(20, estimator.cardinality(null, SSE.parseTriple("(?s <http://example/p> ?o)")), 0);
+            assertEquals(2, estimator.cardinality(null, SSE.parseTriple("(?s <http://example/q> ?o)")), 0);
+        });
+        // Estimates follow the committed changes.
+        Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ <http://example/s3> <http://example/q> 3)")));
+        Txn.executeRead(dsg, ()->
+            assertEquals(3, estimator.cardinality(null, SSE.parseTriple("(?s <http://example/q> ?o)")), 0));
+    }
+
+    @Test public void cardinality_query() {
+        DatasetGraphTDB dsg = create();
+        load(dsg);
+        String qs = "SELECT * { ?s <http://example/p> ?o . ?s <http://example/q> ?v }";
+        Txn.executeRead(dsg, ()->{
+            long n1 = count(QueryExec.dataset(dsg).query(qs).build());
+            long n2 = count(QueryExec.dataset(dsg).query(qs).set(ARQ.optJoinReorder, true).build());
+            assertEquals(2, n1);
+            assertEquals(n1, n2);
+        });
+    }
+
+    private static long count(QueryExec qExec) {
+        try ( qExec ) {
+            RowSet rowSet = qExec.select();
+            return rowSet.rewindable().size();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.path.Path;
+import org.apache.jena.sparql.path.PathFactory;
+import org.apache.jena.sparql.path.eval.PathClosureIndex;
+import org.apache.jena.sparql.path.eval.PathEval;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.junit.Test;
+
+public class TestClosureIndexTDB {
+
+    private static Node p = SSE.parseNode("<http://example/p>");
+    private static Node q = SSE.parseNode("<http://example/q>");
+
+    private static DatasetGraphTDB create(Location location, String... predicates) {
+        StoreParams base = location.isMem() ? StoreParams.getDftMemStoreParams() : StoreParams.getDftStoreParams();
+        StoreParams params = StoreParams.builder("TestClosureIndexTDB", base).closurePredicates(predicates).build();
+        return TDB2StorageBuilder.build(location, params, null);
+    }
+
+    private static Node node(int i) {
+        return SSE.parseNode("<http://example/n"+i+">");
+    }
+
+    private static void add(DatasetGraphTDB dsg, Node property, int... chain) {
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < chain.length-1 ; i++ )
+                dsg.getDefaultGraph().add(node(chain[i]), property, node(chain[i+1]));
+        });
+    }
+
+    /** Closure from the index. */
+    private static Set<Node> closure(DatasetGraphTDB dsg, Node start, Node property, boolean forward) {
+        return Iter.toSet(new PathClosureIndexTDB(dsg).oneOrMore(start, property, forward));
+    }
+
+    /** Closure by path evaluation over the data. */
+    private static Set<Node> expected(Graph graph, Node start, Node property, boolean forward) {
+        Path path = PathFactory.pathOneOrMore1(PathFactory.pathLink(property));
+        Iterator<Node> iter = forward ? PathEval.eval(graph, start, path, null) : PathEval.evalReverse(graph, start, path, null);
+        return Iter.toSet(iter);
+    }
+
+    private static void check(DatasetGraphTDB dsg, Node property, int numNodes) {
+        Txn.executeRead(dsg, ()->{
+            Graph graph = dsg.getDefaultGraph();
+            for ( int i = 0 ; i < numNodes ; i++ ) {
+                Node n = node(i);
+                assertEquals("Forward "+n, expected(graph, n, property, true), closure(dsg, n, property, true));
+                assertEquals("Backward "+n, expected(graph, n, property, false), closure(dsg, n, property, false));
+            }
+        });
+    }
+
+    @Test public void closure_01() {
+        DatasetGraphTDB dsg = create(Location.mem(), p.getURI());
+        add(dsg, p, 0, 1, 2, 3);
+        add(dsg, q, 3, 4);
+        Txn.executeRead(dsg, ()->{
+            assertEquals(Set.of(node(1), node(2), node(3)), closure(dsg, node(0), p, true));
+            assertEquals(Set.of(node(0), node(1), node(2)), closure(dsg, node(3), p, false));
+            PathClosureIndex index = new PathClosureIndexTDB(dsg);
+            assertTrue(index.connected(node(0), p, node(3)));
+            assertFalse(index.connected(node(3), p, node(0)));
+            assertTrue(index.covers(dsg.getDefaultGraph(), p));
+            assertFalse(index.covers(dsg.getDefaultGraph(), q));
+            assertFalse(index.covers(dsg.getUnionGraph(), p));
+        });
+        check(dsg, p, 5);
+    }
+
+    @Test public void closure_02_cycle() {
+        DatasetGraphTDB dsg = create(Location.mem(), p.getURI());
+        add(dsg, p, 0, 1, 2, 0);
+        add(dsg, p, 2, 3);
+        check(dsg, p, 4);
+        Txn.executeWrite(dsg, ()->dsg.getDefaultGraph().delete(node(2), p, node(0)));
+        check(dsg, p, 4);
+    }
+
+    @Test public void closure_03_diamond() {
+        DatasetGraphTDB dsg = create(Location.mem(), p.getURI());
+        add(dsg, p, 0, 1, 3, 4);
+        add(dsg, p, 0, 2, 3);
+        // Still connected by the other side of the diamond.
+        Txn.executeWrite(dsg, ()->dsg.getDefaultGraph().delete(node(1), p, node(3)));
+        check(dsg, p, 5);
+        Txn.executeRead(dsg, ()->assertTrue(closure(dsg, node(0), p, true).contains(node(4))));
+    }
+
+    @Test public void closure_04_random() {
+        DatasetGraphTDB dsg = create(Location.mem(), p.getURI());
+        int numNodes = 12;
+        Random random = new Random(1234);
+        for ( int round = 0 ; round < 20 ; round++ ) {
+            Txn.executeWrite(dsg, ()->{
+                Graph graph = dsg.getDefaultGraph();
+                for ( int i = 0 ; i < 10 ; i++ ) {
+                    Node s = node(random.nextInt(numNodes));
+                    Node o = node(random.nextInt(numNodes));
+                    if ( random.nextInt(3) == 0 )
+                        graph.delete(s, p, o);
+                    else
+                        graph.add(s, p, o);
+                }
+            });
+            check(dsg, p, numNodes);
+        }
+        // Delete by pattern.
+        Txn.executeWrite(dsg, ()->dsg.getDefaultGraph().remove(node(3), p, Node.ANY));
+        check(dsg, p, numNodes);
+    }
+
+    @Test public void closure_05_abort() {
+        DatasetGraphTDB dsg = create(Location.mem(), p.getURI());
+        add(dsg, p, 0, 1);
+        dsg.begin(TxnType.WRITE);
+        dsg.getDefaultGraph().add(node(1), p, node(2));
+        dsg.abort();
+        dsg.end();
+        check(dsg, p, 3);
+        Txn.executeRead(dsg, ()->assertEquals(Set.of(node(1)), closure(dsg, node(0), p, true)));
+    }
+
+    @Test public void closure_06_query() {
+        DatasetGraphTDB dsg = create(Location.mem(), p.getURI());
+        add(dsg, p, 0, 1, 2, 3);
+        add(dsg, p, 1, 4);
+        PathClosureIndexTDB base = new PathClosureIndexTDB(dsg);
+        AtomicInteger calls = new AtomicInteger();
+        PathClosureIndex index = new PathClosureIndex() {
+            @Override public boolean covers(Graph graph, Node property) {
+                return base.covers(graph, property);
+            }
+            @Override public Iterator<Node> oneOrMore(Node start, Node property, boolean forward) {
+                calls.incrementAndGet();
+                return base.oneOrMore(start, property, forward);
+            }
+            @Override public boolean connected(Node start, Node property, Node end) {
+                calls.incrementAndGet();
+                return base.connected(start, property, end);
+            }
+        };
+        String[] queries = {
+            "SELECT * { <http://example/n0> <http://example/p>+ ?x }",
+            "SELECT * { <http://example/n0> <http://example/p>* ?x }",
+            "SELECT * { ?x <http://example/p>+ <http://example/n3> }",
+            "SELECT * { ?x ^<http://example/p>* <http://example/n0> }",
+            "SELECT * { ?x <http://example/p>+ ?y }",
+            "ASK { <http://example/n0> <http://example/p>+ <http://example/n4> }",
+            "ASK { <http://example/n4> <http://example/p>+ <http://example/n0> }",
+            "ASK { <http://example/n9> <http://example/p>* <http://example/n9> }",
+        };
+        Txn.executeRead(dsg, ()->{
+            for ( String qs : queries ) {
+                calls.set(0);
+                List<String> expected = results(QueryExec.dataset(dsg).query(qs).set(ARQ.pathClosureIndex, noIndex).build());
+                List<String> actual = results(QueryExec.dataset(dsg).query(qs).set(ARQ.pathClosureIndex, index).build());
+                assertEquals(qs, expected, actual);
+                if ( !qs.contains("n9") )
+                    assertTrue(qs, calls.get() > 0);
+            }
+        });
+    }
+
+    // An index that covers nothing: path evaluation over the data.
+    private static PathClosureIndex noIndex = new PathClosureIndex() {
+        @Override public boolean covers(Graph graph, Node property)                         { return false; }
+        @Override public Iterator<Node> oneOrMore(Node start, Node property, boolean forward) { return null; }
+        @Override public boolean connected(Node start, Node property, Node end)             { return false; }
+    };
+
+    private static List<String> results(QueryExec qExec) {
+        List<String> x = new ArrayList<>();
+        if ( qExec.getQuery().isAskType() )
+            x.add(Boolean.toString(qExec.ask()));
+        else {
+            RowSet rowSet = qExec.select();
+            rowSet.forEachRemaining(b->x.add(b.toString()));
+        }
+        qExec.close();
+        Collections.sort(x);
+        return x;
+    }
+
+    @Test public void closure_07_query_default() {
+        // The query engine uses the index of the database.
+        DatasetGraphTDB dsg = create(Location.mem(), p.getURI());
+        add(dsg, p, 0, 1, 2);
+        Txn.executeRead(dsg, ()->{
+            List<String> x = results(QueryExec.dataset(dsg).query("SELECT * { <http://example/n0> <http://example/p>+ ?x }").build());
+            assertEquals(2, x.size());
+        });
+    }
+
+    @Test public void closure_08_reopen() {
+        Location location = Location.create(ConfigTest.getCleanDir());
+        DatasetGraphTDB dsg = create(location, p.getURI());
+        add(dsg, p, 0, 1, 2);
+        add(dsg, q, 0, 1, 2);
+        Txn.executeRead(dsg, ()->assertEquals(2, closure(dsg, node(0), p, true).size()));
+        dsg.shutdown();
+
+        // Change of predicates.
+        DatasetGraphTDB dsg2 = create(location, q.getURI());
+        assertEquals(Set.of(q), dsg2.getClosureIndex().getPredicates());
+        Txn.executeRead(dsg2, ()->{
+            assertEquals(2, closure(dsg2, node(0), q, true).size());
+            // Entries for p have been removed.
+            NodeId pId = dsg2.getTripleTable().getNodeTupleTable().getNodeTable().getNodeIdForNode(p);
+            NodeId n0 = dsg2.getTripleTable().getNodeTupleTable().getNodeTable().getNodeIdForNode(node(0));
+            assertFalse(dsg2.getClosureIndex().oneOrMore(n0, pId, true).hasNext());
+        });
+        dsg2.shutdown();
+
+        // No predicates.
+        DatasetGraphTDB dsg3 = create(location);
+        assertNull(dsg3.getClosureIndex());
+        dsg3.shutdown();
+    }
+
+    @Test public void closure_09_reopen_without_predicates() {
+        // Changes made while the index is not configured are not missed.
+        Location location = Location.create(ConfigTest.getCleanDir());
+        DatasetGraphTDB dsg = create(location, p.getURI());
+        add(dsg, p, 0, 1);
+        dsg.shutdown();
+
+        DatasetGraphTDB dsg2 = create(location);
+        assertNull(dsg2.getClosureIndex());
+        add(dsg2, p, 1, 2);
+        Txn.executeWrite(dsg2, ()->dsg2.getDefaultGraph().delete(node(0), p, node(1)));
+        add(dsg2, p, 3, 0);
+        dsg2.shutdown();
+
+        DatasetGraphTDB dsg3 = create(location, p.getURI());
+        assertTrue(dsg3.getClosureIndex().isCurrent());
+        check(dsg3, p, 4);
+        Txn.executeRead(dsg3, ()->{
+            assertEquals(Set.of(node(0)), closure(dsg3, node(3), p, true));
+            assertEquals(Set.of(node(2)), closure(dsg3, node(1), p, true));
+        });
+        dsg3.shutdown();
+    }
+}
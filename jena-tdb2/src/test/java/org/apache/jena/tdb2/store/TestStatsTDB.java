@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store;
+
+import static org.junit.Assert.*;
+
+import java.util.function.BiFunction;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.system.progress.MonitorOutput;
+import org.apache.jena.system.progress.MonitorOutputs;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.junit.Test;
+
+public class TestStatsTDB {
+
+    private static Node p = SSE.parseNode("<http://example/p>");
+    private static Node q = SSE.parseNode("<http://example/q>");
+    private static Node g = SSE.parseNode("<http://example/g>");
+    private static Node classA = SSE.parseNode("<http://example/A>");
+
+    private static DatasetGraphTDB create(Location location) {
+        StoreParams base = location.isMem() ? StoreParams.getDftMemStoreParams() : StoreParams.getDftStoreParams();
+        StoreParams params = StoreParams.builder("TestStatsTDB", base).persistentStats(true).build();
+        return TDB2StorageBuilder.build(location, params, null);
+    }
+
+    private static void load(DatasetGraphTDB dsg) {
+        Txn.executeWrite(dsg, ()->{
+            dsg.add(SSE.parseQuad("(_ <http://example/s1> <http://example/p> <http://example/o1>)"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s1> <http://example/p> <http://example/o2>)"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s2> <http://example/p> <http://example/o1>)"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s1> <http://example/q> 123)"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s1> rdf:type <http://example/A>)"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s2> rdf:type <http://example/A>)"));
+            dsg.add(SSE.parseQuad("(<http://example/g> <http://example/s1> <http://example/p> <http://example/o1>)"));
+            dsg.add(SSE.parseQuad("(<http://example/g> <http://example/s3> <http://example/p> <http://example/o1>)"));
+        });
+    }
+
+    @Test public void stats_01() {
+        DatasetGraphTDB dsg = create(Location.mem());
+        load(dsg);
+        Txn.executeRead(dsg, ()->{
+            StatsTDB stats = dsg.getStats();
+            StatsTDB.TableStats triples = stats.getTriples();
+            assertEquals(6, triples.getCount());
+            assertEquals(2, triples.getSubjects());
+            assertEquals(4, triples.getObjects());
+            assertEquals(3, triples.getPredicates().get(p).getCount());
+            assertEquals(2, triples.getPredicates().get(p).getSubjects());
+            assertEquals(2, triples.getPredicates().get(p).getObjects());
+            assertEquals(1, triples.getPredicates().get(q).getCount());
+            assertEquals(Long.valueOf(2), triples.getTypes().get(classA));
+
+            StatsTDB.TableStats quads = stats.getQuads();
+            assertEquals(2, quads.getCount());
+            assertEquals(2, quads.getSubjects());
+            assertEquals(1, quads.getObjects());
+            assertEquals(Long.valueOf(2), stats.getGraphs().get(g));
+        });
+    }
+
+    // Adding an existing triple, deleting.
+    @Test public void stats_02() {
+        DatasetGraphTDB dsg = create(Location.mem());
+        load(dsg);
+        Txn.executeWrite(dsg, ()->{
+            dsg.add(SSE.parseQuad("(_ <http://example/s1> <http://example/p> <http://example/o1>)"));
+            dsg.delete(SSE.parseQuad("(_ <http://example/s2> <http://example/p> <http://example/o1>)"));
+            dsg.delete(SSE.parseQuad("(_ <http://example/s2> <http://example/p> <http://example/o99>)"));
+            dsg.delete(SSE.parseQuad("(<http://example/g> <http://example/s1> <http://example/p> <http://example/o1>)"));
+        });
+        Txn.executeRead(dsg, ()->{
+            StatsTDB stats = dsg.getStats();
+            assertEquals(5, stats.getTriples().getCount());
+            assertEquals(2, stats.getTriples().getSubjects());
+            assertEquals(2, stats.getTriples().getPredicates().get(p).getCount());
+            assertEquals(1, stats.getTriples().getPredicates().get(p).getSubjects());
+            assertEquals(1, stats.getQuads().getCount());
+            assertEquals(Long.valueOf(1), stats.getGraphs().get(g));
+        });
+        Txn.executeWrite(dsg, ()->dsg.deleteAny(g, Node.ANY, Node.ANY, Node.ANY));
+        Txn.executeRead(dsg, ()->{
+            StatsTDB stats = dsg.getStats();
+            assertEquals(0, stats.getQuads().getCount());
+            assertTrue(stats.getGraphs().isEmpty());
+            assertTrue(stats.getQuads().getPredicates().isEmpty());
+        });
+        // Incremental and recalculated agree.
+        StatsTDB stats1 = Txn.calculateRead(dsg, ()->dsg.getStats());
+        Txn.executeWrite(dsg, ()->dsg.rebuildStats());
+        StatsTDB stats2 = Txn.calculateRead(dsg, ()->dsg.getStats());
+        assertEqualsStats(stats1, stats2);
+    }
+
+    // Abort discards changes.
+    @Test public void stats_03() {
+        DatasetGraphTDB dsg = create(Location.mem());
+        load(dsg);
+        dsg.begin(TxnType.WRITE);
+        dsg.add(SSE.parseQuad("(_ <http://example/s9> <http://example/p> <http://example/o9>)"));
+        assertEquals(7, dsg.getStats().getTriples().getCount());
+        dsg.abort();
+        dsg.end();
+        assertEquals(6, Txn.calculateRead(dsg, ()->dsg.getStats().getTriples().getCount()).longValue());
+    }
+
+    // Persistent
+    @Test public void stats_04() {
+        Location location = Location.create(ConfigTest.getCleanDir());
+        DatasetGraphTDB dsg = create(location);
+        load(dsg);
+        dsg.shutdown();
+
+        DatasetGraphTDB dsg2 = create(location);
+        Txn.executeRead(dsg2, ()->{
+            StatsTDB stats = dsg2.getStats();
+            assertEquals(6, stats.getTriples().getCount());
+            assertEquals(2, stats.getTriples().getPredicates().get(p).getObjects());
+            assertEquals(Long.valueOf(2), stats.getGraphs().get(g));
+        });
+        dsg2.shutdown();
+    }
+
+    // Statistics enabled on an existing database.
+    @Test public void stats_05() {
+        Location location = Location.create(ConfigTest.getCleanDir());
+        DatasetGraphTDB dsg = TDB2StorageBuilder.build(location, StoreParams.getDftStoreParams(), null);
+        load(dsg);
+        assertNull(dsg.getStats());
+        dsg.shutdown();
+
+        DatasetGraphTDB dsg2 = create(location);
+        Txn.executeRead(dsg2, ()->{
+            assertEquals(6, dsg2.getStats().getTriples().getCount());
+            assertEquals(2, dsg2.getStats().getQuads().getCount());
+        });
+        dsg2.shutdown();
+    }
+
+    // The reorder follows the current data.
+    @Test public void stats_06() {
+        DatasetGraphTDB dsg = create(Location.mem());
+        assertTrue(dsg.getReorderTransform() instanceof ReorderStatsTDB);
+        BasicPattern bgp = SSE.parseBGP("(bgp (?s <http://example/p> ?o) (?s <http://example/q> ?v))");
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 20 ; i++ )
+                dsg.add(SSE.parseQuad("(_ <http://example/s"+i+"> <http://example/q> "+i+")"));
+            dsg.add(SSE.parseQuad("(_ <http://example/s1> <http://example/p> <http://example/o>)"));
+        });
+        BasicPattern bgp1 = Txn.calculateRead(dsg, ()->dsg.getReorderTransform().reorder(bgp));
+        assertEquals(p, bgp1.get(0).getPredicate());
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 50 ; i++ )
+                dsg.add(SSE.parseQuad("(_ <http://example/s"+i+"> <http://example/p> <http://example/o"+i+">)"));
+        });
+        BasicPattern bgp2 = Txn.calculateRead(dsg, ()->dsg.getReorderTransform().reorder(bgp));
+        assertEquals(q, bgp2.get(0).getPredicate());
+    }
+
+    // Bulk loaders write the indexes directly.
+    @Test public void stats_07() {
+        testLoader(LoaderFactory::phasedLoader);
+    }
+
+    @Test public void stats_08() {
+        testLoader(LoaderFactory::sequentialLoader);
+    }
+
+    private static void testLoader(BiFunction<DatasetGraph, MonitorOutput, DataLoader> maker) {
+        DatasetGraphTDB dsg = create(Location.mem());
+        load(dsg);
+        DataLoader loader = maker.apply(dsg, MonitorOutputs.nullOutput());
+        loader.startBulk();
+        for ( int i = 0 ; i < 10 ; i++ )
+            loader.stream().triple(SSE.parseTriple("(<http://example/x"+i+"> <http://example/q> "+i+")"));
+        loader.stream().quad(SSE.parseQuad("(<http://example/g2> <http://example/s1> <http://example/p> <http://example/o1>)"));
+        loader.finishBulk();
+        Txn.executeRead(dsg, ()->{
+            StatsTDB stats = dsg.getStats();
+            assertEquals(16, stats.getTriples().getCount());
+            assertEquals(11, stats.getTriples().getPredicates().get(q).getCount());
+            assertEquals(11, stats.getTriples().getPredicates().get(q).getSubjects());
+            assertEquals(3, stats.getQuads().getCount());
+            assertEquals(2, stats.getGraphs().size());
+        });
+    }
+
+    @Test public void stats_encode_01() {
+        DatasetGraphTDB dsg = create(Location.mem());
+        load(dsg);
+        Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ _:b <http://example/p> 'abc'@en)")));
+        StatsTDB stats = Txn.calculateRead(dsg, ()->dsg.getStats());
+        StatsTDB stats2 = StatsTDB.decode(stats.encode());
+        assertEqualsStats(stats, stats2);
+        assertEquals(Long.valueOf(2), stats2.getTriples().getTypes().get(classA));
+    }
+
+    private static void assertEqualsStats(StatsTDB stats1, StatsTDB stats2) {
+        assertEqualsTable(stats1.getTriples(), stats2.getTriples());
+        assertEqualsTable(stats1.getQuads(), stats2.getQuads());
+        assertEquals(stats1.getGraphs(), stats2.getGraphs());
+    }
+
+    private static void assertEqualsTable(StatsTDB.TableStats table1, StatsTDB.TableStats table2) {
+        assertEquals(table1.getCount(), table2.getCount());
+        assertEquals(table1.getSubjects(), table2.getSubjects());
+        assertEquals(table1.getObjects(), table2.getObjects());
+        assertEquals(table1.getTypes(), table2.getTypes());
+        assertEquals(table1.getPredicates().keySet(), table2.getPredicates().keySet());
+        table1.getPredicates().forEach((pred, ps1)->{
+            StatsTDB.PredicateStats ps2 = table2.getPredicates().get(pred);
+            assertEquals(ps1.getCount(), ps2.getCount());
+            assertEquals(ps1.getSubjects(), ps2.getSubjects());
+            assertEquals(ps1.getObjects(), ps2.getObjects());
+        });
+    }
+}
@@ -27,6 +27,9 @@ import org.junit.runners.Suite;
     , TestNodeTableStoredBase.class
     , TestNodeTableStored.class
     , TestNodeTable.class
+    , TestNodeTableOffHeap.class
+    , TestCacheOffHeapNodes.class
+    , TestNodeTableCompressed.class
 })
 public class TS_NodeTable
 {
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store.nodetable;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.junit.Test;
+
+public class TestCacheOffHeapNodes {
+
+    private static NodeId id(long x) { return NodeIdFactory.createPtr(x); }
+
+    @Test public void offheap_cache_01() {
+        CacheOffHeapNodes cache = CacheOffHeapNodes.create(1024*1024);
+        assertTrue(cache.isEmpty());
+        Node n = NodeFactoryExtra.parseNode("<http://example/x>");
+        cache.put(id(1), n);
+        assertEquals(1, cache.size());
+        assertTrue(cache.containsKey(id(1)));
+        assertFalse(cache.containsKey(id(2)));
+        assertEquals(n, cache.getIfPresent(id(1)));
+        assertNull(cache.getIfPresent(id(2)));
+    }
+
+    @Test public void offheap_cache_02() {
+        CacheOffHeapNodes cache = CacheOffHeapNodes.create(1024*1024);
+        String[] nodes = { "'abc'", "'abc'@en", "'abc'^^<http://example/dt>", "_:b", "<http://example/x>", "'نواف'" };
+        for ( int i = 0 ; i < nodes.length ; i++ )
+            cache.put(id(i), NodeFactoryExtra.parseNode(nodes[i]));
+        for ( int i = 0 ; i < nodes.length ; i++ )
+            assertEquals(NodeFactoryExtra.parseNode(nodes[i]), cache.getIfPresent(id(i)));
+        assertEquals(nodes.length, Iter.count(cache.keys()));
+    }
+
+    @Test public void offheap_cache_03() {
+        CacheOffHeapNodes cache = CacheOffHeapNodes.create(1024*1024);
+        Node n = NodeFactoryExtra.parseNode("'abc'");
+        cache.put(id(10), n);
+        cache.remove(id(10));
+        assertFalse(cache.containsKey(id(10)));
+        assertTrue(cache.isEmpty());
+        cache.put(id(10), n);
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertNull(cache.getIfPresent(id(10)));
+    }
+
+    // Inline NodeIds are not cached.
+    @Test public void offheap_cache_04() {
+        CacheOffHeapNodes cache = CacheOffHeapNodes.create(1024*1024);
+        Node n = NodeFactoryExtra.parseNode("123");
+        NodeId nid = NodeId.inline(n);
+        cache.put(nid, n);
+        assertFalse(cache.containsKey(nid));
+        assertTrue(cache.isEmpty());
+    }
+
+    // Bounded in bytes: older entries are evicted, newer ones are kept.
+    @Test public void offheap_cache_05() {
+        CacheOffHeapNodes cache = new CacheOffHeapNodes(64*1024, 1);
+        int N = 10_000;
+        for ( int i = 0 ; i < N ; i++ )
+            cache.put(id(i), NodeFactory.createURI("http://example/node/"+i));
+        assertTrue(cache.size() < N);
+        assertTrue(cache.allocatedBytes() <= cache.capacity());
+        assertFalse(cache.containsKey(id(0)));
+        assertEquals(NodeFactory.createURI("http://example/node/"+(N-1)), cache.getIfPresent(id(N-1)));
+        // Everything still indexed can be read back.
+        cache.keys().forEachRemaining(nid->{
+            Node n = cache.getIfPresent(nid);
+            assertEquals(NodeFactory.createURI("http://example/node/"+nid.getPtrLocation()), n);
+        });
+    }
+
+    @Test public void offheap_cache_06() {
+        CacheOffHeapNodes cache = CacheOffHeapNodes.create(1024*1024);
+        Node n = NodeFactoryExtra.parseNode("'abc'");
+        Node n1 = cache.get(id(5), nid->n);
+        assertEquals(n, n1);
+        Node n2 = cache.get(id(5), nid->{ throw new RuntimeException(); });
+        assertEquals(n, n2);
+        assertEquals(1, cache.stats().hits);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.tdb2.store.nodetable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.dboe.base.file.BinaryDataFile;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.index.Index;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.junit.BuildTestLib;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.params.StoreParamsBuilder;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.Test;
+
+public class TestNodeTableCompressed extends AbstractTestNodeTable
+{
+    private static int counter = 0;
+    private static String label() { return TestNodeTableCompressed.class.getSimpleName()+"-"+(++counter); }
+
+    @Override
+    protected NodeTable createEmptyNodeTable() {
+        return createNodeTable(true);
+    }
+
+    private static NodeTable createNodeTable(boolean compressed) {
+        StoreParams params =
+            StoreParamsBuilder.create(label())
+                .compressNodes(compressed)
+                .nodeId2NodeCacheSize(-1)
+                .node2NodeIdCacheSize(-1)
+                .nodeMissCacheSize(-1).build();
+        return BuildTestLib.makeNodeTableBase(Location.mem(), "test", params);
+    }
+
+    private static long dataLength(NodeTable nt) {
+        return ((NodeTableTRDF)nt).getData().length();
+    }
+
+    @Test public void nodetable_compressed_01()  { testNode("<http://example/ns/>"); }
+    @Test public void nodetable_compressed_02()  { testNode("<http://example/ns#x>"); }
+    @Test public void nodetable_compressed_03()  { testNode("<urn:x:y>"); }
+    @Test public void nodetable_compressed_04()  { testNode("<http://example/ns/x>"); }
+
+    // IRIs with a shared namespace.
+    @Test public void nodetable_compressed_05() {
+        NodeTable nt1 = createNodeTable(false);
+        NodeTable nt2 = createNodeTable(true);
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            Node n = NodeFactory.createURI("http://example.org/some/long/namespace/resource"+i);
+            writeNode(nt1, n);
+            writeNode(nt2, n);
+        }
+        // The namespace is a node.
+        NodeId nsId = nt2.getNodeIdForNode(NodeFactory.createURI("http://example.org/some/long/namespace/"));
+        assertTrue(NodeId.isConcrete(nsId));
+        assertTrue(dataLength(nt2) < dataLength(nt1)/2);
+    }
+
+    // Large literal
+    @Test public void nodetable_compressed_06() {
+        String lex = "The quick brown fox jumps over the lazy dog. ".repeat(100);
+        Node n = NodeFactory.createLiteralString(lex);
+        NodeTable nt1 = createNodeTable(false);
+        NodeTable nt2 = createNodeTable(true);
+        writeNode(nt1, n);
+        writeNode(nt2, n);
+        assertTrue(dataLength(nt2) < dataLength(nt1)/10);
+    }
+
+    // The namespace of an IRI is read once.
+    @Test public void nodetable_compressed_08() {
+        NodeTableTRDF nt1 = (NodeTableTRDF)createNodeTable(true);
+        Node n1 = NodeFactory.createURI("http://example.org/some/long/namespace/resource1");
+        Node n2 = NodeFactory.createURI("http://example.org/some/long/namespace/resource2");
+        NodeId id1 = nt1.getAllocateNodeId(n1);
+        NodeId id2 = nt1.getAllocateNodeId(n2);
+        NodeId nsId = nt1.getNodeIdForNode(NodeFactory.createURI("http://example.org/some/long/namespace/"));
+
+        // Another node table for the same storage, as after a restart.
+        List<NodeId> reads = new ArrayList<>();
+        NodeTable nt2 = countingNodeTable(nt1.getIndex(), nt1.getData(), reads);
+        assertEquals(n1, nt2.getNodeForNodeId(id1));
+        assertEquals(List.of(id1, nsId), reads);
+        reads.clear();
+        assertEquals(n2, nt2.getNodeForNodeId(id2));
+        assertEquals(List.of(id2), reads);
+    }
+
+    // The namespace of an IRI written is not read.
+    @Test public void nodetable_compressed_09() {
+        NodeTableTRDF nt1 = (NodeTableTRDF)createNodeTable(true);
+        List<NodeId> reads = new ArrayList<>();
+        NodeTable nt2 = countingNodeTable(nt1.getIndex(), nt1.getData(), reads);
+        Node n1 = NodeFactory.createURI("http://example.org/some/long/namespace/resource1");
+        NodeId id1 = nt2.getAllocateNodeId(n1);
+        assertEquals(n1, nt2.getNodeForNodeId(id1));
+        assertEquals(List.of(id1), reads);
+    }
+
+    private static NodeTable countingNodeTable(Index index, BinaryDataFile data, List<NodeId> reads) {
+        return new NodeTableTRDF(index, data, true) {
+            @Override
+            protected Node readNodeFromTable(NodeId id) {
+                reads.add(id);
+                return super.readNodeFromTable(id);
+            }
+        };
+    }
+
+    // Database, with an aborted transaction and restart.
+    @Test public void nodetable_compressed_07() {
+        TDBInternal.reset();
+        String dir = ConfigTest.getCleanDir();
+        FileOps.clearAll(dir);
+        Location location = Location.create(dir);
+        StoreParams params = StoreParams.builder(label()).compressNodes(true).build();
+        Quad q1 = Quad.create(Quad.defaultGraphIRI,
+                              NodeFactory.createURI("http://example/data/s1"),
+                              NodeFactory.createURI("http://example/vocab#p"),
+                              NodeFactory.createLiteralString("abc".repeat(100)));
+        Quad q2 = Quad.create(Quad.defaultGraphIRI,
+                              NodeFactory.createURI("http://example/data/s2"),
+                              NodeFactory.createURI("http://example/vocab#q"),
+                              NodeFactory.createURI("http://example/data/o2"));
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(location, params);
+        Txn.executeWrite(dsg, ()->dsg.add(q1));
+        dsg.begin(TxnType.WRITE);
+        dsg.add(q2);
+        dsg.abort();
+        dsg.end();
+        Txn.executeWrite(dsg, ()->dsg.add(q2));
+        TDBInternal.expel(dsg);
+
+        DatasetGraph dsg2 = DatabaseMgr.connectDatasetGraph(location);
+        assertTrue(TDBInternal.getDatasetGraphTDB(dsg2).getStoreParams().isCompressNodes());
+        Txn.executeRead(dsg2, ()->{
+            assertEquals(2, dsg2.stream().count());
+            assertTrue(dsg2.contains(q1));
+            assertTrue(dsg2.contains(q2));
+        });
+        TDBInternal.expel(dsg2);
+    }
+}
@@ -22,12 +22,15 @@ import static org.apache.jena.atlas.lib.tuple.TupleFactory.tuple;
 import static org.apache.jena.tdb2.store.tupletable.NData.*;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.jena.atlas.iterator.Iter;
 import static org.junit.Assert.*;
 import org.apache.jena.atlas.lib.tuple.Tuple;
 import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
 import org.junit.Test;
 
 /** Test TupleIndexes (general) */
@@ -261,4 +264,43 @@ public abstract class AbstractTestTupleIndex
    }
 
 
+
+    // Enough tuples for the index to have internal nodes to split at.
+    private TupleIndex createLarge(String description)
+    {
+        TupleIndex index = create(description);
+        for ( int i = 1 ; i <= 50 ; i++ )
+            for ( int j = 1 ; j <= 20 ; j++ )
+                add(index, NodeIdFactory.createPtr(i), NodeIdFactory.createPtr(j%4+1), NodeIdFactory.createPtr(j));
+        return index;
+    }
+
+    private static void testStream(TupleIndex index, Tuple<NodeId> pattern, int expected)
+    {
+        List<Tuple<NodeId>> x1 = Iter.toList(index.find(pattern));
+        List<Tuple<NodeId>> x2 = index.stream(pattern, false).toList();
+        assertEquals(expected, x1.size());
+        assertEquals(x1, x2);
+        assertEquals(expected, index.stream(pattern, true).count());
+        assertEquals(Set.copyOf(x1), index.stream(pattern, true).collect(Collectors.toSet()));
+    }
+
+    @Test public void TupleIndexStream_1()
+    {
+        TupleIndex index = createLarge("SPO");
+        testStream(index, tuple(null, null, null), 1000);
+        testStream(index, tuple(NodeIdFactory.createPtr(7), null, null), 20);
+        testStream(index, tuple(NodeIdFactory.createPtr(7), NodeIdFactory.createPtr(2), null), 5);
+        testStream(index, tuple(NodeIdFactory.createPtr(7), NodeIdFactory.createPtr(2), NodeIdFactory.createPtr(5)), 1);
+        testStream(index, tuple(NodeIdFactory.createPtr(7), NodeIdFactory.createPtr(3), NodeIdFactory.createPtr(5)), 0);
+    }
+
+    @Test public void TupleIndexStream_2()
+    {
+        TupleIndex index = createLarge("POS");
+        testStream(index, tuple(null, NodeIdFactory.createPtr(2), null), 250);
+        testStream(index, tuple(null, NodeIdFactory.createPtr(2), NodeIdFactory.createPtr(5)), 50);
+        testStream(index, tuple(NodeIdFactory.createPtr(9), NodeIdFactory.createPtr(2), null), 5);
+        testStream(index, tuple(NodeIdFactory.createPtr(9), null, null), 20);
+    }
 }
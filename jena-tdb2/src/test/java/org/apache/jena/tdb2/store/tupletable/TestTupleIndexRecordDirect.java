@@ -278,6 +278,33 @@ public class TestTupleIndexRecordDirect
         assertFalse(iter.hasNext());
    }
 
+    @Test public void TupleIndexRecordFindFrom_1()
+    {
+        TupleIndexRecord index = create("POS");
+        add(index, n1, n2, n3);
+        add(index, n4, n2, n3);
+        add(index, n5, n2, n3);
+        add(index, n6, n2, n4);
+
+        Tuple<NodeId> tuple2 = tuple(null, n2, n3);
+        assertEquals(3, Iter.count(index.findFrom(tuple2, null)));
+        Iterator<Tuple<NodeId>> iter = index.findFrom(tuple2, n2);
+        assertEquals(tuple(n4, n2, n3), iter.next());
+        assertEquals(tuple(n5, n2, n3), iter.next());
+        assertFalse(iter.hasNext());
+        assertFalse(index.findFrom(tuple2, n6).hasNext());
+    }
+
+    @Test public void TupleIndexRecordFindFrom_2()
+    {
+        TupleIndexRecord index = create("POS");
+        add(index, n1, n2, n3);
+        // Not a prefix of POS
+        assertNull(index.findFrom(tuple(n1, n2, null), null));
+        assertNull(index.findFrom(tuple(n1, n2, n3), null));
+        assertNull(index.findFrom(tuple(null, null, null), null));
+    }
+
     @Test public void TupleIndexRecordFindNot_4()
     {
         TupleIndexRecord index = create("SPO");
@@ -27,6 +27,7 @@ import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.base.Sys;
 import org.apache.jena.dboe.base.file.Location;
@@ -333,4 +334,61 @@ public class TestDatabaseCompact
         assertFalse(Files.exists(pathFile2));
         assertFalse(Files.exists(pathTmp2));
     }
+
+    @Test public void compact_online_1() {
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        DatasetGraphSwitchable dsgs = (DatasetGraphSwitchable)dsg;
+        Location loc1 = ((DatasetGraphTDB)dsgs.get()).getLocation();
+
+        Txn.executeWrite(dsg, ()-> {
+            dsg.add(quad2);
+            dsg.add(quad1);
+            dsg.prefixes().add("ex", "http://example/");
+        });
+        CompactionStats stats = DatabaseMgr.compactOnline(dsg, false);
+
+        assertFalse(StoreConnection.isSetup(loc1));
+        assertNotEquals(loc1, ((DatasetGraphTDB)dsgs.get()).getLocation());
+        if ( !Sys.isWindows ) {
+            // MS Windows uses the blocking compaction.
+            assertEquals(2, stats.quadsCopied());
+            assertEquals(0, stats.changesReplayed());
+        }
+        assertTrue(stats.bytesCopied() > 0);
+        assertTrue(stats.pauseMillis() <= stats.elapsedMillis());
+
+        Txn.executeRead(dsg, ()-> {
+            assertTrue(dsg.contains(quad2));
+            assertTrue(dsg.contains(quad1));
+            assertEquals("http://example/", dsg.prefixes().get("ex"));
+        });
+    }
+
+    // Updates while compacting are kept.
+    @Test public void compact_online_2() throws InterruptedException {
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        int N = 5000;
+        Txn.executeWrite(dsg, ()-> {
+            for ( int i = 0 ; i < N ; i++ )
+                dsg.add(SSE.parseQuad("(<http://example/g> <http://example/s"+i+"> <http://example/p> "+i+")"));
+        });
+        int W = 200;
+        Thread writer = new Thread(()->{
+            for ( int i = 0 ; i < W ; i++ ) {
+                int x = i;
+                Txn.executeWrite(dsg, ()-> {
+                    dsg.add(SSE.parseQuad("(_ <http://example/s"+x+"> <http://example/q> "+x+")"));
+                    dsg.delete(SSE.parseQuad("(<http://example/g> <http://example/s"+x+"> <http://example/p> "+x+")"));
+                });
+            }
+        });
+        writer.start();
+        CompactionStats stats = DatabaseMgr.compactOnline(dsg, false);
+        writer.join();
+        assertTrue(stats.changesReplayed() <= 2*W);
+        Txn.executeRead(dsg, ()-> {
+            assertEquals(W, dsg.getDefaultGraph().size());
+            assertEquals(N-W, Iter.count(dsg.find(SSE.parseNode("<http://example/g>"), null, null, null)));
+        });
+    }
 }
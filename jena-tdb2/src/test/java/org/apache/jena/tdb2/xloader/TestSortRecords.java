@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.xloader;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.jena.atlas.lib.Bytes;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.junit.Test;
+
+public class TestSortRecords {
+    private static List<Record> data(int rowLength, int N, long seed) {
+        RecordFactory factory = new RecordFactory(rowLength * SystemTDB.SizeOfNodeId, 0);
+        Random random = new Random(seed);
+        List<Record> records = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i++ ) {
+            Record r = factory.create();
+            for ( int j = 0 ; j < rowLength ; j++ ) {
+                // Small range in the first slot for duplicate prefixes; negative numbers for unsigned order.
+                long x = ( j == 0 ) ? random.nextInt(10) - 5 : random.nextInt(N);
+                Bytes.setLong(x, r.getKey(), j * SystemTDB.SizeOfNodeId);
+            }
+            records.add(r);
+        }
+        return records;
+    }
+
+    private static void test(int rowLength, int N, long memory, int threads, boolean compress) {
+        List<Record> records = data(rowLength, N, N);
+        // Duplicates.
+        records.addAll(records.subList(0, N/10));
+        TreeSet<Record> expected = new TreeSet<>(Record::compareByKey);
+        expected.addAll(records);
+
+        try ( SortRecords sorter = new SortRecords(rowLength, memory, threads, ConfigTest.getCleanDir(), compress) ) {
+            sorter.addAll(records.iterator());
+            assertEquals(records.size(), sorter.count());
+            Iterator<Record> iter = sorter.sorted();
+            List<Record> results = new ArrayList<>();
+            iter.forEachRemaining(results::add);
+            assertEquals(new ArrayList<>(expected), results);
+        }
+    }
+
+    @Test public void sortRecords_empty() {
+        try ( SortRecords sorter = new SortRecords(3, 1_000_000, 2, null, false) ) {
+            assertFalse(sorter.sorted().hasNext());
+        }
+    }
+
+    // In memory.
+    @Test public void sortRecords_1() {
+        test(3, 1000, 100_000_000, 2, false);
+    }
+
+    // Several runs.
+    @Test public void sortRecords_2() {
+        test(3, 200_000, 8_000_000, 3, false);
+    }
+
+    @Test public void sortRecords_3() {
+        test(4, 200_000, 8_000_000, 1, true);
+    }
+
+    // Intermediate merges.
+    @Test public void sortRecords_4() {
+        int x = SortRecords.MergeWidth;
+        try {
+            SortRecords.MergeWidth = 2;
+            test(3, 300_000, 4_000_000, 2, true);
+        } finally {
+            SortRecords.MergeWidth = x;
+        }
+    }
+
+    @Test public void sortRows() {
+        long[] rows = { 3, 1, 2, 2, -1, 0, 1, 2, 2, 3, 1, 1 };
+        SortRecords.sortRows(rows, 2, 0, 6);
+        assertArrayEquals(new long[]{ 1, 1, 1, 2, 2, 2, 2, 3, 3, 1, -1, 0 }, rows);
+    }
+}